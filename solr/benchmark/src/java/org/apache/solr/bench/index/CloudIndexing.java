@@ -76,6 +76,10 @@ public class CloudIndexing {
     @Param({"true", "false"})
     boolean directBuffer;
 
+    // compare allocations with -prof gc (gc.alloc.rate.norm)
+    @Param({"true", "false"})
+    boolean reuseDocumentFields;
+
     private final org.apache.solr.bench.Docs largeDocs;
     private Iterator<SolrInputDocument> largeDocIterator;
 
@@ -131,6 +135,7 @@ public class CloudIndexing {
     public void doSetup(MiniClusterState.MiniClusterBenchState miniClusterState) throws Exception {
       System.setProperty("useStringUtf8Over", Integer.toString(useStringUtf8Over));
       System.setProperty("httpClientDirectBuffer", Boolean.toString(directBuffer));
+      System.setProperty("solr.docBuilder.reuseFields", Boolean.toString(reuseDocumentFields));
 
       System.setProperty("mergePolicyFactory", "org.apache.solr.index.NoMergePolicyFactory");
       miniClusterState.startMiniCluster(nodeCount);
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench.index;
+
+import static org.apache.solr.bench.Docs.docs;
+import static org.apache.solr.bench.generators.SourceDSL.doubles;
+import static org.apache.solr.bench.generators.SourceDSL.integers;
+import static org.apache.solr.bench.generators.SourceDSL.longs;
+import static org.apache.solr.bench.generators.SourceDSL.strings;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.bench.MiniClusterState;
+import org.apache.solr.client.solrj.request.ContentStreamUpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.util.ContentStreamBase;
+import org.apache.solr.common.util.Utils;
+import org.apache.solr.handler.loader.JsonLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Timeout;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(time = 10, iterations = 3)
+@Measurement(time = 20, iterations = 4)
+@Fork(value = 1)
+@Timeout(time = 60)
+// A benchmark comparing single threaded and parallel parsing of large JSON arrays of documents.
+public class JsonIndexing {
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    static final String COLLECTION = "testCollection";
+
+    @Param({"1", "4"})
+    int parallelism;
+
+    @Param({"1000", "10000"})
+    int docsPerRequest;
+
+    private final org.apache.solr.bench.Docs docs;
+    private List<String> payloads;
+    private Iterator<String> payloadIterator;
+
+    public BenchState() {
+      docs =
+          docs()
+              .field("id", integers().incrementing())
+              .field("text", strings().basicLatinAlphabet().multi(10).ofLengthBetween(20, 32))
+              .field("int1_i", integers().all())
+              .field("int2_i", integers().all())
+              .field("long1_l", longs().all())
+              .field("double1_d", doubles().all());
+    }
+
+    @Setup(Level.Trial)
+    public void doSetup(MiniClusterState.MiniClusterBenchState miniClusterState) throws Exception {
+      System.setProperty("mergePolicyFactory", "org.apache.solr.index.NoMergePolicyFactory");
+      miniClusterState.startMiniCluster(1);
+      miniClusterState.createCollection(COLLECTION, 1, 1);
+
+      payloads = new ArrayList<>();
+      Iterator<SolrInputDocument> docIterator = docs.preGenerate(docsPerRequest * 5);
+      for (int p = 0; p < 5; p++) {
+        List<Map<String, Object>> maps = new ArrayList<>(docsPerRequest);
+        for (int i = 0; i < docsPerRequest; i++) {
+          Map<String, Object> map = new LinkedHashMap<>();
+          for (SolrInputField field : docIterator.next()) {
+            map.put(field.getName(), field.getValue());
+          }
+          maps.add(map);
+        }
+        payloads.add(Utils.toJSONString(maps));
+      }
+      payloadIterator = payloads.iterator();
+    }
+
+    String nextPayload() {
+      if (!payloadIterator.hasNext()) {
+        payloadIterator = payloads.iterator();
+      }
+      return payloadIterator.next();
+    }
+  }
+
+  @Benchmark
+  @Timeout(time = 300)
+  public Object indexJsonArray(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state) throws Exception {
+    ContentStreamUpdateRequest updateRequest = new ContentStreamUpdateRequest("/update");
+    updateRequest.setBasePath(miniClusterState.nodes.get(0));
+    updateRequest.setParam(JsonLoader.PARALLELISM, Integer.toString(state.parallelism));
+    updateRequest.addContentStream(
+        new ContentStreamBase.StringStream(state.nextPayload(), "application/json"));
+
+    return miniClusterState.client.request(updateRequest, BenchState.COLLECTION);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench.search;
+
+import static org.apache.solr.bench.Docs.docs;
+import static org.apache.solr.bench.generators.SourceDSL.integers;
+import static org.apache.solr.bench.generators.SourceDSL.strings;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.bench.BaseBenchState;
+import org.apache.solr.bench.Docs;
+import org.apache.solr.bench.MiniClusterState;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.GroupParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Timeout;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * A benchmark comparing distributed grouping with and without {@link
+ * GroupParams#GROUP_DISTRIBUTED_COMBINE}. The number of shard requests of each kind is reported
+ * by the <code>purposes</code> metric of the shard handler, which is part of the metrics dumped at
+ * the end of the run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Warmup(time = 10, iterations = 4)
+@Measurement(time = 15, iterations = 5)
+@Fork(value = 1)
+@Timeout(time = 60)
+public class DistributedGrouping {
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    public static final String collection = "testCollection";
+
+    @Param({"200000"})
+    public int docCount;
+
+    @Param("2")
+    int nodeCount;
+
+    @Param("1")
+    int numReplicas;
+
+    @Param("8")
+    int numShards;
+
+    // number of distinct group values
+    @Param({"50", "50000"})
+    int groupCard;
+
+    @Param({"1", "3"})
+    int groupLimit;
+
+    @Param({"false", "true"})
+    boolean combine;
+
+    private ModifiableSolrParams params;
+
+    @Setup(Level.Trial)
+    public void setup(
+        BenchmarkParams benchmarkParams, MiniClusterState.MiniClusterBenchState miniClusterState)
+        throws Exception {
+
+      miniClusterState.startMiniCluster(nodeCount);
+
+      miniClusterState.createCollection(collection, numShards, numReplicas);
+
+      Docs docs =
+          docs()
+              .field("id", integers().incrementing())
+              .field(
+                  "group_s",
+                  strings().basicLatinAlphabet().maxCardinality(groupCard).ofLengthBetween(1, 32))
+              .field(strings().basicLatinAlphabet().ofLengthBetween(1, 16));
+
+      miniClusterState.index(collection, docs, docCount);
+      miniClusterState.forceMerge(collection, 5);
+
+      params =
+          MiniClusterState.params(
+              "q",
+              "*:*",
+              "sort",
+              "string_s asc",
+              "rows",
+              "10",
+              GroupParams.GROUP,
+              "true",
+              GroupParams.GROUP_FIELD,
+              "group_s",
+              GroupParams.GROUP_LIMIT,
+              String.valueOf(groupLimit),
+              GroupParams.GROUP_DISTRIBUTED_COMBINE,
+              String.valueOf(combine));
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+      private SplittableRandom random;
+
+      @Setup(Level.Trial)
+      public void setup() {
+        this.random = new SplittableRandom(BaseBenchState.getRandomSeed());
+      }
+    }
+  }
+
+  @Benchmark
+  @Timeout(time = 500, timeUnit = TimeUnit.SECONDS)
+  public Object group(
+      MiniClusterState.MiniClusterBenchState miniClusterState,
+      BenchState state,
+      BenchState.ThreadState threadState)
+      throws Exception {
+    QueryRequest queryRequest = new QueryRequest(state.params);
+    queryRequest.setBasePath(
+        miniClusterState.nodes.get(threadState.random.nextInt(state.nodeCount)));
+
+    NamedList<Object> result = miniClusterState.client.request(queryRequest, state.collection);
+    return result;
+  }
+}
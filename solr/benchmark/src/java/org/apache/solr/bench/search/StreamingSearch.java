@@ -17,7 +17,9 @@
 package org.apache.solr.bench.search;
 
 import static org.apache.solr.bench.Docs.docs;
+import static org.apache.solr.bench.generators.SourceDSL.doubles;
 import static org.apache.solr.bench.generators.SourceDSL.integers;
+import static org.apache.solr.bench.generators.SourceDSL.longs;
 import static org.apache.solr.bench.generators.SourceDSL.strings;
 
 import java.io.IOException;
@@ -31,9 +33,17 @@ import org.apache.solr.client.solrj.impl.Http2SolrClient;
 import org.apache.solr.client.solrj.impl.HttpClientUtil;
 import org.apache.solr.client.solrj.io.SolrClientCache;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.stream.CloudSolrStream;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser;
+import org.apache.solr.client.solrj.io.stream.RollupStream;
 import org.apache.solr.client.solrj.io.stream.StreamContext;
 import org.apache.solr.client.solrj.io.stream.TupleStream;
+import org.apache.solr.client.solrj.io.stream.metrics.Bucket;
+import org.apache.solr.client.solrj.io.stream.metrics.CountMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.MaxMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.Metric;
+import org.apache.solr.client.solrj.io.stream.metrics.SumMetric;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -81,7 +91,12 @@ public class StreamingSearch {
               .field("id", integers().incrementing())
               .field("text2_ts", strings().basicLatinAlphabet().multi(312).ofLengthBetween(30, 64))
               .field("text3_ts", strings().basicLatinAlphabet().multi(312).ofLengthBetween(30, 64))
-              .field("int1_i_dv", integers().all());
+              .field("int1_i_dv", integers().all())
+              .field("long1_l_dv", longs().all())
+              .field("double1_d_dv", doubles().all())
+              .field(
+                  "string1_s",
+                  strings().basicLatinAlphabet().maxCardinality(100).ofLengthBetween(4, 16));
       miniClusterState.index(collection, docGen, docs);
       miniClusterState.waitForMerges(collection);
 
@@ -119,6 +134,76 @@ public class StreamingSearch {
     }
   }
 
+  /**
+   * Compares the /export handler writing one map per document with writing columnar record
+   * batches, over the docValues of the documents indexed by {@link BenchState}.
+   */
+  @State(Scope.Benchmark)
+  public static class ExportState {
+
+    @Param({"rows", "columnar"})
+    String exportFormat;
+
+    private ModifiableSolrParams params;
+
+    @Setup(Level.Trial)
+    public void setup(BenchState benchState) {
+      params = new ModifiableSolrParams();
+      params.set(CommonParams.Q, "*:*");
+      params.set(CommonParams.QT, "/export");
+      params.set(CommonParams.WT, CommonParams.JAVABIN);
+      params.set(CommonParams.FL, "id,int1_i_dv,long1_l_dv,double1_d_dv,string1_s");
+      params.set(CommonParams.SORT, "id asc");
+      if (ColumnarTupleStreamParser.FORMAT.equals(exportFormat)) {
+        params.set(ColumnarTupleStreamParser.FORMAT_PARAM, ColumnarTupleStreamParser.FORMAT);
+      }
+    }
+  }
+
+  @Benchmark
+  public Object export(BenchState benchState, ExportState exportState) throws IOException {
+    CloudSolrStream stream = new CloudSolrStream(benchState.zkHost, collection, exportState.params);
+    stream.setStreamContext(benchState.streamContext);
+    return getTuples(stream);
+  }
+
+  /**
+   * Compares reading a rollup over an export one tuple at a time with reading it in tuple batches.
+   */
+  @State(Scope.Benchmark)
+  public static class RollupState {
+
+    @Param({"tuple", "batch"})
+    String readMode;
+
+    private ModifiableSolrParams params;
+
+    @Setup(Level.Trial)
+    public void setup(BenchState benchState) {
+      params = new ModifiableSolrParams();
+      params.set(CommonParams.Q, "*:*");
+      params.set(CommonParams.QT, "/export");
+      params.set(CommonParams.FL, "string1_s,int1_i_dv,double1_d_dv");
+      params.set(CommonParams.SORT, "string1_s asc");
+    }
+  }
+
+  @Benchmark
+  public Object rollup(BenchState benchState, RollupState rollupState) throws IOException {
+    CloudSolrStream stream = new CloudSolrStream(benchState.zkHost, collection, rollupState.params);
+    Metric[] metrics = {
+      new SumMetric("int1_i_dv"),
+      new MaxMetric("double1_d_dv"),
+      new CountMetric()
+    };
+    TupleStream rollup = new RollupStream(stream, new Bucket[] {new Bucket("string1_s")}, metrics);
+    rollup.setStreamContext(benchState.streamContext);
+    if ("batch".equals(rollupState.readMode)) {
+      return getBatchTuples(rollup);
+    }
+    return getTuples(rollup);
+  }
+
   @Benchmark
   public Object stream(
       BenchState benchState, MiniClusterState.MiniClusterBenchState miniClusterState)
@@ -146,6 +231,23 @@ public class StreamingSearch {
     }
   }
 
+  private static List<Tuple> getBatchTuples(TupleStream tupleStream) throws IOException {
+    List<Tuple> tuples = new ArrayList<>();
+    TupleBatch batch = new TupleBatch();
+    try {
+      tupleStream.open();
+      do {
+        tupleStream.readBatch(batch);
+        for (int i = 0; i < batch.size(); i++) {
+          tuples.add(batch.get(i));
+        }
+      } while (!batch.isEOF());
+      return tuples;
+    } finally {
+      tupleStream.close();
+    }
+  }
+
   public static Http2SolrClient newHttp2SolrClient() {
     // TODO tune params?
     var builder = new Http2SolrClient.Builder();
@@ -601,6 +601,7 @@ public class PostLogsTool extends ToolBase {
     map.put(ShardRequest.PURPOSE_REFINE_PIVOT_FACETS, "REFINE_PIVOT_FACETS");
     map.put(ShardRequest.PURPOSE_SET_TERM_STATS, "SET_TERM_STATS");
     map.put(ShardRequest.PURPOSE_GET_TERM_STATS, "GET_TERM_STATS");
+    map.put(ShardRequest.PURPOSE_GET_SCORE_SAMPLE, "GET_SCORE_SAMPLE");
     purposes = Collections.unmodifiableMap(map);
   }
 }
@@ -0,0 +1,499 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler;
+
+import com.codahale.metrics.Counter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser;
+import org.apache.solr.client.solrj.io.stream.LocalTransport;
+import org.apache.solr.client.solrj.io.stream.TupleStream;
+import org.apache.solr.client.solrj.io.stream.TupleStreamParser;
+import org.apache.solr.cloud.ZkController;
+import org.apache.solr.common.IteratorWriter;
+import org.apache.solr.common.MapWriter;
+import org.apache.solr.common.PushWriter;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.StreamParams;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.IOUtils;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.handler.component.SearchHandler;
+import org.apache.solr.handler.export.ExportWriter;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestHandler;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.DocsStreamer;
+import org.apache.solr.response.ResultContext;
+import org.apache.solr.response.SolrQueryResponse;
+
+/**
+ * Runs the requests of the streams of an expression against the cores of this node directly, and
+ * hands the documents and tuples of the response over as objects instead of writing and parsing
+ * them. It runs /select, /export and /stream requests; the other requests,
+ * the requests to other nodes, and all requests when an authorization plugin is configured, which
+ * checks each request the stream sends, go over HTTP.
+ *
+ * <p>The values are converted to the types the response format would have been parsed into, so
+ * that a stream gets the same tuples either way.
+ */
+class LocalStreamTransport implements LocalTransport {
+
+  /** The documents of an export or a worker handed over to the stream at once. */
+  private static final int BATCH_SIZE = 256;
+
+  /** The batches an export or a worker writes ahead of the stream. */
+  private static final int QUEUE_SIZE = 16;
+
+  private final CoreContainer coreContainer;
+  private final Counter localRequests;
+  private final Counter remoteRequests;
+
+  LocalStreamTransport(CoreContainer coreContainer, Counter localRequests, Counter remoteRequests) {
+    this.coreContainer = coreContainer;
+    this.localRequests = localRequests;
+    this.remoteRequests = remoteRequests;
+  }
+
+  @Override
+  public TupleStreamParser request(String baseUrl, String core, String path, SolrParams params)
+      throws IOException {
+    SolrCore solrCore = getLocalCore(baseUrl, core);
+    SolrRequestHandler handler = solrCore == null ? null : solrCore.getRequestHandler(path);
+    if (!(handler instanceof SearchHandler || handler instanceof StreamHandler)
+        || params.get(ColumnarTupleStreamParser.FORMAT_PARAM) != null) {
+      // the columnar format only exists as javabin
+      if (solrCore != null) {
+        solrCore.close();
+      }
+      remoteRequests.inc();
+      return null;
+    }
+    localRequests.inc();
+
+    boolean json = !CommonParams.JAVABIN.equals(params.get(CommonParams.WT, "json"));
+    SolrQueryRequest req = new LocalSolrQueryRequest(solrCore, new ModifiableSolrParams(params));
+    SolrQueryResponse rsp = new SolrQueryResponse();
+    Closeable release =
+        () -> {
+          try {
+            req.close();
+          } finally {
+            solrCore.close();
+          }
+        };
+    TupleStreamParser parser = null;
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      solrCore.execute(handler, req, rsp);
+      if (rsp.getException() != null) {
+        throw new IOException(
+            "--> " + baseUrl + ":" + rsp.getException().getMessage(), rsp.getException());
+      }
+
+      // the export and worker threads inherit the request info, and release the request when
+      // they are done
+      if (handler instanceof ExportHandler) {
+        ExportParser exportParser =
+            new ExportParser(
+                (ExportWriter) rsp.getValues().get(ReplicationHandler.FILE_STREAM), json);
+        exportParser.start(release);
+        parser = exportParser;
+      } else if (handler instanceof StreamHandler) {
+        StreamParser streamParser =
+            new StreamParser((TupleStream) rsp.getValues().get(StreamParams.RESULT_SET), json);
+        streamParser.start(release);
+        parser = streamParser;
+      } else {
+        // the documents of a page are copied, and the request released right away
+        return new ListParser(getDocs(rsp.getResponse(), json));
+      }
+      return parser;
+    } finally {
+      SolrRequestInfo.clearRequestInfo();
+      if (parser == null) {
+        release.close();
+      }
+    }
+  }
+
+  /** Returns the core at an url if it's hosted by this node, to be closed by the caller. */
+  private SolrCore getLocalCore(String baseUrl, String core) {
+    ZkController zkController = coreContainer.getZkController();
+    if (zkController == null || coreContainer.getAuthorizationPlugin() != null) {
+      return null;
+    }
+    String url = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    String coreName = core;
+    if (coreName == null) {
+      int slash = url.lastIndexOf('/');
+      if (slash < 0) {
+        return null;
+      }
+      coreName = url.substring(slash + 1);
+      url = url.substring(0, slash);
+    }
+    if (!url.equals(zkController.getBaseUrl())) {
+      return null;
+    }
+    return coreContainer.getCore(coreName);
+  }
+
+  private static List<Map<String, Object>> getDocs(Object response, boolean json)
+      throws IOException {
+    List<Map<String, Object>> docs = new ArrayList<>();
+    if (response instanceof ResultContext) {
+      for (Iterator<SolrDocument> it = new DocsStreamer((ResultContext) response); it.hasNext(); ) {
+        docs.add(copyDoc(it.next(), json));
+      }
+    } else if (response instanceof Iterable) {
+      for (Object doc : (Iterable<?>) response) {
+        docs.add(copyDoc(doc, json));
+      }
+    }
+    return docs;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> copyDoc(Object doc, boolean json) throws IOException {
+    Object copy = copyValue(doc, json);
+    return copy instanceof Map ? (Map<String, Object>) copy : Collections.emptyMap();
+  }
+
+  /**
+   * Copies a value of a response into the objects the response format would have been parsed into.
+   * Streams parse both JSON and javabin into longs, doubles and date strings only, and the char
+   * sequences written by an export are reused for the next document.
+   */
+  private static Object copyValue(Object value, boolean json) throws IOException {
+    if (value == null || value instanceof String || value instanceof Boolean) {
+      return value;
+    } else if (value instanceof CharSequence) {
+      return value.toString();
+    } else if (value instanceof Number) {
+      if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        return ((Number) value).longValue();
+      } else if (value instanceof Float) {
+        // as written in JSON, not the double closest to the float, which javabin reads
+        return json ? Double.parseDouble(value.toString()) : ((Float) value).doubleValue();
+      }
+      return value;
+    } else if (value instanceof Date) {
+      return ((Date) value).toInstant().toString();
+    } else if (value instanceof MapWriter) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      ((MapWriter) value)
+          .writeMap(
+              new MapWriter.EntryWriter() {
+                @Override
+                public MapWriter.EntryWriter put(CharSequence k, Object v) throws IOException {
+                  map.put(k.toString(), copyValue(v, json));
+                  return this;
+                }
+              });
+      return map;
+    } else if (value instanceof IteratorWriter) {
+      List<Object> list = new ArrayList<>();
+      ((IteratorWriter) value)
+          .writeIter(
+              new IteratorWriter.ItemWriter() {
+                @Override
+                public IteratorWriter.ItemWriter add(Object o) throws IOException {
+                  list.add(copyValue(o, json));
+                  return this;
+                }
+              });
+      return list;
+    } else if (value instanceof Map) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        map.put(String.valueOf(entry.getKey()), copyValue(entry.getValue(), json));
+      }
+      return map;
+    } else if (value instanceof Iterable) {
+      List<Object> list = new ArrayList<>();
+      for (Object o : (Iterable<?>) value) {
+        list.add(copyValue(o, json));
+      }
+      return list;
+    } else if (value.getClass().isArray() && !(value instanceof byte[])) {
+      int length = Array.getLength(value);
+      List<Object> list = new ArrayList<>(length);
+      for (int i = 0; i < length; i++) {
+        list.add(copyValue(Array.get(value, i), json));
+      }
+      return list;
+    }
+    return value;
+  }
+
+  /** Returns the documents of a /select response. */
+  private static class ListParser implements TupleStreamParser {
+    private final Iterator<Map<String, Object>> docs;
+
+    ListParser(List<Map<String, Object>> docs) {
+      this.docs = docs.iterator();
+    }
+
+    @Override
+    public Map<String, Object> next() {
+      return docs.hasNext() ? docs.next() : null;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /**
+   * Hands the documents of a response over to the stream. They are produced on a thread of their
+   * own, so that the workers of a parallel stream run concurrently, and handed over in batches
+   * through a bounded queue.
+   */
+  private abstract static class QueuedParser implements TupleStreamParser {
+    private static final List<Map<String, Object>> END = new ArrayList<>();
+
+    private final BlockingQueue<List<Map<String, Object>>> queue =
+        new ArrayBlockingQueue<>(QUEUE_SIZE);
+    final boolean json;
+    private ExecutorService executor;
+    private volatile boolean closed;
+    private volatile Throwable error;
+
+    private List<Map<String, Object>> batch = new ArrayList<>(BATCH_SIZE);
+    private Iterator<Map<String, Object>> current = Collections.emptyIterator();
+    private boolean ended;
+
+    QueuedParser(boolean json) {
+      this.json = json;
+    }
+
+    /** Produces the documents with {@link #add(Map)}, on the thread of this parser. */
+    abstract void produce() throws Exception;
+
+    /** Releases what the documents were produced with, once they all were. */
+    abstract void finish();
+
+    void start(Closeable release) {
+      executor =
+          ExecutorUtil.newMDCAwareSingleThreadExecutor(
+              new SolrNamedThreadFactory("LocalStreamTransport"));
+      executor.submit(
+          () -> {
+            try {
+              produce();
+              hand(batch);
+            } catch (Throwable t) {
+              error = t;
+            } finally {
+              try {
+                hand(END);
+              } catch (IOException e) {
+                // the stream was closed
+              }
+              finish();
+              IOUtils.closeQuietly(release);
+            }
+            return null;
+          });
+    }
+
+    void add(Map<String, Object> doc) throws IOException {
+      batch.add(doc);
+      if (batch.size() == BATCH_SIZE) {
+        hand(batch);
+        batch = new ArrayList<>(BATCH_SIZE);
+      }
+    }
+
+    private void hand(List<Map<String, Object>> docs) throws IOException {
+      try {
+        while (!queue.offer(docs, 100, TimeUnit.MILLISECONDS)) {
+          if (closed) {
+            // the export writer takes this as a client that went away
+            throw new EOFException("The stream reading the response was closed");
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new EOFException("The stream reading the response was closed");
+      }
+    }
+
+    @Override
+    public Map<String, Object> next() throws IOException {
+      while (!current.hasNext()) {
+        if (ended) {
+          return null;
+        }
+        List<Map<String, Object>> docs;
+        try {
+          docs = queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException(e);
+        }
+        if (docs == END) {
+          ended = true;
+          if (error != null) {
+            throw new IOException(error);
+          }
+        }
+        current = docs.iterator();
+      }
+      return current.next();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      queue.clear();
+      if (executor != null) {
+        ExecutorUtil.shutdownNowAndAwaitTermination(executor);
+      }
+    }
+  }
+
+  /** Reads the tuples of a /stream response, up to and including the EOF tuple. */
+  static class StreamParser extends QueuedParser {
+    private final TupleStream stream;
+    private boolean opened;
+
+    StreamParser(TupleStream stream, boolean json) {
+      super(json);
+      this.stream = stream;
+    }
+
+    @Override
+    void produce() throws IOException {
+      if (stream == null) {
+        return;
+      }
+      opened = true;
+      stream.open();
+      Tuple tuple;
+      do {
+        tuple = stream.read();
+        add(copyDoc(tuple, json));
+      } while (!tuple.EOF);
+    }
+
+    @Override
+    void finish() {
+      if (opened) {
+        IOUtils.closeQuietly(stream);
+      }
+    }
+  }
+
+  /** Hands the documents of an /export over to the stream, as the export writer pushes them. */
+  private static class ExportParser extends QueuedParser {
+    private final ExportWriter exportWriter;
+
+    ExportParser(ExportWriter exportWriter, boolean json) {
+      super(json);
+      this.exportWriter = exportWriter;
+    }
+
+    @Override
+    void produce() throws IOException {
+      exportWriter.write(new DocsWriter());
+    }
+
+    @Override
+    void finish() {
+      IOUtils.closeQuietly(exportWriter);
+    }
+
+    /** Takes the documents out of the response the export writer pushes. */
+    private class DocsWriter implements PushWriter {
+
+      @Override
+      public void writeMap(MapWriter mw) throws IOException {
+        mw.writeMap(
+            new MapWriter.EntryWriter() {
+              @Override
+              public MapWriter.EntryWriter put(CharSequence k, Object v) throws IOException {
+                if ("response".contentEquals(k)) {
+                  writeResponse(v);
+                }
+                return this;
+              }
+            });
+      }
+
+      private void writeResponse(Object response) throws IOException {
+        MapWriter.EntryWriter docsWriter =
+            new MapWriter.EntryWriter() {
+              @Override
+              public MapWriter.EntryWriter put(CharSequence k, Object v) throws IOException {
+                if ("docs".contentEquals(k)) {
+                  if (v instanceof IteratorWriter) {
+                    writeIterator((IteratorWriter) v);
+                  } else if (v instanceof Iterable) {
+                    for (Object doc : (Iterable<?>) v) {
+                      add(copyDoc(doc, json));
+                    }
+                  }
+                }
+                return this;
+              }
+            };
+        if (response instanceof MapWriter) {
+          ((MapWriter) response).writeMap(docsWriter);
+        } else if (response instanceof Map) {
+          // an error response
+          docsWriter.put("docs", ((Map<?, ?>) response).get("docs"));
+        }
+      }
+
+      @Override
+      public void writeIterator(IteratorWriter iw) throws IOException {
+        iw.writeIter(
+            new IteratorWriter.ItemWriter() {
+              @Override
+              public IteratorWriter.ItemWriter add(Object o) throws IOException {
+                ExportParser.this.add(copyDoc(o, json));
+                return this;
+              }
+            });
+      }
+
+      @Override
+      public void close() {}
+    }
+  }
+}
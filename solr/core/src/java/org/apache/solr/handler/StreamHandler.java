@@ -18,6 +18,7 @@ package org.apache.solr.handler;
 
 import static org.apache.solr.common.params.CommonParams.ID;
 
+import com.codahale.metrics.Counter;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
@@ -29,12 +30,16 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.apache.solr.client.solrj.io.ModelCache;
 import org.apache.solr.client.solrj.io.SolrClientCache;
 import org.apache.solr.client.solrj.io.Tuple;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.DaemonStream;
 import org.apache.solr.client.solrj.io.stream.ExceptionStream;
+import org.apache.solr.client.solrj.io.stream.InstrumentedStream;
+import org.apache.solr.client.solrj.io.stream.SpillStats;
 import org.apache.solr.client.solrj.io.stream.StreamContext;
 import org.apache.solr.client.solrj.io.stream.TupleStream;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -57,6 +62,7 @@ import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.PluginInfo;
 import org.apache.solr.core.SolrConfig;
 import org.apache.solr.core.SolrCore;
+import org.apache.solr.metrics.SolrMetricsContext;
 import org.apache.solr.pkg.PackagePluginHolder;
 import org.apache.solr.pkg.SolrPackageLoader;
 import org.apache.solr.request.SolrQueryRequest;
@@ -88,6 +94,9 @@ public class StreamHandler extends RequestHandlerBase
   private String coreName;
   private SolrClientCache solrClientCache;
   private Map<String, DaemonStream> daemons = new ConcurrentHashMap<>();
+  private String metricsScope;
+  private Counter localRequests;
+  private Counter remoteRequests;
 
   @Override
   public PermissionNameProvider.Name getPermissionName(AuthorizationContext request) {
@@ -179,6 +188,11 @@ public class StreamHandler extends RequestHandlerBase
 
     TupleStream tupleStream;
 
+    // each stream of an analyzed expression is wrapped to record its execution statistics
+    StreamFactory factory =
+        params.getBool(StreamParams.ANALYZE, false)
+            ? this.streamFactory.withStatistics()
+            : this.streamFactory;
     try {
       StreamExpression streamExpression =
           StreamExpressionParser.parse(params.get(StreamParams.EXPR));
@@ -186,9 +200,9 @@ public class StreamHandler extends RequestHandlerBase
         StreamExpression tupleExpression = new StreamExpression(StreamParams.TUPLE);
         tupleExpression.addParameter(
             new StreamExpressionNamedParameter(StreamParams.RETURN_VALUE, streamExpression));
-        tupleStream = this.streamFactory.constructStream(tupleExpression);
+        tupleStream = factory.constructStream(tupleExpression);
       } else {
-        tupleStream = this.streamFactory.constructStream(streamExpression);
+        tupleStream = factory.constructStream(streamExpression);
       }
     } catch (Exception e) {
       // Catch exceptions that occur while the stream is being created. This will include streaming
@@ -233,6 +247,11 @@ public class StreamHandler extends RequestHandlerBase
     context.put("core", this.coreName);
     context.put("solr-core", req.getCore());
     context.setLocal(local);
+    context.setMemoryBudget(params.getLong(StreamParams.MEMORY_BUDGET, -1L));
+    if (zkController != null && localRequests != null) {
+      context.setLocalTransport(
+          new LocalStreamTransport(core.getCoreContainer(), localRequests, remoteRequests));
+    }
     tupleStream.setStreamContext(context);
 
     // if asking for explanation then go get it
@@ -240,8 +259,9 @@ public class StreamHandler extends RequestHandlerBase
       rsp.add("explanation", tupleStream.toExplanation(this.streamFactory));
     }
 
-    if (tupleStream instanceof DaemonStream) {
-      DaemonStream daemonStream = (DaemonStream) tupleStream;
+    if (InstrumentedStream.unwrap(tupleStream) instanceof DaemonStream) {
+      // daemons run in the background, their statistics are not reported
+      DaemonStream daemonStream = (DaemonStream) InstrumentedStream.unwrap(tupleStream);
       if (daemons.containsKey(daemonStream.getId())) {
         daemons.remove(daemonStream.getId()).close();
       }
@@ -252,7 +272,43 @@ public class StreamHandler extends RequestHandlerBase
           StreamParams.RESULT_SET,
           new DaemonResponseStream("Daemon:" + daemonStream.getId() + " started on " + coreName));
     } else {
-      rsp.add(StreamParams.RESULT_SET, new TimerStream(new ExceptionStream(tupleStream)));
+      TimerStream timerStream = new TimerStream(new ExceptionStream(tupleStream), context);
+      if (tupleStream instanceof InstrumentedStream) {
+        timerStream.setStatistics((InstrumentedStream) tupleStream, this::publishStatistics);
+      }
+      rsp.add(StreamParams.RESULT_SET, timerStream);
+    }
+  }
+
+  @Override
+  public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
+    super.initializeMetrics(parentContext, scope);
+    this.metricsScope = scope;
+    // the requests of the shard streams to the cores of this node, and to other nodes
+    localRequests = solrMetricsContext.counter("localRequests", getCategory().toString(), scope);
+    remoteRequests = solrMetricsContext.counter("remoteRequests", getCategory().toString(), scope);
+  }
+
+  /**
+   * Adds the statistics of an analyzed expression to the tuple and time metrics of each stream
+   * function, the time being the self time of the stream.
+   */
+  @SuppressWarnings("unchecked")
+  private void publishStatistics(Map<String, Object> statistics) {
+    if (solrMetricsContext == null) {
+      return;
+    }
+    String function = (String) statistics.get("function");
+    String[] metricPath = {getCategory().toString(), metricsScope, "stream", function};
+    solrMetricsContext.counter("tuples", metricPath).inc((Long) statistics.get("tuplesOut"));
+    solrMetricsContext
+        .timer("time", metricPath)
+        .update((Long) statistics.get("selfMillis"), TimeUnit.MILLISECONDS);
+    List<Map<String, Object>> children = (List<Map<String, Object>>) statistics.get("children");
+    if (children != null) {
+      for (Map<String, Object> child : children) {
+        publishStatistics(child);
+      }
     }
   }
 
@@ -486,11 +542,30 @@ public class StreamHandler extends RequestHandlerBase
 
     private long begin;
     private TupleStream tupleStream;
+    private StreamContext context;
+    private InstrumentedStream statistics;
+    private Consumer<Map<String, Object>> statisticsListener;
 
     public TimerStream(TupleStream tupleStream) {
       this.tupleStream = tupleStream;
     }
 
+    /** Also reports in the EOF tuple what the streams of the context spilled to disk. */
+    public TimerStream(TupleStream tupleStream, StreamContext context) {
+      this.tupleStream = tupleStream;
+      this.context = context;
+    }
+
+    /**
+     * Also reports in the EOF tuple the statistics of the streams of an analyzed expression, and
+     * passes them to the listener.
+     */
+    public void setStatistics(
+        InstrumentedStream statistics, Consumer<Map<String, Object>> statisticsListener) {
+      this.statistics = statistics;
+      this.statisticsListener = statisticsListener;
+    }
+
     @Override
     public StreamComparator getStreamSort() {
       return this.tupleStream.getStreamSort();
@@ -533,6 +608,20 @@ public class StreamHandler extends RequestHandlerBase
       if (tuple.EOF) {
         long totalTime = (System.nanoTime() - begin) / 1000000;
         tuple.put(StreamParams.RESPONSE_TIME, totalTime);
+        if (context != null && context.getSpillStats().getFiles() > 0) {
+          SpillStats spillStats = context.getSpillStats();
+          tuple.put(
+              StreamParams.SPILLED,
+              Map.of(
+                  "files", spillStats.getFiles(),
+                  "tuples", spillStats.getTuples(),
+                  "bytes", spillStats.getBytes()));
+        }
+        if (statistics != null) {
+          Map<String, Object> stats = statistics.getStatistics();
+          tuple.put(StreamParams.STATS, stats);
+          statisticsListener.accept(stats);
+        }
       }
       return tuple;
     }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.solr.client.solrj.routing.ReplicaListTransformer;
+
+/**
+ * Orders replicas by the score {@link ReplicaResponseStats} computes from the responses of their
+ * nodes, best first. Replicas with the same score are shuffled.
+ *
+ * <p>A node that stops receiving requests because of a bad score would never get a chance to
+ * improve it, so with a probability of <code>explorationRate</code> the replicas are only shuffled.
+ *
+ * @lucene.experimental
+ */
+public class AdaptiveReplicaListTransformer implements ReplicaListTransformer {
+
+  private final ReplicaResponseStats stats;
+  private final double explorationRate;
+  private final Random r;
+
+  public AdaptiveReplicaListTransformer(
+      ReplicaResponseStats stats, double explorationRate, Random r) {
+    this.stats = stats;
+    this.explorationRate = explorationRate;
+    this.r = r;
+  }
+
+  @Override
+  public <T> void transform(List<T> choices) {
+    if (choices.size() < 2) {
+      return;
+    }
+    Collections.shuffle(choices, r);
+    if (r.nextDouble() < explorationRate) {
+      return;
+    }
+    int size = choices.size();
+    double[] scores = new double[size];
+    for (int i = 0; i < size; i++) {
+      scores[i] = stats.score(choices.get(i));
+    }
+    // insertion sort, the lists are short and this keeps the shuffled order of equal scores
+    for (int i = 1; i < size; i++) {
+      T choice = choices.get(i);
+      double score = scores[i];
+      int j = i - 1;
+      while (j >= 0 && scores[j] > score) {
+        choices.set(j + 1, choices.get(j));
+        scores[j + 1] = scores[j];
+        j--;
+      }
+      choices.set(j + 1, choice);
+      scores[j + 1] = score;
+    }
+  }
+}
@@ -0,0 +1,404 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.cloud.ZkController;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.CaffeineCache;
+import org.apache.solr.search.SolrCache;
+
+/**
+ * Caches the final merged response of distributed searches on the coordinator, so that repeated
+ * requests do not fan out to the shards at all.
+ *
+ * <p>Entries are keyed by the request parameters and the shards the request was sent to, each shard
+ * being its sorted list of replicas, since the replica list transformer shuffles them for every
+ * request. Shard requests ask every replica to report its index version ({@link
+ * ShardParams#SHARDS_INDEX_VERSION}), and each entry records the versions of the replicas that
+ * produced it. An entry is discarded on lookup when one of its replicas hosted on this node has
+ * opened a new searcher since. For the other replicas, the latest version seen is tracked across
+ * all requests going through the handler, and an entry is discarded as soon as one of them has
+ * reported a different version. A remote replica that commits while only cached requests are
+ * served goes unnoticed, so entries also expire after {@link #MAX_AGE_PARAM} seconds: up to that
+ * age, a cached response may not reflect the commits of replicas on other nodes.
+ *
+ * <p>Configured with a <code>coordinatorCache</code> list in the handler's init args, which takes
+ * the usual {@link CaffeineCache} arguments. The cache is bounded by {@link
+ * SolrCache#MAX_RAM_MB_PARAM} unless only {@link SolrCache#SIZE_PARAM} is given.
+ */
+public class CoordinatorResultCache {
+  /** Name of the handler init arg holding the cache configuration */
+  public static final String INIT_ARG = "coordinatorCache";
+
+  /** Maximum age of an entry, in seconds */
+  public static final String MAX_AGE_PARAM = "maxAge";
+
+  /** Response header key a shard reports its index version with */
+  public static final String INDEX_VERSION = "indexVersion";
+
+  static final int DEFAULT_MAX_AGE_SEC = 60;
+  static final int DEFAULT_MAX_RAM_MB = 64;
+
+  private final CaffeineCache<String, Entry> cache = new CaffeineCache<>();
+  // latest index version reported by each replica, keyed by shard address
+  private final Map<String, Long> latestVersions = new ConcurrentHashMap<>();
+  private final long maxAgeNanos;
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder stale = new LongAdder();
+  private final LongAdder inserts = new LongAdder();
+
+  public CoordinatorResultCache(NamedList<?> args) {
+    Map<String, String> cacheArgs = new HashMap<>();
+    for (Map.Entry<String, ?> e : args) {
+      cacheArgs.put(e.getKey(), String.valueOf(e.getValue()));
+    }
+    String maxAge = cacheArgs.remove(MAX_AGE_PARAM);
+    maxAgeNanos =
+        TimeUnit.SECONDS.toNanos(
+            maxAge == null ? DEFAULT_MAX_AGE_SEC : Integer.parseInt(maxAge));
+    if (!cacheArgs.containsKey(SolrCache.SIZE_PARAM)) {
+      cacheArgs.putIfAbsent(SolrCache.MAX_RAM_MB_PARAM, String.valueOf(DEFAULT_MAX_RAM_MB));
+    }
+    cache.init(cacheArgs, null, null);
+  }
+
+  /**
+   * Whether the response to this request may be served from, and stored in, the cache. Requests
+   * with <code>cache=false</code>, debug output or <code>shards.info</code> are never cached.
+   */
+  public static boolean isCacheable(ResponseBuilder rb) {
+    SolrParams params = rb.req.getParams();
+    return params.getBool(CommonParams.CACHE, true)
+        && !rb.isDebug()
+        && !params.getBool(ShardParams.SHARDS_INFO, false)
+        && rb.req.getContentStreams() == null;
+  }
+
+  /**
+   * Builds the cache key from the sorted request params and the shards of the request, with the
+   * replicas of each shard sorted. The request id is left out, since it is generated for every
+   * request.
+   */
+  public static String key(ResponseBuilder rb) {
+    SolrParams params = rb.req.getParams();
+    List<String> names = new ArrayList<>();
+    params.getParameterNamesIterator().forEachRemaining(names::add);
+    names.remove(CommonParams.REQUEST_ID);
+    Collections.sort(names);
+    StringBuilder sb = new StringBuilder();
+    for (String name : names) {
+      for (String value : params.getParams(name)) {
+        sb.append(name).append('=').append(value).append('&');
+      }
+    }
+    String[] shards = new String[rb.shards.length];
+    for (int i = 0; i < shards.length; i++) {
+      String[] replicas = rb.shards[i].split("\\|");
+      Arrays.sort(replicas);
+      shards[i] = String.join("|", replicas);
+    }
+    Arrays.sort(shards);
+    for (String shard : shards) {
+      sb.append('|').append(shard);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the cached response values for the key, or null if there is no current entry. The
+   * returned list must not be modified.
+   *
+   * @param cores the cores of this node, whose current index versions are checked directly
+   */
+  public NamedList<Object> get(String key, CoreContainer cores) {
+    lookups.increment();
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.createdNanos > maxAgeNanos || !isCurrent(entry, cores)) {
+      cache.remove(key);
+      stale.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.values;
+  }
+
+  /** Adds values returned by {@link #get} to the response. */
+  public static void addTo(NamedList<Object> values, SolrQueryResponse rsp) {
+    for (Map.Entry<String, Object> e : values) {
+      rsp.add(e.getKey(), e.getValue());
+    }
+  }
+
+  /**
+   * Records the index versions reported by the responses to the finished shard requests.
+   *
+   * @return the version of every responding replica, or null if some response did not report a
+   *     version, failed, or a replica changed its version while the request was running
+   */
+  public Map<String, Long> observe(List<ShardRequest> finished) {
+    Map<String, Long> versions = new HashMap<>();
+    boolean complete = true;
+    for (ShardRequest sreq : finished) {
+      for (ShardResponse srsp : sreq.responses) {
+        Long version = getIndexVersion(srsp);
+        if (version == null) {
+          complete = false;
+          continue;
+        }
+        latestVersions.put(srsp.getShardAddress(), version);
+        Long previous = versions.put(srsp.getShardAddress(), version);
+        if (previous != null && !previous.equals(version)) {
+          complete = false;
+        }
+      }
+    }
+    return complete ? versions : null;
+  }
+
+  /**
+   * Stores the values of a complete, successful response. Responses with partial results are not
+   * stored.
+   */
+  public void put(String key, SolrQueryResponse rsp, Map<String, Long> versions) {
+    if (rsp.getException() != null) {
+      return;
+    }
+    NamedList<Object> header = rsp.getResponseHeader();
+    if (header != null
+        && header.get(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY) != null) {
+      return;
+    }
+    NamedList<Object> values = rsp.getValues().clone();
+    values.remove(SolrQueryResponse.RESPONSE_HEADER_KEY);
+    // the response may still be changed by the request, and the entry is shared by later ones
+    values = deepCopy(values);
+    cache.put(key, new Entry(values, versions));
+    inserts.increment();
+  }
+
+  public MetricsMap getMetricsMap() {
+    return new MetricsMap(
+        map -> {
+          long lookupCount = lookups.sum();
+          long hitCount = hits.sum();
+          map.put(SolrCache.LOOKUPS_PARAM, lookupCount);
+          map.put(SolrCache.HITS_PARAM, hitCount);
+          map.put(
+              SolrCache.HIT_RATIO_PARAM,
+              lookupCount == 0 ? 1.0 : (double) hitCount / lookupCount);
+          map.put("stale", stale.sum());
+          map.put(SolrCache.INSERTS_PARAM, inserts.sum());
+          map.put(SolrCache.SIZE_PARAM, cache.size());
+          map.put(SolrCache.RAM_BYTES_USED_PARAM, cache.ramBytesUsed());
+        });
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  private boolean isCurrent(Entry entry, CoreContainer cores) {
+    for (Map.Entry<String, Long> e : entry.versions.entrySet()) {
+      Long current = getLocalIndexVersion(cores, e.getKey());
+      if (current == null) {
+        current = latestVersions.get(e.getKey());
+      }
+      if (!e.getValue().equals(current)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index version of the current searcher of the replica, if it is hosted on this node,
+   * or null otherwise.
+   */
+  private static Long getLocalIndexVersion(CoreContainer cores, String shardAddress) {
+    ZkController zkController = cores == null ? null : cores.getZkController();
+    if (zkController == null || shardAddress == null) {
+      return null;
+    }
+    String prefix = zkController.getBaseUrl() + "/";
+    if (!shardAddress.startsWith(prefix)) {
+      return null;
+    }
+    String coreName = shardAddress.substring(prefix.length());
+    if (coreName.endsWith("/")) {
+      coreName = coreName.substring(0, coreName.length() - 1);
+    }
+    try (SolrCore core = cores.getCore(coreName)) {
+      if (core == null) {
+        return null;
+      }
+      return core.withSearcher(searcher -> searcher.getIndexReader().getVersion());
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** Copies the containers of a response, so that the copy shares no mutable state with it. */
+  @SuppressWarnings("unchecked")
+  static <T> T deepCopy(T o) {
+    Object copy;
+    if (o instanceof NamedList) {
+      NamedList<Object> nl = ((NamedList<Object>) o).clone();
+      for (int i = 0; i < nl.size(); i++) {
+        nl.setVal(i, deepCopy(nl.getVal(i)));
+      }
+      copy = nl;
+    } else if (o instanceof SolrDocumentList) {
+      SolrDocumentList docs = (SolrDocumentList) o;
+      SolrDocumentList docsCopy = new SolrDocumentList();
+      docsCopy.setNumFound(docs.getNumFound());
+      docsCopy.setNumFoundExact(docs.getNumFoundExact());
+      docsCopy.setStart(docs.getStart());
+      docsCopy.setMaxScore(docs.getMaxScore());
+      for (SolrDocument doc : docs) {
+        docsCopy.add(deepCopy(doc));
+      }
+      copy = docsCopy;
+    } else if (o instanceof SolrDocument) {
+      SolrDocument doc = (SolrDocument) o;
+      SolrDocument docCopy = new SolrDocument();
+      for (Map.Entry<String, Object> e : doc) {
+        docCopy.setField(e.getKey(), deepCopy(e.getValue()));
+      }
+      if (doc.hasChildDocuments()) {
+        for (SolrDocument child : doc.getChildDocuments()) {
+          docCopy.addChildDocument(deepCopy(child));
+        }
+      }
+      copy = docCopy;
+    } else if (o instanceof Map) {
+      Map<Object, Object> map = new LinkedHashMap<>();
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) {
+        map.put(e.getKey(), deepCopy(e.getValue()));
+      }
+      copy = map;
+    } else if (o instanceof Set) {
+      Set<Object> set = new LinkedHashSet<>();
+      for (Object item : (Set<?>) o) {
+        set.add(deepCopy(item));
+      }
+      copy = set;
+    } else if (o instanceof Collection) {
+      List<Object> list = new ArrayList<>(((Collection<?>) o).size());
+      for (Object item : (Collection<?>) o) {
+        list.add(deepCopy(item));
+      }
+      copy = list;
+    } else if (o instanceof Date) {
+      copy = new Date(((Date) o).getTime());
+    } else {
+      // strings, numbers and other values responses hold are not changed once added
+      copy = o;
+    }
+    return (T) copy;
+  }
+
+  private static Long getIndexVersion(ShardResponse srsp) {
+    if (srsp.getException() != null || srsp.getSolrResponse() == null) {
+      return null;
+    }
+    Object header =
+        srsp.getSolrResponse().getResponse().get(SolrQueryResponse.RESPONSE_HEADER_KEY);
+    if (!(header instanceof NamedList)) {
+      return null;
+    }
+    Object version = ((NamedList<?>) header).get(INDEX_VERSION);
+    return version instanceof Number ? ((Number) version).longValue() : null;
+  }
+
+  static long ramBytesUsed(Object o) {
+    if (o instanceof NamedList) {
+      NamedList<?> nl = (NamedList<?>) o;
+      long size = RamUsageEstimator.shallowSizeOf(o) + 2L * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+      for (int i = 0; i < nl.size(); i++) {
+        size += RamUsageEstimator.sizeOf(nl.getName(i)) + ramBytesUsed(nl.getVal(i));
+      }
+      return size;
+    } else if (o instanceof Map) {
+      long size = RamUsageEstimator.shallowSizeOf(o);
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) {
+        size +=
+            RamUsageEstimator.LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY
+                + ramBytesUsed(e.getKey())
+                + ramBytesUsed(e.getValue());
+      }
+      return size;
+    } else if (o instanceof Collection) {
+      long size = RamUsageEstimator.shallowSizeOf(o);
+      Iterator<?> it = ((Collection<?>) o).iterator();
+      while (it.hasNext()) {
+        size += RamUsageEstimator.NUM_BYTES_OBJECT_REF + ramBytesUsed(it.next());
+      }
+      return size;
+    }
+    return RamUsageEstimator.sizeOfObject(o);
+  }
+
+  static final class Entry implements Accountable {
+    final NamedList<Object> values;
+    final Map<String, Long> versions;
+    final long createdNanos = System.nanoTime();
+    final long ramBytes;
+
+    Entry(NamedList<Object> values, Map<String, Long> versions) {
+      this.values = values;
+      this.versions = versions;
+      this.ramBytes = ramBytesUsed(values) + ramBytesUsed(versions);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return ramBytes;
+    }
+  }
+}
@@ -21,7 +21,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import net.jcip.annotations.NotThreadSafe;
 import org.apache.solr.client.solrj.SolrRequest;
@@ -62,7 +64,8 @@ public class HttpShardHandler extends ShardHandler {
   public static String ONLY_NRT_REPLICAS = "distribOnlyRealtime";
 
   private HttpShardHandlerFactory httpShardHandlerFactory;
-  private Map<ShardResponse, Cancellable> responseCancellableMap;
+  private Map<ShardResponse, PendingShardRequest> responseCancellableMap;
+  private Map<ShardResponse, ReplicaResponseStats.Request> responseStatsMap;
   private BlockingQueue<ShardResponse> responses;
   private AtomicInteger pending;
   private Map<String, List<String>> shardToURLs;
@@ -74,6 +77,7 @@ public class HttpShardHandler extends ShardHandler {
     this.pending = new AtomicInteger(0);
     this.responses = new LinkedBlockingQueue<>();
     this.responseCancellableMap = new HashMap<>();
+    this.responseStatsMap = new HashMap<>();
 
     // maps "localhost:8983|localhost:7574" to a shuffled
     // List("http://localhost:8983","http://localhost:7574")
@@ -156,44 +160,214 @@ public class HttpShardHandler extends ShardHandler {
       return;
     }
 
+    // the first url is the replica we chose, the load balancer only moves on if it fails
+    final String preferredUrl = urls.get(0);
+    final ReplicaResponseStats responseStats = httpShardHandlerFactory.getReplicaResponseStats();
+    final ReplicaResponseStats.Request statsRequest =
+        responseStats == null ? null : responseStats.start(preferredUrl);
+    if (statsRequest != null) {
+      responseStatsMap.put(srsp, statsRequest);
+    }
+
+    final ShardRequestHedger hedger = httpShardHandlerFactory.getShardRequestHedger();
+    final String collection = hedger == null || urls.size() < 2 ? null : getHedgedCollection();
+    final long hedgeDelayMs = collection == null ? -1 : hedger.getDelayMs(collection);
+
+    final PendingShardRequest pendingRequest = new PendingShardRequest();
+    final long startTime = System.nanoTime();
     // all variables that set inside this listener must be at least volatile
-    responseCancellableMap.put(
-        srsp,
-        this.lbClient.asyncReq(
-            lbReq,
-            new AsyncListener<>() {
-              volatile long startTime = System.nanoTime();
-
-              @Override
-              public void onStart() {
-                TraceUtils.injectContextIntoRequest(req);
-                SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
-                if (requestInfo != null)
-                  req.setUserPrincipal(requestInfo.getReq().getUserPrincipal());
-              }
-
-              @Override
-              public void onSuccess(LBSolrClient.Rsp rsp) {
-                ssr.nl = rsp.getResponse();
-                srsp.setShardAddress(rsp.getServer());
-                ssr.elapsedTime =
-                    TimeUnit.MILLISECONDS.convert(
-                        System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
-                responses.add(srsp);
-              }
-
-              @Override
-              public void onFailure(Throwable throwable) {
-                ssr.elapsedTime =
-                    TimeUnit.MILLISECONDS.convert(
-                        System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
-                srsp.setException(throwable);
-                if (throwable instanceof SolrException) {
-                  srsp.setResponseCode(((SolrException) throwable).code());
+    class ShardListener implements AsyncListener<LBSolrClient.Rsp> {
+      private final boolean hedge;
+
+      ShardListener(boolean hedge) {
+        this.hedge = hedge;
+      }
+
+      @Override
+      public void onStart() {
+        if (hedge) {
+          // sent from the hedger's thread, the hedged request was prepared when it was created
+          return;
+        }
+        TraceUtils.injectContextIntoRequest(req);
+        SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+        if (requestInfo != null) req.setUserPrincipal(requestInfo.getReq().getUserPrincipal());
+      }
+
+      @Override
+      public void onSuccess(LBSolrClient.Rsp rsp) {
+        if (!pendingRequest.complete(hedge, false)) {
+          return;
+        }
+        if (statsRequest != null) {
+          if (hedge) {
+            // the original replica has been slower than the hedge delay, that is its sample
+            statsRequest.finish(false);
+          } else {
+            statsRequest.finish(!preferredUrl.equals(rsp.getServer()));
+          }
+        }
+        if (collection != null) {
+          // from the original send even if the hedge won, the latency of a hedge alone would
+          // pull the hedge delay down with every hedge that wins
+          hedger.recordLatency(collection, System.nanoTime() - startTime);
+          if (hedge) {
+            hedger.hedgeWon();
+          }
+        }
+        ssr.nl = rsp.getResponse();
+        srsp.setShardAddress(rsp.getServer());
+        ssr.elapsedTime =
+            TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        responses.add(srsp);
+      }
+
+      @Override
+      public void onFailure(Throwable throwable) {
+        if (!pendingRequest.complete(hedge, true)) {
+          return;
+        }
+        if (statsRequest != null) {
+          statsRequest.finish(true);
+        }
+        ssr.elapsedTime =
+            TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        srsp.setException(throwable);
+        if (throwable instanceof SolrException) {
+          srsp.setResponseCode(((SolrException) throwable).code());
+        }
+        responses.add(srsp);
+      }
+    }
+
+    responseCancellableMap.put(srsp, pendingRequest);
+    pendingRequest.setRequest(false, this.lbClient.asyncReq(lbReq, new ShardListener(false)));
+
+    if (hedgeDelayMs >= 0) {
+      // the hedge goes to the other replicas of the shard, in the order they were ranked. It gets
+      // its own request, the load balancer sets the base path of the request it sends.
+      final QueryRequest hedgeQueryReq =
+          makeQueryRequest(sreq, new ModifiableSolrParams(params), shard);
+      hedgeQueryReq.setMethod(SolrRequest.METHOD.POST);
+      TraceUtils.injectContextIntoRequest(hedgeQueryReq);
+      SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+      if (requestInfo != null) {
+        hedgeQueryReq.setUserPrincipal(requestInfo.getReq().getUserPrincipal());
+      }
+      final LBSolrClient.Req hedgeReq =
+          httpShardHandlerFactory.newLBHttpSolrClientReq(
+              hedgeQueryReq, urls.subList(1, urls.size()));
+      pendingRequest.scheduleHedge(
+          hedger,
+          hedgeDelayMs,
+          () ->
+              pendingRequest.setRequest(
+                  true, lbClient.asyncReq(hedgeReq, new ShardListener(true))));
+    }
+  }
+
+  /**
+   * Returns the collection the shard requests of the current request go to, if the request asked
+   * for {@value ShardParams#SHARDS_HEDGE}, or null otherwise.
+   */
+  private static String getHedgedCollection() {
+    SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+    if (requestInfo == null
+        || !requestInfo.getReq().getParams().getBool(ShardParams.SHARDS_HEDGE, false)) {
+      return null;
+    }
+    SolrQueryRequest req = requestInfo.getReq();
+    CloudDescriptor cloudDescriptor = req.getCloudDescriptor();
+    if (cloudDescriptor != null) {
+      return cloudDescriptor.getCollectionName();
+    }
+    return req.getCore() == null ? null : req.getCore().getName();
+  }
+
+  /**
+   * A shard request that is answered by the first of its original request and an optional hedged
+   * request to another replica, the other one is cancelled. A failure only answers it if no other
+   * request is in flight, so that a failing hedge does not fail a request the original one could
+   * still answer.
+   */
+  private static class PendingShardRequest implements Cancellable {
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private final AtomicInteger inFlight = new AtomicInteger(1);
+    private volatile Cancellable original;
+    private volatile Cancellable hedge;
+    private volatile ScheduledFuture<?> hedgeTimer;
+
+    void scheduleHedge(ShardRequestHedger hedger, long delayMs, Runnable sendHedge) {
+      hedgeTimer =
+          hedger.schedule(
+              () -> {
+                if (!completed.get() && hedger.tryHedge()) {
+                  inFlight.incrementAndGet();
+                  sendHedge.run();
                 }
-                responses.add(srsp);
-              }
-            }));
+              },
+              delayMs);
+      if (completed.get()) {
+        hedgeTimer.cancel(false);
+      }
+    }
+
+    void setRequest(boolean isHedge, Cancellable cancellable) {
+      if (isHedge) {
+        hedge = cancellable;
+      } else {
+        original = cancellable;
+      }
+      // the request may have been answered while this one was being sent
+      if (completed.get()) {
+        cancellable.cancel();
+      }
+    }
+
+    /** Returns true if the response of the given request answers the shard request. */
+    boolean complete(boolean isHedge, boolean failed) {
+      if (failed && inFlight.decrementAndGet() > 0) {
+        return false;
+      }
+      if (!completed.compareAndSet(false, true)) {
+        return false;
+      }
+      cancelOthers(isHedge ? hedge : original);
+      return true;
+    }
+
+    private void cancelOthers(Cancellable winner) {
+      ScheduledFuture<?> timer = hedgeTimer;
+      if (timer != null) {
+        timer.cancel(false);
+      }
+      Cancellable o = original;
+      if (o != null && o != winner) {
+        o.cancel();
+      }
+      Cancellable h = hedge;
+      if (h != null && h != winner) {
+        h.cancel();
+      }
+    }
+
+    /**
+     * Cancels the request if it has not been answered yet, returns false if a response already
+     * answered it.
+     */
+    boolean expire() {
+      if (!completed.compareAndSet(false, true)) {
+        return false;
+      }
+      cancelOthers(null);
+      return true;
+    }
+
+    @Override
+    public void cancel() {
+      completed.set(true);
+      cancelOthers(null);
+    }
   }
 
   /** Subclasses could modify the request based on the shard */
@@ -228,10 +402,24 @@ public class HttpShardHandler extends ShardHandler {
   }
 
   private ShardResponse take(boolean bailOnError) {
+    long deadline = getTolerantDeadline();
     try {
       while (pending.get() > 0) {
-        ShardResponse rsp = responses.take();
+        ShardResponse rsp;
+        if (deadline == NO_DEADLINE) {
+          rsp = responses.take();
+        } else {
+          rsp = responses.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (rsp == null) {
+            // out of time, answer the outstanding requests with an error and wait for the
+            // responses that are already on their way
+            expirePending();
+            deadline = NO_DEADLINE;
+            continue;
+          }
+        }
         responseCancellableMap.remove(rsp);
+        responseStatsMap.remove(rsp);
 
         pending.decrementAndGet();
         if (bailOnError && rsp.getException() != null)
@@ -240,6 +428,9 @@ public class HttpShardHandler extends ShardHandler {
         // not after the completion of "call" so we know when the last response
         // for a request was received.  Otherwise we might return the same
         // request more than once.
+        if (rsp.getException() == null && rsp.getShardRequest().responseListener != null) {
+          rsp.getShardRequest().responseListener.accept(rsp);
+        }
         rsp.getShardRequest().responses.add(rsp);
         if (rsp.getShardRequest().responses.size() == rsp.getShardRequest().actualShards.length) {
           return rsp;
@@ -251,6 +442,69 @@ public class HttpShardHandler extends ShardHandler {
     return null;
   }
 
+  private static final long NO_DEADLINE = Long.MIN_VALUE;
+
+  /**
+   * Returns the {@link System#nanoTime()} by which the current request has to be answered, or
+   * {@link #NO_DEADLINE}. Only requests that are {@value ShardParams#SHARDS_TOLERANT} and have
+   * {@value CommonParams#TIME_ALLOWED} stop waiting for shards, other requests wait for every
+   * shard to answer.
+   */
+  private static long getTolerantDeadline() {
+    SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+    if (requestInfo == null) {
+      return NO_DEADLINE;
+    }
+    SolrQueryRequest req = requestInfo.getReq();
+    SolrParams params = req.getParams();
+    long timeAllowed = params.getLong(CommonParams.TIME_ALLOWED, -1L);
+    if (timeAllowed <= 0 || !ShardParams.getShardsTolerantAsBool(params)) {
+      return NO_DEADLINE;
+    }
+    long remainingMs = timeAllowed - (System.currentTimeMillis() - req.getStartTime());
+    if (remainingMs > TimeUnit.DAYS.toMillis(1)) {
+      // a budget this large never cuts a request off, and could overflow the deadline
+      return NO_DEADLINE;
+    }
+    return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remainingMs);
+  }
+
+  /**
+   * Cancels every request that has not been answered yet, and answers it with an error, so that
+   * the shard is reported as missing from the partial results. Field fetches are left running: the
+   * top documents and numFound are already merged, so dropping them would return a page without
+   * its documents.
+   */
+  private void expirePending() {
+    for (Map.Entry<ShardResponse, PendingShardRequest> e : responseCancellableMap.entrySet()) {
+      ShardResponse srsp = e.getKey();
+      if (isFieldFetch(srsp.getShardRequest()) || !e.getValue().expire()) {
+        continue;
+      }
+      ReplicaResponseStats.Request statsRequest = responseStatsMap.get(srsp);
+      if (statsRequest != null) {
+        statsRequest.cancel();
+      }
+      SolrException exception =
+          new SolrException(
+              SolrException.ErrorCode.SERVICE_UNAVAILABLE,
+              "Time allowed to handle this request exceeded, no response from shard: "
+                  + srsp.getShard());
+      srsp.setException(exception);
+      srsp.setResponseCode(exception.code());
+      responses.add(srsp);
+    }
+  }
+
+  /**
+   * Returns true if the request only fetches the fields of documents already selected by the query
+   * phase.
+   */
+  static boolean isFieldFetch(ShardRequest sreq) {
+    return (sreq.purpose & ShardRequest.PURPOSE_GET_FIELDS) != 0
+        && (sreq.purpose & ShardRequest.PURPOSE_GET_TOP_IDS) == 0;
+  }
+
   @Override
   public void cancelAll() {
     for (Cancellable cancellable : responseCancellableMap.values()) {
@@ -258,6 +512,10 @@ public class HttpShardHandler extends ShardHandler {
       pending.decrementAndGet();
     }
     responseCancellableMap.clear();
+    for (ReplicaResponseStats.Request statsRequest : responseStatsMap.values()) {
+      statsRequest.cancel();
+    }
+    responseStatsMap.clear();
   }
 
   @Override
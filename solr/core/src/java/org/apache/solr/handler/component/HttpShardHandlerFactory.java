@@ -102,6 +102,12 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
   private RequestReplicaListTransformerGenerator requestReplicaListTransformerGenerator =
       new RequestReplicaListTransformerGenerator();
 
+  // only tracked when adaptive replica routing is configured
+  private ReplicaResponseStats replicaResponseStats;
+
+  // only set when hedging of shard requests is configured
+  private ShardRequestHedger shardRequestHedger;
+
   // URL scheme to be used in distributed search.
   static final String INIT_URL_SCHEME = "urlScheme";
 
@@ -157,6 +163,7 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
   private void initReplicaListTransformers(NamedList<?> routingConfig) {
     String defaultRouting = null;
     ReplicaListTransformerFactory stableRltFactory = null;
+    ReplicaListTransformerFactory adaptiveRltFactory = null;
     ReplicaListTransformerFactory defaultRltFactory;
     if (routingConfig != null && routingConfig.size() > 0) {
       Iterator<? extends Entry<String, ?>> iter = routingConfig.iterator();
@@ -177,6 +184,11 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
             defaultRouting = checkDefaultReplicaListTransformer(c, key, defaultRouting);
             stableRltFactory = new AffinityReplicaListTransformerFactory(c);
             break;
+          case ShardParams.REPLICA_ADAPTIVE:
+            NamedList<?> a = getNamedList(e.getValue());
+            defaultRouting = checkDefaultReplicaListTransformer(a, key, defaultRouting);
+            adaptiveRltFactory = newAdaptiveReplicaListTransformerFactory(a);
+            break;
           default:
             throw new IllegalArgumentException("invalid replica routing spec name: " + key);
         }
@@ -187,6 +199,8 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
     }
     if (ShardParams.REPLICA_STABLE.equals(defaultRouting)) {
       defaultRltFactory = stableRltFactory;
+    } else if (ShardParams.REPLICA_ADAPTIVE.equals(defaultRouting)) {
+      defaultRltFactory = adaptiveRltFactory;
     } else {
       defaultRltFactory = RequestReplicaListTransformerGenerator.RANDOM_RLTF;
     }
@@ -194,6 +208,42 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
         new RequestReplicaListTransformerGenerator(defaultRltFactory, stableRltFactory);
   }
 
+  private ReplicaListTransformerFactory newAdaptiveReplicaListTransformerFactory(NamedList<?> c) {
+    double explorationRate = getDouble(c, "explorationRate", 0.05d);
+    replicaResponseStats =
+        new ReplicaResponseStats(getDouble(c, "alpha", 0.3d), getDouble(c, "errorPenalty", 10.0d));
+    ReplicaListTransformer rlt =
+        new AdaptiveReplicaListTransformer(replicaResponseStats, explorationRate, r);
+    return (String configSpec, SolrParams requestParams, ReplicaListTransformerFactory fallback) ->
+        rlt;
+  }
+
+  private static double getDouble(NamedList<?> c, String name, double defaultValue) {
+    Object val = c.get(name);
+    return val == null ? defaultValue : Double.parseDouble(val.toString());
+  }
+
+  /** Returns the response statistics of adaptive replica routing, or null if not configured. */
+  ReplicaResponseStats getReplicaResponseStats() {
+    return replicaResponseStats;
+  }
+
+  private void initShardRequestHedger(NamedList<?> hedgingConfig) {
+    if (hedgingConfig == null) {
+      return;
+    }
+    shardRequestHedger =
+        new ShardRequestHedger(
+            getDouble(hedgingConfig, "budget", 0.05d),
+            getDouble(hedgingConfig, "percentile", 95.0d) / 100.0d,
+            (long) getDouble(hedgingConfig, "minDelayMs", 10.0d));
+  }
+
+  /** Returns the hedger of slow shard requests, or null if hedging is not configured. */
+  ShardRequestHedger getShardRequestHedger() {
+    return shardRequestHedger;
+  }
+
   @Override
   public void init(PluginInfo info) {
     StringBuilder sb = new StringBuilder();
@@ -278,6 +328,7 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
             sb);
     int soTimeout =
         getParameter(args, HttpClientUtil.PROP_SO_TIMEOUT, HttpClientUtil.DEFAULT_SO_TIMEOUT, sb);
+    boolean responseCompression = getParameter(args, "responseCompression", true, sb);
 
     this.defaultClient =
         new Http2SolrClient.Builder()
@@ -285,11 +336,13 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
             .withIdleTimeout(soTimeout, TimeUnit.MILLISECONDS)
             .withExecutor(commExecutor)
             .withMaxConnectionsPerHost(maxConnectionsPerHost)
+            .withResponseCompression(responseCompression)
             .build();
     this.defaultClient.addListenerFactory(this.httpListenerFactory);
     this.loadbalancer = new LBHttp2SolrClient.Builder(defaultClient).build();
 
     initReplicaListTransformers(getParameter(args, "replicaRouting", null, sb));
+    initShardRequestHedger(getParameter(args, "hedging", null, sb));
 
     log.debug("created with {}", sb);
   }
@@ -326,7 +379,13 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
           IOUtils.closeQuietly(defaultClient);
         }
       } finally {
-        ExecutorUtil.shutdownAndAwaitTermination(commExecutor);
+        try {
+          if (shardRequestHedger != null) {
+            shardRequestHedger.close();
+          }
+        } finally {
+          ExecutorUtil.shutdownAndAwaitTermination(commExecutor);
+        }
       }
     }
     try {
@@ -411,6 +470,32 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
     solrMetricsContext = parentContext.getChildContext(this);
     String expandedScope = SolrMetricManager.mkName(scope, SolrInfoBean.Category.QUERY.name());
     httpListenerFactory.initializeMetrics(solrMetricsContext, expandedScope);
+    if (replicaResponseStats != null) {
+      replicaResponseStats.initializeMetrics(solrMetricsContext, expandedScope);
+    }
+    if (shardRequestHedger != null) {
+      shardRequestHedger.initializeMetrics(solrMetricsContext, expandedScope);
+    }
+    solrMetricsContext.gauge(
+        () -> defaultClient.getCompressedResponseBytes(),
+        true,
+        "compressedBytes",
+        expandedScope,
+        "responseCompression");
+    solrMetricsContext.gauge(
+        () -> defaultClient.getDecompressedResponseBytes(),
+        true,
+        "decompressedBytes",
+        expandedScope,
+        "responseCompression");
+    solrMetricsContext.gauge(
+        () ->
+            defaultClient.getDecompressedResponseBytes()
+                - defaultClient.getCompressedResponseBytes(),
+        true,
+        "savedBytes",
+        expandedScope,
+        "responseCompression");
     commExecutor =
         MetricUtils.instrumentedExecutorService(
             commExecutor,
@@ -26,17 +26,27 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import org.apache.lucene.index.ExitableDirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.FieldComparator;
 import org.apache.lucene.search.FuzzyTermsEnum;
@@ -113,6 +123,7 @@ import org.apache.solr.search.grouping.endresulttransformer.EndResultTransformer
 import org.apache.solr.search.grouping.endresulttransformer.GroupedEndResultTransformer;
 import org.apache.solr.search.grouping.endresulttransformer.MainEndResultTransformer;
 import org.apache.solr.search.grouping.endresulttransformer.SimpleEndResultTransformer;
+import org.apache.solr.search.stats.LocalStatsCache;
 import org.apache.solr.search.stats.StatsCache;
 import org.apache.solr.util.SolrPluginUtils;
 import org.apache.solr.util.SolrResponseUtil;
@@ -128,6 +139,15 @@ public class QueryComponent extends SearchComponent {
   public static final String COMPONENT_NAME = "query";
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  // how many more documents than their share of start+rows the shards sample for distrib.prune
+  private static final int PRUNE_SAMPLE_FACTOR = 2;
+
+  // the default of distrib.singlePass.maxBytes
+  private static final long DEFAULT_SINGLE_PASS_MAX_BYTES = 1024 * 1024;
+
+  // the estimated stored fields size of a document, of the last index reader it was computed for
+  private volatile StoredDocSize storedDocSize;
+
   @Override
   public void prepare(ResponseBuilder rb) throws IOException {
     SolrQueryRequest req = rb.req;
@@ -341,7 +361,10 @@ public class QueryComponent extends SearchComponent {
     int purpose = params.getInt(ShardParams.SHARDS_PURPOSE, ShardRequest.PURPOSE_GET_TOP_IDS);
     if ((purpose & ShardRequest.PURPOSE_GET_TERM_STATS) != 0) {
       statsCache.returnLocalStats(rb, searcher);
-      return;
+      // some stats caches ask for the local stats together with the top ids
+      if ((purpose & ShardRequest.PURPOSE_GET_TOP_IDS) == 0) {
+        return;
+      }
     }
     // check if we need to update the local copy of global dfs
     if ((purpose & ShardRequest.PURPOSE_SET_TERM_STATS) != 0) {
@@ -580,7 +603,9 @@ public class QueryComponent extends SearchComponent {
     } else if (rb.stage < ResponseBuilder.STAGE_EXECUTE_QUERY) {
       nextStage = ResponseBuilder.STAGE_EXECUTE_QUERY;
     } else if (rb.stage == ResponseBuilder.STAGE_EXECUTE_QUERY) {
-      shardRequestFactory = new TopGroupsShardRequestFactory();
+      if (!rb.topGroupsFromFirstPhase) {
+        shardRequestFactory = new TopGroupsShardRequestFactory();
+      }
       nextStage = ResponseBuilder.STAGE_GET_FIELDS;
     } else if (rb.stage < ResponseBuilder.STAGE_GET_FIELDS) {
       nextStage = ResponseBuilder.STAGE_GET_FIELDS;
@@ -601,6 +626,15 @@ public class QueryComponent extends SearchComponent {
     if (rb.stage < ResponseBuilder.STAGE_PARSE_QUERY) return ResponseBuilder.STAGE_PARSE_QUERY;
     if (rb.stage == ResponseBuilder.STAGE_PARSE_QUERY) {
       createDistributedStats(rb);
+      return getPruneSampleSize(rb) > 0
+          ? ResponseBuilder.STAGE_SAMPLE_TOP_IDS
+          : ResponseBuilder.STAGE_EXECUTE_QUERY;
+    }
+    if (rb.stage < ResponseBuilder.STAGE_SAMPLE_TOP_IDS && getPruneSampleSize(rb) > 0) {
+      return ResponseBuilder.STAGE_SAMPLE_TOP_IDS;
+    }
+    if (rb.stage == ResponseBuilder.STAGE_SAMPLE_TOP_IDS) {
+      createScoreSampleQuery(rb);
       return ResponseBuilder.STAGE_EXECUTE_QUERY;
     }
     if (rb.stage < ResponseBuilder.STAGE_EXECUTE_QUERY) return ResponseBuilder.STAGE_EXECUTE_QUERY;
@@ -638,9 +672,18 @@ public class QueryComponent extends SearchComponent {
     if (responseProcessor != null) {
       responseProcessor.process(rb, sreq);
     }
+
+    if (rb.topGroupsFromFirstPhase && (sreq.purpose & ShardRequest.PURPOSE_GET_TOP_GROUPS) != 0) {
+      // the shards returned the top documents of their groups along with the search groups
+      new TopGroupsShardResponseProcessor().process(rb, sreq);
+    }
   }
 
   protected void handleRegularResponses(ResponseBuilder rb, ShardRequest sreq) {
+    if ((sreq.purpose & ShardRequest.PURPOSE_GET_SCORE_SAMPLE) != 0) {
+      estimatePruneMinScore(rb, sreq);
+    }
+
     if ((sreq.purpose & ShardRequest.PURPOSE_GET_TOP_IDS) != 0) {
       mergeIds(rb, sreq);
     }
@@ -754,7 +797,7 @@ public class QueryComponent extends SearchComponent {
     ReturnFields fields = rb.rsp.getReturnFields();
 
     // distrib.singlePass=true forces a one-pass query regardless of requested fields
-    boolean distribSinglePass = rb.req.getParams().getBool(ShardParams.DISTRIB_SINGLE_PASS, false);
+    boolean distribSinglePass = isDistribSinglePass(rb);
 
     if (distribSinglePass
         || (fields != null
@@ -794,8 +837,16 @@ public class QueryComponent extends SearchComponent {
           CommonParams.ROWS, rb.getSortSpec().getOffset() + rb.getSortSpec().getCount());
     }
 
+    if (rb.pruneMinScore != null) {
+      sreq.params.set(ShardParams.DISTRIB_PRUNE_MIN_SCORE, Float.toString(rb.pruneMinScore));
+    }
+
     sreq.params.set(ResponseBuilder.FIELD_SORT_VALUES, "true");
 
+    if (rb.getMergeStrategies() == null) {
+      sreq.responseListener = new TopIdsMerger(rb);
+    }
+
     boolean shardQueryIncludeScore =
         (rb.getFieldFlags() & SolrIndexSearcher.GET_SCORES) != 0
             || rb.getSortSpec().includesScore();
@@ -838,6 +889,186 @@ public class QueryComponent extends SearchComponent {
     rb.addRequest(this, sreq);
   }
 
+  /**
+   * Returns whether the requested fields are fetched together with the top ids, see {@value
+   * ShardParams#DISTRIB_SINGLE_PASS}. With <code>auto</code> a single pass is used when the stored
+   * fields of the documents that the shards return in vain, i.e. all but the <code>rows</code> of
+   * the merged page, are estimated to take at most {@value
+   * ShardParams#DISTRIB_SINGLE_PASS_MAX_BYTES}.
+   */
+  protected boolean isDistribSinglePass(ResponseBuilder rb) {
+    SolrParams params = rb.req.getParams();
+    if (!"auto".equals(params.get(ShardParams.DISTRIB_SINGLE_PASS))) {
+      return params.getBool(ShardParams.DISTRIB_SINGLE_PASS, false);
+    }
+    if (rb.shards == null || rb.getSortSpec().getCount() <= 0) {
+      return false;
+    }
+    SortSpec ss = rb.getSortSpec();
+    long perShard = rb.shards_rows > -1 ? rb.shards_rows : (long) ss.getOffset() + ss.getCount();
+    long wasted = Math.max(0, rb.shards.length * perShard - ss.getCount());
+    long maxBytes =
+        params.getLong(ShardParams.DISTRIB_SINGLE_PASS_MAX_BYTES, DEFAULT_SINGLE_PASS_MAX_BYTES);
+    long docSize = getStoredDocSize(rb.req.getSearcher());
+    return docSize >= 0 && wasted * docSize <= maxBytes;
+  }
+
+  /**
+   * Estimates the stored fields size of a document of the local index, assuming the shards hold
+   * similar documents. Segments in compound files count with their full size. Returns -1 if the
+   * size can't be determined.
+   */
+  private long getStoredDocSize(SolrIndexSearcher searcher) {
+    long version = searcher.getIndexReader().getVersion();
+    StoredDocSize size = storedDocSize;
+    if (size != null && size.version == version) {
+      return size.bytes;
+    }
+    long bytes = 0;
+    try {
+      for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+        LeafReader reader = FilterLeafReader.unwrap(leaf.reader());
+        if (!(reader instanceof SegmentReader)) {
+          continue;
+        }
+        SegmentReader segmentReader = (SegmentReader) reader;
+        SegmentCommitInfo info = segmentReader.getSegmentInfo();
+        long storedBytes = 0;
+        for (String file : info.files()) {
+          if ("fdt".equals(IndexFileNames.getExtension(file))) {
+            storedBytes += info.info.dir.fileLength(file);
+          }
+        }
+        bytes += storedBytes > 0 ? storedBytes : info.sizeInBytes();
+      }
+    } catch (IOException e) {
+      log.warn("Error estimating the stored fields size of the documents", e);
+      return -1;
+    }
+    long maxDoc = searcher.maxDoc();
+    size = new StoredDocSize(version, maxDoc > 0 ? bytes / maxDoc : 0);
+    storedDocSize = size;
+    return size.bytes;
+  }
+
+  private static final class StoredDocSize {
+    final long version;
+    final long bytes;
+
+    StoredDocSize(long version, long bytes) {
+      this.version = version;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * Returns how many of their top documents the shards return in the sample of {@value
+   * ShardParams#DISTRIB_PRUNE}, or 0 if the request is not pruned. Pruning is limited to requests
+   * sorted by score first, and is skipped if the samples would not be smaller than the pages the
+   * shards return anyway. It needs a global {@link StatsCache}: with local term stats the sample
+   * and the main query may reach replicas that score the same document differently.
+   */
+  protected int getPruneSampleSize(ResponseBuilder rb) {
+    if (!rb.req.getParams().getBool(ShardParams.DISTRIB_PRUNE, false)
+        || rb.shards == null
+        || rb.shards_rows > -1
+        || rb.shards_start > -1
+        || rb.getRankQuery() != null
+        || rb.getMergeStrategies() != null
+        || rb.req.getSearcher().getStatsCache() instanceof LocalStatsCache) {
+      return 0;
+    }
+    SortSpec ss = rb.getSortSpec();
+    Sort sort = ss.getSort();
+    if (sort != null) {
+      SortField first = sort.getSort()[0];
+      if (first.getType() != SortField.Type.SCORE || first.getReverse()) {
+        return 0;
+      }
+    }
+    long topN = (long) ss.getOffset() + ss.getCount();
+    long perShard = (topN + rb.shards.length - 1) / rb.shards.length;
+    long sampleSize = PRUNE_SAMPLE_FACTOR * perShard;
+    return sampleSize < topN ? (int) sampleSize : 0;
+  }
+
+  /**
+   * Asks every shard for the ids and scores of its top documents, to estimate the lowest score a
+   * document in the merged top (start+rows) can have.
+   */
+  protected void createScoreSampleQuery(ResponseBuilder rb) {
+    int sampleSize = getPruneSampleSize(rb);
+    if (sampleSize <= 0) {
+      return;
+    }
+    ShardRequest sreq = new ShardRequest();
+    sreq.purpose = ShardRequest.PURPOSE_GET_SCORE_SAMPLE;
+    sreq.params = new ModifiableSolrParams(rb.req.getParams());
+    sreq.params.remove(ShardParams.SHARDS);
+    sreq.params.set(CommonParams.START, "0");
+    sreq.params.set(CommonParams.ROWS, sampleSize);
+    sreq.params.set(CommonParams.FL, rb.req.getSchema().getUniqueKeyField().getName());
+    sreq.params.add(CommonParams.FL, "score");
+
+    // the scores must be the same as the ones of the main query
+    StatsCache statsCache = rb.req.getSearcher().getStatsCache();
+    sreq.purpose |= ShardRequest.PURPOSE_SET_TERM_STATS;
+    statsCache.sendGlobalStats(rb, sreq);
+
+    rb.addRequest(this, sreq);
+  }
+
+  /**
+   * Sets {@link ResponseBuilder#pruneMinScore} to the score of the (start+rows)-th best document
+   * of the samples. There are at least start+rows documents scoring as high, so no document
+   * scoring lower can be in the merged top. Nothing is pruned if a shard failed or returned
+   * partial results.
+   */
+  protected void estimatePruneMinScore(ResponseBuilder rb, ShardRequest sreq) {
+    SortSpec ss = rb.getSortSpec();
+    int topN = ss.getOffset() + ss.getCount();
+    String keyFieldName = rb.req.getSchema().getUniqueKeyField().getName();
+
+    Map<Object, Float> sampledScores = new HashMap<>();
+    for (ShardResponse srsp : sreq.responses) {
+      if (srsp.getException() != null) {
+        return;
+      }
+      NamedList<?> responseHeader =
+          (NamedList<?>)
+              SolrResponseUtil.getSubsectionFromShardResponse(rb, srsp, "responseHeader", false);
+      if (responseHeader == null
+          || Boolean.TRUE.equals(
+              responseHeader.getBooleanArg(
+                  SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY))) {
+        return;
+      }
+      SolrDocumentList docs =
+          (SolrDocumentList)
+              SolrResponseUtil.getSubsectionFromShardResponse(rb, srsp, "response", false);
+      for (SolrDocument doc : docs) {
+        Object score = doc.getFieldValue("score");
+        if (score == null) {
+          return;
+        }
+        // a document on two shards only counts once
+        sampledScores.putIfAbsent(
+            doc.getFieldValue(keyFieldName),
+            score instanceof String ? Float.parseFloat((String) score) : (Float) score);
+      }
+    }
+    if (sampledScores.size() < topN) {
+      return;
+    }
+    float[] scores = new float[sampledScores.size()];
+    int i = 0;
+    for (Float score : sampledScores.values()) {
+      scores[i++] = score;
+    }
+    Arrays.sort(scores);
+    rb.pruneMinScore = scores[scores.length - topN];
+  }
+
   protected boolean addFL(StringBuilder fl, String field, boolean additionalAdded) {
     if (additionalAdded) fl.append(",");
     fl.append(field);
@@ -1035,23 +1266,18 @@ public class QueryComponent extends SearchComponent {
           // }
         }
 
-        ShardDoc shardDoc = new ShardDoc();
-        shardDoc.id = id;
-        shardDoc.shard = srsp.getShard();
-        shardDoc.orderInShard = i;
-        Object scoreObj = doc.getFieldValue("score");
-        if (scoreObj != null) {
-          if (scoreObj instanceof String) {
-            shardDoc.score = Float.parseFloat((String) scoreObj);
-          } else {
-            shardDoc.score = (Float) scoreObj;
+        queue.insertWithOverflow(
+            createShardDoc(doc, id, srsp.getShard(), i, unmarshalledSortFieldValues));
+      } // end for-each-doc-in-response
+
+      // the documents dropped as they couldn't make it into the queue, see TopIdsMerger
+      if (sreq.responseListener instanceof TopIdsMerger) {
+        for (Object id : ((TopIdsMerger) sreq.responseListener).getDroppedIds(srsp)) {
+          if (uniqueDoc.put(id, srsp.getShard()) != null) {
+            numFound--;
           }
         }
-
-        shardDoc.sortFieldValues = unmarshalledSortFieldValues;
-
-        queue.insertWithOverflow(shardDoc);
-      } // end for-each-doc-in-response
+      }
     } // end for-each-response
 
     // The queue now has 0 -> queuesize docs, where queuesize <= start + rows
@@ -1171,6 +1397,117 @@ public class QueryComponent extends SearchComponent {
     rb.setNextCursorMark(nextCursorMark);
   }
 
+  private static ShardDoc createShardDoc(
+      SolrDocument doc,
+      Object id,
+      String shard,
+      int orderInShard,
+      NamedList<List<Object>> unmarshalledSortFieldValues) {
+    ShardDoc shardDoc = new ShardDoc();
+    shardDoc.id = id;
+    shardDoc.shard = shard;
+    shardDoc.orderInShard = orderInShard;
+    Object scoreObj = doc.getFieldValue("score");
+    if (scoreObj != null) {
+      if (scoreObj instanceof String) {
+        shardDoc.score = Float.parseFloat((String) scoreObj);
+      } else {
+        shardDoc.score = (Float) scoreObj;
+      }
+    }
+
+    shardDoc.sortFieldValues = unmarshalledSortFieldValues;
+    return shardDoc;
+  }
+
+  /**
+   * Merges the top ids of every shard response as it arrives, and drops the documents that can't
+   * make it into the merged top (start+rows) from the response. That way the coordinator holds the
+   * top documents of the responses so far, rather than all the documents of all the shards, until
+   * the last shard responds. As each shard returns its documents in sort order, the dropped
+   * documents are the tail of the response, so the positions of the remaining documents and their
+   * sort values are preserved. The ids of the dropped documents are kept for {@link #mergeIds} to
+   * detect duplicates.
+   */
+  private class TopIdsMerger implements Consumer<ShardResponse> {
+    private final ResponseBuilder rb;
+    private final ShardFieldSortedHitQueue queue;
+    private final Set<Object> ids = new HashSet<>();
+    private final Map<ShardResponse, List<Object>> droppedIds = new IdentityHashMap<>();
+
+    TopIdsMerger(ResponseBuilder rb) {
+      this.rb = rb;
+      SortSpec ss = rb.getSortSpec();
+      Sort sort = ss.getSort();
+      SortField[] sortFields =
+          sort != null ? sort.getSort() : new SortField[] {SortField.FIELD_SCORE};
+      this.queue =
+          new ShardFieldSortedHitQueue(
+              sortFields, ss.getOffset() + ss.getCount(), rb.req.getSearcher());
+    }
+
+    List<Object> getDroppedIds(ShardResponse srsp) {
+      return droppedIds.getOrDefault(srsp, Collections.emptyList());
+    }
+
+    @Override
+    public void accept(ShardResponse srsp) {
+      NamedList<Object> response = srsp.getSolrResponse().getResponse();
+      if (!(response.get("response") instanceof SolrDocumentList)) {
+        return; // left to mergeIds
+      }
+      SolrDocumentList docs = (SolrDocumentList) response.get("response");
+      @SuppressWarnings("unchecked")
+      NamedList<List<Object>> sortFieldValues =
+          (NamedList<List<Object>>) response.get("sort_values");
+      SortSpec ss = rb.getSortSpec();
+      if (ss.includesNonScoreOrDocField()
+          && (sortFieldValues == null || sortFieldValues.size() == 0)) {
+        return; // nothing to compare, see mergeIds
+      }
+      IndexSchema schema = rb.req.getSchema();
+      NamedList<List<Object>> unmarshalledSortFieldValues =
+          ss.includesNonScoreOrDocField()
+              ? unmarshalSortValues(ss, sortFieldValues, schema)
+              : new NamedList<>();
+      String uniqueKeyField = schema.getUniqueKeyField().getName();
+
+      int i = 0;
+      for (; i < docs.size(); i++) {
+        SolrDocument doc = docs.get(i);
+        Object id = doc.getFieldValue(uniqueKeyField);
+        if (!ids.add(id)) {
+          continue; // a duplicate, skipped by mergeIds
+        }
+        ShardDoc shardDoc =
+            createShardDoc(doc, id, srsp.getShard(), i, unmarshalledSortFieldValues);
+        if (queue.insertWithOverflow(shardDoc) == shardDoc) {
+          // neither this document nor the ones after it are competitive
+          break;
+        }
+      }
+      if (i == docs.size()) {
+        return;
+      }
+      List<Object> dropped = new ArrayList<>(docs.size() - i);
+      for (SolrDocument doc : docs.subList(i, docs.size())) {
+        Object id = doc.getFieldValue(uniqueKeyField);
+        ids.add(id);
+        dropped.add(id);
+      }
+      droppedIds.put(srsp, dropped);
+      docs.subList(i, docs.size()).clear();
+      if (sortFieldValues != null) {
+        for (Map.Entry<String, List<Object>> e : sortFieldValues) {
+          List<Object> values = e.getValue();
+          if (values.size() > i) {
+            values.subList(i, values.size()).clear();
+          }
+        }
+      }
+    }
+  }
+
   protected NamedList<List<Object>> unmarshalSortValues(
       SortSpec sortSpec, NamedList<List<Object>> sortFieldValues, IndexSchema schema) {
     NamedList<List<Object>> unmarshalledSortValsPerField = new NamedList<>();
@@ -1436,7 +1773,7 @@ public class QueryComponent extends SearchComponent {
   }
 
   private void doProcessGroupedDistributedSearchFirstPhase(
-      ResponseBuilder rb, QueryCommand cmd, QueryResult result) throws IOException {
+      ResponseBuilder rb, QueryCommand cmd, QueryResult result) throws IOException, SyntaxError {
 
     GroupingSpecification groupingSpec = rb.getGroupingSpec();
     assert null != groupingSpec : "GroupingSpecification is null";
@@ -1454,14 +1791,17 @@ public class QueryComponent extends SearchComponent {
             .setIncludeHitCount(true)
             .setSearcher(searcher);
 
+    List<SearchGroupsFieldCommand> searchGroupsCommands = new ArrayList<>();
     for (String field : groupingSpec.getFields()) {
-      topsGroupsActionBuilder.addCommandField(
+      SearchGroupsFieldCommand searchGroupsCommand =
           new SearchGroupsFieldCommand.Builder()
               .setField(schema.getField(field))
               .setGroupSort(groupingSpec.getGroupSortSpec().getSort())
               .setTopNGroups(cmd.getOffset() + cmd.getLen())
               .setIncludeGroupCount(groupingSpec.isIncludeGroupCount())
-              .build());
+              .build();
+      searchGroupsCommands.add(searchGroupsCommand);
+      topsGroupsActionBuilder.addCommandField(searchGroupsCommand);
     }
 
     CommandHandler commandHandler = topsGroupsActionBuilder.build();
@@ -1470,6 +1810,17 @@ public class QueryComponent extends SearchComponent {
 
     rsp.add("firstPhase", commandHandler.processResult(result, serializer));
     rsp.add("totalHitCount", commandHandler.getTotalHitCount());
+
+    if (req.getParams().getBool(GroupParams.GROUP_DISTRIBUTED_COMBINE, false)) {
+      // collect the top documents of this shard's own top groups right away, so that the
+      // coordinator may not need to ask for them in a second phase
+      Map<String, Collection<SearchGroup<BytesRef>>> shardTopGroups = new HashMap<>();
+      for (SearchGroupsFieldCommand searchGroupsCommand : searchGroupsCommands) {
+        shardTopGroups.put(
+            searchGroupsCommand.getKey(), searchGroupsCommand.result().getSearchGroups());
+      }
+      doProcessTopGroups(rb, cmd, result, shardTopGroups);
+    }
     rb.setResult(result);
   }
 
@@ -1479,29 +1830,12 @@ public class QueryComponent extends SearchComponent {
     GroupingSpecification groupingSpec = rb.getGroupingSpec();
     assert null != groupingSpec : "GroupingSpecification is null";
 
-    SolrQueryRequest req = rb.req;
-    SolrQueryResponse rsp = rb.rsp;
-
-    SolrParams params = req.getParams();
+    SolrParams params = rb.req.getParams();
 
-    SolrIndexSearcher searcher = req.getSearcher();
+    SolrIndexSearcher searcher = rb.req.getSearcher();
     IndexSchema schema = searcher.getSchema();
 
-    boolean needScores = (cmd.getFlags() & SolrIndexSearcher.GET_SCORES) != 0;
-
-    CommandHandler.Builder secondPhaseBuilder =
-        new CommandHandler.Builder()
-            .setQueryCommand(cmd)
-            .setTruncateGroups(
-                groupingSpec.isTruncateGroups() && groupingSpec.getFields().length > 0)
-            .setSearcher(searcher);
-
-    SortSpec withinGroupSortSpec = groupingSpec.getWithinGroupSortSpec();
-    int docsToCollect =
-        Grouping.getMax(
-            withinGroupSortSpec.getOffset(), withinGroupSortSpec.getCount(), searcher.maxDoc());
-    docsToCollect = Math.max(docsToCollect, 1);
-
+    Map<String, Collection<SearchGroup<BytesRef>>> firstPhaseGroups = new HashMap<>();
     for (String field : groupingSpec.getFields()) {
       SchemaField schemaField = schema.getField(field);
       String[] topGroupsParam =
@@ -1520,14 +1854,52 @@ public class QueryComponent extends SearchComponent {
         }
         topGroups.add(searchGroup);
       }
+      firstPhaseGroups.put(field, topGroups);
+    }
+
+    doProcessTopGroups(rb, cmd, result, firstPhaseGroups);
+    rb.setResult(result);
+  }
+
+  /**
+   * Collects the top documents of the given groups of each group field, and of each group query,
+   * and adds them to the response as the <code>secondPhase</code> section.
+   */
+  private void doProcessTopGroups(
+      ResponseBuilder rb,
+      QueryCommand cmd,
+      QueryResult result,
+      Map<String, Collection<SearchGroup<BytesRef>>> firstPhaseGroups)
+      throws IOException, SyntaxError {
+
+    GroupingSpecification groupingSpec = rb.getGroupingSpec();
+    SolrQueryResponse rsp = rb.rsp;
+    SolrIndexSearcher searcher = rb.req.getSearcher();
+    IndexSchema schema = searcher.getSchema();
+
+    boolean needScores = (cmd.getFlags() & SolrIndexSearcher.GET_SCORES) != 0;
 
+    CommandHandler.Builder secondPhaseBuilder =
+        new CommandHandler.Builder()
+            .setQueryCommand(cmd)
+            .setTruncateGroups(
+                groupingSpec.isTruncateGroups() && groupingSpec.getFields().length > 0)
+            .setSearcher(searcher);
+
+    SortSpec withinGroupSortSpec = groupingSpec.getWithinGroupSortSpec();
+    int docsToCollect =
+        Grouping.getMax(
+            withinGroupSortSpec.getOffset(), withinGroupSortSpec.getCount(), searcher.maxDoc());
+    docsToCollect = Math.max(docsToCollect, 1);
+
+    for (String field : groupingSpec.getFields()) {
       secondPhaseBuilder.addCommandField(
           new TopGroupsFieldCommand.Builder()
               .setQuery(cmd.getQuery())
-              .setField(schemaField)
+              .setField(schema.getField(field))
               .setGroupSort(groupingSpec.getGroupSortSpec().getSort())
               .setSortWithinGroup(withinGroupSortSpec.getSort())
-              .setFirstPhaseGroups(topGroups)
+              .setFirstPhaseGroups(firstPhaseGroups.get(field))
               .setMaxDocPerGroup(docsToCollect)
               .setNeedScores(needScores)
               .setNeedMaxScore(needScores)
@@ -1558,7 +1930,6 @@ public class QueryComponent extends SearchComponent {
     commandHandler.execute();
     TopGroupsResultTransformer serializer = new TopGroupsResultTransformer(rb);
     rsp.add("secondPhase", commandHandler.processResult(result, serializer));
-    rb.setResult(result);
   }
 
   private void doProcessGroupedSearch(ResponseBuilder rb, QueryCommand cmd, QueryResult result)
@@ -1661,6 +2032,10 @@ public class QueryComponent extends SearchComponent {
     } catch (FuzzyTermsEnum.FuzzyTermsException e) {
       throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, e);
     }
+    String pruneMinScore = req.getParams().get(ShardParams.DISTRIB_PRUNE_MIN_SCORE);
+    if (pruneMinScore != null) {
+      pruneBelowScore(result, Float.parseFloat(pruneMinScore));
+    }
     rb.setResult(result);
 
     ResultContext ctx = new BasicResultContext(rb);
@@ -1687,6 +2062,30 @@ public class QueryComponent extends SearchComponent {
     doPrefetch(rb);
   }
 
+  /**
+   * Cuts the documents scoring less than <code>minScore</code> from the end of the results of a
+   * shard request of {@value ShardParams#DISTRIB_PRUNE}, they can't make it into the merged top.
+   * The number of matches is unchanged.
+   */
+  private static void pruneBelowScore(QueryResult result, float minScore) {
+    DocList docList = result.getDocList();
+    if (docList == null || !docList.hasScores()) {
+      return;
+    }
+    int len = 0;
+    DocIterator iterator = docList.iterator();
+    while (iterator.hasNext()) {
+      iterator.nextDoc();
+      if (iterator.score() < minScore) {
+        break;
+      }
+      len++;
+    }
+    if (len < docList.size()) {
+      result.setDocList(docList.subset(docList.offset(), len));
+    }
+  }
+
   private static String generateQueryID(SolrQueryRequest req) {
     ZkController zkController = req.getCoreContainer().getZkController();
     String nodeName = req.getCoreContainer().getHostName();
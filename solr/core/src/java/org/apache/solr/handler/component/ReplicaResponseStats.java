@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.util.URLUtil;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricsContext;
+
+/**
+ * Live response statistics of the nodes a {@link HttpShardHandler} sends shard requests to, used to
+ * rank replicas by {@link AdaptiveReplicaListTransformer}.
+ *
+ * <p>For every node this keeps an exponentially weighted moving average (EWMA) of the response
+ * time and of the error rate, and the number of requests currently outstanding from this node. The
+ * score of a node follows the C3 replica ranking: the expected response time is multiplied by the
+ * cube of the number of outstanding requests, so that a node is avoided as soon as requests start
+ * to queue on it, and it is further penalized for recent errors. Lower scores are better.
+ *
+ * @lucene.experimental
+ */
+public class ReplicaResponseStats {
+
+  private final double alpha;
+  private final double errorPenalty;
+  private final Map<String, NodeStats> nodes = new ConcurrentHashMap<>();
+
+  /**
+   * @param alpha the weight of a new sample in the moving averages, between 0 and 1
+   * @param errorPenalty how much a node failing every request is penalized, as a factor of its
+   *     score
+   */
+  public ReplicaResponseStats(double alpha, double errorPenalty) {
+    if (alpha <= 0 || alpha > 1) {
+      throw new IllegalArgumentException("alpha must be in (0, 1], got " + alpha);
+    }
+    if (errorPenalty < 0) {
+      throw new IllegalArgumentException("errorPenalty must not be negative, got " + errorPenalty);
+    }
+    this.alpha = alpha;
+    this.errorPenalty = errorPenalty;
+  }
+
+  /**
+   * Returns the key of the node of a replica choice, which is either a {@link Replica} or a shard
+   * url, with or without the scheme.
+   */
+  static String nodeKey(Object choice) {
+    String url = choice instanceof Replica ? ((Replica) choice).getBaseUrl() : choice.toString();
+    url = URLUtil.removeScheme(url);
+    int slash = url.indexOf('/');
+    return slash < 0 ? url : url.substring(0, slash);
+  }
+
+  /** Records the start of a request to the given shard url, which must then be finished. */
+  public Request start(String url) {
+    NodeStats stats = nodes.computeIfAbsent(nodeKey(url), k -> new NodeStats());
+    stats.outstanding.incrementAndGet();
+    return new Request(stats);
+  }
+
+  /** Returns the score of the node of a replica choice, lower is better. */
+  public double score(Object choice) {
+    NodeStats stats = nodes.get(nodeKey(choice));
+    return stats == null ? 1.0d : stats.score();
+  }
+
+  public void initializeMetrics(SolrMetricsContext solrMetricsContext, String scope) {
+    MetricsMap metricsMap =
+        new MetricsMap(
+            map ->
+                nodes.forEach(
+                    (node, stats) -> {
+                      map.put(node + ".score", stats.score());
+                      map.put(node + ".latencyMs", stats.latencyMs);
+                      map.put(node + ".errorRate", stats.errorRate);
+                      map.put(node + ".outstanding", stats.outstanding.get());
+                    }));
+    solrMetricsContext.gauge(metricsMap, true, "replicaScores", scope, "adaptiveRouting");
+  }
+
+  /** A request started with {@link #start(String)}. */
+  public static class Request {
+    private final NodeStats stats;
+    private final long startNanos = System.nanoTime();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private Request(NodeStats stats) {
+      this.stats = stats;
+    }
+
+    /** Records the outcome of the request; only the first call counts. */
+    public void finish(boolean error) {
+      if (finished.compareAndSet(false, true)) {
+        stats.outstanding.decrementAndGet();
+        stats.record(System.nanoTime() - startNanos, error);
+      }
+    }
+
+    /** Finishes a cancelled request without recording a sample. */
+    public void cancel() {
+      if (finished.compareAndSet(false, true)) {
+        stats.outstanding.decrementAndGet();
+      }
+    }
+  }
+
+  private class NodeStats {
+    final AtomicInteger outstanding = new AtomicInteger();
+    // -1 until the first response
+    volatile double latencyMs = -1;
+    volatile double errorRate;
+
+    synchronized void record(long elapsedNanos, boolean error) {
+      errorRate = errorRate + alpha * ((error ? 1.0d : 0.0d) - errorRate);
+      if (!error) {
+        double sample = elapsedNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        latencyMs = latencyMs < 0 ? sample : latencyMs + alpha * (sample - latencyMs);
+      }
+    }
+
+    double score() {
+      // a node we know nothing about yet competes with the fastest nodes
+      double latency = 1.0d + Math.max(0.0d, latencyMs);
+      double queue = 1.0d + outstanding.get();
+      return latency * queue * queue * queue * (1.0d + errorPenalty * errorRate);
+    }
+  }
+}
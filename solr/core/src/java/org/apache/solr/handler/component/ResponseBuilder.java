@@ -30,12 +30,14 @@ import org.apache.lucene.search.grouping.TopGroups;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrRequestInfo;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.search.CursorMark;
+import org.apache.solr.search.CursorPrefetch;
 import org.apache.solr.search.DocListAndSet;
 import org.apache.solr.search.DocSlice;
 import org.apache.solr.search.QParser;
@@ -126,6 +128,7 @@ public class ResponseBuilder {
 
   public static int STAGE_PARSE_QUERY = 1000;
   public static int STAGE_TOP_GROUPS = 1500;
+  public static int STAGE_SAMPLE_TOP_IDS = 1800;
   public static int STAGE_EXECUTE_QUERY = 2000;
   public static int STAGE_GET_FIELDS = 3000;
   public static int STAGE_DONE = Integer.MAX_VALUE;
@@ -174,6 +177,11 @@ public class ResponseBuilder {
 
   public boolean onePassDistributedQuery;
 
+  // The lowest score a document in the top (start+rows) can have, estimated from samples of the
+  // shard results when distrib.prune is used. Shards don't return the documents scoring lower.
+  // Only valid after STAGE_SAMPLE_TOP_IDS has completed.
+  public Float pruneMinScore;
+
   public FacetComponent.FacetInfo _facetInfo;
   /* private... components that don't own these shouldn't use them */
   SolrDocumentList _responseDocs;
@@ -193,6 +201,9 @@ public class ResponseBuilder {
   // Used for timeAllowed parameter. First phase elapsed time is subtracted from the time allowed
   // for the second phase.
   public int firstPhaseElapsedTime;
+  // True when the responses to the first phase of a distributed grouping request already held
+  // the top groups, so that no second phase is needed.
+  public boolean topGroupsFromFirstPhase;
 
   /**
    * Utility function to add debugging info. This will make sure a valid debugInfo exists before
@@ -426,7 +437,10 @@ public class ResponseBuilder {
         .setLen(getSortSpec().getCount())
         .setFlags(getFieldFlags())
         .setNeedDocSet(isNeedDocSet())
-        .setCursorMark(getCursorMark());
+        .setCursorMark(getCursorMark())
+        .setCursorPrefetchPages(
+            req.getParams()
+                .getInt(CursorMarkParams.CURSOR_MARK_PREFETCH, CursorPrefetch.DEFAULT_PAGES));
     return cmd;
   }
 
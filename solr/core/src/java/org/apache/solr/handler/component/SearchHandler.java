@@ -96,6 +96,7 @@ public class SearchHandler extends RequestHandlerBase
   private ShardHandlerFactory shardHandlerFactory;
   private PluginInfo shfInfo;
   private SolrCore core;
+  private CoordinatorResultCache resultCache;
 
   protected List<String> getDefaultComponents() {
     ArrayList<String> names = new ArrayList<>(8);
@@ -115,6 +116,10 @@ public class SearchHandler extends RequestHandlerBase
   @Override
   public void init(PluginInfo info) {
     init(info.initArgs);
+    NamedList<?> cacheArgs = (NamedList<?>) initArgs.get(CoordinatorResultCache.INIT_ARG);
+    if (cacheArgs != null) {
+      resultCache = new CoordinatorResultCache(cacheArgs);
+    }
     for (PluginInfo child : info.children) {
       if ("shardHandlerFactory".equals(child.type)) {
         this.shfInfo = child;
@@ -135,6 +140,19 @@ public class SearchHandler extends RequestHandlerBase
         "purposes",
         getCategory().toString(),
         scope + SHARD_HANDLER_SUFFIX);
+    if (resultCache != null) {
+      solrMetricsContext.gauge(
+          resultCache.getMetricsMap(),
+          true,
+          CoordinatorResultCache.INIT_ARG,
+          getCategory().toString(),
+          scope);
+    }
+  }
+
+  /** The cache of merged distributed responses, or null if none is configured */
+  public CoordinatorResultCache getCoordinatorResultCache() {
+    return resultCache;
   }
 
   @Override
@@ -432,6 +450,14 @@ public class SearchHandler extends RequestHandlerBase
     if (!rb.isDistrib) {
       // a normal non-distributed request
 
+      if (req.getParams().getBool(ShardParams.SHARDS_INDEX_VERSION, false)
+          && rsp.getResponseHeader() != null) {
+        rsp.getResponseHeader()
+            .add(
+                CoordinatorResultCache.INDEX_VERSION,
+                req.getSearcher().getIndexReader().getVersion());
+      }
+
       SolrQueryTimeoutImpl.set(req);
       try {
         // The semantics of debugging vs not debugging are different enough that
@@ -483,6 +509,16 @@ public class SearchHandler extends RequestHandlerBase
     } else {
       // a distributed request
 
+      String cacheKey = null;
+      if (resultCache != null && CoordinatorResultCache.isCacheable(rb)) {
+        cacheKey = CoordinatorResultCache.key(rb);
+        NamedList<Object> cached = resultCache.get(cacheKey, req.getCoreContainer());
+        if (cached != null) {
+          CoordinatorResultCache.addTo(cached, rsp);
+          return;
+        }
+      }
+
       if (rb.outgoing == null) {
         rb.outgoing = new ArrayList<>();
       }
@@ -523,6 +559,17 @@ public class SearchHandler extends RequestHandlerBase
                 // we could try and detect when this is needed, but it could be tricky
                 params.set("NOW", Long.toString(rb.requestInfo.getNOW().getTime()));
               }
+              long timeAllowed = params.getLong(CommonParams.TIME_ALLOWED, -1L);
+              if (timeAllowed > 0 && !HttpShardHandler.isFieldFetch(sreq)) {
+                // pass on what is left of the budget, shards start counting when they receive it.
+                // Field fetches keep the whole budget, the query phase may have used it up.
+                long elapsed = System.currentTimeMillis() - req.getStartTime();
+                params.set(CommonParams.TIME_ALLOWED, Math.max(1L, timeAllowed - elapsed));
+              }
+              if (resultCache != null) {
+                // let the cache learn about new index versions from every request
+                params.set(ShardParams.SHARDS_INDEX_VERSION, true);
+              }
               String shardQt = params.get(ShardParams.SHARDS_QT);
               if (shardQt != null) {
                 params.set(CommonParams.QT, shardQt);
@@ -567,6 +614,9 @@ public class SearchHandler extends RequestHandlerBase
                     .put(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
               }
             }
+            if (tolerant) {
+              addMissingShards(rsp, srsp.getShardRequest());
+            }
 
             rb.finished.add(srsp.getShardRequest());
 
@@ -583,6 +633,13 @@ public class SearchHandler extends RequestHandlerBase
 
         // we are done when the next stage is MAX_VALUE
       } while (nextStage != Integer.MAX_VALUE);
+
+      if (resultCache != null) {
+        Map<String, Long> versions = resultCache.observe(rb.finished);
+        if (cacheKey != null && versions != null) {
+          resultCache.put(cacheKey, rsp, versions);
+        }
+      }
     }
 
     // SOLR-5550: still provide shards.info if requested even for a short circuited distrib request
@@ -622,6 +679,32 @@ public class SearchHandler extends RequestHandlerBase
     }
   }
 
+  /**
+   * Lists the shards that did not answer a request of a shards.tolerant search in the response
+   * header, including those that did not answer within timeAllowed.
+   */
+  private static void addMissingShards(SolrQueryResponse rsp, ShardRequest sreq) {
+    NamedList<Object> header = rsp.getResponseHeader();
+    for (ShardResponse srsp : sreq.responses) {
+      if (srsp.getException() == null || header == null) {
+        continue;
+      }
+      header
+          .asShallowMap()
+          .put(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
+      @SuppressWarnings("unchecked")
+      List<String> missing =
+          (List<String>) header.get(SolrQueryResponse.RESPONSE_HEADER_MISSING_SHARDS_KEY);
+      if (missing == null) {
+        missing = new ArrayList<>();
+        header.add(SolrQueryResponse.RESPONSE_HEADER_MISSING_SHARDS_KEY, missing);
+      }
+      if (!missing.contains(srsp.getShard())) {
+        missing.add(srsp.getShard());
+      }
+    }
+  }
+
   private void tagRequestWithRequestId(ResponseBuilder rb) {
     final boolean ridTaggingDisabled =
         rb.req.getParams().getBool(CommonParams.DISABLE_REQUEST_ID, false);
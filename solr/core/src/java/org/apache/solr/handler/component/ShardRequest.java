@@ -18,6 +18,7 @@ package org.apache.solr.handler.component;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import org.apache.solr.common.params.ModifiableSolrParams;
 
 // todo... when finalized make accessors
@@ -40,6 +41,7 @@ public class ShardRequest {
   public static final int PURPOSE_REFINE_PIVOT_FACETS = 0x2000;
   public static final int PURPOSE_SET_TERM_STATS = 0x4000;
   public static final int PURPOSE_GET_TERM_STATS = 0x8000;
+  public static final int PURPOSE_GET_SCORE_SAMPLE = 0x10000;
 
   public int purpose; // the purpose of this request
 
@@ -50,6 +52,12 @@ public class ShardRequest {
   /** list of responses... filled out by framework */
   public List<ShardResponse> responses = new ArrayList<>();
 
+  /**
+   * called by the framework with each successful response as it arrives, before the responses are
+   * handled by the components; may be null
+   */
+  public Consumer<ShardResponse> responseListener;
+
   /** actual shards to send the request to, filled out by framework */
   public String[] actualShards;
 
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.metrics.SolrMetricsContext;
+
+/**
+ * Decides when {@link HttpShardHandler} sends a duplicate ("hedged") request for a slow shard
+ * response to another replica of the shard.
+ *
+ * <p>The response times of the shard requests of every collection are tracked in a histogram, and
+ * a request is hedged once it has been outstanding longer than a percentile of them. The hedges are
+ * bounded by a budget, a fraction of the requests that asked for hedging, so hedging can never add
+ * more than that fraction of extra load to the cluster.
+ *
+ * @lucene.experimental
+ */
+public class ShardRequestHedger implements Closeable {
+
+  // don't hedge based on a handful of samples
+  static final int MIN_SAMPLES = 100;
+  // how long a computed percentile is reused
+  private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final double budget;
+  private final double percentile;
+  private final long minDelayMs;
+  private final Map<String, CollectionLatency> latencies = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(new SolrNamedThreadFactory("httpShardHedger"));
+
+  private final LongAdder eligible = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder wins = new LongAdder();
+
+  /**
+   * @param budget the maximum fraction of the eligible requests that may be hedged
+   * @param percentile the percentile of the response times after which a request is hedged, e.g.
+   *     0.95
+   * @param minDelayMs the minimum delay before a request is hedged
+   */
+  public ShardRequestHedger(double budget, double percentile, long minDelayMs) {
+    if (budget < 0 || budget > 1) {
+      throw new IllegalArgumentException("hedge budget must be in [0, 1], got " + budget);
+    }
+    if (percentile <= 0 || percentile >= 1) {
+      throw new IllegalArgumentException("hedge percentile must be in (0, 1), got " + percentile);
+    }
+    this.budget = budget;
+    this.percentile = percentile;
+    this.minDelayMs = minDelayMs;
+  }
+
+  /**
+   * Returns the delay after which a request to a shard of the collection should be hedged, or -1 if
+   * there are not enough samples yet. Each call counts as an eligible request for the budget.
+   */
+  long getDelayMs(String collection) {
+    eligible.increment();
+    CollectionLatency latency = latencies.get(collection);
+    return latency == null ? -1 : latency.getDelayMs();
+  }
+
+  /**
+   * Records the response time of a successful shard request to the collection, measured from the
+   * send of its original request.
+   */
+  void recordLatency(String collection, long elapsedNanos) {
+    latencies
+        .computeIfAbsent(collection, k -> new CollectionLatency())
+        .histogram
+        .update(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+  }
+
+  /** Takes a hedge from the budget, returns false if the budget is exhausted. */
+  boolean tryHedge() {
+    if (hedges.sum() + 1 > budget * eligible.sum()) {
+      return false;
+    }
+    hedges.increment();
+    return true;
+  }
+
+  /** Records that a hedged request responded before the original one. */
+  void hedgeWon() {
+    wins.increment();
+  }
+
+  ScheduledFuture<?> schedule(Runnable hedge, long delayMs) {
+    return scheduler.schedule(hedge, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  public long getHedgeCount() {
+    return hedges.sum();
+  }
+
+  public long getWinCount() {
+    return wins.sum();
+  }
+
+  public void initializeMetrics(SolrMetricsContext solrMetricsContext, String scope) {
+    solrMetricsContext.gauge(() -> eligible.sum(), true, "eligible", scope, "hedging");
+    solrMetricsContext.gauge(() -> hedges.sum(), true, "hedges", scope, "hedging");
+    solrMetricsContext.gauge(() -> wins.sum(), true, "wins", scope, "hedging");
+  }
+
+  @Override
+  public void close() {
+    ExecutorUtil.shutdownNowAndAwaitTermination(scheduler);
+  }
+
+  private class CollectionLatency {
+    final Histogram histogram = new Histogram(new ExponentiallyDecayingReservoir());
+    volatile long delayMs = -1;
+    // computed on the first call
+    volatile long computedAtNanos = System.nanoTime() - DELAY_REFRESH_NANOS - 1;
+
+    long getDelayMs() {
+      long now = System.nanoTime();
+      if (now - computedAtNanos > DELAY_REFRESH_NANOS) {
+        computedAtNanos = now;
+        delayMs =
+            histogram.getCount() < MIN_SAMPLES
+                ? -1
+                : Math.max(minDelayMs, (long) histogram.getSnapshot().getValue(percentile));
+      }
+      return delayMs;
+    }
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.handler.export;
+
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.COLUMNS;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.DICT;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.NAME;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.PRESENT;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.ROWS;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.VALUES;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.WIDTH;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser;
+import org.apache.solr.common.IteratorWriter;
+import org.apache.solr.common.MapWriter;
+
+/**
+ * Collects the fields of a batch of exported documents column by column, and writes them in the
+ * format read by {@link ColumnarTupleStreamParser}. The {@link FieldWriter}s write the fields of a
+ * document into the batch as they would into the map of a single document, and {@link #nextRow}
+ * moves on to the next document. A batch is reused once it has been written.
+ */
+class ColumnarBatch implements MapWriter, MapWriter.EntryWriter {
+  private final Column[] columns;
+  private final Map<String, Column> byName = new HashMap<>();
+  private int rows;
+
+  ColumnarBatch(String[] fields, FieldWriter[] writers, int capacity) {
+    columns = new Column[writers.length];
+    for (int i = 0; i < writers.length; i++) {
+      columns[i] = createColumn(fields[i], writers[i], capacity);
+      byName.put(fields[i], columns[i]);
+    }
+  }
+
+  private static Column createColumn(String field, FieldWriter writer, int capacity) {
+    if (writer instanceof IntFieldWriter) {
+      return new IntColumn(field, ColumnarTupleStreamParser.TYPE_INT, capacity);
+    } else if (writer instanceof FloatFieldWriter) {
+      return new IntColumn(field, ColumnarTupleStreamParser.TYPE_FLOAT, capacity);
+    } else if (writer instanceof LongFieldWriter) {
+      return new LongColumn(field, ColumnarTupleStreamParser.TYPE_LONG, capacity);
+    } else if (writer instanceof DoubleFieldWriter) {
+      return new LongColumn(field, ColumnarTupleStreamParser.TYPE_DOUBLE, capacity);
+    } else if (writer instanceof DateFieldWriter) {
+      return new LongColumn(field, ColumnarTupleStreamParser.TYPE_DATE, capacity);
+    } else if (writer instanceof BoolFieldWriter) {
+      return new BoolColumn(field, capacity);
+    } else if (writer instanceof StringFieldWriter) {
+      return new StringColumn(field, capacity);
+    } else {
+      return new ListColumn(field, capacity);
+    }
+  }
+
+  int size() {
+    return rows;
+  }
+
+  /** Moves on to the next row, once the fields of a document have been written. */
+  void nextRow() {
+    rows++;
+  }
+
+  /** Empties the batch, so that it can be filled again. */
+  void reset() {
+    for (Column column : columns) {
+      column.reset(rows);
+    }
+    rows = 0;
+  }
+
+  @Override
+  public void writeMap(EntryWriter ew) throws IOException {
+    ew.put(ROWS, rows);
+    ew.put(
+        COLUMNS,
+        (IteratorWriter)
+            iw -> {
+              for (Column column : columns) {
+                iw.add((MapWriter) cew -> column.write(cew, rows));
+              }
+            });
+  }
+
+  private Column column(CharSequence k) {
+    return byName.get(k.toString());
+  }
+
+  @Override
+  public EntryWriter put(CharSequence k, Object v) throws IOException {
+    column(k).set(rows, v);
+    return this;
+  }
+
+  @Override
+  public EntryWriter put(CharSequence k, int v) throws IOException {
+    ((IntColumn) column(k)).set(rows, v);
+    return this;
+  }
+
+  @Override
+  public EntryWriter put(CharSequence k, long v) throws IOException {
+    ((LongColumn) column(k)).set(rows, v);
+    return this;
+  }
+
+  @Override
+  public EntryWriter put(CharSequence k, float v) throws IOException {
+    ((IntColumn) column(k)).set(rows, Float.floatToRawIntBits(v));
+    return this;
+  }
+
+  @Override
+  public EntryWriter put(CharSequence k, double v) throws IOException {
+    ((LongColumn) column(k)).set(rows, Double.doubleToRawLongBits(v));
+    return this;
+  }
+
+  @Override
+  public EntryWriter put(CharSequence k, boolean v) throws IOException {
+    ((BoolColumn) column(k)).set(rows, v);
+    return this;
+  }
+
+  private abstract static class Column {
+    final String name;
+    final String type;
+    // bitmap of the rows having a value
+    final byte[] present;
+    int count;
+
+    Column(String name, String type, int capacity) {
+      this.name = name;
+      this.type = type;
+      this.present = new byte[(capacity + 7) >>> 3];
+    }
+
+    void markPresent(int row) {
+      present[row >>> 3] |= (byte) (1 << (row & 7));
+      count++;
+    }
+
+    void set(int row, Object value) {
+      throw new IllegalStateException("Unexpected value for column " + name + ": " + value);
+    }
+
+    void write(EntryWriter ew, int rows) throws IOException {
+      ew.put(NAME, name);
+      ew.put(TYPE, type);
+      if (count < rows) {
+        ew.put(PRESENT, Arrays.copyOf(present, (rows + 7) >>> 3));
+      }
+      writeValues(ew, rows);
+    }
+
+    abstract void writeValues(EntryWriter ew, int rows) throws IOException;
+
+    void reset(int rows) {
+      Arrays.fill(present, 0, (rows + 7) >>> 3, (byte) 0);
+      count = 0;
+    }
+  }
+
+  /** Ints, and floats as their bits */
+  private static class IntColumn extends Column {
+    final int[] values;
+
+    IntColumn(String name, String type, int capacity) {
+      super(name, type, capacity);
+      values = new int[capacity];
+    }
+
+    void set(int row, int value) {
+      values[row] = value;
+      markPresent(row);
+    }
+
+    @Override
+    void set(int row, Object value) {
+      if (value instanceof Float) {
+        set(row, Float.floatToRawIntBits((Float) value));
+      } else {
+        set(row, ((Number) value).intValue());
+      }
+    }
+
+    @Override
+    void writeValues(EntryWriter ew, int rows) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(rows * Integer.BYTES);
+      buffer.asIntBuffer().put(values, 0, rows);
+      ew.put(VALUES, buffer.array());
+    }
+  }
+
+  /** Longs, doubles as their bits, and dates as epoch milliseconds */
+  private static class LongColumn extends Column {
+    final long[] values;
+
+    LongColumn(String name, String type, int capacity) {
+      super(name, type, capacity);
+      values = new long[capacity];
+    }
+
+    void set(int row, long value) {
+      values[row] = value;
+      markPresent(row);
+    }
+
+    @Override
+    void set(int row, Object value) {
+      if (value instanceof Date) {
+        set(row, ((Date) value).getTime());
+      } else if (value instanceof Double) {
+        set(row, Double.doubleToRawLongBits((Double) value));
+      } else {
+        set(row, ((Number) value).longValue());
+      }
+    }
+
+    @Override
+    void writeValues(EntryWriter ew, int rows) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(rows * Long.BYTES);
+      buffer.asLongBuffer().put(values, 0, rows);
+      ew.put(VALUES, buffer.array());
+    }
+  }
+
+  private static class BoolColumn extends Column {
+    final byte[] values;
+
+    BoolColumn(String name, int capacity) {
+      super(name, ColumnarTupleStreamParser.TYPE_BOOLEAN, capacity);
+      values = new byte[capacity];
+    }
+
+    void set(int row, boolean value) {
+      values[row] = value ? (byte) 1 : (byte) 0;
+      markPresent(row);
+    }
+
+    @Override
+    void set(int row, Object value) {
+      set(row, ((Boolean) value).booleanValue());
+    }
+
+    @Override
+    void writeValues(EntryWriter ew, int rows) throws IOException {
+      ew.put(VALUES, Arrays.copyOf(values, rows));
+    }
+  }
+
+  /** Strings, as a dictionary of the distinct values of the batch and ordinals into it */
+  private static class StringColumn extends Column {
+    final int[] ords;
+    final Map<String, Integer> dict = new HashMap<>();
+    final List<String> terms = new ArrayList<>();
+
+    StringColumn(String name, int capacity) {
+      super(name, ColumnarTupleStreamParser.TYPE_STRING, capacity);
+      ords = new int[capacity];
+    }
+
+    @Override
+    void set(int row, Object value) {
+      String term = value.toString();
+      Integer ord = dict.get(term);
+      if (ord == null) {
+        ord = terms.size();
+        dict.put(term, ord);
+        terms.add(term);
+      }
+      ords[row] = ord;
+      markPresent(row);
+    }
+
+    @Override
+    void writeValues(EntryWriter ew, int rows) throws IOException {
+      int width = terms.size() <= 1 << 8 ? 1 : terms.size() <= 1 << 16 ? 2 : 4;
+      ByteBuffer buffer = ByteBuffer.allocate(rows * width);
+      for (int row = 0; row < rows; row++) {
+        switch (width) {
+          case 1:
+            buffer.put((byte) ords[row]);
+            break;
+          case 2:
+            buffer.putShort((short) ords[row]);
+            break;
+          default:
+            buffer.putInt(ords[row]);
+        }
+      }
+      ew.put(DICT, terms);
+      ew.put(WIDTH, width);
+      ew.put(VALUES, buffer.array());
+    }
+
+    @Override
+    void reset(int rows) {
+      super.reset(rows);
+      dict.clear();
+      terms.clear();
+    }
+  }
+
+  /** Multivalued fields, as a list of values per row */
+  private static class ListColumn extends Column {
+    final Object[] values;
+
+    ListColumn(String name, int capacity) {
+      super(name, ColumnarTupleStreamParser.TYPE_LIST, capacity);
+      values = new Object[capacity];
+    }
+
+    @Override
+    void set(int row, Object value) {
+      // the values are read lazily from the doc values, which move on with the next document
+      values[row] =
+          value instanceof IteratorWriter
+              ? ((IteratorWriter) value).toList(new ArrayList<>())
+              : value;
+      markPresent(row);
+    }
+
+    @Override
+    void writeValues(EntryWriter ew, int rows) throws IOException {
+      ew.put(VALUES, Arrays.asList(values).subList(0, rows));
+    }
+
+    @Override
+    void reset(int rows) {
+      super.reset(rows);
+      Arrays.fill(values, 0, rows, null);
+    }
+  }
+}
@@ -22,6 +22,7 @@ import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.NumericUtils;
 
 class DoubleValue implements SortValue {
 
@@ -104,6 +105,12 @@ class DoubleValue implements SortValue {
     this.present = false;
   }
 
+  @Override
+  public long toSortKey() {
+    long key = NumericUtils.doubleToSortableLong(currentValue);
+    return comp instanceof DoubleComp.DoubleAsc ? ~key : key;
+  }
+
   @Override
   public int compareTo(SortValue o) {
     DoubleValue dv = (DoubleValue) o;
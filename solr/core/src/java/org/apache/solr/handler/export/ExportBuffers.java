@@ -25,6 +25,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 import org.apache.lucene.index.LeafReaderContext;
@@ -45,6 +46,14 @@ class ExportBuffers {
   static final long EXCHANGE_TIMEOUT_SECONDS = 600;
   static final String EXPORT_BUFFERS_KEY = "__eb__";
 
+  /** The most threads the exports of a node sort segments with, by default the processors. */
+  static final String MAX_SORT_THREADS_PROP = "solr.export.maxSortThreads";
+
+  // the sort threads left to the exports of this node
+  private static final Semaphore SORT_THREADS =
+      new Semaphore(
+          Integer.getInteger(MAX_SORT_THREADS_PROP, Runtime.getRuntime().availableProcessors()));
+
   final Buffer bufferOne;
   final Buffer bufferTwo;
   final List<LeafReaderContext> leaves;
@@ -58,6 +67,10 @@ class ExportBuffers {
   Buffer outputBuffer;
   Runnable filler;
   ExecutorService service;
+  // sorts the segments concurrently, null if they are sorted by the filler
+  ExecutorService sortService;
+  // the sort threads taken from SORT_THREADS, released on shutdown
+  private int sortThreads;
   Throwable error;
   LongAdder outputCounter = new LongAdder();
   volatile boolean shutDown = false;
@@ -94,7 +107,19 @@ class ExportBuffers {
     outputBuffer = bufferTwo;
     SortDoc writerSortDoc = exportWriter.getSortDoc(searcher, sort.getSort());
 
-    MergeIterator mergeIterator = exportWriter.getMergeIterator(leaves, sets, writerSortDoc);
+    sortThreads = acquireSortThreads(Math.min(exportWriter.sortThreads, leaves.size()));
+    if (sortThreads > 1) {
+      sortService =
+          ExecutorUtil.newMDCAwareFixedThreadPool(
+              sortThreads, new SolrNamedThreadFactory("ExportSort"));
+    }
+    MergeIterator mergeIterator;
+    try {
+      mergeIterator = exportWriter.getMergeIterator(leaves, sets, writerSortDoc, sortService);
+    } catch (IOException | RuntimeException e) {
+      shutdownNow();
+      throw e;
+    }
 
     bufferOne.initialize(writerSortDoc);
     bufferTwo.initialize(writerSortDoc);
@@ -194,12 +219,42 @@ class ExportBuffers {
     return writer;
   }
 
-  public void shutdownNow() {
+  /**
+   * Takes up to the given number of sort threads from those left to this node. Returns 0 if fewer
+   * than two are left, in which case the filler sorts the segments itself.
+   */
+  private static int acquireSortThreads(int wanted) {
+    int acquired = 0;
+    while (wanted > 1 && acquired < wanted && SORT_THREADS.tryAcquire()) {
+      acquired++;
+    }
+    if (acquired < 2) {
+      SORT_THREADS.release(acquired);
+      return 0;
+    }
+    return acquired;
+  }
+
+  /** The sort threads left to the exports of this node. */
+  static int availableSortThreads() {
+    return SORT_THREADS.availablePermits();
+  }
+
+  // called by both the filler and the writer
+  public synchronized void shutdownNow() {
     if (service != null) {
       log.debug("--- shutting down buffers");
       service.shutdownNow();
       service = null;
     }
+    if (sortService != null) {
+      sortService.shutdownNow();
+      sortService = null;
+    }
+    if (sortThreads > 0) {
+      SORT_THREADS.release(sortThreads);
+      sortThreads = 0;
+    }
     shutDown = true;
   }
 
@@ -30,6 +30,9 @@ import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedDocValues;
@@ -40,6 +43,7 @@ import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.client.solrj.impl.BinaryResponseParser;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser;
 import org.apache.solr.client.solrj.io.stream.StreamContext;
 import org.apache.solr.client.solrj.io.stream.TupleStream;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
@@ -96,9 +100,11 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
 
   public static final String BATCH_SIZE_PARAM = "batchSize";
   public static final String QUEUE_SIZE_PARAM = "queueSize";
+  public static final String SORT_THREADS_PARAM = "sortThreads";
 
   public static final int DEFAULT_BATCH_SIZE = 30000;
   public static final int DEFAULT_QUEUE_SIZE = 150000;
+  public static final int DEFAULT_SORT_THREADS = 1;
 
   private OutputStreamWriter respWriter;
   final SolrQueryRequest req;
@@ -110,9 +116,13 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
   final int batchSize;
   // The max combined size of the segment level priority queues.
   private int priorityQueueSize;
+  // The number of threads sorting segments concurrently, 1 sorts them on the filler thread.
+  final int sortThreads;
   StreamExpression streamExpression;
   StreamContext streamContext;
   FieldWriter[] fieldWriters;
+  // the exported fields, when they are written in columnar record batches
+  String[] columnarFields;
   int totalHits = 0;
   FixedBitSet[] sets = null;
   PushWriter writer;
@@ -132,6 +142,8 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     this.solrMetricsContext = solrMetricsContext;
     this.metricsPath = metricsPath;
     this.priorityQueueSize = req.getParams().getInt(QUEUE_SIZE_PARAM, DEFAULT_QUEUE_SIZE);
+    this.sortThreads =
+        Math.max(1, req.getParams().getInt(SORT_THREADS_PARAM, DEFAULT_SORT_THREADS));
     this.batchSize = DEFAULT_BATCH_SIZE;
   }
 
@@ -181,10 +193,6 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
 
   @Override
   public void write(OutputStream os) throws IOException {
-    _write(os);
-  }
-
-  private void _write(OutputStream os) throws IOException {
     QueryResponseWriter rw = req.getCore().getResponseWriters().get(wt);
     if (rw instanceof JacksonJsonWriter) {
       writer = ((JacksonJsonWriter) rw).getWriter(os, req, res);
@@ -195,6 +203,19 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       respWriter = new OutputStreamWriter(os, StandardCharsets.UTF_8);
       writer = JSONResponseWriter.getPushWriter(respWriter, req, res);
     }
+    _write(os, rw);
+  }
+
+  /**
+   * Writes the response to a push writer instead of an output stream, for a stream reading the
+   * export in the same JVM. The columnar format is not supported.
+   */
+  public void write(PushWriter pushWriter) throws IOException {
+    writer = pushWriter;
+    _write(null, null);
+  }
+
+  private void _write(OutputStream os, QueryResponseWriter rw) throws IOException {
     Exception exception = res.getException();
     if (exception != null) {
       if (!(exception instanceof IgnoreException)) {
@@ -291,6 +312,30 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     }
 
     String expr = params.get(StreamParams.EXPR);
+    String format = params.get(ColumnarTupleStreamParser.FORMAT_PARAM);
+    if (ColumnarTupleStreamParser.FORMAT.equals(format)) {
+      if (!(rw instanceof BinaryResponseWriter)) {
+        writeException(
+            (new IOException(new SyntaxError("Columnar export requires wt=javabin."))),
+            writer,
+            true);
+        return;
+      }
+      if (expr != null) {
+        writeException(
+            (new IOException(
+                new SyntaxError("Columnar export is not supported with streaming expressions."))),
+            writer,
+            true);
+        return;
+      }
+      columnarFields = fields;
+    } else if (format != null) {
+      writeException(
+          (new IOException(new SyntaxError("Unknown export format: " + format))), writer, true);
+      return;
+    }
+
     if (expr != null) {
       StreamFactory streamFactory = initialStreamContext.getStreamFactory();
       streamFactory.withDefaultSort(params.get(CommonParams.SORT));
@@ -422,6 +467,30 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
             return true;
           });
       tupleStream.close();
+    } else if (columnarFields != null) {
+      buffers.run(
+          () -> {
+            ColumnarBatch batch = new ColumnarBatch(columnarFields, fieldWriters, queueSize);
+            buffers.exchangeBuffers();
+            ExportBuffers.Buffer buffer = buffers.getOutputBuffer();
+            while (buffer.outDocsIndex != ExportBuffers.Buffer.NO_MORE_DOCS) {
+              if (Thread.currentThread().isInterrupted()) {
+                break;
+              }
+              // one record batch per buffer, the fields of every document go to its columns
+              for (int i = 0; i <= buffer.outDocsIndex; ++i) {
+                writeDoc(buffer.outDocs[i], leaves, batch, fieldWriters);
+                batch.nextRow();
+              }
+              if (batch.size() > 0) {
+                writer.add(batch);
+                batch.reset();
+              }
+              buffers.exchangeBuffers();
+              buffer = buffers.getOutputBuffer();
+            }
+            return true;
+          });
     } else {
       buffers.run(
           () -> {
@@ -636,7 +705,8 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     } else if (sortValues.length == 4) {
       return new QuadValueSortDoc(sortValues[0], sortValues[1], sortValues[2], sortValues[3]);
     }
-    return new SortDoc(sortValues);
+    // Beyond that, a key packed in a long per field compares without calls to the sort values.
+    return new PackedSortDoc(sortValues);
   }
 
   static class MergeIterator {
@@ -685,6 +755,21 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
 
   public MergeIterator getMergeIterator(
       List<LeafReaderContext> leaves, FixedBitSet[] bits, SortDoc sortDoc) throws IOException {
+    return getMergeIterator(leaves, bits, sortDoc, null);
+  }
+
+  /**
+   * Creates the iterator merging the sorted documents of all segments.
+   *
+   * @param sortService if not null, the segments sort their next run of documents on it while
+   *     the current run is merged, rather than when it has been merged
+   */
+  MergeIterator getMergeIterator(
+      List<LeafReaderContext> leaves,
+      FixedBitSet[] bits,
+      SortDoc sortDoc,
+      ExecutorService sortService)
+      throws IOException {
     try {
       long totalDocs = 0;
       for (int i = 0; i < leaves.size(); i++) {
@@ -727,8 +812,15 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       SegmentIterator[] segmentIterators = new SegmentIterator[leaves.size()];
       for (int i = 0; i < segmentIterators.length; i++) {
         SortQueue sortQueue = new SortQueue(sizes[i], sortDoc.copy());
-        segmentIterators[i] =
-            new SegmentIterator(bits[i], leaves.get(i), sortQueue, sortDoc.copy());
+        if (sortService == null) {
+          segmentIterators[i] =
+              new SegmentIterator(bits[i], leaves.get(i), sortQueue, sortDoc.copy());
+        } else {
+          SortQueue nextQueue = new SortQueue(sizes[i], sortDoc.copy());
+          segmentIterators[i] =
+              new SegmentIterator(
+                  bits[i], leaves.get(i), sortQueue, nextQueue, sortDoc.copy(), sortService);
+        }
       }
 
       return new MergeIterator(segmentIterators, sortDoc);
@@ -736,13 +828,24 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     }
   }
 
+  /**
+   * Iterates over the matching documents of a segment in sort order, sorting them in runs of the
+   * size of its queue. With a sort service, the next run is sorted on it as soon as the current one
+   * is, so that the runs of all segments are sorted concurrently with each other and with the
+   * merge. This takes a second queue per segment.
+   */
   private static class SegmentIterator {
 
     private final FixedBitSet bits;
-    private final SortQueue queue;
     private final SortDoc sortDoc;
     private final LeafReaderContext context;
-    private final SortDoc[] outDocs;
+    private final ExecutorService sortService;
+    private SortQueue queue;
+    private SortDoc[] outDocs;
+    // the queue and docs the next run is sorted into, when sorting ahead
+    private SortQueue nextQueue;
+    private SortDoc[] nextOutDocs;
+    private Future<Integer> nextRun;
 
     private SortDoc nextDoc;
     private int index;
@@ -755,8 +858,29 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       this.sortDoc = sortDoc;
       this.nextDoc = sortDoc.copy();
       this.context = context;
+      this.sortService = null;
       this.outDocs = new SortDoc[sortQueue.maxSize];
-      topDocs();
+      index = topDocs(queue, outDocs);
+    }
+
+    SegmentIterator(
+        FixedBitSet bits,
+        LeafReaderContext context,
+        SortQueue sortQueue,
+        SortQueue nextQueue,
+        SortDoc sortDoc,
+        ExecutorService sortService) {
+      this.bits = bits;
+      this.queue = sortQueue;
+      this.nextQueue = nextQueue;
+      this.sortDoc = sortDoc;
+      this.nextDoc = sortDoc.copy();
+      this.context = context;
+      this.sortService = sortService;
+      this.outDocs = new SortDoc[sortQueue.maxSize];
+      this.nextOutDocs = new SortDoc[nextQueue.maxSize];
+      index = -1;
+      sortAhead();
     }
 
     public SortDoc next() throws IOException {
@@ -764,16 +888,13 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       if (index > -1) {
         _sortDoc = outDocs[index--];
       } else {
-        topDocs();
+        index = sortService == null ? topDocs(queue, outDocs) : awaitRun();
         if (index > -1) {
           _sortDoc = outDocs[index--];
         }
       }
 
       if (_sortDoc != null) {
-        // Clear the bit so it's not loaded again.
-        bits.clear(_sortDoc.docId);
-
         // Load the global ordinal (only matters for strings)
         _sortDoc.setGlobalValues(nextDoc);
 
@@ -786,10 +907,45 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       return nextDoc;
     }
 
-    private void topDocs() throws IOException {
+    private void sortAhead() {
+      SortQueue runQueue = nextQueue;
+      SortDoc[] runDocs = nextOutDocs;
+      nextRun = sortService.submit(() -> topDocs(runQueue, runDocs));
+    }
+
+    // waits for the run sorted ahead, and starts sorting the one after it
+    private int awaitRun() throws IOException {
+      if (nextRun == null) {
+        return -1;
+      }
+      int last;
+      try {
+        last = nextRun.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      }
+      SortQueue runQueue = queue;
+      queue = nextQueue;
+      nextQueue = runQueue;
+      SortDoc[] runDocs = outDocs;
+      outDocs = nextOutDocs;
+      nextOutDocs = runDocs;
+      if (last > -1) {
+        sortAhead();
+      } else {
+        nextRun = null;
+      }
+      return last;
+    }
+
+    // sorts the next run into the queue and docs, returning the index of the last doc
+    private int topDocs(SortQueue runQueue, SortDoc[] runDocs) throws IOException {
       try {
-        queue.reset();
-        SortDoc top = queue.top();
+        runQueue.reset();
+        SortDoc top = runQueue.top();
         this.sortDoc.setNextReader(context);
         DocIdSetIterator it = new BitSetIterator(bits, 0); // cost is not useful here
         int docId;
@@ -799,19 +955,22 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
           // set the top if the sortDoc is greater than current
           if (top.lessThan(this.sortDoc) || top.docId == -1) {
             top.setValues(this.sortDoc);
-            top = queue.updateTop();
+            top = runQueue.updateTop();
           }
         }
 
         // Pop the queue and load up the array.
-        index = -1;
+        int last = -1;
 
         SortDoc _sortDoc;
-        while ((_sortDoc = queue.pop()) != null) {
+        while ((_sortDoc = runQueue.pop()) != null) {
           if (_sortDoc.docId > -1) {
-            outDocs[++index] = _sortDoc;
+            runDocs[++last] = _sortDoc;
+            // Clear the bit so it's not loaded again by the next run.
+            bits.clear(_sortDoc.docId);
           }
         }
+        return last;
       } catch (Exception e) {
         log.error("Segment Iterator Error:", e);
         throw new IOException(e);
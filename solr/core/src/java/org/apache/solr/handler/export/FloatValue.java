@@ -21,6 +21,7 @@ import java.io.IOException;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.NumericUtils;
 
 class FloatValue implements SortValue {
 
@@ -101,6 +102,12 @@ class FloatValue implements SortValue {
     this.present = false;
   }
 
+  @Override
+  public long toSortKey() {
+    long key = NumericUtils.floatToSortableInt(currentValue);
+    return comp instanceof FloatComp.FloatAsc ? ~key : key;
+  }
+
   @Override
   public int compareTo(SortValue o) {
     FloatValue fv = (FloatValue) o;
@@ -88,6 +88,11 @@ public class IntValue implements SortValue {
     return this.present;
   }
 
+  @Override
+  public long toSortKey() {
+    return comp instanceof IntComp.IntAsc ? ~currentValue : currentValue;
+  }
+
   @Override
   public int compareTo(SortValue o) {
     IntValue iv = (IntValue) o;
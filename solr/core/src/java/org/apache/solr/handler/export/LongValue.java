@@ -95,6 +95,11 @@ public class LongValue implements SortValue {
     this.present = lv.present;
   }
 
+  @Override
+  public long toSortKey() {
+    return comp instanceof LongComp.LongAsc ? ~currentValue : currentValue;
+  }
+
   @Override
   public int compareTo(SortValue o) {
     LongValue l = (LongValue) o;
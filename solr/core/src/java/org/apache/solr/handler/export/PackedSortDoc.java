@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.handler.export;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.lucene.index.LeafReaderContext;
+
+/**
+ * A {@link SortDoc} for any number of sort fields, which keeps the sort values as a fixed-width
+ * key of one long per field (see {@link SortValue#toSortKey}). Comparing two docs compares their
+ * keys word by word, without calls to the sort values, and copying a doc copies its key.
+ *
+ * <p>Only the docs reading values from a segment hold {@link SortValue}s, the docs in the queues
+ * and buffers share the values they were created from and only use them to convert the keys of
+ * strings to global ordinals. As the values are not kept, {@link #getSortValue} returns null and
+ * the field writers read sort fields from the doc values.
+ */
+class PackedSortDoc extends SortDoc {
+
+  // the values the doc was created from, shared by all its copies
+  private final SortValue[] prototypes;
+  // the values reading the current segment, only created by setNextReader
+  private SortValue[] readers;
+  private final long[] keys;
+
+  PackedSortDoc(SortValue[] prototypes) {
+    this.prototypes = prototypes;
+    this.keys = new long[prototypes.length];
+  }
+
+  @Override
+  public SortValue getSortValue(String field) {
+    return null;
+  }
+
+  @Override
+  public void setNextReader(LeafReaderContext context) throws IOException {
+    this.ord = context.ord;
+    this.docBase = context.docBase;
+    if (readers == null) {
+      readers = new SortValue[prototypes.length];
+      for (int i = 0; i < prototypes.length; i++) {
+        readers[i] = prototypes[i].copy();
+      }
+    }
+    for (SortValue reader : readers) {
+      reader.setNextReader(context);
+    }
+  }
+
+  @Override
+  public void reset() {
+    this.docId = -1;
+    this.docBase = -1;
+    this.ord = -1;
+    Arrays.fill(keys, 0L);
+  }
+
+  @Override
+  public void setValues(int docId) throws IOException {
+    this.docId = docId;
+    for (int i = 0; i < readers.length; i++) {
+      readers[i].setCurrentValue(docId);
+      keys[i] = readers[i].toSortKey();
+    }
+  }
+
+  @Override
+  public void setGlobalValues(SortDoc previous) {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = prototypes[i].toGlobalKey(ord, keys[i]);
+    }
+  }
+
+  @Override
+  public void setValues(SortDoc sortDoc) {
+    this.docId = sortDoc.docId;
+    this.ord = sortDoc.ord;
+    this.docBase = sortDoc.docBase;
+    System.arraycopy(((PackedSortDoc) sortDoc).keys, 0, keys, 0, keys.length);
+  }
+
+  @Override
+  public SortDoc copy() {
+    return new PackedSortDoc(prototypes);
+  }
+
+  private int compareKeys(PackedSortDoc sd) {
+    long[] otherKeys = sd.keys;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != otherKeys[i]) {
+        return keys[i] < otherKeys[i] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public boolean lessThan(Object o) {
+    if (docId == -1) {
+      return true;
+    }
+    PackedSortDoc sd = (PackedSortDoc) o;
+    int comp = compareKeys(sd);
+    if (comp != 0) {
+      return comp < 0;
+    }
+    return docId + docBase > sd.docId + sd.docBase; // index order
+  }
+
+  @Override
+  public int compareTo(SortDoc o) {
+    PackedSortDoc sd = (PackedSortDoc) o;
+    int comp = compareKeys(sd);
+    if (comp != 0) {
+      return comp;
+    }
+    return (sd.docId + sd.docBase) - (docId + docBase);
+  }
+
+  @Override
+  public String toString() {
+    return ord + ":" + docBase + ":" + docId + ":keys=" + Arrays.toString(keys);
+  }
+}
@@ -41,4 +41,19 @@ interface SortValue extends Comparable<SortValue> {
    * @return true if document has a value for the specified field
    */
   boolean isPresent();
+
+  /**
+   * Returns the current value as a key, such that keys of values of this field compare with {@link
+   * Long#compare} like the values compare with {@link #compareTo}. Strings are keyed by their
+   * segment ordinal, see {@link #toGlobalKey}.
+   */
+  long toSortKey();
+
+  /**
+   * Converts a key read from the segment with the given ord to a key that compares with keys from
+   * all segments.
+   */
+  default long toGlobalKey(int segmentOrd, long key) {
+    return key;
+  }
 }
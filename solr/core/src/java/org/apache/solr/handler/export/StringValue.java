@@ -163,6 +163,25 @@ class StringValue implements SortValue {
     lastDocID = 0;
   }
 
+  @Override
+  public long toSortKey() {
+    return comp instanceof IntComp.IntAsc ? ~currentOrd : currentOrd;
+  }
+
+  @Override
+  public long toGlobalKey(int segmentOrd, long key) {
+    if (ordinalMap == null) {
+      return key;
+    }
+    boolean asc = comp instanceof IntComp.IntAsc;
+    long ord = asc ? ~key : key;
+    if (ord == -1) {
+      return key;
+    }
+    long globalOrd = ordinalMap.getGlobalOrds(segmentOrd).get(ord);
+    return asc ? ~globalOrd : globalOrd;
+  }
+
   @Override
   public int compareTo(SortValue o) {
     StringValue sv = (StringValue) o;
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,6 +37,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
@@ -57,6 +61,7 @@ import org.apache.solr.update.DeleteUpdateCommand;
 import org.apache.solr.update.RollbackUpdateCommand;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.apache.solr.util.RecordingJSONParser;
+import org.noggit.CharArr;
 import org.noggit.JSONParser;
 import org.noggit.JSONParser.ParseException;
 import org.noggit.ObjectBuilder;
@@ -71,6 +76,22 @@ public class JsonLoader extends ContentStreamLoader {
   private static final AtomicBoolean WARNED_ABOUT_INDEX_TIME_BOOSTS = new AtomicBoolean();
   public static final String CHILD_DOC_KEY = "_childDocuments_";
 
+  /**
+   * Request parameter with the number of threads building documents from a top level JSON array of
+   * documents, up to {@link #MAX_PARALLELISM}. Values below 2 keep the documents being built on the
+   * request thread.
+   */
+  public static final String PARALLELISM = "json.parallelism";
+
+  /** The most threads a request can build documents on. */
+  public static final int MAX_PARALLELISM = 16;
+
+  // powers of ten that are exactly representable as doubles
+  private static final double[] EXACT_POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
   @Override
   public String getDefaultWT() {
     return JSON;
@@ -83,7 +104,57 @@ public class JsonLoader extends ContentStreamLoader {
       ContentStream stream,
       UpdateRequestProcessor processor)
       throws Exception {
-    new SingleThreadedJsonLoader(req, rsp, processor).load(req, rsp, stream, processor);
+    int parallelism = req.getParams().getInt(PARALLELISM, 1);
+    if (parallelism > MAX_PARALLELISM) {
+      throw new SolrException(
+          SolrException.ErrorCode.BAD_REQUEST,
+          PARALLELISM + " must be at most " + MAX_PARALLELISM + ", got " + parallelism);
+    }
+    if (parallelism > 1) {
+      new ParallelJsonLoader(req, rsp, processor, parallelism).load(req, rsp, stream, processor);
+    } else {
+      new SingleThreadedJsonLoader(req, rsp, processor).load(req, rsp, stream, processor);
+    }
+  }
+
+  /**
+   * Parses the characters of a JSON number. Plain decimals with at most 15 significant digits are
+   * computed directly from the characters, which is exact since both the digits and the power of
+   * ten are exactly representable as doubles. Anything else goes through {@link
+   * Double#parseDouble(String)}.
+   */
+  static double parseDouble(CharArr chars) {
+    char[] buf = chars.getArray();
+    int i = chars.getStart();
+    int end = chars.getEnd();
+    boolean negative = i < end && buf[i] == '-';
+    if (negative) i++;
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = -1;
+    for (; i < end; i++) {
+      char c = buf[i];
+      if (c >= '0' && c <= '9') {
+        if (++digits > 15) {
+          return Double.parseDouble(chars.toString());
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (fractionDigits >= 0) fractionDigits++;
+      } else if (c == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+      } else {
+        // exponent or anything unexpected
+        return Double.parseDouble(chars.toString());
+      }
+    }
+    if (digits == 0) {
+      return Double.parseDouble(chars.toString());
+    }
+    double value = mantissa;
+    if (fractionDigits > 0) {
+      value /= EXACT_POWERS_OF_TEN[fractionDigits];
+    }
+    return negative ? -value : value;
   }
 
   @SuppressWarnings("unchecked")
@@ -611,7 +682,7 @@ public class JsonLoader extends ContentStreamLoader {
         case JSONParser.LONG:
           return parser.getLong();
         case JSONParser.NUMBER:
-          return parser.getDouble();
+          return parseDouble(parser.getNumberChars());
         case JSONParser.BIGNUMBER:
           return parser.getNumberChars().toString();
         case JSONParser.BOOLEAN:
@@ -677,6 +748,342 @@ public class JsonLoader extends ContentStreamLoader {
     }
   }
 
+  /**
+   * Builds the documents of a top level JSON array of documents on several threads. The request
+   * thread only splits the array into the raw characters of each document, chunks of documents are
+   * parsed by up to <code>parallelism</code> threads of the update executor, and the request thread
+   * hands the parsed documents to the processor chain in their original order. Any other payload
+   * is handled the same as by {@link SingleThreadedJsonLoader}.
+   */
+  static class ParallelJsonLoader extends SingleThreadedJsonLoader {
+    static final int RECORDS_PER_CHUNK = 64;
+
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    ParallelJsonLoader(
+        SolrQueryRequest req,
+        SolrQueryResponse rsp,
+        UpdateRequestProcessor processor,
+        int parallelism) {
+      super(req, rsp, processor);
+      this.parallelism = parallelism;
+      this.executor = req.getCoreContainer().getUpdateShardHandler().getUpdateExecutor();
+    }
+
+    @Override
+    void processUpdate(Reader reader) throws IOException {
+      String path = (String) req.getContext().get(PATH);
+      if (UpdateRequestHandler.DOC_PATH.equals(path)
+          || "false".equals(req.getParams().get("json.command"))) {
+        super.processUpdate(reader);
+        return;
+      }
+      JsonRecordSplitter splitter = new JsonRecordSplitter(reader);
+      if (splitter.startArray()) {
+        handleParallelAdds(splitter);
+      }
+      // anything after the array, e.g. a commit command
+      super.processUpdate(splitter);
+    }
+
+    private void handleParallelAdds(JsonRecordSplitter splitter) throws IOException {
+      ArrayDeque<Future<ParsedChunk>> inFlight = new ArrayDeque<>(parallelism);
+      try {
+        List<char[]> chunk = new ArrayList<>(RECORDS_PER_CHUNK);
+        Exception splitFailure = null;
+        for (; ; ) {
+          char[] record;
+          try {
+            record = splitter.nextRecord();
+          } catch (IOException | RuntimeException e) {
+            // the documents before it are added first, as the single threaded loader does
+            splitFailure = e;
+            break;
+          }
+          if (record == null) {
+            break;
+          }
+          chunk.add(record);
+          if (chunk.size() == RECORDS_PER_CHUNK) {
+            if (inFlight.size() == parallelism) {
+              processAdds(inFlight.poll());
+            }
+            List<char[]> toParse = chunk;
+            inFlight.add(executor.submit(() -> parseChunk(toParse)));
+            chunk = new ArrayList<>(RECORDS_PER_CHUNK);
+          }
+        }
+        while (!inFlight.isEmpty()) {
+          processAdds(inFlight.poll());
+        }
+        processAdds(parseChunk(chunk));
+        if (splitFailure instanceof IOException) {
+          throw (IOException) splitFailure;
+        } else if (splitFailure != null) {
+          throw (RuntimeException) splitFailure;
+        }
+      } finally {
+        for (Future<ParsedChunk> future : inFlight) {
+          future.cancel(true);
+        }
+      }
+    }
+
+    private ParsedChunk parseChunk(List<char[]> records) {
+      // parsing state lives in the loader, so every chunk gets its own
+      SingleThreadedJsonLoader loader = new SingleThreadedJsonLoader(req, rsp, processor);
+      ParsedChunk parsed = new ParsedChunk(records.size());
+      try {
+        for (char[] record : records) {
+          loader.parser = new JSONParser(record, 0, record.length);
+          parsed.docs.add(loader.parseDoc(loader.parser.nextEvent()));
+        }
+      } catch (IOException | RuntimeException e) {
+        parsed.failure = e;
+      }
+      return parsed;
+    }
+
+    private void processAdds(Future<ParsedChunk> future) throws IOException {
+      ParsedChunk parsed;
+      try {
+        parsed = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR, "Interrupted while parsing JSON documents", e);
+      } catch (ExecutionException e) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e.getCause());
+      }
+      processAdds(parsed);
+    }
+
+    private void processAdds(ParsedChunk parsed) throws IOException {
+      for (SolrInputDocument doc : parsed.docs) {
+        AddUpdateCommand cmd = new AddUpdateCommand(req);
+        cmd.commitWithin = commitWithin;
+        cmd.overwrite = overwrite;
+        cmd.solrDoc = doc;
+        processor.processAdd(cmd);
+      }
+      if (parsed.failure instanceof IOException) {
+        throw (IOException) parsed.failure;
+      } else if (parsed.failure != null) {
+        // includes SolrException and noggit's ParseException
+        throw (RuntimeException) parsed.failure;
+      }
+    }
+  }
+
+  /** The documents of a chunk, up to the first record that failed to parse. */
+  private static class ParsedChunk {
+    final List<SolrInputDocument> docs;
+    Exception failure;
+
+    ParsedChunk(int size) {
+      docs = new ArrayList<>(size);
+    }
+  }
+
+  /**
+   * Splits a top level JSON array of objects into the raw characters of each object, without
+   * tokenizing them. The splitter handles whitespace, comments and extra commas between the objects,
+   * and strings inside them. On anything else, such as a comment or a backslash outside of a string
+   * inside an object, it stops splitting and reads back the rest of the array, starting with the object it was in, so
+   * that the {@link JSONParser} of the single threaded loader handles it with all its leniency. Once
+   * the array has been consumed the splitter reads the rest of the input, so it can be handed to a
+   * {@link JSONParser}.
+   */
+  static class JsonRecordSplitter extends Reader {
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int limit;
+    private final StringBuilder record = new StringBuilder();
+    private boolean afterRecord;
+    // what the splitter consumed of the array it stopped splitting, read before the rest
+    private char[] replay;
+    private int replayPos;
+
+    JsonRecordSplitter(Reader in) {
+      this.in = in;
+    }
+
+    private boolean fill() throws IOException {
+      int n = in.read(buf, 0, buf.length);
+      pos = 0;
+      limit = Math.max(n, 0);
+      return n > 0;
+    }
+
+    private int nextChar() throws IOException {
+      if (pos == limit && !fill()) {
+        return -1;
+      }
+      return buf[pos++];
+    }
+
+    /** Returns the next character that is neither whitespace nor part of a comment. */
+    private int nextToken() throws IOException {
+      for (; ; ) {
+        int c = nextChar();
+        if (c == '#') {
+          skipLine();
+        } else if (c == '/') {
+          c = nextChar();
+          if (c == '/') {
+            skipLine();
+          } else if (c == '*') {
+            skipBlockComment();
+          } else {
+            throw new SolrException(
+                SolrException.ErrorCode.BAD_REQUEST,
+                "Invalid comment: expected //, /*, or # in JSON array of documents");
+          }
+        } else if (c == -1 || !(Character.isWhitespace(c) || c == '\u00a0')) {
+          return c;
+        }
+      }
+    }
+
+    private void skipLine() throws IOException {
+      int c;
+      do {
+        c = nextChar();
+      } while (c != '\n' && c != '\r' && c != -1);
+    }
+
+    private void skipBlockComment() throws IOException {
+      int c = nextChar();
+      for (; ; ) {
+        if (c == -1) {
+          return;
+        }
+        int next = nextChar();
+        if (c == '*' && next == '/') {
+          return;
+        }
+        c = next;
+      }
+    }
+
+    /** Consumes the start of a top level array, returns false without consuming if there is none. */
+    boolean startArray() throws IOException {
+      int c = nextToken();
+      if (c == '[') {
+        return true;
+      }
+      if (c != -1) {
+        pos--;
+      }
+      return false;
+    }
+
+    /**
+     * Returns the characters of the next object in the array, or null at the end of the array or if
+     * the splitter stopped.
+     */
+    char[] nextRecord() throws IOException {
+      if (replay != null) {
+        return null;
+      }
+      record.setLength(0);
+      int c = nextToken();
+      if (afterRecord && c == ',') {
+        // any number of extra commas may follow an element
+        do {
+          c = nextToken();
+        } while (c == ',');
+      } else if (afterRecord && c != ']') {
+        return stop(c);
+      }
+      if (c == ']') {
+        return null;
+      }
+      if (c != '{') {
+        return stop(c);
+      }
+
+      int start = pos - 1;
+      int depth = 1;
+      char quote = 0;
+      boolean escaped = false;
+      while (depth > 0) {
+        if (pos == limit) {
+          record.append(buf, start, pos - start);
+          if (!fill()) {
+            throw new SolrException(
+                SolrException.ErrorCode.BAD_REQUEST, "Unexpected EOF in JSON array of documents");
+          }
+          start = 0;
+        }
+        char ch = buf[pos++];
+        if (quote != 0) {
+          if (escaped) {
+            escaped = false;
+          } else if (ch == '\\') {
+            escaped = true;
+          } else if (ch == quote) {
+            quote = 0;
+          }
+        } else if (ch == '"' || ch == '\'') {
+          quote = ch;
+        } else if (ch == '{' || ch == '[') {
+          depth++;
+        } else if (ch == '}' || ch == ']') {
+          depth--;
+        } else if (ch == '/' || ch == '#' || ch == '\\') {
+          // a comment, or an escape in an unquoted string, may hide the end of the object
+          record.append(buf, start, pos - start);
+          return stop(-1);
+        }
+      }
+      record.append(buf, start, pos - start);
+      afterRecord = true;
+
+      char[] chars = new char[record.length()];
+      record.getChars(0, chars.length, chars, 0);
+      return chars;
+    }
+
+    /**
+     * Stops splitting: the rest of the array is read back after the array start and the characters
+     * of the current object, if any. Unless it is -1, <code>c</code> is read again.
+     */
+    private char[] stop(int c) {
+      if (c != -1) {
+        pos--;
+      }
+      replay = new char[record.length() + 1];
+      replay[0] = '[';
+      record.getChars(0, record.length(), replay, 1);
+      return null;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (replay != null && replayPos < replay.length) {
+        int n = Math.min(len, replay.length - replayPos);
+        System.arraycopy(replay, replayPos, cbuf, off, n);
+        replayPos += n;
+        return n;
+      }
+      if (pos < limit) {
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, cbuf, off, n);
+        pos += n;
+        return n;
+      }
+      return in.read(cbuf, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
   private static Object changeChildDoc(Object o) {
     if (o instanceof List) {
       return ((List<?>) o).stream().map(JsonLoader::changeChildDoc).collect(toList());
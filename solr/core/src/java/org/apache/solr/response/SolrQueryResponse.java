@@ -61,6 +61,7 @@ import org.apache.solr.search.SolrReturnFields;
 public class SolrQueryResponse {
   public static final String NAME = "response";
   public static final String RESPONSE_HEADER_PARTIAL_RESULTS_KEY = "partialResults";
+  public static final String RESPONSE_HEADER_MISSING_SHARDS_KEY = "missingShards";
   public static final String RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY =
       "segmentTerminatedEarly";
   public static final String RESPONSE_HEADER_KEY = "responseHeader";
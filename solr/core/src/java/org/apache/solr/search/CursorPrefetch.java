@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Arrays;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.params.CursorMarkParams;
+
+/**
+ * The sorted documents following a cursor position, collected beyond the requested page so that
+ * the following pages of a {@link CursorMarkParams#CURSOR_MARK_PARAM} walk can be served without
+ * evaluating the query again.
+ *
+ * <p>Prefetching is enabled by configuring a user cache named {@value #CACHE_NAME}, keyed by the
+ * {@link QueryResultKey} of the query. Like any user cache it belongs to a searcher, so entries
+ * never outlive the index version they were collected from. The size of the cache bounds the
+ * memory used, and <code>maxIdleTime</code> evicts cursors that are no longer walked.
+ *
+ * <p>An entry is used for any cursor position between its first and last document, not only for
+ * the exact cursor mark following the previous page. This matters for distributed requests, where
+ * the cursor mark a shard receives comes from the merged results and need not match any of its
+ * own documents.
+ */
+public final class CursorPrefetch implements Accountable {
+  /** Name of the user cache holding prefetched documents */
+  public static final String CACHE_NAME = "cursorPrefetch";
+
+  /** Number of pages collected by default, when the cache is configured */
+  public static final int DEFAULT_PAGES = 4;
+
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(CursorPrefetch.class);
+
+  // sort values the documents follow, null if they start at the beginning of the results
+  private final Object[] start;
+  private final FieldDoc[] docs;
+  private final float[] scores;
+  private final long matches;
+  private final TotalHits.Relation matchesRelation;
+  private final float maxScore;
+  // whether docs holds every document following start
+  private final boolean exhausted;
+  private final FieldComparator<?>[] comparators;
+  private final int[] reverseMul;
+  private final long ramBytesUsed;
+
+  private CursorPrefetch(
+      Object[] start,
+      FieldDoc[] docs,
+      DocSlice slice,
+      boolean exhausted,
+      FieldComparator<?>[] comparators,
+      int[] reverseMul) {
+    this.start = start;
+    this.docs = docs;
+    this.scores = slice.scores;
+    this.matches = slice.matches;
+    this.matchesRelation = slice.matchesRelation;
+    this.maxScore = slice.maxScore;
+    this.exhausted = exhausted;
+    this.comparators = comparators;
+    this.reverseMul = reverseMul;
+
+    long size =
+        BASE_RAM_BYTES_USED
+            + RamUsageEstimator.shallowSizeOf(docs)
+            + RamUsageEstimator.sizeOf(scores)
+            + RamUsageEstimator.shallowSizeOf(comparators)
+            + RamUsageEstimator.sizeOf(reverseMul);
+    for (FieldDoc doc : docs) {
+      size += RamUsageEstimator.shallowSizeOf(doc) + RamUsageEstimator.shallowSizeOf(doc.fields);
+      for (Object value : doc.fields) {
+        size += RamUsageEstimator.sizeOfObject(value);
+      }
+    }
+    this.ramBytesUsed = size;
+  }
+
+  /**
+   * Creates an entry from the documents collected for a cursor page.
+   *
+   * @param cmd the command the documents were collected for
+   * @param weightedSort the sort the documents were collected with
+   * @param topDocs the collected documents, which have to be {@link FieldDoc}s
+   * @param slice the doc list built from the collected documents
+   * @param collected the number of documents that were asked for
+   */
+  static CursorPrefetch create(
+      QueryCommand cmd, Sort weightedSort, ScoreDoc[] topDocs, DocSlice slice, int collected) {
+    FieldDoc after = cmd.getCursorMark().getSearchAfterFieldDoc();
+    FieldDoc[] docs = new FieldDoc[topDocs.length];
+    for (int i = 0; i < topDocs.length; i++) {
+      docs[i] = (FieldDoc) topDocs[i];
+    }
+    SortField[] sortFields = weightedSort.getSort();
+    FieldComparator<?>[] comparators = new FieldComparator<?>[sortFields.length];
+    int[] reverseMul = new int[sortFields.length];
+    for (int i = 0; i < sortFields.length; i++) {
+      comparators[i] = sortFields[i].getComparator(1, false);
+      reverseMul[i] = sortFields[i].getReverse() ? -1 : 1;
+    }
+    return new CursorPrefetch(
+        after == null ? null : after.fields,
+        docs,
+        slice,
+        docs.length < collected,
+        comparators,
+        reverseMul);
+  }
+
+  /**
+   * Sets the page of documents following the cursor of the command, and the cursor mark that
+   * follows it, on the result.
+   *
+   * @return false if the documents of the page were not all collected, and the query has to be
+   *     evaluated
+   */
+  boolean nextPage(QueryResult qr, QueryCommand cmd) {
+    if ((cmd.getFlags() & SolrIndexSearcher.GET_SCORES) != 0 && scores == null) {
+      return false;
+    }
+    FieldDoc after = cmd.getCursorMark().getSearchAfterFieldDoc();
+    int from = 0;
+    if (after != null) {
+      if (start != null && compare(after.fields, start) < 0) {
+        return false;
+      }
+      from = firstAfter(after.fields);
+    } else if (start != null) {
+      return false;
+    }
+
+    int to = from + cmd.getLen();
+    if (to > docs.length) {
+      if (!exhausted) {
+        return false;
+      }
+      to = docs.length;
+    }
+
+    int len = to - from;
+    int[] ids = new int[len];
+    for (int i = 0; i < len; i++) {
+      ids[i] = docs[from + i].doc;
+    }
+    float[] pageScores =
+        (cmd.getFlags() & SolrIndexSearcher.GET_SCORES) != 0
+            ? Arrays.copyOfRange(scores, from, to)
+            : null;
+    qr.setDocList(new DocSlice(0, len, ids, pageScores, matches, maxScore, matchesRelation));
+    if (len == 0) {
+      // no docs on this page, re-use existing cursor mark
+      qr.setNextCursorMark(cmd.getCursorMark());
+    } else {
+      qr.setNextCursorMark(cmd.getCursorMark().createNext(Arrays.asList(docs[to - 1].fields)));
+    }
+    return true;
+  }
+
+  // index of the first document sorting after the values
+  private int firstAfter(Object[] values) {
+    int low = 0;
+    int high = docs.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compare(docs[mid].fields, values) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private int compare(Object[] a, Object[] b) {
+    for (int i = 0; i < comparators.length; i++) {
+      int c = reverseMul[i] * ((FieldComparator) comparators[i]).compareValues(a[i], b[i]);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+}
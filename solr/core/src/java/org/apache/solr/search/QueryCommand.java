@@ -39,6 +39,7 @@ public class QueryCommand {
   private long timeAllowed = -1;
   private int minExactCount = Integer.MAX_VALUE;
   private CursorMark cursorMark;
+  private int cursorPrefetchPages = 1;
 
   public CursorMark getCursorMark() {
     return cursorMark;
@@ -61,6 +62,19 @@ public class QueryCommand {
     return this;
   }
 
+  /**
+   * The number of pages collected when a cursor page is not found in the {@link
+   * CursorPrefetch#CACHE_NAME} cache, 1 to only collect the requested page.
+   */
+  public int getCursorPrefetchPages() {
+    return cursorPrefetchPages;
+  }
+
+  public QueryCommand setCursorPrefetchPages(int cursorPrefetchPages) {
+    this.cursorPrefetchPages = cursorPrefetchPages;
+    return this;
+  }
+
   public Query getQuery() {
     return query;
   }
@@ -16,6 +16,8 @@
  */
 package org.apache.solr.search;
 
+import org.apache.lucene.search.ScoreDoc;
+
 /** The result of a search. */
 public class QueryResult {
 
@@ -23,6 +25,8 @@ public class QueryResult {
   private Boolean segmentTerminatedEarly;
   private DocListAndSet docListAndSet;
   private CursorMark nextCursorMark;
+  // the sorted documents the next cursor mark was taken from, for prefetching cursor pages
+  ScoreDoc[] cursorScoreDocs;
 
   public Object groupedResults; // TODO: currently for testing
 
@@ -1605,6 +1605,35 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         key = null; // we won't be caching the result
       }
     }
+
+    // with a cursor, the page may already have been collected along with an earlier one
+    SolrCache<QueryResultKey, CursorPrefetch> prefetchCache = null;
+    QueryResultKey prefetchKey = null;
+    if (cmd.getCursorMark() != null
+        && cmd.getLen() > 0
+        && cmd.getCursorPrefetchPages() > 1
+        && (flags & NO_CHECK_FILTERCACHE) == 0
+        && !(q instanceof RankQuery)) {
+      prefetchCache = getCursorPrefetchCache();
+    }
+    if (prefetchCache != null) {
+      prefetchKey =
+          new QueryResultKey(q, cmd.getFilterList(), cmd.getSort(), flags, cmd.getMinExactCount());
+      CursorPrefetch prefetch = prefetchCache.get(prefetchKey);
+      if (prefetch != null && prefetch.nextPage(qr, cmd)) {
+        if (out.docSet == null && ((flags & GET_DOCSET) != 0)) {
+          List<Query> queries = new ArrayList<>();
+          queries.add(cmd.getQuery());
+          if (cmd.getFilterList() != null) {
+            queries.addAll(cmd.getFilterList());
+          }
+          out.docSet = getDocSet(queries);
+        }
+        return;
+      }
+      supersetMaxDoc =
+          (int) Math.min(maxDoc(), (long) maxDocRequested * cmd.getCursorPrefetchPages());
+    }
     cmd.setSupersetMaxDoc(supersetMaxDoc);
 
     // OK, so now we need to generate an answer.
@@ -1697,6 +1726,24 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       assert null != out.docList : "docList is null";
     }
 
+    if (prefetchKey != null && qr.cursorScoreDocs != null) {
+      // keep the documents collected beyond the requested page for the following pages
+      CursorPrefetch prefetch =
+          CursorPrefetch.create(
+              cmd,
+              weightSort(cmd.getSort()),
+              qr.cursorScoreDocs,
+              (DocSlice) out.docList,
+              supersetMaxDoc);
+      boolean served = prefetch.nextPage(qr, cmd);
+      assert served : "cursor: prefetched documents don't cover the page";
+      if (!qr.isPartialResults()) {
+        prefetchCache.put(prefetchKey, prefetch);
+      }
+      qr.cursorScoreDocs = null;
+      return;
+    }
+
     if (null == cmd.getCursorMark()) {
       // Kludge...
       // we can't use DocSlice.subset, even though it should be an identity op
@@ -1751,6 +1798,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     assert topDocs instanceof TopFieldDocs : "TopFieldDocs cursor constraint violated";
     final TopFieldDocs topFieldDocs = (TopFieldDocs) topDocs;
     final ScoreDoc[] scoreDocs = topFieldDocs.scoreDocs;
+    qr.cursorScoreDocs = scoreDocs;
 
     if (0 == scoreDocs.length) {
       // no docs on this page, re-use existing cursor mark
@@ -2436,6 +2484,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return cacheMap.get(cacheName);
   }
 
+  @SuppressWarnings({"unchecked"})
+  private SolrCache<QueryResultKey, CursorPrefetch> getCursorPrefetchCache() {
+    return (SolrCache<QueryResultKey, CursorPrefetch>) cacheMap.get(CursorPrefetch.CACHE_NAME);
+  }
+
   /** lookup an entry in a generic cache */
   @SuppressWarnings({"unchecked"})
   public Object cacheLookup(String cacheName, Object key) {
@@ -22,6 +22,7 @@ import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.handler.component.ShardRequest;
+import org.apache.solr.search.Grouping;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.grouping.GroupingSpecification;
 import org.apache.solr.search.grouping.distributed.ShardRequestFactory;
@@ -72,6 +73,17 @@ public class SearchGroupsRequestFactory implements ShardRequestFactory {
     // and any fields needed for merging.
     sreq.params.set(GroupParams.GROUP_DISTRIBUTED_FIRST, "true");
 
+    if (isCombinable(rb)) {
+      sreq.params.set(GroupParams.GROUP_DISTRIBUTED_COMBINE, "true");
+      // If group.format=simple group.offset doesn't make sense
+      Grouping.Format responseFormat = groupingSpecification.getResponseFormat();
+      if (responseFormat == Grouping.Format.simple || groupingSpecification.isMain()) {
+        sreq.params.remove(GroupParams.GROUP_OFFSET);
+      }
+    } else {
+      sreq.params.remove(GroupParams.GROUP_DISTRIBUTED_COMBINE);
+    }
+
     if ((rb.getFieldFlags() & SolrIndexSearcher.GET_SCORES) != 0
         || rb.getSortSpec().includesScore()) {
       sreq.params.set(CommonParams.FL, rb.req.getSchema().getUniqueKeyField().getName() + ",score");
@@ -80,4 +92,17 @@ public class SearchGroupsRequestFactory implements ShardRequestFactory {
     }
     return new ShardRequest[] {sreq};
   }
+
+  /**
+   * Whether the shards can return the top documents of their groups with the search groups. This
+   * needs {@link GroupParams#GROUP_DISTRIBUTED_COMBINE}, a bounded <code>group.limit</code>, and
+   * no group queries, faceting or statistics, which need the second phase on all shards anyway.
+   */
+  private static boolean isCombinable(ResponseBuilder rb) {
+    GroupingSpecification groupingSpecification = rb.getGroupingSpec();
+    return rb.req.getParams().getBool(GroupParams.GROUP_DISTRIBUTED_COMBINE, false)
+        && groupingSpecification.getQueries().length == 0
+        && groupingSpecification.getWithinGroupSortSpec().getCount() >= 0
+        && !rb.isNeedDocSet();
+  }
 }
@@ -62,15 +62,19 @@ public class TopGroupsShardRequestFactory implements ShardRequestFactory {
   }
 
   private ShardRequest[] createRequestForSpecificShards(ResponseBuilder rb) {
-    // Determine all unique shards to query for TopGroups
+    Set<String> uniqueShards = getShardsWithTopGroups(rb);
+    return createRequest(rb, uniqueShards.toArray(new String[uniqueShards.size()]));
+  }
+
+  /** Determine all unique shards that returned any of the merged search groups */
+  public static Set<String> getShardsWithTopGroups(ResponseBuilder rb) {
     Set<String> uniqueShards = new HashSet<>();
     for (Map<SearchGroup<BytesRef>, Set<String>> groupsToShard : rb.searchGroupToShards.values()) {
       for (Set<String> shards : groupsToShard.values()) {
         uniqueShards.addAll(shards);
       }
     }
-
-    return createRequest(rb, uniqueShards.toArray(new String[uniqueShards.size()]));
+    return uniqueShards;
   }
 
   private ShardRequest[] createRequestForAllShards(ResponseBuilder rb) {
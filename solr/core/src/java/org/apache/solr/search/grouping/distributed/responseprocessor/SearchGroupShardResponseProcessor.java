@@ -30,6 +30,8 @@ import org.apache.lucene.search.grouping.SearchGroup;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.client.solrj.SolrResponse;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.GroupParams;
 import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
@@ -40,6 +42,7 @@ import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.search.SortSpec;
 import org.apache.solr.search.grouping.distributed.ShardResponseProcessor;
 import org.apache.solr.search.grouping.distributed.command.SearchGroupsFieldCommandResult;
+import org.apache.solr.search.grouping.distributed.requestfactory.TopGroupsShardRequestFactory;
 import org.apache.solr.search.grouping.distributed.shardresultserializer.SearchGroupsResultTransformer;
 import org.apache.solr.util.SolrResponseUtil;
 
@@ -66,6 +69,14 @@ public class SearchGroupShardResponseProcessor implements ShardResponseProcessor
       }
     }
 
+    // the search groups each shard returned, to find out if the first phase responses hold the
+    // top groups already
+    final boolean combined =
+        shardRequest.params.getBool(GroupParams.GROUP_DISTRIBUTED_COMBINE, false);
+    final Map<String, Map<String, Collection<SearchGroup<BytesRef>>>> shardSearchGroups =
+        new HashMap<>();
+    boolean allCombined = combined;
+
     SearchGroupsResultTransformer serializer =
         new SearchGroupsResultTransformer(rb.req.getSearcher());
     long maxElapsedTime = 0;
@@ -108,6 +119,7 @@ public class SearchGroupShardResponseProcessor implements ShardResponseProcessor
             .getResponseHeader()
             .asShallowMap()
             .put(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
+        allCombined = false;
         continue; // continue if there was an error and we're tolerant.
       }
       maxElapsedTime = Math.max(maxElapsedTime, solrResponse.getElapsedTime());
@@ -116,8 +128,12 @@ public class SearchGroupShardResponseProcessor implements ShardResponseProcessor
           (NamedList<NamedList<?>>)
               SolrResponseUtil.getSubsectionFromShardResponse(rb, srsp, "firstPhase", false);
       if (firstPhaseResult == null) {
+        allCombined = false;
         continue; // looks like a shard did not return anything
       }
+      if (combined && response.get("secondPhase") == null) {
+        allCombined = false;
+      }
       final Map<String, SearchGroupsFieldCommandResult> result =
           serializer.transformToNative(
               firstPhaseResult, groupSort, withinGroupSort, srsp.getShard());
@@ -144,6 +160,11 @@ public class SearchGroupShardResponseProcessor implements ShardResponseProcessor
         }
 
         entry.getValue().add(searchGroups);
+        if (combined) {
+          shardSearchGroups
+              .computeIfAbsent(srsp.getShard(), k -> new HashMap<>())
+              .put(field, searchGroups);
+        }
         for (SearchGroup<BytesRef> searchGroup : searchGroups) {
           Map<SearchGroup<BytesRef>, Set<String>> map = tempSearchGroupToShards.get(field);
           Set<String> shards = map.computeIfAbsent(searchGroup, k -> new HashSet<>());
@@ -172,5 +193,38 @@ public class SearchGroupShardResponseProcessor implements ShardResponseProcessor
             .put(mergedTopGroup, tempSearchGroupToShards.get(groupField).get(mergedTopGroup));
       }
     }
+    rb.topGroupsFromFirstPhase =
+        allCombined
+            && coversTopGroups(
+                rb, shardSearchGroups, shardRequest.params.getInt(CommonParams.ROWS, 0));
+  }
+
+  /**
+   * The second phase would ask the shards that returned any of the merged search groups for the
+   * top documents of all merged groups. The combined first phase responses hold the same documents
+   * if each of these shards returned every merged group itself, or returned fewer groups than
+   * requested, in which case it has no documents in the groups it did not return.
+   */
+  private static boolean coversTopGroups(
+      ResponseBuilder rb,
+      Map<String, Map<String, Collection<SearchGroup<BytesRef>>>> shardSearchGroups,
+      int topNGroups) {
+    for (String shard : TopGroupsShardRequestFactory.getShardsWithTopGroups(rb)) {
+      Map<String, Collection<SearchGroup<BytesRef>>> searchGroups = shardSearchGroups.get(shard);
+      if (searchGroups == null) {
+        return false;
+      }
+      for (Map.Entry<String, Collection<SearchGroup<BytesRef>>> entry :
+          rb.mergedSearchGroups.entrySet()) {
+        Collection<SearchGroup<BytesRef>> shardGroups = searchGroups.get(entry.getKey());
+        if (shardGroups == null) {
+          return false;
+        }
+        if (shardGroups.size() >= topNGroups && !shardGroups.containsAll(entry.getValue())) {
+          return false;
+        }
+      }
+    }
+    return true;
   }
 }
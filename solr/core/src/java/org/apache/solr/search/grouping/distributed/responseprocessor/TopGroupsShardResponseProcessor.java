@@ -20,17 +20,24 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.search.grouping.GroupDocs;
+import org.apache.lucene.search.grouping.SearchGroup;
 import org.apache.lucene.search.grouping.TopGroups;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.params.GroupParams;
 import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
@@ -39,10 +46,12 @@ import org.apache.solr.handler.component.ShardDoc;
 import org.apache.solr.handler.component.ShardRequest;
 import org.apache.solr.handler.component.ShardResponse;
 import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.FieldType;
 import org.apache.solr.search.Grouping;
 import org.apache.solr.search.SortSpec;
 import org.apache.solr.search.grouping.distributed.ShardResponseProcessor;
 import org.apache.solr.search.grouping.distributed.command.QueryCommandResult;
+import org.apache.solr.search.grouping.distributed.requestfactory.TopGroupsShardRequestFactory;
 import org.apache.solr.search.grouping.distributed.shardresultserializer.TopGroupsResultTransformer;
 import org.apache.solr.util.SolrResponseUtil;
 
@@ -84,6 +93,14 @@ public class TopGroupsShardResponseProcessor implements ShardResponseProcessor {
 
     TopGroupsResultTransformer serializer = new TopGroupsResultTransformer(rb);
 
+    // When merging the responses to a combined first phase, each shard returned the top documents
+    // of its own top groups. Only take the shards the second phase would have asked, and line
+    // their groups up with the merged search groups.
+    final boolean firstPhase =
+        shardRequest.params.getBool(GroupParams.GROUP_DISTRIBUTED_FIRST, false);
+    final Set<String> shardsWithTopGroups =
+        firstPhase ? TopGroupsShardRequestFactory.getShardsWithTopGroups(rb) : null;
+
     NamedList<Object> shardInfo = null;
     if (rb.req.getParams().getBool(ShardParams.SHARDS_INFO, false)) {
       shardInfo = new SimpleOrderedMap<>();
@@ -122,6 +139,9 @@ public class TopGroupsShardResponseProcessor implements ShardResponseProcessor {
             .put(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
         continue; // continue if there was an error and we're tolerant.
       }
+      if (firstPhase && !shardsWithTopGroups.contains(srsp.getShard())) {
+        continue;
+      }
       NamedList<NamedList<?>> secondPhaseResult =
           (NamedList<NamedList<?>>)
               SolrResponseUtil.getSubsectionFromShardResponse(rb, srsp, "secondPhase", false);
@@ -138,6 +158,9 @@ public class TopGroupsShardResponseProcessor implements ShardResponseProcessor {
         if (topGroups == null) {
           continue;
         }
+        if (firstPhase) {
+          topGroups = alignToSearchGroups(rb, entry.getKey(), topGroups);
+        }
         if (individualShardInfo != null) { // keep track of this when shards.info=true
           numFound += topGroups.totalHitCount;
           if (Float.isNaN(maxScore) || topGroups.maxScore > maxScore) maxScore = topGroups.maxScore;
@@ -225,6 +248,57 @@ public class TopGroupsShardResponseProcessor implements ShardResponseProcessor {
     fillResultIds(rb);
   }
 
+  /**
+   * Returns the groups of a shard in the order of the merged search groups of the field. Groups
+   * the shard did not return are added without documents.
+   */
+  @SuppressWarnings("unchecked")
+  private static TopGroups<BytesRef> alignToSearchGroups(
+      ResponseBuilder rb, String field, TopGroups<BytesRef> topGroups) {
+    Collection<SearchGroup<BytesRef>> searchGroups = rb.mergedSearchGroups.get(field);
+    if (searchGroups == null) {
+      searchGroups = Collections.emptyList();
+    }
+    FieldType fieldType = rb.req.getSchema().getField(field).getType();
+    Map<BytesRef, GroupDocs<BytesRef>> shardGroups = new HashMap<>();
+    for (GroupDocs<BytesRef> group : topGroups.groups) {
+      shardGroups.put(group.groupValue, group);
+    }
+
+    GroupDocs<BytesRef>[] groups =
+        (GroupDocs<BytesRef>[]) Array.newInstance(GroupDocs.class, searchGroups.size());
+    int totalGroupedHitCount = 0;
+    int i = 0;
+    for (SearchGroup<BytesRef> searchGroup : searchGroups) {
+      // shard responses hold readable group values
+      BytesRef groupValue =
+          searchGroup.groupValue == null
+              ? null
+              : new BytesRef(
+                  fieldType.indexedToReadable(searchGroup.groupValue, new CharsRefBuilder()));
+      GroupDocs<BytesRef> group = shardGroups.get(groupValue);
+      if (group == null) {
+        group =
+            new GroupDocs<>(
+                Float.NaN,
+                Float.NaN,
+                new TotalHits(0, TotalHits.Relation.EQUAL_TO),
+                new ScoreDoc[0],
+                groupValue,
+                null);
+      }
+      totalGroupedHitCount += (int) group.totalHits.value;
+      groups[i++] = group;
+    }
+    return new TopGroups<>(
+        topGroups.groupSort,
+        topGroups.withinGroupSort,
+        topGroups.totalHitCount,
+        totalGroupedHitCount,
+        groups,
+        topGroups.maxScore);
+  }
+
   /**
    * Fill the {@link ResponseBuilder}'s <code>resultIds</code> field.
    *
@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.stats;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.client.solrj.SolrResponse;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.PluginInfo;
+import org.apache.solr.handler.component.ResponseBuilder;
+import org.apache.solr.handler.component.ShardRequest;
+import org.apache.solr.handler.component.ShardResponse;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Like {@link LRUStatsCache} this implementation keeps the per-shard term and collection statistics
+ * across queries (with the same life-cycle as SolrIndexSearcher), and only sends an additional
+ * request to the shards when the statistics of some query terms or fields are missing. Unlike it,
+ * the cached statistics are refreshed as a side effect of the regular queries, so that repeating
+ * queries never need an additional round-trip:
+ *
+ * <ul>
+ *   <li>Every searcher of a shard has a version. The requests for the top documents carry the
+ *       versions the requester already knows, and a shard whose current version isn't among them
+ *       returns its local statistics for the query terms in the same response, together with the
+ *       statistics of the {@link #TOP_TERMS_PARAM} most frequent terms of the {@link
+ *       #TOP_TERMS_FIELDS_PARAM} fields. That is, after each commit the cached statistics of a
+ *       shard are dropped and refreshed by the next queries it serves. The known versions expire
+ *       after {@link #TTL_PARAM} seconds too, so that the statistics of a shard without commits are
+ *       refreshed the same way.
+ *   <li>The top terms of a searcher are collected in the background on the first request for its
+ *       statistics. Until they are, the shard returns its statistics without its version, so that
+ *       the requester keeps asking.
+ *   <li>The statistics of other terms are fetched when a query needs them, and expire after {@link
+ *       #TTL_PARAM} seconds (by default {@link #DEFAULT_TTL}), at most {@link #SIZE_PARAM} (by
+ *       default {@link #DEFAULT_MAX_SIZE}) of them per shard.
+ *   <li>At most {@link #SIZE_PARAM} collection statistics are kept per shard, and at most as many
+ *       top terms as this node collects itself.
+ * </ul>
+ *
+ * <p>The global statistics are aggregated from the cached per-shard statistics and sent with the
+ * query, as with {@link ExactStatsCache}.
+ *
+ * <p>NOTE: the query terms are determined by rewriting the query against the local index, see
+ * {@link #approxCheckMissingStats(ResponseBuilder, StatsSource, java.util.function.Consumer,
+ * java.util.function.Consumer)} for the caveats.
+ */
+public class IncrementalStatsCache extends ExactStatsCache {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String SIZE_PARAM = "size";
+  public static final String TTL_PARAM = "ttl";
+  public static final String TOP_TERMS_PARAM = "topTerms";
+  public static final String TOP_TERMS_FIELDS_PARAM = "topTermsFields";
+
+  public static final int DEFAULT_MAX_SIZE = 1000;
+  public static final int DEFAULT_TTL = 300;
+  public static final int DEFAULT_TOP_TERMS = 100;
+
+  /** The searcher versions the requester already has the statistics of. */
+  public static final String VERSIONS_KEY = "solr.stats.versions";
+
+  /** The searcher version of the shard that returned local statistics. */
+  public static final String VERSION_KEY = "solr.stats.version";
+
+  /** The statistics of the most frequent terms of a shard. */
+  public static final String TOP_TERM_STATS_KEY = "solr.stats.topTerm";
+
+  // the query terms and fields the statistics are looked up for, in the request context
+  private static final String QUERY_TERMS = "solr.stats.queryTerms";
+  private static final String QUERY_FIELDS = "solr.stats.queryFields";
+
+  // the versions of the replicas of a shard that are remembered
+  private static final int MAX_VERSIONS_PER_SHARD = 4;
+
+  private int maxSize = DEFAULT_MAX_SIZE;
+  private long ttl = DEFAULT_TTL;
+  private int topTerms = DEFAULT_TOP_TERMS;
+  private final Set<String> topTermsFields = new HashSet<>();
+
+  // the version of the local searcher, i.e. of this instance
+  private final String version = UUID.randomUUID().toString();
+  private volatile Map<String, TermStats> localTopTerms;
+  private final AtomicBoolean collectingTopTerms = new AtomicBoolean();
+
+  // local stats obtained from shard servers
+  private final Map<String, ShardStats> perShardStats = new ConcurrentHashMap<>();
+
+  @Override
+  public void init(PluginInfo info) {
+    super.init(info);
+    if (info == null || info.attributes == null) {
+      return;
+    }
+    try {
+      String value = info.attributes.get(SIZE_PARAM);
+      if (value != null) {
+        maxSize = Integer.parseInt(value);
+      }
+      value = info.attributes.get(TTL_PARAM);
+      if (value != null) {
+        ttl = Long.parseLong(value);
+      }
+      value = info.attributes.get(TOP_TERMS_PARAM);
+      if (value != null) {
+        topTerms = Integer.parseInt(value);
+      }
+    } catch (NumberFormatException e) {
+      throw new SolrException(
+          ErrorCode.SERVER_ERROR, "Invalid statsCache configuration: " + info.attributes, e);
+    }
+    String fields = info.attributes.get(TOP_TERMS_FIELDS_PARAM);
+    if (fields != null) {
+      for (String field : fields.split(",")) {
+        if (!field.isBlank()) {
+          topTermsFields.add(field.trim());
+        }
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    perShardStats.clear();
+  }
+
+  @Override
+  protected ShardRequest doRetrieveStatsRequest(ResponseBuilder rb) {
+    List<String> shards = getShards(rb);
+    Set<Term> queryTerms = new HashSet<>();
+    Set<String> queryFields = new HashSet<>();
+    int missing;
+    try {
+      missing =
+          approxCheckMissingStats(
+              rb, new CachedStatsSource(shards, queryTerms, queryFields), t -> {}, f -> {});
+    } catch (IOException e) {
+      log.warn(
+          "Exception checking missing stats for query {}, forcing retrieving stats",
+          rb.getQuery(),
+          e);
+      return createStatsRequest(rb);
+    }
+    rb.req.getContext().put(QUERY_TERMS, queryTerms);
+    rb.req.getContext().put(QUERY_FIELDS, queryFields);
+    if (!queryTerms.isEmpty()) {
+      // so that the global stats of the query terms are sent to the shards
+      rb.req.getContext().put(TERMS_KEY, StatsUtil.termsToEncodedString(queryTerms));
+    }
+    if (missing > 0) {
+      return createStatsRequest(rb);
+    }
+    // since we already incremented the stats decrement it here
+    statsCacheMetrics.retrieveStats.decrement();
+    statsCacheMetrics.useCachedGlobalStats.increment();
+    return null;
+  }
+
+  private ShardRequest createStatsRequest(ResponseBuilder rb) {
+    ShardRequest sreq = super.doRetrieveStatsRequest(rb);
+    addVersions(rb, sreq);
+    return sreq;
+  }
+
+  private void addVersions(ResponseBuilder rb, ShardRequest sreq) {
+    List<String> versions = new ArrayList<>();
+    for (String shard : getShards(rb)) {
+      ShardStats stats = perShardStats.get(shard);
+      if (stats != null) {
+        versions.addAll(stats.versions.asMap().keySet());
+      }
+    }
+    if (!versions.isEmpty()) {
+      sreq.params.set(VERSIONS_KEY, StatsUtil.fieldsToString(versions));
+    }
+    if (!topTermsFields.isEmpty()) {
+      sreq.params.set(FIELDS_KEY, StatsUtil.fieldsToString(topTermsFields));
+    }
+  }
+
+  @Override
+  protected void doSendGlobalStats(ResponseBuilder rb, ShardRequest outgoing) {
+    super.doSendGlobalStats(rb, outgoing);
+    if ((outgoing.purpose & ShardRequest.PURPOSE_GET_TOP_IDS) != 0 && !rb.grouping()) {
+      // let the shards with a new searcher return their local stats with the top ids
+      outgoing.purpose |= ShardRequest.PURPOSE_GET_TERM_STATS;
+      addVersions(rb, outgoing);
+    }
+  }
+
+  @Override
+  protected void doReturnLocalStats(ResponseBuilder rb, SolrIndexSearcher searcher) {
+    SolrParams params = rb.req.getParams();
+    boolean known = StatsUtil.fieldsFromString(params.get(VERSIONS_KEY)).contains(version);
+    int purpose = params.getInt(ShardParams.SHARDS_PURPOSE, ShardRequest.PURPOSE_GET_TOP_IDS);
+    if (known && (purpose & ShardRequest.PURPOSE_GET_TOP_IDS) != 0) {
+      // the requester is up-to-date with this searcher
+      return;
+    }
+    super.doReturnLocalStats(rb, searcher);
+    if (topTermsFields.isEmpty()) {
+      rb.rsp.add(VERSION_KEY, version);
+      return;
+    }
+    Map<String, TermStats> topTermStats = getLocalTopTerms(searcher);
+    if (topTermStats == null) {
+      // without the version the requester asks again, until the top terms are collected
+      return;
+    }
+    rb.rsp.add(VERSION_KEY, version);
+    if (!known && !topTermStats.isEmpty()) {
+      rb.rsp.add(TOP_TERM_STATS_KEY, StatsUtil.termStatsMapToString(topTermStats));
+    }
+  }
+
+  /**
+   * Returns the top terms of the searcher, or null while they are collected in the background
+   * rather than in the request.
+   */
+  private Map<String, TermStats> getLocalTopTerms(SolrIndexSearcher searcher) {
+    Map<String, TermStats> result = localTopTerms;
+    if (result == null && collectingTopTerms.compareAndSet(false, true)) {
+      IndexReader reader = searcher.getIndexReader();
+      if (!reader.tryIncRef()) {
+        // the searcher is closed
+        return null;
+      }
+      try {
+        searcher.getCore().runAsync(() -> collectTopTermsAsync(reader));
+      } catch (RejectedExecutionException e) {
+        decRef(reader);
+      }
+    }
+    return result;
+  }
+
+  private void collectTopTermsAsync(IndexReader reader) {
+    try {
+      localTopTerms = collectTopTerms(reader);
+    } catch (IOException e) {
+      log.error("Error collecting the top terms of {}", topTermsFields, e);
+      localTopTerms = Collections.emptyMap();
+    } finally {
+      decRef(reader);
+    }
+  }
+
+  private static void decRef(IndexReader reader) {
+    try {
+      reader.decRef();
+    } catch (IOException e) {
+      log.warn("Error releasing the index reader", e);
+    }
+  }
+
+  private Map<String, TermStats> collectTopTerms(IndexReader reader) throws IOException {
+    Map<String, TermStats> result = new HashMap<>();
+    for (String field : topTermsFields) {
+      Terms terms = MultiTerms.getTerms(reader, field);
+      if (terms == null) {
+        continue;
+      }
+      PriorityQueue<TermStats> queue =
+          new PriorityQueue<>(topTerms + 1, (a, b) -> Long.compare(a.docFreq, b.docFreq));
+      TermsEnum termsEnum = terms.iterator();
+      BytesRef term;
+      while ((term = termsEnum.next()) != null) {
+        int docFreq = termsEnum.docFreq();
+        if (queue.size() == topTerms && queue.peek().docFreq >= docFreq) {
+          continue;
+        }
+        queue.add(
+            new TermStats(field + ":" + term.utf8ToString(), docFreq, termsEnum.totalTermFreq()));
+        if (queue.size() > topTerms) {
+          queue.poll();
+        }
+      }
+      for (TermStats termStats : queue) {
+        result.put(termStats.term, termStats);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  protected void doMergeToGlobalStats(SolrQueryRequest req, List<ShardResponse> responses) {
+    // shards that returned their local stats
+    List<String> shards = new ArrayList<>();
+    for (ShardResponse r : responses) {
+      SolrResponse res = r.getSolrResponse();
+      if (r.getException() != null || res == null || res.getException() != null) {
+        continue;
+      }
+      NamedList<Object> nl = res.getResponse();
+      String shardVersion = (String) nl.get(VERSION_KEY);
+      if (shardVersion == null) {
+        continue;
+      }
+      String shard = r.getShard();
+      if (nl.get(ShardParams.SHARD_NAME) != null) {
+        shard = (String) nl.get(ShardParams.SHARD_NAME);
+      }
+      shards.add(shard);
+      ShardStats stats = getShardStats(shard);
+      if (stats.versions.getIfPresent(shardVersion) == null) {
+        // a new searcher, the stats of its previous one are dropped before its own are added
+        stats.termStats.invalidateAll();
+        stats.colStats.invalidateAll();
+        stats.topTerms = Collections.emptyMap();
+      }
+      stats.versions.put(shardVersion, Boolean.TRUE);
+      String topTermStats = (String) nl.get(TOP_TERM_STATS_KEY);
+      if (topTermStats != null) {
+        Map<String, TermStats> topTermStatsMap = StatsUtil.termStatsMapFromString(topTermStats);
+        if (topTermStatsMap != null) {
+          stats.topTerms = limitTopTerms(topTermStatsMap);
+        }
+      }
+    }
+    super.doMergeToGlobalStats(req, responses);
+
+    // remember the query terms and fields the shards don't have, to not fetch them again
+    @SuppressWarnings({"unchecked"})
+    Set<Term> queryTerms =
+        (Set<Term>) req.getContext().getOrDefault(QUERY_TERMS, Collections.emptySet());
+    @SuppressWarnings({"unchecked"})
+    Set<String> queryFields =
+        (Set<String>) req.getContext().getOrDefault(QUERY_FIELDS, Collections.emptySet());
+    for (String shard : shards) {
+      ShardStats stats = getShardStats(shard);
+      for (Term t : queryTerms) {
+        String term = t.toString();
+        if (getPerShardTermStats(req, term, shard) == null) {
+          stats.termStats.put(term, new TermStats(term));
+        }
+      }
+      for (String field : queryFields) {
+        stats.colStats.asMap().putIfAbsent(field, new CollectionStats(field));
+      }
+    }
+  }
+
+  // the shards share this configuration, so they don't return more top terms than collected here
+  private Map<String, TermStats> limitTopTerms(Map<String, TermStats> topTermStats) {
+    int max = topTerms * topTermsFields.size();
+    if (topTermStats.size() <= max) {
+      return topTermStats;
+    }
+    Map<String, TermStats> result = new HashMap<>();
+    for (Map.Entry<String, TermStats> entry : topTermStats.entrySet()) {
+      if (result.size() == max) {
+        break;
+      }
+      result.put(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  private ShardStats getShardStats(String shard) {
+    return perShardStats.computeIfAbsent(shard, s -> new ShardStats());
+  }
+
+  private List<String> getShards(ResponseBuilder rb) {
+    String collectionName = rb.req.getCore().getCoreDescriptor().getCollectionName();
+    if (collectionName == null) {
+      collectionName = rb.req.getCore().getCoreDescriptor().getName();
+    }
+    List<String> shards = new ArrayList<>();
+    if (rb.shards == null) {
+      return shards;
+    }
+    for (String shardUrl : rb.shards) {
+      String shard = StatsUtil.shardUrlToShard(collectionName, shardUrl);
+      if (shard != null) {
+        shards.add(shard);
+      }
+    }
+    return shards;
+  }
+
+  @Override
+  protected void addToPerShardColStats(
+      SolrQueryRequest req, String shard, Map<String, CollectionStats> colStats) {
+    getShardStats(shard).colStats.putAll(colStats);
+  }
+
+  @Override
+  protected Map<String, CollectionStats> getPerShardColStats(ResponseBuilder rb, String shard) {
+    ShardStats stats = perShardStats.get(shard);
+    return stats != null ? stats.colStats.asMap() : null;
+  }
+
+  @Override
+  protected void addToPerShardTermStats(
+      SolrQueryRequest req, String shard, String termStatsString) {
+    Map<String, TermStats> termStats = StatsUtil.termStatsMapFromString(termStatsString);
+    if (termStats != null) {
+      getShardStats(shard).termStats.putAll(termStats);
+    }
+  }
+
+  @Override
+  protected TermStats getPerShardTermStats(SolrQueryRequest req, String t, String shard) {
+    ShardStats stats = perShardStats.get(shard);
+    if (stats == null) {
+      return null;
+    }
+    TermStats termStats = stats.termStats.getIfPresent(t);
+    return termStats != null ? termStats : stats.topTerms.get(t);
+  }
+
+  @Override
+  protected void printStats(SolrQueryRequest req) {
+    log.debug("perShardStats={}", perShardStats);
+  }
+
+  private class ShardStats {
+    // <term, termStats>, a zero docFreq denotes a term missing in the shard
+    final Cache<String, TermStats> termStats =
+        Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl, TimeUnit.SECONDS).build();
+    // <field, colStats>, a zero maxDoc denotes a field missing in the shard
+    final Cache<String, CollectionStats> colStats =
+        Caffeine.newBuilder().maximumSize(maxSize).build();
+    volatile Map<String, TermStats> topTerms = Collections.emptyMap();
+    // expire, so that the shards return their stats again even without a new searcher
+    final Cache<String, Boolean> versions =
+        Caffeine.newBuilder()
+            .maximumSize(MAX_VERSIONS_PER_SHARD)
+            .expireAfterWrite(ttl, TimeUnit.SECONDS)
+            .build();
+
+    @Override
+    public String toString() {
+      return "{colStats="
+          + colStats.asMap()
+          + ", termStats="
+          + termStats.asMap()
+          + ", topTerms="
+          + topTerms.size()
+          + "}";
+    }
+  }
+
+  /**
+   * Checks whether all the shards have cached stats for the query terms and fields, and collects
+   * them.
+   */
+  private class CachedStatsSource extends StatsSource {
+    private final List<String> shards;
+    private final Set<Term> queryTerms;
+    private final Set<String> queryFields;
+
+    CachedStatsSource(List<String> shards, Set<Term> queryTerms, Set<String> queryFields) {
+      this.shards = shards;
+      this.queryTerms = queryTerms;
+      this.queryFields = queryFields;
+    }
+
+    @Override
+    public TermStatistics termStatistics(
+        SolrIndexSearcher localSearcher, Term term, int docFreq, long totalTermFreq)
+        throws IOException {
+      queryTerms.add(term);
+      String t = term.toString();
+      for (String shard : shards) {
+        if (getPerShardTermStats(null, t, shard) == null) {
+          return null;
+        }
+      }
+      return new TermStatistics(term.bytes(), docFreq, totalTermFreq);
+    }
+
+    @Override
+    public CollectionStatistics collectionStatistics(SolrIndexSearcher localSearcher, String field)
+        throws IOException {
+      queryFields.add(field);
+      CollectionStats global = new CollectionStats(field);
+      for (String shard : shards) {
+        ShardStats stats = perShardStats.get(shard);
+        CollectionStats colStats = stats != null ? stats.colStats.getIfPresent(field) : null;
+        if (colStats == null) {
+          return null;
+        }
+        global.add(colStats);
+      }
+      return global.toCollectionStatistics();
+    }
+  }
+}
@@ -203,6 +203,19 @@ public class AddUpdateCommand extends UpdateCommand {
    * in the SolrInputDocument, or future calls to this method.
    */
   Iterable<Document> makeLuceneDocs() {
+    return makeLuceneDocs(null);
+  }
+
+  /**
+   * @param reusableFields if not null and created for the schema of the request, a document
+   *     without children is built with {@link DocumentBuilder#toReusableDocument}, so it must be
+   *     indexed before <code>reusableFields</code> is used for another one.
+   * @see #makeLuceneDocs()
+   */
+  Iterable<Document> makeLuceneDocs(DocumentBuilder.ReusableFields reusableFields) {
+    if (reusableFields != null && reusableFields.getSchema() != req.getSchema()) {
+      reusableFields = null;
+    }
     // perhaps this should move to UpdateHandler or DocumentBuilder?
     assert !isInPlaceUpdate() : "We don't expect this to happen."; // but should "work"?
     if (!req.getSchema().isUsableForChildDocs()) {
@@ -210,7 +223,10 @@ public class AddUpdateCommand extends UpdateCommand {
       final boolean forInPlaceUpdate = false;
       final boolean ignoreNestedDocs = false; // throw an exception if found
       Document doc =
-          DocumentBuilder.toDocument(solrDoc, req.getSchema(), forInPlaceUpdate, ignoreNestedDocs);
+          reusableFields != null
+              ? DocumentBuilder.toReusableDocument(solrDoc, reusableFields, ignoreNestedDocs)
+              : DocumentBuilder.toDocument(
+                  solrDoc, req.getSchema(), forInPlaceUpdate, ignoreNestedDocs);
       return Collections.singleton(doc);
     }
 
@@ -229,6 +245,11 @@ public class AddUpdateCommand extends UpdateCommand {
       // instead.
     }
 
+    if (reusableFields != null && all.size() == 1) {
+      return Collections.singleton(
+          DocumentBuilder.toReusableDocument(solrDoc, reusableFields, true));
+    }
+
     return () ->
         all.stream().map(sdoc -> DocumentBuilder.toDocument(sdoc, req.getSchema())).iterator();
   }
@@ -0,0 +1,424 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import static org.apache.solr.update.processor.DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM;
+
+import java.lang.invoke.MethodHandles;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.client.solrj.util.AsyncListener;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.metrics.SolrMetricsContext;
+import org.apache.solr.update.SolrCmdDistributor.Req;
+import org.apache.solr.update.SolrCmdDistributor.SolrError;
+import org.apache.solr.update.processor.DistributedUpdateProcessor.DistribPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces document adds that many concurrent {@link SolrCmdDistributor}s forward from a leader to
+ * the same replica into larger javabin batches.
+ *
+ * <p>Each destination (replica url, request params and user principal) has a queue of pending
+ * adds and at most <code>maxInFlight</code> batches on the wire at a time. While a batch is in
+ * flight new adds accumulate in the queue, and they are sent together once a window frees up. The
+ * batches are sent asynchronously, so with HTTP/2 the in-flight batches to a node are multiplexed
+ * over the same connection.
+ *
+ * <p>Every {@link SolrCmdDistributor} registers its adds with a {@link Tracker} and waits for it
+ * before acknowledging its own client request, so a request is only acknowledged once every batch
+ * containing one of its adds has been acknowledged by the replica. Adds still queued when their
+ * request times out are taken out of the queue, so the retry of the request is the only copy sent.
+ *
+ * <p>The next batch of a destination is built and sent on the <code>executor</code> rather than
+ * from the response callback of the previous one, since sending may block on the client.
+ *
+ * @lucene.experimental
+ */
+public class CoalescingUpdateForwarder {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final Http2SolrClient client;
+  private final Executor executor;
+  private final int maxBatchSize;
+  private final int maxInFlight;
+  private final long timeoutMs;
+  private final Map<DestinationKey, Destination> destinations = new ConcurrentHashMap<>();
+
+  private final LongAdder batchesSent = new LongAdder();
+  private final LongAdder docsSent = new LongAdder();
+
+  /**
+   * @param executor runs the sending of the next batch once a batch was acknowledged
+   * @param timeoutMs how long a {@link SolrCmdDistributor} waits for the batches holding its adds
+   *     before failing the adds that were not acknowledged yet
+   */
+  public CoalescingUpdateForwarder(
+      Http2SolrClient client,
+      Executor executor,
+      int maxBatchSize,
+      int maxInFlight,
+      long timeoutMs) {
+    if (maxBatchSize < 1 || maxInFlight < 1 || timeoutMs < 1) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "maxBatchSize, maxInFlight and timeoutMs must be positive, got "
+              + maxBatchSize
+              + ", "
+              + maxInFlight
+              + " and "
+              + timeoutMs);
+    }
+    this.client = client;
+    this.executor = executor;
+    this.maxBatchSize = maxBatchSize;
+    this.maxInFlight = maxInFlight;
+    this.timeoutMs = timeoutMs;
+  }
+
+  /**
+   * Returns true if the request can be coalesced with requests of other clients. Only plain
+   * document adds from a leader to its replicas qualify; deletes, commits and in-place updates keep
+   * their own request.
+   */
+  public static boolean canCoalesce(Req req) {
+    if (req.synchronous
+        || !(req.cmd instanceof AddUpdateCommand)
+        || !DistribPhase.FROMLEADER
+            .toString()
+            .equals(req.uReq.getParams().get(DISTRIB_UPDATE_PARAM))) {
+      return false;
+    }
+    AddUpdateCommand cmd = (AddUpdateCommand) req.cmd;
+    UpdateRequest uReq = req.uReq;
+    return !cmd.isInPlaceUpdate()
+        && uReq.getDeleteByIdMap() == null
+        && uReq.getDeleteQuery() == null
+        && uReq.getDocumentsMap() != null
+        && uReq.getDocumentsMap().size() == 1;
+  }
+
+  /** Queues the add of <code>req</code>, it will be sent with the next batch to its replica. */
+  public void submit(Req req, Tracker tracker) {
+    SolrParams params = req.uReq.getParams();
+    Principal principal = req.uReq.getUserPrincipal();
+    DestinationKey key = new DestinationKey(req.node.getUrl(), params, principal);
+    Pending pending = new Pending(req, tracker);
+    tracker.register(pending);
+    Destination destination;
+    do {
+      // a destination retired since the lookup takes no adds, the next lookup creates a new one
+      destination =
+          destinations.computeIfAbsent(
+              key,
+              k ->
+                  new Destination(
+                      k, req.node.getUrl(), new ModifiableSolrParams(params), principal));
+    } while (!destination.add(pending));
+  }
+
+  public void initializeMetrics(SolrMetricsContext solrMetricsContext, String scope) {
+    solrMetricsContext.gauge(() -> batchesSent.sum(), true, "batches", scope, "coalescing");
+    solrMetricsContext.gauge(() -> docsSent.sum(), true, "docs", scope, "coalescing");
+    solrMetricsContext.gauge(
+        () -> {
+          long batches = batchesSent.sum();
+          return batches == 0 ? 0.0d : (double) docsSent.sum() / batches;
+        },
+        true,
+        "avgBatchSize",
+        scope,
+        "coalescing");
+  }
+
+  public long getBatchesSent() {
+    return batchesSent.sum();
+  }
+
+  public long getDocsSent() {
+    return docsSent.sum();
+  }
+
+  /** How long a {@link SolrCmdDistributor} waits for its adds, in milliseconds. */
+  public long getTimeoutMs() {
+    return timeoutMs;
+  }
+
+  /**
+   * Tracks the adds one {@link SolrCmdDistributor} handed to the forwarder, and collects the errors
+   * reported for them.
+   */
+  public static class Tracker {
+    private final List<SolrError> errors;
+    private final Set<Pending> outstanding = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public Tracker(List<SolrError> errors) {
+      this.errors = errors;
+    }
+
+    synchronized void register(Pending pending) {
+      outstanding.add(pending);
+    }
+
+    synchronized void complete(Pending pending, SolrError error) {
+      // an add that timed out has already been reported as failed
+      if (outstanding.remove(pending)) {
+        if (error != null) {
+          errors.add(error);
+        }
+        if (outstanding.isEmpty()) {
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Blocks until every registered add has been acknowledged or has failed, or until the timeout
+     * elapsed, in which case the adds that are still outstanding are reported as failed. Those not
+     * sent yet are removed from their queue, so that only a retry sends them; those already in
+     * flight cannot be called back.
+     */
+    public synchronized void awaitCompletion(long timeoutMs) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      while (!outstanding.isEmpty()) {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMs <= 0) {
+          for (Pending pending : outstanding) {
+            pending.cancel();
+            SolrError error = new SolrError();
+            error.e =
+                new SolrException(
+                    SolrException.ErrorCode.SERVER_ERROR,
+                    "Timed out after " + timeoutMs + " ms waiting for a coalesced update");
+            error.statusCode = SolrException.ErrorCode.SERVER_ERROR.code;
+            error.req = pending.req;
+            if (!pending.req.shouldRetry(error)) {
+              pending.req.trackRequestResult(null, false);
+            }
+            errors.add(error);
+          }
+          outstanding.clear();
+          return;
+        }
+        wait(remainingMs);
+      }
+    }
+  }
+
+  private static class Pending {
+    final Req req;
+    final Tracker tracker;
+    // the destination whose queue took the add
+    volatile Destination destination;
+
+    Pending(Req req, Tracker tracker) {
+      this.req = req;
+      this.tracker = tracker;
+    }
+
+    void cancel() {
+      Destination destination = this.destination;
+      if (destination != null) {
+        destination.remove(this);
+      }
+    }
+  }
+
+  /** Adds to the same replica, with the same params and principal, can share a batch. */
+  private static class DestinationKey {
+    private final String url;
+    private final Map<String, List<String>> params = new TreeMap<>();
+    private final String principal;
+
+    DestinationKey(String url, SolrParams params, Principal principal) {
+      this.url = url;
+      for (Iterator<String> it = params.getParameterNamesIterator(); it.hasNext(); ) {
+        String name = it.next();
+        this.params.put(name, Arrays.asList(params.getParams(name)));
+      }
+      this.principal = principal == null ? null : principal.getName();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof DestinationKey)) return false;
+      DestinationKey that = (DestinationKey) o;
+      return url.equals(that.url)
+          && params.equals(that.params)
+          && Objects.equals(principal, that.principal);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(url, params, principal);
+    }
+  }
+
+  private class Destination {
+    private final DestinationKey key;
+    private final String url;
+    private final ModifiableSolrParams params;
+    private final Principal principal;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private int inFlight;
+    // set once the destination is removed from the map, it takes no more adds
+    private boolean retired;
+
+    Destination(
+        DestinationKey key, String url, ModifiableSolrParams params, Principal principal) {
+      this.key = key;
+      this.url = url;
+      this.params = params;
+      this.principal = principal;
+    }
+
+    /** Returns false if the destination was retired and the add has to go to a new one. */
+    boolean add(Pending pending) {
+      boolean send;
+      synchronized (this) {
+        if (retired) {
+          return false;
+        }
+        queue.add(pending);
+        pending.destination = this;
+        send = inFlight < maxInFlight;
+        if (send) {
+          inFlight++;
+        }
+      }
+      if (send) {
+        sendNextBatch();
+      }
+      return true;
+    }
+
+    /** Takes an add out of the queue if it was not sent yet. */
+    synchronized void remove(Pending pending) {
+      queue.remove(pending);
+    }
+
+    /** Sends the next batch on the executor, off the response callback of the previous one. */
+    private void sendNextBatchAsync() {
+      try {
+        executor.execute(this::sendNextBatch);
+      } catch (RejectedExecutionException e) {
+        // shutting down, the client fails the batch right away
+        sendNextBatch();
+      }
+    }
+
+    /** Sends whatever is queued, or releases the in-flight slot if the queue is empty. */
+    private void sendNextBatch() {
+      List<Pending> batch;
+      synchronized (this) {
+        if (queue.isEmpty()) {
+          if (--inFlight == 0) {
+            // retired under the same lock as add, so no add is left behind in the queue
+            retired = true;
+            destinations.remove(key, this);
+          }
+          return;
+        }
+        batch = new ArrayList<>(Math.min(queue.size(), maxBatchSize));
+        while (!queue.isEmpty() && batch.size() < maxBatchSize) {
+          batch.add(queue.poll());
+        }
+      }
+
+      UpdateRequest uReq = new UpdateRequest();
+      uReq.setParams(new ModifiableSolrParams(params));
+      uReq.setUserPrincipal(principal);
+      uReq.setBasePath(url);
+      for (Pending pending : batch) {
+        for (Map.Entry<SolrInputDocument, Map<String, Object>> entry :
+            pending.req.uReq.getDocumentsMap().entrySet()) {
+          Map<String, Object> docParams = entry.getValue();
+          uReq.add(
+              entry.getKey(),
+              (Integer) docParams.get(UpdateRequest.COMMIT_WITHIN),
+              (Boolean) docParams.get(UpdateRequest.OVERWRITE));
+        }
+      }
+      batchesSent.increment();
+      docsSent.add(batch.size());
+
+      client.asyncRequest(
+          uReq,
+          null,
+          new AsyncListener<>() {
+            @Override
+            public void onSuccess(NamedList<Object> rsp) {
+              for (Pending pending : batch) {
+                pending.req.trackRequestResult(rsp, true);
+                pending.tracker.complete(pending, null);
+              }
+              sendNextBatchAsync();
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+              log.error("Error sending a batch of {} updates to {}", batch.size(), url, throwable);
+              for (Pending pending : batch) {
+                SolrError error = new SolrError();
+                error.e =
+                    throwable instanceof Exception
+                        ? (Exception) throwable
+                        : new SolrException(SolrException.ErrorCode.SERVER_ERROR, throwable);
+                if (throwable instanceof SolrException) {
+                  error.statusCode = ((SolrException) throwable).code();
+                }
+                error.req = pending.req;
+                if (!pending.req.shouldRetry(error)) {
+                  // only track the error if we are not retrying the request
+                  pending.req.trackRequestResult(null, false);
+                }
+                pending.tracker.complete(pending, error);
+              }
+              sendNextBatchAsync();
+            }
+          });
+    }
+
+    @Override
+    public String toString() {
+      return "Destination{" + url + ", " + params + ", " + Objects.toString(principal) + "}";
+    }
+  }
+}
@@ -22,6 +22,8 @@ import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.LongAdder;
@@ -105,6 +107,15 @@ public class DirectUpdateHandler2 extends UpdateHandler
   protected final CommitTracker softCommitTracker;
 
   protected boolean commitWithinSoftCommit;
+
+  /**
+   * Recycled Lucene fields of the indexing threads, see {@link DocumentBuilder}, or null unless
+   * the <code>solr.docBuilder.reuseFields</code> system property is true. Each entry is used by one
+   * thread at a time and only kept for the latest schema.
+   */
+  private final Queue<DocumentBuilder.ReusableFields> reusableFields =
+      Boolean.getBoolean("solr.docBuilder.reuseFields") ? new ConcurrentLinkedQueue<>() : null;
+
   /**
    * package access for testing
    *
@@ -405,7 +416,12 @@ public class DirectUpdateHandler2 extends UpdateHandler
     RefCounted<IndexWriter> iw = solrCoreState.getIndexWriter(core);
     try {
       IndexWriter writer = iw.get();
-      writer.addDocuments(cmd.makeLuceneDocs());
+      DocumentBuilder.ReusableFields reusable = acquireReusableFields(cmd);
+      try {
+        writer.addDocuments(cmd.makeLuceneDocs(reusable));
+      } finally {
+        releaseReusableFields(reusable);
+      }
       if (ulog != null) ulog.add(cmd);
 
     } finally {
@@ -413,6 +429,26 @@ public class DirectUpdateHandler2 extends UpdateHandler
     }
   }
 
+  private DocumentBuilder.ReusableFields acquireReusableFields(AddUpdateCommand cmd) {
+    if (reusableFields == null) {
+      return null;
+    }
+    IndexSchema schema = cmd.getReq().getSchema();
+    DocumentBuilder.ReusableFields reusable;
+    do {
+      // the fields of an older schema are dropped
+      reusable = reusableFields.poll();
+    } while (reusable != null && reusable.getSchema() != schema);
+    return reusable == null ? new DocumentBuilder.ReusableFields(schema) : reusable;
+  }
+
+  private void releaseReusableFields(DocumentBuilder.ReusableFields reusable) {
+    if (reusable != null && reusable.getSchema() == core.getLatestSchema()) {
+      reusable.clear();
+      reusableFields.offer(reusable);
+    }
+  }
+
   private void doNormalUpdate(AddUpdateCommand cmd) throws IOException {
     RefCounted<IndexWriter> iw = solrCoreState.getIndexWriter(core);
     try {
@@ -896,6 +932,9 @@ public class DirectUpdateHandler2 extends UpdateHandler
     softCommitTracker.close();
 
     numDocsPending.reset();
+    if (reusableFields != null) {
+      reusableFields.clear();
+    }
     try {
       super.close();
     } catch (Exception e) {
@@ -1054,12 +1093,17 @@ public class DirectUpdateHandler2 extends UpdateHandler
 
     } else { // more normal path
 
-      Iterable<Document> nestedDocs = cmd.makeLuceneDocs();
       Term idTerm = getIdTerm(cmd.getIndexedId());
       Term updateTerm = hasUpdateTerm ? cmd.updateTerm : idTerm;
 
-      log.debug("updateDocuments({})", cmd);
-      writer.updateDocuments(updateTerm, nestedDocs);
+      DocumentBuilder.ReusableFields reusable = acquireReusableFields(cmd);
+      try {
+        Iterable<Document> nestedDocs = cmd.makeLuceneDocs(reusable);
+        log.debug("updateDocuments({})", cmd);
+        writer.updateDocuments(updateTerm, nestedDocs);
+      } finally {
+        releaseReusableFields(reusable);
+      }
 
       // If hasUpdateTerm, then delete any existing documents with the same ID other than the one
       // added above (used in near-duplicate replacement)
@@ -17,23 +17,43 @@
 package org.apache.solr.update;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FloatPoint;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.NumericUtils;
 import org.apache.solr.common.SolrDocumentBase;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.util.ByteArrayUtf8CharSequence;
 import org.apache.solr.schema.CopyField;
 import org.apache.solr.schema.DenseVectorField;
+import org.apache.solr.schema.DoublePointField;
 import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.FloatPointField;
 import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.IntPointField;
+import org.apache.solr.schema.LongPointField;
+import org.apache.solr.schema.PointField;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
 
 /** Builds a Lucene {@link Document} from a {@link SolrInputDocument}. */
 public class DocumentBuilder {
@@ -55,7 +75,11 @@ public class DocumentBuilder {
    *     of non-updatable fields (non NDV) in such a document.
    */
   private static void addField(
-      Document doc, SchemaField field, Object val, boolean forInPlaceUpdate) {
+      Document doc,
+      SchemaField field,
+      Object val,
+      boolean forInPlaceUpdate,
+      ReusableFields reusableFields) {
     if (val instanceof IndexableField) {
       if (forInPlaceUpdate) {
         assert val instanceof NumericDocValuesField
@@ -64,6 +88,9 @@ public class DocumentBuilder {
       doc.add((IndexableField) val);
       return;
     }
+    if (reusableFields != null && reusableFields.addFields(doc, field, val)) {
+      return;
+    }
     for (IndexableField f : field.getType().createFields(field, val)) {
       if (f != null) { // null fields are not added
         // HACK: workaround for SOLR-9809
@@ -125,6 +152,27 @@ public class DocumentBuilder {
       IndexSchema schema,
       boolean forInPlaceUpdate,
       boolean ignoreNestedDocs) {
+    return toDocument(doc, schema, forInPlaceUpdate, ignoreNestedDocs, null);
+  }
+
+  /**
+   * Like {@link #toDocument(SolrInputDocument, IndexSchema, boolean, boolean)} for a full update,
+   * but recycles the Lucene {@link Document} and the field instances of common field types held by
+   * <code>reusableFields</code> from one call to the next. The returned document is only valid
+   * until the next call with the same <code>reusableFields</code>, so it must be handed to the
+   * <code>IndexWriter</code> right away.
+   */
+  static Document toReusableDocument(
+      SolrInputDocument doc, ReusableFields reusableFields, boolean ignoreNestedDocs) {
+    return toDocument(doc, reusableFields.schema, false, ignoreNestedDocs, reusableFields);
+  }
+
+  private static Document toDocument(
+      SolrInputDocument doc,
+      IndexSchema schema,
+      boolean forInPlaceUpdate,
+      boolean ignoreNestedDocs,
+      ReusableFields reusableFields) {
     if (!ignoreNestedDocs && doc.hasChildDocuments()) {
       throw unexpectedNestedDocException(schema, forInPlaceUpdate);
     }
@@ -132,7 +180,7 @@ public class DocumentBuilder {
     final SchemaField uniqueKeyField = schema.getUniqueKeyField();
     final String uniqueKeyFieldName = null == uniqueKeyField ? null : uniqueKeyField.getName();
 
-    Document out = new Document();
+    Document out = reusableFields == null ? new Document() : reusableFields.newDocument();
     Set<String> usedFields = new HashSet<>();
 
     // Load fields from SolrDocument to Document
@@ -190,7 +238,9 @@ public class DocumentBuilder {
           Object vectorValue = field.getValue();
           if (vectorValue != null) {
             hasField = true;
-            used = addOriginalField(vectorValue, sfield, forInPlaceUpdate, out, usedFields);
+            used =
+                addOriginalField(
+                    vectorValue, sfield, forInPlaceUpdate, out, usedFields, reusableFields);
 
             // Check if we should copy this field value to any other fields.
             // This could happen whether it is explicit or not.
@@ -204,7 +254,8 @@ public class DocumentBuilder {
                       forInPlaceUpdate,
                       uniqueKeyFieldName,
                       out,
-                      usedFields);
+                      usedFields,
+                      reusableFields);
             }
           }
         } else {
@@ -216,7 +267,8 @@ public class DocumentBuilder {
             }
             hasField = true;
             if (sfield != null) {
-              used = addOriginalField(v, sfield, forInPlaceUpdate, out, usedFields);
+              used =
+                  addOriginalField(v, sfield, forInPlaceUpdate, out, usedFields, reusableFields);
             }
 
             // Check if we should copy this field value to any other fields.
@@ -231,7 +283,8 @@ public class DocumentBuilder {
                       forInPlaceUpdate,
                       uniqueKeyFieldName,
                       out,
-                      usedFields);
+                      usedFields,
+                      reusableFields);
             }
           }
         }
@@ -279,7 +332,7 @@ public class DocumentBuilder {
       for (SchemaField field : schema.getRequiredFields()) {
         if (out.getField(field.getName()) == null) {
           if (field.getDefaultValue() != null) {
-            addField(out, field, field.getDefaultValue(), false);
+            addField(out, field, field.getDefaultValue(), false, reusableFields);
           } else {
             String msg = getID(doc, schema) + "missing required field: " + field.getName();
             throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, msg);
@@ -300,8 +353,9 @@ public class DocumentBuilder {
       SchemaField sfield,
       boolean forInPlaceUpdate,
       Document out,
-      Set<String> usedFields) {
-    addField(out, sfield, originalFieldValue, forInPlaceUpdate);
+      Set<String> usedFields,
+      ReusableFields reusableFields) {
+    addField(out, sfield, originalFieldValue, forInPlaceUpdate, reusableFields);
     // record the field as having a value
     usedFields.add(sfield.getName());
     return true;
@@ -315,7 +369,8 @@ public class DocumentBuilder {
       boolean forInPlaceUpdate,
       String uniqueKeyFieldName,
       Document out,
-      Set<String> usedFields) {
+      Set<String> usedFields,
+      ReusableFields reusableFields) {
     boolean used = false;
     for (CopyField cf : copyFields) {
       SchemaField destinationField = cf.getDestination();
@@ -355,7 +410,8 @@ public class DocumentBuilder {
           out,
           destinationField,
           fieldValue,
-          destinationField.getName().equals(uniqueKeyFieldName) ? false : forInPlaceUpdate);
+          destinationField.getName().equals(uniqueKeyFieldName) ? false : forInPlaceUpdate,
+          reusableFields);
       // record the field as having a originalFieldValue
       usedFields.add(destinationField.getName());
       used = true;
@@ -435,4 +491,250 @@ public class DocumentBuilder {
       }
     }
   }
+
+  /**
+   * The Lucene document and field instances recycled from one document to the next, by one thread
+   * at a time. Only the fields of {@link StrField} and of the numeric {@link PointField}s are
+   * recycled; their values are updated in place with the same conversions as their {@link
+   * FieldType#createFields(SchemaField, Object)}, which creates them the first time.
+   */
+  static final class ReusableFields {
+    // bounds what is kept around for large multi-valued fields
+    private static final int MAX_VALUES_PER_FIELD = 16;
+
+    private static final Set<Class<?>> RECYCLABLE_FIELDS =
+        Set.of(
+            Field.class,
+            StoredField.class,
+            SortedDocValuesField.class,
+            SortedSetDocValuesField.class,
+            NumericDocValuesField.class,
+            SortedNumericDocValuesField.class,
+            IntPoint.class,
+            LongPoint.class,
+            FloatPoint.class,
+            DoublePoint.class);
+
+    final IndexSchema schema;
+    private final Document document = new Document();
+    private final Map<String, FieldSlots> slotsByField = new HashMap<>();
+    private int generation;
+
+    ReusableFields(IndexSchema schema) {
+      this.schema = schema;
+    }
+
+    /** The schema the fields were created for, they can not be used with another one. */
+    IndexSchema getSchema() {
+      return schema;
+    }
+
+    Document newDocument() {
+      generation++;
+      document.clear();
+      return document;
+    }
+
+    /** Drops the references to the values of the last document, until the next one is built. */
+    void clear() {
+      document.clear();
+      for (FieldSlots slots : slotsByField.values()) {
+        for (RecycledFields recycled : slots.recycled) {
+          recycled.clear();
+        }
+      }
+    }
+
+    /** Adds the fields for <code>val</code> to the document, returns false if not recyclable. */
+    boolean addFields(Document doc, SchemaField sf, Object val) {
+      if (!isRecyclable(sf.getType())) {
+        return false;
+      }
+      FieldSlots slots = slotsByField.computeIfAbsent(sf.getName(), k -> new FieldSlots());
+      if (slots.generation != generation) {
+        slots.generation = generation;
+        slots.used = 0;
+      }
+      if (slots.used < slots.recycled.size()) {
+        RecycledFields recycled = slots.recycled.get(slots.used);
+        if (recycled.setValue(sf, val)) {
+          slots.used++;
+          for (IndexableField f : recycled.fields) {
+            doc.add(f);
+          }
+          return true;
+        }
+        // a value that createFields turns into other fields, e.g. no stored and indexed field
+        return false;
+      }
+
+      List<IndexableField> created = sf.getType().createFields(sf, val);
+      boolean recyclable = slots.recycled.size() < MAX_VALUES_PER_FIELD;
+      for (IndexableField f : created) {
+        if (f == null) {
+          recyclable = false;
+        } else {
+          recyclable &= RECYCLABLE_FIELDS.contains(f.getClass());
+          doc.add(f);
+        }
+      }
+      if (recyclable) {
+        slots.recycled.add(new RecycledFields(created.toArray(new IndexableField[0])));
+        slots.used++;
+      }
+      return true;
+    }
+
+    private static boolean isRecyclable(FieldType type) {
+      Class<?> typeClass = type.getClass();
+      return typeClass == StrField.class
+          || typeClass == IntPointField.class
+          || typeClass == LongPointField.class
+          || typeClass == FloatPointField.class
+          || typeClass == DoublePointField.class;
+    }
+  }
+
+  /** The recycled instances of one field, one entry per value in the current document. */
+  private static final class FieldSlots {
+    final List<RecycledFields> recycled = new ArrayList<>();
+    int generation;
+    int used;
+  }
+
+  /** The Lucene fields created for one value of a field. */
+  private static final class RecycledFields {
+    final IndexableField[] fields;
+    private final BytesRefBuilder bytes = new BytesRefBuilder();
+    private final BytesRef utf8 = new BytesRef();
+
+    RecycledFields(IndexableField[] fields) {
+      this.fields = fields;
+    }
+
+    void clear() {
+      // the bytes of a ByteArrayUtf8CharSequence belong to the request that sent them
+      utf8.bytes = BytesRef.EMPTY_BYTES;
+      utf8.offset = 0;
+      utf8.length = 0;
+    }
+
+    /** Returns false if createFields would not create fields of the same shape for the value. */
+    boolean setValue(SchemaField sf, Object val) {
+      if (sf.getType() instanceof StrField) {
+        return setStringValue(sf, val);
+      }
+      setNumericValue(toPointValue(sf, val));
+      return true;
+    }
+
+    private boolean setStringValue(SchemaField sf, Object val) {
+      String str = null;
+      for (IndexableField f : fields) {
+        if (f instanceof SortedDocValuesField || f instanceof SortedSetDocValuesField) {
+          ((Field) f).setBytesValue(toBytesRef(val));
+        } else {
+          if (str == null) {
+            str = toInternal(sf, val);
+            if (str == null) {
+              return false;
+            }
+          }
+          ((Field) f).setStringValue(str);
+        }
+      }
+      return true;
+    }
+
+    /** The conversion of {@link FieldType#createField(SchemaField, Object)}. */
+    private static String toInternal(SchemaField sf, Object val) {
+      try {
+        return sf.getType().toInternal(val.toString());
+      } catch (RuntimeException e) {
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR,
+            "Error while creating field '" + sf + "' from value '" + val + "'",
+            e);
+      }
+    }
+
+    /** Like {@link StrField#getBytesRef(Object)}, without allocating. */
+    private BytesRef toBytesRef(Object val) {
+      if (val instanceof ByteArrayUtf8CharSequence) {
+        ByteArrayUtf8CharSequence chars = (ByteArrayUtf8CharSequence) val;
+        utf8.bytes = chars.getBuf();
+        utf8.offset = chars.offset();
+        utf8.length = chars.size();
+        return utf8;
+      }
+      bytes.copyChars(val.toString());
+      return bytes.get();
+    }
+
+    private void setNumericValue(Number value) {
+      for (IndexableField f : fields) {
+        if (f instanceof IntPoint) {
+          ((IntPoint) f).setIntValue(value.intValue());
+        } else if (f instanceof LongPoint) {
+          ((LongPoint) f).setLongValue(value.longValue());
+        } else if (f instanceof FloatPoint) {
+          ((FloatPoint) f).setFloatValue(value.floatValue());
+        } else if (f instanceof DoublePoint) {
+          ((DoublePoint) f).setDoubleValue(value.doubleValue());
+        } else if (f instanceof NumericDocValuesField) {
+          ((Field) f).setLongValue(toBits(value));
+        } else if (f instanceof SortedNumericDocValuesField) {
+          ((Field) f).setLongValue(toSortableBits(value));
+        } else if (value instanceof Integer) {
+          ((Field) f).setIntValue(value.intValue());
+        } else if (value instanceof Long) {
+          ((Field) f).setLongValue(value.longValue());
+        } else if (value instanceof Float) {
+          ((Field) f).setFloatValue(value.floatValue());
+        } else {
+          ((Field) f).setDoubleValue(value.doubleValue());
+        }
+      }
+    }
+
+    /**
+     * Indexed point fields parse strings like their <code>createField</code>, which is stricter
+     * than <code>toNativeType</code>.
+     */
+    private static Number toPointValue(SchemaField sf, Object val) {
+      PointField type = (PointField) sf.getType();
+      if (sf.indexed() && !(val instanceof Number)) {
+        switch (type.getNumberType()) {
+          case INTEGER:
+            return Integer.parseInt(val.toString());
+          case LONG:
+            return Long.parseLong(val.toString());
+          case FLOAT:
+            return Float.parseFloat(val.toString());
+          default:
+            return Double.parseDouble(val.toString());
+        }
+      }
+      return (Number) type.toNativeType(val);
+    }
+
+    // see PointField.createFields
+    private static long toBits(Number value) {
+      if (value instanceof Float) {
+        return Float.floatToIntBits(value.floatValue());
+      } else if (value instanceof Double) {
+        return Double.doubleToLongBits(value.doubleValue());
+      }
+      return value.longValue();
+    }
+
+    private static long toSortableBits(Number value) {
+      if (value instanceof Float) {
+        return NumericUtils.floatToSortableInt(value.floatValue());
+      } else if (value instanceof Double) {
+        return NumericUtils.doubleToSortableLong(value.doubleValue());
+      }
+      return value.longValue();
+    }
+  }
 }
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.io.IOException;
+
+/**
+ * A {@link VersionBucket} using the intrinsic object monitor that records the time spent waiting
+ * for and holding the monitor into a {@link VersionBucketStats}. A monitor cannot be tried without
+ * blocking, so a wait counts as contended when the monitor was held by another thread when the
+ * wait started. Only used when <code>versionBucketLockMetrics</code> is enabled, the default
+ * {@link VersionBucket} records nothing.
+ *
+ * @lucene.internal
+ */
+public class MonitoredVersionBucket extends VersionBucket {
+
+  private final VersionBucketStats stats;
+  // how many times the holder of the monitor entered it, only written by that thread and read by
+  // the threads about to wait for it
+  private volatile int holdCount;
+
+  public MonitoredVersionBucket(VersionBucketStats stats) {
+    this.stats = stats;
+  }
+
+  @Override
+  public <T, R> R runWithLock(int lockTimeoutMs, CheckedFunction<T, R> function)
+      throws IOException {
+    if (Thread.holdsLock(this)) {
+      // reentrant: the wait and hold are those of the outermost call
+      holdCount++;
+      try {
+        return function.apply();
+      } finally {
+        holdCount--;
+      }
+    }
+    boolean contended = holdCount > 0;
+    long start = System.nanoTime();
+    synchronized (this) {
+      long lockedAt = System.nanoTime();
+      stats.recordWait(lockedAt - start, contended);
+      holdCount = 1;
+      try {
+        return function.apply();
+      } finally {
+        holdCount = 0;
+        stats.recordHold(System.nanoTime() - lockedAt);
+      }
+    }
+  }
+
+  @Override
+  public void awaitNanos(long nanosTimeout) {
+    // the monitor is fully released while waiting, whatever the number of times it was entered
+    int count = holdCount;
+    holdCount = 0;
+    try {
+      super.awaitNanos(nanosTimeout);
+    } finally {
+      holdCount = count;
+    }
+  }
+}
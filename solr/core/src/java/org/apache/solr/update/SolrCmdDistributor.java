@@ -68,10 +68,16 @@ public class SolrCmdDistributor implements Closeable {
   private final CompletionService<Object> completionService;
   private final Set<Future<Object>> pending = new HashSet<>();
 
+  // null unless leader to replica updates are coalesced across requests
+  private final CoalescingUpdateForwarder coalescingForwarder;
+  private final CoalescingUpdateForwarder.Tracker coalescingTracker =
+      new CoalescingUpdateForwarder.Tracker(errors);
+
   public SolrCmdDistributor(UpdateShardHandler updateShardHandler) {
     this.clients = new StreamingSolrClients(updateShardHandler);
     this.completionService =
         new ExecutorCompletionService<>(updateShardHandler.getUpdateExecutor());
+    this.coalescingForwarder = updateShardHandler.getCoalescingUpdateForwarder();
   }
 
   /* For tests only */
@@ -79,6 +85,7 @@ public class SolrCmdDistributor implements Closeable {
     this.clients = clients;
     this.retryPause = retryPause;
     completionService = new ExecutorCompletionService<>(clients.getUpdateExecutor());
+    coalescingForwarder = null;
   }
 
   public void finish() {
@@ -278,6 +285,15 @@ public class SolrCmdDistributor implements Closeable {
   public void blockAndDoRetries() throws IOException {
     clients.blockUntilFinished();
 
+    if (coalescingForwarder != null) {
+      try {
+        coalescingTracker.awaitCompletion(coalescingForwarder.getTimeoutMs());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        log.error("blockAndDoRetries interrupted", e);
+      }
+    }
+
     // wait for any async commits to complete
     while (pending != null && pending.size() > 0) {
       Future<Object> future = null;
@@ -358,6 +374,10 @@ public class SolrCmdDistributor implements Closeable {
   }
 
   private void doRequest(final Req req) {
+    if (coalescingForwarder != null && CoalescingUpdateForwarder.canCoalesce(req)) {
+      coalescingForwarder.submit(req, coalescingTracker);
+      return;
+    }
     try {
       SolrClient solrClient = clients.getSolrClient(req);
       solrClient.request(req.uReq);
@@ -447,20 +467,24 @@ public class SolrCmdDistributor implements Closeable {
       }
     }
 
+    /** Same as above, for a response that has already been parsed, or null if there is none. */
+    public void trackRequestResult(NamedList<Object> rsp, boolean success) {
+      int rfFromResp = rsp == null ? Integer.MAX_VALUE : getRfFromResponse(rsp);
+
+      if (leaderTracker != null && rfFromResp == Integer.MAX_VALUE) {
+        leaderTracker.trackRequestResult(node, success);
+      }
+
+      if (rollupTracker != null) {
+        rollupTracker.testAndSetAchievedRf(rfFromResp);
+      }
+    }
+
     private int getRfFromResponse(InputStream inputStream) {
       if (inputStream != null) {
         try {
           BinaryResponseParser brp = new BinaryResponseParser();
-          NamedList<Object> nl = brp.processResponse(inputStream, null);
-          Object hdr = nl.get("responseHeader");
-          if (hdr != null && hdr instanceof NamedList) {
-            @SuppressWarnings({"unchecked"})
-            NamedList<Object> hdrList = (NamedList<Object>) hdr;
-            Object rfObj = hdrList.get(UpdateRequest.REPFACT);
-            if (rfObj != null && rfObj instanceof Integer) {
-              return (Integer) rfObj;
-            }
-          }
+          return getRfFromResponse(brp.processResponse(inputStream, null));
         } catch (Exception e) {
           log.warn(
               "Failed to parse response from {} during replication factor accounting", node, e);
@@ -468,6 +492,19 @@ public class SolrCmdDistributor implements Closeable {
       }
       return Integer.MAX_VALUE;
     }
+
+    private int getRfFromResponse(NamedList<Object> nl) {
+      Object hdr = nl.get("responseHeader");
+      if (hdr != null && hdr instanceof NamedList) {
+        @SuppressWarnings({"unchecked"})
+        NamedList<Object> hdrList = (NamedList<Object>) hdr;
+        Object rfObj = hdrList.get(UpdateRequest.REPFACT);
+        if (rfObj != null && rfObj instanceof Integer) {
+          return (Integer) rfObj;
+        }
+      }
+      return Integer.MAX_VALUE;
+    }
   }
 
   public static Diagnostics.Callable
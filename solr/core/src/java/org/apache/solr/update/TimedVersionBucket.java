@@ -19,7 +19,6 @@ package org.apache.solr.update;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.apache.solr.common.SolrException;
 
@@ -28,12 +27,31 @@ import org.apache.solr.common.SolrException;
  */
 /**
  * This implementation uses lock and condition and will throw exception if it can't obtain the lock
- * within <code>lockTimeoutMs</code>.
+ * within <code>lockTimeoutMs</code>. When a {@link VersionBucketStats} is supplied, the time spent
+ * waiting for and holding the lock is recorded there.
  */
 public class TimedVersionBucket extends VersionBucket {
 
-  private final Lock lock = new ReentrantLock(true);
-  private final Condition condition = lock.newCondition();
+  private final ReentrantLock lock;
+  private final Condition condition;
+  private final VersionBucketStats stats;
+  // only read and written by the thread holding the lock
+  private long lockedAtNanos;
+
+  public TimedVersionBucket() {
+    this(true, null);
+  }
+
+  /**
+   * @param fair whether the underlying lock should use a fair ordering policy. A non-fair lock has
+   *     a higher throughput under contention but waiting is then only bounded by the lock timeout.
+   * @param stats where to record lock wait and hold times, may be null
+   */
+  public TimedVersionBucket(boolean fair, VersionBucketStats stats) {
+    this.lock = new ReentrantLock(fair);
+    this.condition = lock.newCondition();
+    this.stats = stats;
+  }
 
   /**
    * This will run the function with the lock. It will throw exception if it can't obtain the lock
@@ -45,6 +63,9 @@ public class TimedVersionBucket extends VersionBucket {
     if (tryLock(lockTimeoutMs)) {
       return function.apply();
     } else {
+      if (stats != null) {
+        stats.recordTimeout();
+      }
       throw new SolrException(
           SolrException.ErrorCode.SERVER_ERROR,
           "Unable to get version bucket lock in " + lockTimeoutMs + " ms");
@@ -53,6 +74,9 @@ public class TimedVersionBucket extends VersionBucket {
 
   @Override
   public void unlock() {
+    if (stats != null && lock.getHoldCount() == 1) {
+      stats.recordHold(System.nanoTime() - lockedAtNanos);
+    }
     lock.unlock();
   }
 
@@ -75,7 +99,22 @@ public class TimedVersionBucket extends VersionBucket {
 
   protected boolean tryLock(int lockTimeoutMs) {
     try {
-      return lock.tryLock(lockTimeoutMs, TimeUnit.MILLISECONDS);
+      if (stats == null) {
+        return lock.tryLock(lockTimeoutMs, TimeUnit.MILLISECONDS);
+      }
+      long start = System.nanoTime();
+      // a zero timeout honors the fairness setting, unlike tryLock()
+      boolean contended = !lock.tryLock(0, TimeUnit.NANOSECONDS);
+      if (contended && !lock.tryLock(lockTimeoutMs, TimeUnit.MILLISECONDS)) {
+        stats.recordWait(System.nanoTime() - start, true);
+        return false;
+      }
+      long now = System.nanoTime();
+      stats.recordWait(now - start, contended);
+      if (lock.getHoldCount() == 1) {
+        lockedAtNanos = now;
+      }
+      return true;
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       throw new RuntimeException(e);
@@ -506,6 +506,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     replayOpsMeter = solrMetricsContext.meter("ops", scope, "replay");
     copyOverOldUpdatesMeter = solrMetricsContext.meter("ops", scope, "copyOverOldUpdates");
     solrMetricsContext.gauge(() -> state.getValue(), true, "state", scope);
+    if (versionInfo != null && versionInfo.getBucketStats() != null) {
+      versionInfo.getBucketStats().initializeMetrics(solrMetricsContext, scope);
+    }
   }
 
   @Override
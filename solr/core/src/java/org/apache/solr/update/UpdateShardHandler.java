@@ -76,6 +76,8 @@ public class UpdateShardHandler implements SolrInfoBean {
 
   private final Http2SolrClient updateOnlyClient;
 
+  private final CoalescingUpdateForwarder coalescingUpdateForwarder;
+
   private final CloseableHttpClient recoveryOnlyClient;
 
   private final CloseableHttpClient defaultClient;
@@ -152,6 +154,18 @@ public class UpdateShardHandler implements SolrInfoBean {
     updateOnlyClient = updateOnlyClientBuilder.build();
     updateOnlyClient.addListenerFactory(updateHttpListenerFactory);
 
+    if (Boolean.getBoolean("solr.cloud.replication.coalesce")) {
+      coalescingUpdateForwarder =
+          new CoalescingUpdateForwarder(
+              updateOnlyClient,
+              updateExecutor,
+              Integer.getInteger("solr.cloud.replication.coalesce.maxBatchSize", 500),
+              Integer.getInteger("solr.cloud.replication.coalesce.maxInFlight", 4),
+              Long.getLong("solr.cloud.replication.coalesce.timeoutMs", socketTimeout));
+    } else {
+      coalescingUpdateForwarder = null;
+    }
+
     ThreadFactory recoveryThreadFactory = new SolrNamedThreadFactory("recoveryExecutor");
     if (cfg != null && cfg.getMaxRecoveryThreads() > 0) {
       if (log.isDebugEnabled()) {
@@ -216,6 +230,9 @@ public class UpdateShardHandler implements SolrInfoBean {
     String expandedScope = SolrMetricManager.mkName(scope, getCategory().name());
     updateHttpListenerFactory.initializeMetrics(solrMetricsContext, expandedScope);
     defaultConnectionManager.initializeMetrics(solrMetricsContext, expandedScope);
+    if (coalescingUpdateForwarder != null) {
+      coalescingUpdateForwarder.initializeMetrics(solrMetricsContext, expandedScope);
+    }
     updateExecutor =
         MetricUtils.instrumentedExecutorService(
             updateExecutor,
@@ -255,6 +272,14 @@ public class UpdateShardHandler implements SolrInfoBean {
     return updateOnlyClient;
   }
 
+  /**
+   * @return the forwarder coalescing leader to replica adds across requests, or null when the
+   *     <code>solr.cloud.replication.coalesce</code> system property is not set
+   */
+  public CoalescingUpdateForwarder getCoalescingUpdateForwarder() {
+    return coalescingUpdateForwarder;
+  }
+
   // don't introduce a bug, this client is for recovery ops only!
   public HttpClient getRecoveryOnlyHttpClient() {
     return recoveryOnlyClient;
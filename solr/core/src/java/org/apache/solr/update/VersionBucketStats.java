@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.solr.metrics.SolrMetricsContext;
+
+/**
+ * Lock contention statistics shared by all the version buckets of a {@link VersionInfo}. Recording
+ * is a no-op until {@link #initializeMetrics(SolrMetricsContext, String)} has been called.
+ *
+ * @lucene.internal
+ */
+public class VersionBucketStats {
+  private volatile Timer waitTimer;
+  private volatile Timer holdTimer;
+  private volatile Meter timeouts;
+  private final LongAdder contended = new LongAdder();
+  private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0L);
+  private final LongAccumulator maxHoldNanos = new LongAccumulator(Math::max, 0L);
+
+  public void initializeMetrics(SolrMetricsContext solrMetricsContext, String scope) {
+    waitTimer = solrMetricsContext.timer("wait", scope, "versionBucket");
+    holdTimer = solrMetricsContext.timer("hold", scope, "versionBucket");
+    timeouts = solrMetricsContext.meter("timeouts", scope, "versionBucket");
+    solrMetricsContext.gauge(() -> contended.sum(), true, "contended", scope, "versionBucket");
+    solrMetricsContext.gauge(
+        () -> TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+        true,
+        "maxWaitMs",
+        scope,
+        "versionBucket");
+    solrMetricsContext.gauge(
+        () -> TimeUnit.NANOSECONDS.toMillis(maxHoldNanos.get()),
+        true,
+        "maxHoldMs",
+        scope,
+        "versionBucket");
+  }
+
+  /**
+   * Records the time a thread waited for a bucket lock.
+   *
+   * @param waitNanos time spent waiting, in nanoseconds
+   * @param wasContended true if the lock could not be obtained without waiting
+   */
+  void recordWait(long waitNanos, boolean wasContended) {
+    if (wasContended) {
+      contended.increment();
+      maxWaitNanos.accumulate(waitNanos);
+    }
+    Timer timer = waitTimer;
+    if (timer != null) {
+      timer.update(waitNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** Records how long a bucket lock was held before being released. */
+  void recordHold(long holdNanos) {
+    maxHoldNanos.accumulate(holdNanos);
+    Timer timer = holdTimer;
+    if (timer != null) {
+      timer.update(holdNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** Records a failure to obtain a bucket lock within the configured timeout. */
+  void recordTimeout() {
+    Meter meter = timeouts;
+    if (meter != null) {
+      meter.mark();
+    }
+  }
+
+  public long getContendedCount() {
+    return contended.sum();
+  }
+
+  public long getMaxWaitNanos() {
+    return maxWaitNanos.get();
+  }
+
+  public long getMaxHoldNanos() {
+    return maxHoldNanos.get();
+  }
+}
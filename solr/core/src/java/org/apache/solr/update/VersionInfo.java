@@ -47,6 +47,8 @@ public class VersionInfo {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private static final String SYS_PROP_BUCKET_VERSION_LOCK_TIMEOUT_MS =
       "bucketVersionLockTimeoutMs";
+  private static final String SYS_PROP_BUCKET_VERSION_LOCK_FAIR = "bucketVersionLockFair";
+  private static final String SYS_PROP_BUCKET_VERSION_LOCK_METRICS = "bucketVersionLockMetrics";
 
   private final UpdateLog ulog;
   private final VersionBucket[] buckets;
@@ -54,6 +56,7 @@ public class VersionInfo {
   final ReadWriteLock lock = new ReentrantReadWriteLock(true);
 
   private int versionBucketLockTimeoutMs;
+  private final VersionBucketStats bucketStats;
 
   /**
    * Gets and returns the {@link org.apache.solr.common.params.CommonParams#VERSION_FIELD} from the
@@ -103,10 +106,30 @@ public class VersionInfo {
             .get("versionBucketLockTimeoutMs")
             .intVal(
                 Integer.parseInt(System.getProperty(SYS_PROP_BUCKET_VERSION_LOCK_TIMEOUT_MS, "0")));
+    boolean versionBucketLockFair =
+        ulog.uhandler
+            .core
+            .getSolrConfig()
+            .get("updateHandler")
+            .get("versionBucketLockFair")
+            .boolVal(
+                Boolean.parseBoolean(System.getProperty(SYS_PROP_BUCKET_VERSION_LOCK_FAIR, "true")));
+    boolean versionBucketLockMetrics =
+        ulog.uhandler
+            .core
+            .getSolrConfig()
+            .get("updateHandler")
+            .get("versionBucketLockMetrics")
+            .boolVal(
+                Boolean.parseBoolean(
+                    System.getProperty(SYS_PROP_BUCKET_VERSION_LOCK_METRICS, "false")));
+    bucketStats = versionBucketLockMetrics ? new VersionBucketStats() : null;
     buckets = new VersionBucket[BitUtil.nextHighestPowerOfTwo(nBuckets)];
     for (int i = 0; i < buckets.length; i++) {
       if (versionBucketLockTimeoutMs > 0) {
-        buckets[i] = new TimedVersionBucket();
+        buckets[i] = new TimedVersionBucket(versionBucketLockFair, bucketStats);
+      } else if (bucketStats != null) {
+        buckets[i] = new MonitoredVersionBucket(bucketStats);
       } else {
         buckets[i] = new VersionBucket();
       }
@@ -117,6 +140,16 @@ public class VersionInfo {
     return versionBucketLockTimeoutMs;
   }
 
+  /**
+   * Lock wait and hold statistics of the version buckets, collected with and without a {@link
+   * #getVersionBucketLockTimeoutMs()}. Timeouts only happen with a lock timeout.
+   *
+   * @return the statistics, or null unless <code>versionBucketLockMetrics</code> is enabled
+   */
+  public VersionBucketStats getBucketStats() {
+    return bucketStats;
+  }
+
   public void reload() {}
 
   public SchemaField getVersionField() {
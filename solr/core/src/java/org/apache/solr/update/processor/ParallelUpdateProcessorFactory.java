@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.CommitUpdateCommand;
+import org.apache.solr.update.DeleteUpdateCommand;
+import org.apache.solr.update.MergeIndexesCommand;
+import org.apache.solr.update.RollbackUpdateCommand;
+import org.apache.solr.update.UpdateCommand;
+import org.apache.solr.util.plugin.SolrCoreAware;
+
+/**
+ * Marks the end of a prefix of an update processor chain whose processors may run concurrently on
+ * independent documents. All the processors configured <em>before</em> this one in the chain are
+ * run on a bounded thread pool for each batch of added documents; the commands they produce are
+ * handed to the processors configured after this one in their original order, so the order of
+ * updates, and in particular the order of updates to the same id, is the same as if the whole
+ * chain ran on the request thread.
+ *
+ * <p>This is useful in front of CPU heavy processors, e.g. field parsing, regular expressions,
+ * language detection, classification or scripting, that would otherwise serialize a large update
+ * request on a single thread:
+ *
+ * <pre class="prettyprint">
+ * &lt;updateRequestProcessorChain name="parallel"&gt;
+ *   &lt;processor class="solr.ParseDateFieldUpdateProcessorFactory" /&gt;
+ *   &lt;processor class="solr.RegexReplaceProcessorFactory" /&gt;
+ *   &lt;processor class="solr.ParallelUpdateProcessorFactory"&gt;
+ *     &lt;int name="threads"&gt;4&lt;/int&gt;
+ *     &lt;int name="batchSize"&gt;100&lt;/int&gt;
+ *   &lt;/processor&gt;
+ *   &lt;processor class="solr.LogUpdateProcessorFactory" /&gt;
+ *   &lt;processor class="solr.DistributedUpdateProcessorFactory" /&gt;
+ *   &lt;processor class="solr.RunUpdateProcessorFactory" /&gt;
+ * &lt;/updateRequestProcessorChain&gt;
+ * </pre>
+ *
+ * <p>Each thread works with its own instances of the prefix processors, so they must not depend on
+ * state shared between documents of the same request. Processors that need to observe what happens
+ * further down the chain, like {@link TolerantUpdateProcessorFactory}, can not be part of the
+ * prefix. A {@link LogUpdateProcessorFactory} in the prefix, which reports on the whole request, is
+ * kept out of the parallel section: its single instance runs on the request thread right after it.
+ * Deletes, commits and other commands flush the pending batch and then run through the prefix on
+ * the request thread.
+ *
+ * <p>This factory must come before the {@link DistributingUpdateProcessorFactory} of its chain,
+ * which is validated by {@link UpdateRequestProcessorChain}. On replicas the prefix is skipped like
+ * any processor before the distributing one.
+ *
+ * @since 10.0.0
+ */
+public class ParallelUpdateProcessorFactory extends UpdateRequestProcessorFactory
+    implements SolrCoreAware {
+
+  public static final String THREADS_PARAM = "threads";
+  public static final String BATCH_SIZE_PARAM = "batchSize";
+
+  private int threads = 4;
+  private int batchSize = 100;
+  private ExecutorService executor;
+
+  @Override
+  public void init(NamedList<?> args) {
+    if (args != null) {
+      SolrParams params = args.toSolrParams();
+      threads = params.getInt(THREADS_PARAM, threads);
+      batchSize = params.getInt(BATCH_SIZE_PARAM, batchSize);
+    }
+    if (threads < 1 || batchSize < 1) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          THREADS_PARAM + " and " + BATCH_SIZE_PARAM + " must be positive");
+    }
+  }
+
+  @Override
+  public void inform(SolrCore core) {
+    // the request thread runs one share of every batch itself
+    executor =
+        ExecutorUtil.newMDCAwareFixedThreadPool(
+            Math.max(1, threads - 1), new SolrNamedThreadFactory("parallelUpdateProcessor"));
+    core.addCloseHook(
+        new CloseHook() {
+          @Override
+          public void postClose(SolrCore core) {
+            ExecutorUtil.shutdownAndAwaitTermination(executor);
+          }
+        });
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Without the rest of the chain there is nothing to parallelize, this only happens if the
+   * factory is used outside of {@link UpdateRequestProcessorChain}.
+   */
+  @Override
+  public UpdateRequestProcessor getInstance(
+      SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor next) {
+    return next;
+  }
+
+  /**
+   * Creates a processor running the given prefix factories concurrently, and passing what they
+   * produce to <code>next</code>.
+   */
+  public UpdateRequestProcessor getInstance(
+      SolrQueryRequest req,
+      SolrQueryResponse rsp,
+      List<UpdateRequestProcessorFactory> prefix,
+      UpdateRequestProcessor next) {
+    List<UpdateRequestProcessorFactory> parallel = new ArrayList<>(prefix.size());
+    for (UpdateRequestProcessorFactory factory : prefix) {
+      if (!(factory instanceof LogUpdateProcessorFactory)) {
+        parallel.add(factory);
+      }
+    }
+    if (parallel.isEmpty() || threads == 1) {
+      UpdateRequestProcessor last = next;
+      for (int i = prefix.size() - 1; i >= 0; i--) {
+        last = prefix.get(i).getInstance(req, rsp, last);
+      }
+      return last;
+    }
+    // one log processor per request, seeing the commands in the order they are forwarded
+    UpdateRequestProcessor last = next;
+    for (int i = prefix.size() - 1; i >= 0; i--) {
+      if (prefix.get(i) instanceof LogUpdateProcessorFactory) {
+        last = prefix.get(i).getInstance(req, rsp, last);
+      }
+    }
+    return new ParallelUpdateProcessor(req, rsp, parallel, last);
+  }
+
+  class ParallelUpdateProcessor extends UpdateRequestProcessor {
+    private final SolrQueryRequest req;
+    private final SolrQueryResponse rsp;
+    private final List<UpdateRequestProcessorFactory> prefix;
+    private final List<Worker> workers = new ArrayList<>(threads);
+    private final List<AddUpdateCommand> batch = new ArrayList<>(batchSize);
+
+    ParallelUpdateProcessor(
+        SolrQueryRequest req,
+        SolrQueryResponse rsp,
+        List<UpdateRequestProcessorFactory> prefix,
+        UpdateRequestProcessor next) {
+      super(next);
+      this.req = req;
+      this.rsp = rsp;
+      this.prefix = prefix;
+    }
+
+    private Worker getWorker(int i) {
+      while (workers.size() <= i) {
+        workers.add(new Worker());
+      }
+      return workers.get(i);
+    }
+
+    @Override
+    public void processAdd(AddUpdateCommand cmd) throws IOException {
+      // loaders may reuse the command object for the next document
+      batch.add((AddUpdateCommand) cmd.clone());
+      if (batch.size() >= batchSize) {
+        flush();
+      }
+    }
+
+    @Override
+    public void processDelete(DeleteUpdateCommand cmd) throws IOException {
+      flush();
+      Worker worker = getWorker(0);
+      worker.first.processDelete(cmd);
+      forward(worker.collector.drain());
+    }
+
+    @Override
+    public void processMergeIndexes(MergeIndexesCommand cmd) throws IOException {
+      flush();
+      Worker worker = getWorker(0);
+      worker.first.processMergeIndexes(cmd);
+      forward(worker.collector.drain());
+    }
+
+    @Override
+    public void processCommit(CommitUpdateCommand cmd) throws IOException {
+      flush();
+      Worker worker = getWorker(0);
+      worker.first.processCommit(cmd);
+      forward(worker.collector.drain());
+    }
+
+    @Override
+    public void processRollback(RollbackUpdateCommand cmd) throws IOException {
+      flush();
+      Worker worker = getWorker(0);
+      worker.first.processRollback(cmd);
+      forward(worker.collector.drain());
+    }
+
+    @Override
+    public void finish() throws IOException {
+      flush();
+      for (Worker worker : workers) {
+        worker.first.finish();
+        forward(worker.collector.drain());
+      }
+      super.finish();
+    }
+
+    @Override
+    protected void doClose() {
+      for (Worker worker : workers) {
+        try {
+          worker.first.close();
+        } catch (IOException e) {
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+        }
+      }
+    }
+
+    /**
+     * Runs the pending adds through the prefix, each worker taking a contiguous share of the batch,
+     * and forwards the results share by share. Forwarding stops at the first failed document, after
+     * forwarding what was produced for the documents before it, just like a sequential chain.
+     */
+    private void flush() throws IOException {
+      if (batch.isEmpty()) {
+        return;
+      }
+      int numWorkers = Math.min(threads, batch.size());
+      int perWorker = (batch.size() + numWorkers - 1) / numWorkers;
+      SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+
+      List<Future<Exception>> futures = new ArrayList<>(numWorkers - 1);
+      Exception ownFailure;
+      try {
+        for (int w = 1; w < numWorkers; w++) {
+          Worker worker = getWorker(w);
+          List<AddUpdateCommand> share =
+              batch.subList(
+                  Math.min(w * perWorker, batch.size()),
+                  Math.min((w + 1) * perWorker, batch.size()));
+          futures.add(
+              executor.submit(
+                  () -> {
+                    if (requestInfo != null) {
+                      SolrRequestInfo.setRequestInfo(requestInfo);
+                    }
+                    try {
+                      return worker.process(share);
+                    } finally {
+                      if (requestInfo != null) {
+                        SolrRequestInfo.clearRequestInfo();
+                      }
+                    }
+                  }));
+        }
+        ownFailure = getWorker(0).process(batch.subList(0, Math.min(perWorker, batch.size())));
+
+        forward(getWorker(0).collector.drain());
+        rethrow(ownFailure);
+        for (int w = 1; w < numWorkers; w++) {
+          Exception failure = futures.get(w - 1).get();
+          forward(getWorker(w).collector.drain());
+          rethrow(failure);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+      } catch (ExecutionException e) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e.getCause());
+      } finally {
+        for (Future<Exception> future : futures) {
+          if (!future.isDone()) {
+            // don't leave a worker running while its processors are reused or closed
+            try {
+              future.get();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+              // already reported or superseded by an earlier failure
+            }
+          }
+        }
+        for (Worker worker : workers) {
+          worker.collector.drain();
+        }
+        batch.clear();
+      }
+    }
+
+    private void rethrow(Exception failure) throws IOException {
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      } else if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure != null) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, failure);
+      }
+    }
+
+    private void forward(List<UpdateCommand> commands) throws IOException {
+      for (UpdateCommand command : commands) {
+        if (command instanceof AddUpdateCommand) {
+          super.processAdd((AddUpdateCommand) command);
+        } else if (command instanceof DeleteUpdateCommand) {
+          super.processDelete((DeleteUpdateCommand) command);
+        } else if (command instanceof CommitUpdateCommand) {
+          super.processCommit((CommitUpdateCommand) command);
+        } else if (command instanceof RollbackUpdateCommand) {
+          super.processRollback((RollbackUpdateCommand) command);
+        } else if (command instanceof MergeIndexesCommand) {
+          super.processMergeIndexes((MergeIndexesCommand) command);
+        }
+      }
+    }
+
+    /** A private instance of the prefix processors, ending with a {@link Collector}. */
+    private class Worker {
+      final Collector collector = new Collector();
+      final UpdateRequestProcessor first;
+
+      Worker() {
+        UpdateRequestProcessor last = collector;
+        for (int i = prefix.size() - 1; i >= 0; i--) {
+          last = prefix.get(i).getInstance(req, rsp, last);
+        }
+        first = last;
+      }
+
+      /** Returns the exception of the first document that failed, or null. */
+      Exception process(List<AddUpdateCommand> share) {
+        try {
+          for (AddUpdateCommand cmd : share) {
+            first.processAdd(cmd);
+          }
+          return null;
+        } catch (Exception e) {
+          return e;
+        }
+      }
+    }
+  }
+
+  /** Collects the commands coming out of the prefix, until the request thread forwards them. */
+  static class Collector extends UpdateRequestProcessor {
+    private List<UpdateCommand> commands = new ArrayList<>();
+
+    Collector() {
+      super(null);
+    }
+
+    List<UpdateCommand> drain() {
+      List<UpdateCommand> drained = commands;
+      commands = new ArrayList<>();
+      return drained;
+    }
+
+    @Override
+    public void processAdd(AddUpdateCommand cmd) {
+      commands.add(cmd);
+    }
+
+    @Override
+    public void processDelete(DeleteUpdateCommand cmd) {
+      commands.add(cmd);
+    }
+
+    @Override
+    public void processMergeIndexes(MergeIndexesCommand cmd) {
+      commands.add(cmd);
+    }
+
+    @Override
+    public void processCommit(CommitUpdateCommand cmd) {
+      commands.add(cmd);
+    }
+
+    @Override
+    public void processRollback(RollbackUpdateCommand cmd) {
+      commands.add(cmd);
+    }
+
+    @Override
+    public void finish() {}
+  }
+}
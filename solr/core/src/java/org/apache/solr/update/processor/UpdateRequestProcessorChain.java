@@ -156,6 +156,7 @@ public final class UpdateRequestProcessorChain implements PluginInfoInitialized
 
       log.debug("inserting DistributedUpdateProcessorFactory into {}", infomsg);
     }
+    validateParallelPrefix(list, infomsg);
 
     chain = list;
     ProcessorInfo processorInfo = new ProcessorInfo(new MapSolrParams(info.attributes));
@@ -164,6 +165,52 @@ public final class UpdateRequestProcessorChain implements PluginInfoInitialized
     chain = newChain.chain;
   }
 
+  /**
+   * A {@link ParallelUpdateProcessorFactory} runs the processors before it concurrently, which only
+   * works if it comes before the distributing processor and none of them needs to see the rest of
+   * the chain.
+   */
+  private static void validateParallelPrefix(
+      List<UpdateRequestProcessorFactory> list, String infomsg) {
+    int parallelIndex = -1;
+    int distribIndex = -1;
+    int tolerantIndex = -1;
+    for (int i = 0; i < list.size(); i++) {
+      UpdateRequestProcessorFactory factory = list.get(i);
+      if (factory instanceof ParallelUpdateProcessorFactory) {
+        if (0 <= parallelIndex) {
+          throw new SolrException(
+              SolrException.ErrorCode.SERVER_ERROR,
+              infomsg
+                  + " may not contain more then one "
+                  + "instance of ParallelUpdateProcessorFactory");
+        }
+        parallelIndex = i;
+      } else if (factory instanceof DistributingUpdateProcessorFactory) {
+        distribIndex = i;
+      } else if (factory instanceof TolerantUpdateProcessorFactory && 0 > tolerantIndex) {
+        tolerantIndex = i;
+      }
+    }
+    if (0 > parallelIndex) {
+      return;
+    }
+    if (0 <= tolerantIndex && tolerantIndex < parallelIndex) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          infomsg
+              + " TolerantUpdateProcessorFactory may not come "
+              + "before ParallelUpdateProcessorFactory");
+    }
+    if (0 <= distribIndex && distribIndex < parallelIndex) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          infomsg
+              + " ParallelUpdateProcessorFactory must come "
+              + "before the DistributingUpdateProcessorFactory");
+    }
+  }
+
   private List<UpdateRequestProcessorFactory> createProcessors(PluginInfo info) {
     List<PluginInfo> processors = info.getChildren("processor");
     return processors.stream()
@@ -238,6 +285,12 @@ public final class UpdateRequestProcessorChain implements PluginInfoInitialized
         }
       }
 
+      if (factory instanceof ParallelUpdateProcessorFactory) {
+        // the factories before this one are created per worker by the parallel processor
+        return ((ParallelUpdateProcessorFactory) factory)
+            .getInstance(req, rsp, chain.subList(0, i), last);
+      }
+
       // create a new URP with current "last" following it; then replace "last" with this new URP
       last = factory.getInstance(req, rsp, last);
     }
@@ -36,6 +36,12 @@ public class SolrResponseUtil {
   public static Object getSubsectionFromShardResponse(
       ResponseBuilder rb, ShardResponse srsp, String shardResponseKey, boolean subSectionOptional) {
     Object shardResponseSubsection;
+    if (srsp.getException() != null
+        && rb != null
+        && ShardParams.getShardsTolerantAsBool(rb.req.getParams())) {
+      // the shard failed or did not answer in time, its part is missing from partial results
+      return null;
+    }
     try {
       SolrResponse solrResponse = srsp.getSolrResponse();
       NamedList<Object> response = solrResponse.getResponse();
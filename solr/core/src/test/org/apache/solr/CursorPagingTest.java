@@ -747,6 +747,8 @@ public class CursorPagingTest extends SolrTestCaseJ4 {
                 "fq", "-id:[1 TO 2]",
                 "fq", "-id:[6 TO 7]",
                 "fl", "id",
+                // pages served from the cursorPrefetch cache don't look at any filters
+                CursorMarkParams.CURSOR_MARK_PREFETCH, "1",
                 "sort", buildRandomSort(allFieldNames)));
 
     assertEquals(6, ids.size());
@@ -760,6 +762,42 @@ public class CursorPagingTest extends SolrTestCaseJ4 {
     assertTrue("filter cache did not have any new cache hits", 0 < postFcHits - preFcHits);
   }
 
+  /** test that later cursor pages are served from the documents collected for earlier ones */
+  public void testCursorPrefetch() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "str", "s" + (i % 3)));
+    }
+    assertU(commit());
+
+    final MetricsMap prefetchStats =
+        (MetricsMap)
+            ((SolrMetricManager.GaugeWrapper)
+                    h.getCore()
+                        .getCoreMetricManager()
+                        .getRegistry()
+                        .getMetrics()
+                        .get("CACHE.searcher.cursorPrefetch"))
+                .getGauge();
+    assertNotNull(prefetchStats);
+
+    final long preInserts = (Long) prefetchStats.getValue().get("inserts");
+
+    // 3 pages are collected at once, so only every third page needs to run the query
+    final SentinelIntSet ids =
+        assertFullWalkNoDups(
+            20,
+            params(
+                "q", "*:*",
+                "rows", "3",
+                "fl", "id",
+                CursorMarkParams.CURSOR_MARK_PREFETCH, "3",
+                "sort", "str asc, id desc"));
+    assertEquals(20, ids.size());
+
+    // 6 full pages, a page of 2 docs and an empty page, the query ran for pages 1, 4 and 7
+    assertEquals(3, (Long) prefetchStats.getValue().get("inserts") - preInserts);
+  }
+
   /** randomized testing of a non-trivial number of docs using assertFullWalkNoDups */
   public void testRandomSortsOnLargeIndex() throws Exception {
     final Collection<String> allFieldNames = getAllSortFieldNames();
@@ -30,6 +30,10 @@ import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.handler.component.ShardRequest;
+import org.apache.solr.handler.component.TrackingShardHandlerFactory;
+import org.apache.solr.handler.component.TrackingShardHandlerFactory.RequestTrackingQueue;
+import org.apache.solr.handler.component.TrackingShardHandlerFactory.ShardRequestAndParams;
 import org.hamcrest.MatcherAssert;
 import org.junit.Test;
 
@@ -48,6 +52,11 @@ public class TestDistributedGrouping extends BaseDistributedSearchTestCase {
     System.setProperty(NUMERIC_DOCVALUES_SYSPROP, "false");
   }
 
+  @Override
+  protected String getSolrXml() {
+    return "solr-trackingshardhandler.xml";
+  }
+
   String t1 = "a_t";
   String i1dv = "a_idv";
   String i1 = "a_i1";
@@ -435,6 +444,95 @@ public class TestDistributedGrouping extends BaseDistributedSearchTestCase {
 
     commit();
 
+    // the shards return the top documents of their groups along with the search groups, which
+    // must not change the response
+    for (int limit : new int[] {1, 3}) {
+      for (int rows : new int[] {2, 100}) {
+        query(
+            "q",
+            "*:*",
+            "rows",
+            rows,
+            "fl",
+            "id," + i1,
+            "group",
+            "true",
+            "group.field",
+            i1,
+            "group.limit",
+            limit,
+            "sort",
+            i1 + " asc, id asc",
+            "group.distributed.combine",
+            "true");
+        query(
+            "q",
+            "*:*",
+            "rows",
+            rows,
+            "fl",
+            "id," + i1,
+            "group",
+            "true",
+            "group.field",
+            i1,
+            "group.limit",
+            limit,
+            "group.format",
+            "simple",
+            "sort",
+            i1 + " asc, id asc",
+            "group.distributed.combine",
+            "true");
+      }
+    }
+
+    // the top groups are returned with the search groups, without a second round trip
+    RequestTrackingQueue trackingQueue = new RequestTrackingQueue();
+    TrackingShardHandlerFactory.setTrackingQueue(jettys, trackingQueue);
+    try {
+      for (boolean combine : new boolean[] {false, true}) {
+        trackingQueue.clear();
+        query(
+            "q",
+            "*:*",
+            "rows",
+            100,
+            "fl",
+            "id," + i1,
+            "group",
+            "true",
+            "group.field",
+            i1,
+            "group.limit",
+            3,
+            "sort",
+            i1 + " asc, id asc",
+            "group.distributed.combine",
+            combine);
+        int topGroupsRequests = 0;
+        int topIdsRequests = 0;
+        for (List<ShardRequestAndParams> shard : trackingQueue.getAllRequests().values()) {
+          for (ShardRequestAndParams shardReq : shard) {
+            if ((shardReq.sreq.purpose & ShardRequest.PURPOSE_GET_TOP_GROUPS) != 0) {
+              topGroupsRequests++;
+            }
+            if ((shardReq.sreq.purpose & ShardRequest.PURPOSE_GET_TOP_IDS) != 0) {
+              topIdsRequests++;
+            }
+          }
+        }
+        assertTrue("no search groups requests", topGroupsRequests > 0);
+        if (combine) {
+          assertEquals("top groups requested in a second phase", 0, topIdsRequests);
+        } else {
+          assertTrue("no top groups requests", topIdsRequests > 0);
+        }
+      }
+    } finally {
+      TrackingShardHandlerFactory.setTrackingQueue(jettys, null);
+    }
+
     // test grouping
     // The second sort = id asc . The sorting behaviour is different in dist mode. See TopDocs#merge
     // The shard the result came from matters in the order if both document sortvalues are equal
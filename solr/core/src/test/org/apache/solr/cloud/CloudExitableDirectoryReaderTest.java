@@ -27,6 +27,7 @@ import com.codahale.metrics.Metered;
 import com.codahale.metrics.MetricRegistry;
 import java.lang.invoke.MethodHandles;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.apache.lucene.tests.util.TestUtil;
@@ -37,6 +38,7 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.cloud.MiniSolrCloudCluster.JettySolrRunnerWithMetrics;
 import org.apache.solr.common.cloud.DocCollection;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.embedded.JettySolrRunner;
 import org.apache.solr.handler.component.FacetComponent;
@@ -220,6 +222,34 @@ public class CloudExitableDirectoryReaderTest extends SolrCloudTestCase {
     assertSuccess(params("q", "name:b*")); // no time limitation
   }
 
+  @Test
+  public void testTolerantCoordinatorStopsWaiting() throws Exception {
+    // every shard sleeps far longer than allowed, a tolerant request returns without them
+    final long startNanos = System.nanoTime();
+    QueryResponse rsp =
+        client.query(
+            COLLECTION,
+            params(
+                "q",
+                "name:a*",
+                "timeAllowed",
+                "500",
+                "sleep",
+                "5000",
+                ShardParams.SHARDS_TOLERANT,
+                "true"));
+    final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    assertTrue("the coordinator waited for the shards: " + elapsedMs, elapsedMs < 5000);
+    assertEquals(0, rsp.getStatus());
+    assertEquals(
+        Boolean.TRUE,
+        rsp.getHeader().getBooleanArg(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY));
+    List<?> missing =
+        (List<?>) rsp.getHeader().get(SolrQueryResponse.RESPONSE_HEADER_MISSING_SHARDS_KEY);
+    assertNotNull("missing shards expected at " + rsp, missing);
+    assertEquals(2, missing.size());
+  }
+
   @Test
   public void testClearbox() throws Exception {
 
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.cloud;
+
+import java.io.IOException;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.embedded.JettySolrRunner;
+import org.apache.solr.search.stats.IncrementalStatsCache;
+import org.apache.solr.search.stats.StatsCache;
+import org.junit.Test;
+
+/** */
+public class TestIncrementalStatsCacheCloud extends TestBaseStatsCacheCloud {
+  @Override
+  protected boolean assertSameScores() {
+    return true;
+  }
+
+  @Override
+  protected String getImplementationName() {
+    return IncrementalStatsCache.class.getName();
+  }
+
+  @Test
+  public void testRepeatedQueryAndCommit() throws Exception {
+    // send the queries to one core, so that they share the stats cache of its searcher
+    JettySolrRunner jetty = cluster.getJettySolrRunner(0);
+    SolrCore core = jetty.getCoreContainer().getCores().get(0);
+    SolrParams params =
+        params("q", "foo_t:bar", "fl", "*,score", "rows", "" + (NUM_DOCS * 2), "sort", "id asc");
+    try (SolrClient client = getHttpSolrClient(jetty.getBaseUrl() + "/" + core.getName())) {
+      QueryResponse firstRsp = client.query(params);
+      assertResponses(control.query("collection1", params), firstRsp, true);
+      long retrieveStats = getStatsCacheMetrics(core).retrieveStats.sum();
+      long useCachedGlobalStats = getStatsCacheMetrics(core).useCachedGlobalStats.sum();
+
+      // the repeated query uses the cached stats, without a request for them
+      QueryResponse repeatedRsp = client.query(params);
+      assertResponses(control.query("collection1", params), repeatedRsp, true);
+      assertEquals(retrieveStats, getStatsCacheMetrics(core).retrieveStats.sum());
+      assertEquals(useCachedGlobalStats + 1, getStatsCacheMetrics(core).useCachedGlobalStats.sum());
+
+      // documents with the term make it less rare, the stats after the commit have to reflect it
+      indexDocs(
+          solrClient,
+          collectionName,
+          NUM_DOCS,
+          NUM_DOCS,
+          i -> new SolrInputDocument("id", "id-" + i, "foo_t", "bar"));
+      indexDocs(
+          control,
+          "collection1",
+          NUM_DOCS,
+          NUM_DOCS,
+          i -> new SolrInputDocument("id", "id-" + i, "foo_t", "bar"));
+      QueryResponse refreshedRsp = client.query(params);
+      assertResponses(control.query("collection1", params), refreshedRsp, true);
+      float scoreBefore = (Float) firstRsp.getResults().get(0).getFieldValue("score");
+      float scoreAfter = (Float) refreshedRsp.getResults().get(0).getFieldValue("score");
+      assertTrue(scoreBefore + " should be above " + scoreAfter, scoreBefore > scoreAfter);
+    }
+  }
+
+  private StatsCache.StatsCacheMetrics getStatsCacheMetrics(SolrCore core) throws IOException {
+    return core.withSearcher(searcher -> searcher.getStatsCache().getCacheMetrics());
+  }
+}
@@ -182,6 +182,142 @@ public class JsonLoaderTest extends SolrTestCaseJ4 {
     assertTrue(ex.getMessage().contains("JSON"));
   }
 
+  @Test
+  public void testParallelParsingPreservesOrder() throws Exception {
+    StringBuilder json = new StringBuilder("[");
+    int numDocs = atLeast(300);
+    for (int i = 0; i < numDocs; i++) {
+      if (i > 0) json.append(",\n");
+      json.append("{'id':'")
+          .append(i)
+          .append("', 'f_s':'a } tricky \\\" ] value', 'n_d':")
+          .append(i)
+          .append(".25, 'neg_d':-0.")
+          .append(i)
+          .append(", 'exp_d':1.5e")
+          .append(i % 10)
+          .append(", 'arr_i':[1, ")
+          .append(i)
+          .append("], 'child':{'id':'c")
+          .append(i)
+          .append("', 'x_s':'{'}}");
+    }
+    json.append("]\n{'commit':{}}");
+    String payload = json(json.toString());
+
+    BufferingRequestProcessor expected = new BufferingRequestProcessor(null);
+    try (SolrQueryRequest req = req()) {
+      new JsonLoader()
+          .load(
+              req, new SolrQueryResponse(), new ContentStreamBase.StringStream(payload), expected);
+    }
+    BufferingRequestProcessor actual = new BufferingRequestProcessor(null);
+    try (SolrQueryRequest req = req(JsonLoader.PARALLELISM, "4")) {
+      new JsonLoader()
+          .load(req, new SolrQueryResponse(), new ContentStreamBase.StringStream(payload), actual);
+    }
+
+    assertEquals(numDocs, actual.addCommands.size());
+    assertEquals(expected.addCommands.size(), actual.addCommands.size());
+    for (int i = 0; i < numDocs; i++) {
+      SolrInputDocument doc = actual.addCommands.get(i).solrDoc;
+      assertEquals(String.valueOf(i), doc.getFieldValue("id"));
+      assertEquals(i + 0.25d, doc.getFieldValue("n_d"));
+      assertEquals(Double.parseDouble("-0." + i), doc.getFieldValue("neg_d"));
+      assertEquals(expected.addCommands.get(i).solrDoc.toString(), doc.toString());
+    }
+    assertEquals(1, actual.commitCommands.size());
+  }
+
+  @Test
+  public void testParallelParsingWithoutArray() throws Exception {
+    BufferingRequestProcessor p = new BufferingRequestProcessor(null);
+    try (SolrQueryRequest req = req(JsonLoader.PARALLELISM, "4")) {
+      new JsonLoader()
+          .load(req, new SolrQueryResponse(), new ContentStreamBase.StringStream(input), p);
+    }
+    assertEquals(2, p.addCommands.size());
+    assertEquals(2, p.commitCommands.size());
+    assertEquals(4, p.deleteCommands.size());
+  }
+
+  @Test
+  public void testParallelParsingTruncatedArray() {
+    BufferingRequestProcessor p = new BufferingRequestProcessor(null);
+    SolrException ex =
+        expectThrows(
+            SolrException.class,
+            () -> {
+              try (SolrQueryRequest req = req(JsonLoader.PARALLELISM, "2")) {
+                new JsonLoader()
+                    .load(
+                        req,
+                        new SolrQueryResponse(),
+                        new ContentStreamBase.StringStream("[{\"id\":\"1\"},{\"id\":"),
+                        p);
+              }
+            });
+    assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, ex.code());
+    // like the single threaded loader, the documents before the error are added
+    assertEquals(1, p.addCommands.size());
+  }
+
+  @Test
+  public void testParallelParsingLenientJson() throws Exception {
+    StringBuilder json = new StringBuilder("[ // documents\n");
+    int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      json.append("{'id':'").append(i).append("', 'a_s':'x // not a comment'");
+      if (i % 50 == 7) {
+        // makes the splitter hand the rest of the array to the single threaded loader
+        json.append(" /* } */ # }\n, 'b_s':y/z");
+      }
+      json.append("},, # between documents\n /* , */ ");
+    }
+    json.append("]\n{'commit':{}}");
+    String payload = json(json.toString());
+
+    BufferingRequestProcessor expected = new BufferingRequestProcessor(null);
+    try (SolrQueryRequest req = req()) {
+      new JsonLoader()
+          .load(
+              req, new SolrQueryResponse(), new ContentStreamBase.StringStream(payload), expected);
+    }
+    BufferingRequestProcessor actual = new BufferingRequestProcessor(null);
+    try (SolrQueryRequest req = req(JsonLoader.PARALLELISM, "4")) {
+      new JsonLoader()
+          .load(req, new SolrQueryResponse(), new ContentStreamBase.StringStream(payload), actual);
+    }
+
+    assertEquals(numDocs, expected.addCommands.size());
+    assertEquals(numDocs, actual.addCommands.size());
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(
+          expected.addCommands.get(i).solrDoc.toString(),
+          actual.addCommands.get(i).solrDoc.toString());
+    }
+    assertEquals(1, actual.commitCommands.size());
+  }
+
+  @Test
+  public void testParallelismTooHigh() {
+    SolrException ex =
+        expectThrows(
+            SolrException.class,
+            () -> {
+              try (SolrQueryRequest req =
+                  req(JsonLoader.PARALLELISM, String.valueOf(JsonLoader.MAX_PARALLELISM + 1))) {
+                new JsonLoader()
+                    .load(
+                        req,
+                        new SolrQueryResponse(),
+                        new ContentStreamBase.StringStream("[{\"id\":\"1\"}]"),
+                        new BufferingRequestProcessor(null));
+              }
+            });
+    assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, ex.code());
+  }
+
   public void testSimpleFormatInAdd() throws Exception {
     String str = "{'add':[{'id':'1'},{'id':'2'}]}".replace('\'', '"');
     SolrQueryRequest req = req();
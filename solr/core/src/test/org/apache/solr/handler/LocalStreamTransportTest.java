@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.comp.StreamComparator;
+import org.apache.solr.client.solrj.io.stream.RollupStream;
+import org.apache.solr.client.solrj.io.stream.StreamContext;
+import org.apache.solr.client.solrj.io.stream.TupleStream;
+import org.apache.solr.client.solrj.io.stream.expr.Explanation;
+import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
+import org.apache.solr.client.solrj.io.stream.metrics.Bucket;
+import org.apache.solr.client.solrj.io.stream.metrics.CountMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.Metric;
+import org.apache.solr.client.solrj.io.stream.metrics.SumMetric;
+import org.apache.solr.common.util.IOUtils;
+import org.junit.Test;
+
+public class LocalStreamTransportTest extends SolrTestCase {
+
+  private static final int WORKERS = 2;
+  private static final int BUCKETS = 10;
+  private static final int BUCKET_SIZE = 5000;
+
+  @Test
+  public void testWorkersRunConcurrently() throws Exception {
+    // each worker only starts reading once all of them have been opened
+    CountDownLatch opened = new CountDownLatch(WORKERS);
+    List<LocalStreamTransport.StreamParser> parsers = new ArrayList<>();
+    try {
+      for (int i = 0; i < WORKERS; i++) {
+        TupleStream rollup =
+            new RollupStream(
+                new AwaitingStream(opened),
+                new Bucket[] {new Bucket("k")},
+                new Metric[] {new CountMetric(), new SumMetric("v")});
+        LocalStreamTransport.StreamParser parser =
+            new LocalStreamTransport.StreamParser(rollup, false);
+        parser.start(() -> {});
+        parsers.add(parser);
+      }
+
+      // the workers are read one after the other, as the merge of a parallel stream may do
+      for (LocalStreamTransport.StreamParser parser : parsers) {
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (Map<String, Object> doc = parser.next(); doc != null; doc = parser.next()) {
+          if (!Boolean.TRUE.equals(doc.get("EOF"))) {
+            buckets.add(doc);
+          }
+        }
+        assertEquals(BUCKETS, buckets.size());
+        for (Map<String, Object> bucket : buckets) {
+          assertEquals((long) BUCKET_SIZE, ((Number) bucket.get("count(*)")).longValue());
+        }
+      }
+    } finally {
+      for (LocalStreamTransport.StreamParser parser : parsers) {
+        IOUtils.closeQuietly(parser);
+      }
+    }
+  }
+
+  /** Returns sorted tuples for the rollup, once all the workers have opened their stream. */
+  private static class AwaitingStream extends TupleStream {
+    private final CountDownLatch opened;
+    private long index;
+
+    AwaitingStream(CountDownLatch opened) {
+      this.opened = opened;
+    }
+
+    @Override
+    public void setStreamContext(StreamContext context) {}
+
+    @Override
+    public List<TupleStream> children() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void open() throws IOException {
+      opened.countDown();
+      try {
+        if (!opened.await(30, TimeUnit.SECONDS)) {
+          throw new IOException("The workers did not run concurrently");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public Tuple read() {
+      if (index == (long) BUCKETS * BUCKET_SIZE) {
+        return Tuple.EOF();
+      }
+      Tuple tuple = new Tuple("k", index / BUCKET_SIZE, "v", index);
+      index++;
+      return tuple;
+    }
+
+    @Override
+    public StreamComparator getStreamSort() {
+      return null;
+    }
+
+    @Override
+    public Explanation toExplanation(StreamFactory factory) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.solr.SolrTestCase;
+import org.junit.Test;
+
+public class AdaptiveReplicaListTransformerTest extends SolrTestCase {
+
+  private static final String SLOW = "http://slow:8983/solr/collection1_shard1_replica_n1";
+  private static final String FAST = "http://fast:8983/solr/collection1_shard1_replica_n2";
+  private static final String FRESH = "http://fresh:8983/solr/collection1_shard1_replica_n3";
+
+  @Test
+  public void testNodeKey() {
+    assertEquals("slow:8983", ReplicaResponseStats.nodeKey(SLOW));
+    assertEquals("slow:8983", ReplicaResponseStats.nodeKey("slow:8983/solr/collection1"));
+    assertEquals("slow:8983", ReplicaResponseStats.nodeKey("slow:8983"));
+  }
+
+  @Test
+  public void testPrefersFastNodes() throws Exception {
+    ReplicaResponseStats stats = new ReplicaResponseStats(1.0d, 10.0d);
+    ReplicaResponseStats.Request slow = stats.start(SLOW);
+    ReplicaResponseStats.Request fast = stats.start(FAST);
+    fast.finish(false);
+    Thread.sleep(20);
+    slow.finish(false);
+
+    AdaptiveReplicaListTransformer rlt = new AdaptiveReplicaListTransformer(stats, 0, random());
+    for (int i = 0; i < 10; i++) {
+      List<String> choices = new ArrayList<>(List.of(SLOW, FAST));
+      rlt.transform(choices);
+      assertEquals(List.of(FAST, SLOW), choices);
+    }
+
+    // an unknown node competes with the fastest ones
+    List<String> choices = new ArrayList<>(List.of(SLOW, FAST, FRESH));
+    rlt.transform(choices);
+    assertEquals(SLOW, choices.get(2));
+  }
+
+  @Test
+  public void testPenalizesOutstandingRequestsAndErrors() {
+    ReplicaResponseStats stats = new ReplicaResponseStats(0.5d, 10.0d);
+    stats.start(SLOW).finish(false);
+    stats.start(FAST).finish(false);
+
+    // requests queueing up on a node
+    ReplicaResponseStats.Request outstanding = stats.start(FAST);
+    assertTrue(stats.score(FAST) > stats.score(SLOW));
+    outstanding.cancel();
+    outstanding.finish(true); // no effect after the cancel
+
+    stats.start(FAST).finish(true);
+    assertTrue(stats.score(FAST) > stats.score(SLOW));
+  }
+
+  @Test
+  public void testExploration() {
+    ReplicaResponseStats stats = new ReplicaResponseStats(1.0d, 10.0d);
+    stats.start(SLOW).finish(true);
+
+    AdaptiveReplicaListTransformer rlt = new AdaptiveReplicaListTransformer(stats, 1, random());
+    boolean explored = false;
+    for (int i = 0; i < 100 && !explored; i++) {
+      List<String> choices = new ArrayList<>(List.of(SLOW, FAST));
+      rlt.transform(choices);
+      explored = choices.get(0).equals(SLOW);
+    }
+    assertTrue(explored);
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.cloud.ConfigRequest;
+import org.apache.solr.cloud.SolrCloudTestCase;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrCore;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CoordinatorResultCacheCloudTest extends SolrCloudTestCase {
+
+  private static final String COLLECTION = "coordinatorCache";
+  private static final String REPLICATED = "coordinatorCacheReplicated";
+  private static final String HANDLER = "/cached";
+
+  @BeforeClass
+  public static void setupCluster() throws Exception {
+    // a single node, so that every shard request is answered by a core on it
+    configureCluster(1).addConfig("conf", configset("cloud-dynamic")).configure();
+    CollectionAdminRequest.createCollection(COLLECTION, "conf", 2, 1)
+        .process(cluster.getSolrClient());
+    cluster.waitForActiveCollection(COLLECTION, 2, 2);
+
+    cluster
+        .getSolrClient()
+        .request(
+            new ConfigRequest(
+                "{\n"
+                    + "  'add-requesthandler': {\n"
+                    + "    'name' : '"
+                    + HANDLER
+                    + "',\n"
+                    + "    'class' : 'org.apache.solr.handler.component.SearchHandler',\n"
+                    + "    'coordinatorCache' : { 'maxAge' : 600 }\n"
+                    + "  }\n"
+                    + "}"),
+            COLLECTION);
+
+    // shares the configset, and so the handler
+    CollectionAdminRequest.createCollection(REPLICATED, "conf", 2, 2)
+        .process(cluster.getSolrClient());
+    cluster.waitForActiveCollection(REPLICATED, 2, 4);
+
+    for (String collection : new String[] {COLLECTION, REPLICATED}) {
+      new UpdateRequest()
+          .add(sdoc("id", "1", "subject_s", "a"))
+          .add(sdoc("id", "2", "subject_s", "b"))
+          .add(sdoc("id", "3", "subject_s", "a"))
+          .commit(cluster.getSolrClient(), collection);
+    }
+  }
+
+  @Test
+  public void testCachedUntilNewVersionSeen() throws Exception {
+    // query a fixed core so that the same handler coordinates every request
+    Replica replica = getCollectionState(COLLECTION).getReplicas().get(0);
+    try (SolrClient client = getHttpSolrClient(replica.getCoreUrl())) {
+      QueryResponse first = query(client, true);
+      assertEquals(3, first.getResults().getNumFound());
+      assertEquals(0L, metric(replica, "hits"));
+      assertEquals(1L, metric(replica, "inserts"));
+
+      QueryResponse second = query(client, true);
+      assertEquals(1L, metric(replica, "hits"));
+      assertEquals(first.getResults().getNumFound(), second.getResults().getNumFound());
+      assertEquals(
+          first.getResults().get(0).getFieldValue("id"),
+          second.getResults().get(0).getFieldValue("id"));
+
+      new UpdateRequest()
+          .add(sdoc("id", "4", "subject_s", "a"))
+          .commit(cluster.getSolrClient(), COLLECTION);
+
+      // the replicas are on this node, their new searchers are seen on lookup
+      QueryResponse third = query(client, true);
+      assertEquals(4, third.getResults().getNumFound());
+      assertEquals(1L, metric(replica, "stale"));
+      assertEquals(1L, metric(replica, "hits"));
+      assertEquals(2L, metric(replica, "inserts"));
+    }
+  }
+
+  @Test
+  public void testShuffledReplicasShareEntries() throws Exception {
+    Replica replica = getCollectionState(REPLICATED).getReplicas().get(0);
+    try (SolrClient client = getHttpSolrClient(replica.getCoreUrl())) {
+      int numQueries = 10;
+      for (int i = 0; i < numQueries; i++) {
+        assertEquals(3, query(client, true).getResults().getNumFound());
+      }
+      // the replicas of each shard are shuffled for every request, not the key
+      assertEquals(1L, metric(replica, "inserts"));
+      assertEquals(numQueries - 1, metric(replica, "hits"));
+    }
+  }
+
+  @Test
+  public void testCachedValuesAreCopies() {
+    SolrDocument doc = new SolrDocument();
+    doc.setField("id", "1");
+    doc.setField("list_s", new ArrayList<>(List.of("a", "b")));
+    SolrDocumentList docs = new SolrDocumentList();
+    docs.setNumFound(1);
+    docs.add(doc);
+    NamedList<Object> facets = new SimpleOrderedMap<>();
+    facets.add("count", 1);
+    NamedList<Object> values = new SimpleOrderedMap<>();
+    values.add("response", docs);
+    values.add("facets", facets);
+
+    NamedList<Object> copy = CoordinatorResultCache.deepCopy(values);
+    assertTrue(copy instanceof SimpleOrderedMap);
+    ((SolrDocumentList) values.get("response")).get(0).addField("list_s", "c");
+    facets.remove("count");
+
+    SolrDocumentList copiedDocs = (SolrDocumentList) copy.get("response");
+    assertEquals(1, copiedDocs.getNumFound());
+    assertEquals(List.of("a", "b"), copiedDocs.get(0).getFieldValue("list_s"));
+    assertEquals(1, ((NamedList<?>) copy.get("facets")).get("count"));
+  }
+
+  private QueryResponse query(SolrClient client, boolean cache) throws Exception {
+    return client.query(
+        params(
+            CommonParams.QT,
+            HANDLER,
+            "q",
+            "*:*",
+            "sort",
+            "id asc",
+            "facet",
+            "true",
+            "facet.field",
+            "subject_s",
+            CommonParams.CACHE,
+            String.valueOf(cache)));
+  }
+
+  private long metric(Replica replica, String name) {
+    try (SolrCore core =
+        cluster.getJettySolrRunner(0).getCoreContainer().getCore(replica.getCoreName())) {
+      SearchHandler handler = (SearchHandler) core.getRequestHandler(HANDLER);
+      Map<String, Object> metrics = handler.getCoordinatorResultCache().getMetricsMap().getValue();
+      return ((Number) metrics.get(name)).longValue();
+    }
+  }
+}
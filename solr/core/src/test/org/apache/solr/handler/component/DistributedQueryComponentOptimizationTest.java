@@ -34,6 +34,7 @@ import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.common.util.StrUtils;
+import org.apache.solr.search.stats.ExactStatsCache;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -432,6 +433,85 @@ public class DistributedQueryComponentOptimizationTest extends SolrCloudTestCase
         rsp, nonDistribRsp); // make sure distrib and distrib.singlePass return the same thing
   }
 
+  @Test
+  public void testDistribPrune() throws Exception {
+    String[] params = {"q", "text:a^3 text:b^2 text:c", "fl", "id,score", "rows", "6"};
+
+    // pruning compares scores across replicas, which needs global term stats
+    String pruneCollection = "optimize_prune";
+    System.setProperty("solr.statsCache", ExactStatsCache.class.getName());
+    try {
+      CollectionAdminRequest.createCollection(pruneCollection, "conf", sliceCount, 1)
+          .processAndWait(cluster.getSolrClient(), DEFAULT_TIMEOUT);
+    } finally {
+      System.clearProperty("solr.statsCache");
+    }
+    try {
+      cluster.waitForActiveCollection(pruneCollection, sliceCount, sliceCount);
+      UpdateRequest update = new UpdateRequest();
+      String[] texts = {"a", "b", "c", "a b", "b c", "a c"};
+      for (int i = 0; i < 30; i++) {
+        update.add(sdoc(id, Integer.toString(i), "text", texts[i % texts.length]));
+      }
+      update.commit(cluster.getSolrClient(), pruneCollection);
+
+      QueryResponse expected =
+          cluster.getSolrClient().query(pruneCollection, new SolrQuery(params));
+
+      TrackingShardHandlerFactory.RequestTrackingQueue trackingQueue =
+          new TrackingShardHandlerFactory.RequestTrackingQueue();
+      TrackingShardHandlerFactory.setTrackingQueue(cluster, trackingQueue);
+      SolrQuery query = new SolrQuery(params);
+      query.set(ShardParams.DISTRIB_PRUNE, true);
+      QueryResponse pruned = cluster.getSolrClient().query(pruneCollection, query);
+      compareResponses(expected, pruned);
+
+      TrackingShardHandlerFactory.ShardRequestAndParams sample =
+          trackingQueue.getShardRequestByPurpose(
+              cluster.getZkStateReader(),
+              pruneCollection,
+              SHARD1,
+              ShardRequest.PURPOSE_GET_SCORE_SAMPLE);
+      assertNotNull("no score sample was requested", sample);
+      // 2 * (6 rows / 3 shards)
+      assertEquals("4", sample.params.get(CommonParams.ROWS));
+      TrackingShardHandlerFactory.ShardRequestAndParams topIds =
+          trackingQueue.getShardRequestByPurpose(
+              cluster.getZkStateReader(),
+              pruneCollection,
+              SHARD1,
+              ShardRequest.PURPOSE_GET_TOP_IDS);
+      assertNotNull(topIds.params.get(ShardParams.DISTRIB_PRUNE_MIN_SCORE));
+
+      // not pruned when sorted by something else than score
+      trackingQueue = new TrackingShardHandlerFactory.RequestTrackingQueue();
+      TrackingShardHandlerFactory.setTrackingQueue(cluster, trackingQueue);
+      query.set(CommonParams.SORT, "id asc");
+      cluster.getSolrClient().query(pruneCollection, query);
+      assertNull(
+          trackingQueue.getShardRequestByPurpose(
+              cluster.getZkStateReader(),
+              pruneCollection,
+              SHARD1,
+              ShardRequest.PURPOSE_GET_SCORE_SAMPLE));
+    } finally {
+      CollectionAdminRequest.deleteCollection(pruneCollection)
+          .processAndWait(cluster.getSolrClient(), DEFAULT_TIMEOUT);
+    }
+
+    // not pruned with the default local term stats, the scores of replicas may differ
+    TrackingShardHandlerFactory.RequestTrackingQueue trackingQueue =
+        new TrackingShardHandlerFactory.RequestTrackingQueue();
+    TrackingShardHandlerFactory.setTrackingQueue(cluster, trackingQueue);
+    SolrQuery query = new SolrQuery(params);
+    query.set(ShardParams.DISTRIB_PRUNE, true);
+    QueryResponse notPruned = cluster.getSolrClient().query(COLLECTION, query);
+    compareResponses(cluster.getSolrClient().query(COLLECTION, new SolrQuery(params)), notPruned);
+    assertNull(
+        trackingQueue.getShardRequestByPurpose(
+            cluster.getZkStateReader(), COLLECTION, SHARD1, ShardRequest.PURPOSE_GET_SCORE_SAMPLE));
+  }
+
   @Test
   public void testOptimizations() throws Exception {
 
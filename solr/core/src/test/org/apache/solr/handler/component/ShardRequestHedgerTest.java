@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.SolrTestCase;
+import org.junit.Test;
+
+public class ShardRequestHedgerTest extends SolrTestCase {
+
+  @Test
+  public void testNoDelayWithoutEnoughSamples() {
+    try (ShardRequestHedger hedger = new ShardRequestHedger(0.05d, 0.95d, 0)) {
+      assertEquals(-1, hedger.getDelayMs("collection1"));
+      for (int i = 0; i < ShardRequestHedger.MIN_SAMPLES - 1; i++) {
+        hedger.recordLatency("collection1", TimeUnit.MILLISECONDS.toNanos(10));
+      }
+      assertEquals(-1, hedger.getDelayMs("collection1"));
+    }
+  }
+
+  @Test
+  public void testDelayIsAPercentilePerCollection() {
+    try (ShardRequestHedger hedger = new ShardRequestHedger(0.05d, 0.9d, 5)) {
+      for (int i = 1; i <= 100; i++) {
+        hedger.recordLatency("collection1", TimeUnit.MILLISECONDS.toNanos(i));
+        hedger.recordLatency("collection2", TimeUnit.MILLISECONDS.toNanos(1));
+      }
+      long delay = hedger.getDelayMs("collection1");
+      assertTrue("delay " + delay, delay >= 85 && delay <= 95);
+      // never less than the minimum delay
+      assertEquals(5, hedger.getDelayMs("collection2"));
+      assertEquals(-1, hedger.getDelayMs("collection3"));
+    }
+  }
+
+  @Test
+  public void testBudget() {
+    try (ShardRequestHedger hedger = new ShardRequestHedger(0.1d, 0.95d, 0)) {
+      assertFalse(hedger.tryHedge());
+      for (int i = 0; i < 100; i++) {
+        hedger.getDelayMs("collection1");
+      }
+      int hedges = 0;
+      while (hedger.tryHedge()) {
+        hedges++;
+      }
+      assertEquals(10, hedges);
+      assertEquals(10, hedger.getHedgeCount());
+
+      // more eligible requests free up the budget again
+      for (int i = 0; i < 10; i++) {
+        hedger.getDelayMs("collection1");
+      }
+      assertTrue(hedger.tryHedge());
+      assertFalse(hedger.tryHedge());
+    }
+  }
+
+  @Test
+  public void testInvalidConfig() {
+    expectThrows(IllegalArgumentException.class, () -> new ShardRequestHedger(1.5d, 0.95d, 0));
+    expectThrows(IllegalArgumentException.class, () -> new ShardRequestHedger(0.05d, 95d, 0));
+  }
+}
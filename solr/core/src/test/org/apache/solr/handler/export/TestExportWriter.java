@@ -1173,6 +1173,105 @@ public class TestExportWriter extends SolrTestCaseJ4 {
     validateSort(numDocs);
   }
 
+  @Test
+  public void testSortThreads() throws Exception {
+    assertU(delQ("*:*"));
+    assertU(commit());
+
+    for (int i = 0; i < 1000; i++) {
+      assertU(
+          adoc(
+              "id",
+              String.valueOf(i),
+              "stringdv",
+              TestUtil.randomSimpleString(random(), 1, 2),
+              "intdv",
+              String.valueOf(random().nextInt(20))));
+      if (i % 100 == 99) {
+        // several segments, each sorted in several runs with the small queue size below
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    int availableSortThreads = ExportBuffers.availableSortThreads();
+    String serial = exportSorted("1");
+    String concurrent = exportSorted("4");
+    // the sort threads are given back to the node
+    assertEquals(availableSortThreads, ExportBuffers.availableSortThreads());
+    Map<?, ?> rsp = mapper.readValue(serial, HashMap.class);
+    assertEquals(1000, ((List<?>) Utils.getObjectByPath(rsp, false, "/response/docs")).size());
+    assertEquals(serial, concurrent);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPackedSortKeys() throws Exception {
+    assertU(delQ("*:*"));
+    assertU(commit());
+
+    // few distinct values per field, so that every sort field breaks ties of the previous ones
+    for (int i = 0; i < 500; i++) {
+      assertU(
+          adoc(
+              "id",
+              String.valueOf(i),
+              "stringdv",
+              String.valueOf((char) ('a' + random().nextInt(3))),
+              "intdv",
+              String.valueOf(random().nextInt(3) - 1),
+              "longdv",
+              String.valueOf(random().nextInt(3) * (long) Integer.MAX_VALUE),
+              "floatdv",
+              String.valueOf(random().nextInt(3) - 0.5f),
+              "doubledv",
+              String.valueOf(random().nextInt(3) / 3.0),
+              "booleandv",
+              String.valueOf(random().nextBoolean())));
+      if (i % 100 == 99) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    String sort =
+        "stringdv desc,intdv asc,longdv desc,floatdv asc,doubledv desc,booleandv asc,id asc";
+    String fl = "id,stringdv,intdv,longdv,floatdv,doubledv,booleandv";
+    Map<String, Object> export =
+        mapper.readValue(
+            h.query(req("q", "*:*", "qt", "/export", "fl", fl, "sort", sort)), HashMap.class);
+    Map<String, Object> select =
+        (Map<String, Object>)
+            Utils.fromJSONString(
+                h.query(
+                    req("q", "*:*", "fl", fl, "sort", sort, "rows", "500", "wt", "json")));
+    List<Map<String, Object>> exported =
+        (List<Map<String, Object>>) Utils.getObjectByPath(export, false, "/response/docs");
+    List<Map<String, Object>> selected =
+        (List<Map<String, Object>>) Utils.getObjectByPath(select, false, "/response/docs");
+    assertEquals(500, exported.size());
+    for (int i = 0; i < exported.size(); i++) {
+      assertEquals("position " + i, selected.get(i).get("id"), exported.get(i).get("id"));
+    }
+  }
+
+  private String exportSorted(String sortThreads) throws Exception {
+    return h.query(
+        req(
+            "q",
+            "*:*",
+            "qt",
+            "/export",
+            "fl",
+            "id,stringdv,intdv",
+            "sort",
+            "stringdv asc,intdv desc,id asc",
+            ExportWriter.QUEUE_SIZE_PARAM,
+            "200",
+            ExportWriter.SORT_THREADS_PARAM,
+            sortThreads));
+  }
+
   private void createLargeIndex() throws Exception {
     int BATCH_SIZE = 5000;
     int NUM_BATCHES = 20;
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.stats;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.junit.Test;
+
+public class TestIncrementalStatsCache extends TestBaseStatsCache {
+  @Override
+  protected String getStatsCacheClassName() {
+    return IncrementalStatsCache.class.getName();
+  }
+
+  @Test
+  public void testRepeatedQuery() throws Exception {
+    del("*:*");
+    int docId = 1000;
+    for (int i = 0; i < clients.size(); i++) {
+      for (int j = 0; j <= i; j++) {
+        index_specific(i, id, docId++, "a_t", "one two three");
+      }
+    }
+    commit();
+
+    ModifiableSolrParams params = params("q", "a_t:one", "fl", "*,score", "shards", shards);
+    SolrClient client = clients.get(0);
+    checkResponse(controlClient.query(params), client.query(params));
+    long retrieveStats = getStatsCacheMetrics().retrieveStats.sum();
+    long useCachedGlobalStats = getStatsCacheMetrics().useCachedGlobalStats.sum();
+
+    // the stats of the first query are reused, without a request for them
+    checkResponse(controlClient.query(params), client.query(params));
+    assertEquals(retrieveStats, getStatsCacheMetrics().retrieveStats.sum());
+    assertEquals(useCachedGlobalStats + 1, getStatsCacheMetrics().useCachedGlobalStats.sum());
+
+    // the stats are refreshed after a commit
+    for (int i = 0; i < clients.size(); i++) {
+      index_specific(i, id, docId++, "a_t", "one");
+    }
+    commit();
+    checkResponse(controlClient.query(params), client.query(params));
+  }
+
+  private StatsCache.StatsCacheMetrics getStatsCacheMetrics() throws Exception {
+    try (SolrCore core = jettys.get(0).getCoreContainer().getCore(DEFAULT_TEST_CORENAME)) {
+      return core.withSearcher(searcher -> searcher.getStatsCache().getCacheMetrics());
+    }
+  }
+}
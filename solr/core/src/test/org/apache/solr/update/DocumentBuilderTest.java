@@ -38,6 +38,7 @@ import org.apache.solr.common.SolrInputField;
 import org.apache.solr.common.util.ByteArrayUtf8CharSequence;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.IndexSchema;
 import org.hamcrest.MatcherAssert;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -449,4 +450,51 @@ public class DocumentBuilderTest extends SolrTestCaseJ4 {
         is(
             "incorrect vector dimension. The vector value has size 4 while it is expected a vector with size 5"));
   }
+
+  @Test
+  public void testReusableDocumentMatchesNewDocument() {
+    IndexSchema schema = h.getCore().getLatestSchema();
+    DocumentBuilder.ReusableFields reusable = new DocumentBuilder.ReusableFields(schema);
+    for (int i = 0; i < 50; i++) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField("id", Integer.toString(i));
+      String str = TestUtil.randomSimpleString(random());
+      doc.addField(
+          "single_s_dvn", random().nextBoolean() ? str : new ByteArrayUtf8CharSequence(str));
+      doc.addField("single_i_dvn", random().nextInt());
+      long l = random().nextLong();
+      doc.addField("foo_l", random().nextBoolean() ? l : Long.toString(l));
+      doc.addField("foo_f", random().nextFloat());
+      doc.addField("foo_d", random().nextDouble());
+      // more values than are recycled in some documents
+      int numValues = random().nextInt(20);
+      for (int j = 0; j < numValues; j++) {
+        doc.addField("foo_is", random().nextBoolean() ? random().nextInt() : Integer.toString(j));
+      }
+
+      List<String> expected = describe(DocumentBuilder.toDocument(doc, schema));
+      List<String> actual = describe(DocumentBuilder.toReusableDocument(doc, reusable, false));
+      assertEquals(expected, actual);
+      if (random().nextBoolean()) {
+        // as between two updates
+        reusable.clear();
+      }
+    }
+  }
+
+  private static List<String> describe(Document doc) {
+    return doc.getFields().stream()
+        .map(
+            f ->
+                f.name()
+                    + " "
+                    + f.getClass().getSimpleName()
+                    + " "
+                    + f.stringValue()
+                    + " "
+                    + f.numericValue()
+                    + " "
+                    + f.binaryValue())
+        .collect(Collectors.toList());
+  }
 }
@@ -25,6 +25,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.solr.BaseDistributedSearchTestCase;
@@ -41,7 +43,9 @@ import org.apache.solr.common.cloud.ZkNodeProps;
 import org.apache.solr.common.cloud.ZkStateReader;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrEventListener;
@@ -54,8 +58,10 @@ import org.apache.solr.update.SolrCmdDistributor.Node;
 import org.apache.solr.update.SolrCmdDistributor.SolrError;
 import org.apache.solr.update.SolrCmdDistributor.StdNode;
 import org.apache.solr.update.processor.DistributedUpdateProcessor;
+import org.apache.solr.update.processor.DistributedUpdateProcessor.DistribPhase;
 import org.apache.solr.update.processor.DistributedUpdateProcessor.LeaderRequestReplicationTracker;
 import org.apache.solr.update.processor.DistributedUpdateProcessor.RollupRequestReplicationTracker;
+import org.apache.solr.update.processor.DistributingUpdateProcessorFactory;
 import org.apache.solr.util.TestInjection;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -373,6 +379,8 @@ public class SolrCmdDistributorTest extends BaseDistributedSearchTestCase {
     testDeletes(true, false);
     getRfFromResponseShouldNotCloseTheInputStream();
     testStuckUpdates();
+    testCoalescedAdds();
+    testCoalescedAddsTimeout();
   }
 
   private void testDeletes(boolean dbq, boolean withFailures) throws Exception {
@@ -949,4 +957,145 @@ public class SolrCmdDistributorTest extends BaseDistributedSearchTestCase {
       TestInjection.directUpdateLatch.countDown();
     }
   }
+
+  private void testCoalescedAdds() throws Exception {
+    System.setProperty("solr.cloud.replication.coalesce", "true");
+    // one batch in flight per destination, the adds sent meanwhile have to share the next batch
+    System.setProperty("solr.cloud.replication.coalesce.maxInFlight", "1");
+    final UpdateShardHandler coalescingShardHandler =
+        new UpdateShardHandler(UpdateShardHandlerConfig.DEFAULT);
+    System.clearProperty("solr.cloud.replication.coalesce");
+    System.clearProperty("solr.cloud.replication.coalesce.maxInFlight");
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareCachedThreadPool(new SolrNamedThreadFactory("testCoalescedAdds"));
+    try {
+      CoalescingUpdateForwarder forwarder = coalescingShardHandler.getCoalescingUpdateForwarder();
+      assertNotNull(forwarder);
+
+      SolrClient solrClient = clients.get(0);
+      solrClient.deleteByQuery("*:*");
+      solrClient.commit();
+
+      ZkNodeProps nodeProps =
+          new ZkNodeProps(
+              ZkStateReader.BASE_URL_PROP,
+              ((HttpSolrClient) solrClient).getBaseURL(),
+              ZkStateReader.CORE_NAME_PROP,
+              "");
+      List<Node> nodes = Collections.singletonList(new StdNode(new ZkCoreNodeProps(nodeProps)));
+
+      int numRequests = 8;
+      int docsPerRequest = 25;
+      List<Future<List<SolrError>>> futures = new ArrayList<>();
+      for (int r = 0; r < numRequests; r++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  try (SolrCmdDistributor cmdDistrib =
+                      new SolrCmdDistributor(coalescingShardHandler)) {
+                    for (int i = 0; i < docsPerRequest; i++) {
+                      int id = uniqueId.incrementAndGet();
+                      AddUpdateCommand cmd = new AddUpdateCommand(null);
+                      cmd.solrDoc = sdoc("id", id, "_version_", id);
+                      ModifiableSolrParams params = new ModifiableSolrParams();
+                      params.set(
+                          DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM,
+                          DistribPhase.FROMLEADER.toString());
+                      cmdDistrib.distribAdd(cmd, nodes, params);
+                    }
+                    cmdDistrib.finish();
+                    return cmdDistrib.getErrors();
+                  }
+                }));
+      }
+      for (Future<List<SolrError>> future : futures) {
+        List<SolrError> errors = future.get();
+        assertEquals(errors.toString(), 0, errors.size());
+      }
+
+      // every request only returns once the replica acknowledged all of its adds
+      assertEquals(numRequests * docsPerRequest, forwarder.getDocsSent());
+      // all the adds went to one destination while a batch was in flight, so they were coalesced
+      assertTrue(
+          forwarder.getBatchesSent() + " batches for " + forwarder.getDocsSent() + " docs",
+          forwarder.getBatchesSent() < forwarder.getDocsSent());
+
+      solrClient.commit();
+      assertEquals(
+          numRequests * docsPerRequest,
+          solrClient.query(new SolrQuery("*:*")).getResults().getNumFound());
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+      coalescingShardHandler.close();
+    }
+  }
+
+  private void testCoalescedAddsTimeout() throws Exception {
+    System.setProperty("solr.cloud.replication.coalesce", "true");
+    System.setProperty("solr.cloud.replication.coalesce.maxInFlight", "1");
+    System.setProperty("solr.cloud.replication.coalesce.timeoutMs", "500");
+    final UpdateShardHandler coalescingShardHandler =
+        new UpdateShardHandler(UpdateShardHandlerConfig.DEFAULT);
+    System.clearProperty("solr.cloud.replication.coalesce");
+    System.clearProperty("solr.cloud.replication.coalesce.maxInFlight");
+    System.clearProperty("solr.cloud.replication.coalesce.timeoutMs");
+    TestInjection.directUpdateLatch = new CountDownLatch(1);
+    try {
+      CoalescingUpdateForwarder forwarder = coalescingShardHandler.getCoalescingUpdateForwarder();
+      long docsSentBefore = forwarder.getDocsSent();
+
+      SolrClient solrClient = clients.get(0);
+      ZkNodeProps nodeProps =
+          new ZkNodeProps(
+              ZkStateReader.BASE_URL_PROP,
+              ((HttpSolrClient) solrClient).getBaseURL(),
+              ZkStateReader.CORE_NAME_PROP,
+              "");
+      List<Node> nodes = Collections.singletonList(new StdNode(new ZkCoreNodeProps(nodeProps)));
+      ModifiableSolrParams params = new ModifiableSolrParams();
+      params.set(
+          DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM,
+          DistribPhase.FROMLEADER.toString());
+
+      int inFlightId = uniqueId.incrementAndGet();
+      int queuedId = uniqueId.incrementAndGet();
+      try (SolrCmdDistributor inFlight = new SolrCmdDistributor(coalescingShardHandler);
+          SolrCmdDistributor queued = new SolrCmdDistributor(coalescingShardHandler)) {
+        AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = sdoc("id", inFlightId, "_version_", inFlightId);
+        // sent right away, then held by the replica
+        inFlight.distribAdd(cmd, nodes, params);
+        cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = sdoc("id", queuedId, "_version_", queuedId);
+        // waits behind the batch in flight until its request times out
+        queued.distribAdd(cmd, nodes, params);
+
+        queued.finish();
+        assertEquals(queued.getErrors().toString(), 1, queued.getErrors().size());
+        inFlight.finish();
+        assertEquals(inFlight.getErrors().toString(), 1, inFlight.getErrors().size());
+      } finally {
+        TestInjection.directUpdateLatch.countDown();
+      }
+
+      // queued behind the add still in flight, sent once the replica acknowledged it
+      int nextId = uniqueId.incrementAndGet();
+      try (SolrCmdDistributor next = new SolrCmdDistributor(coalescingShardHandler)) {
+        AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = sdoc("id", nextId, "_version_", nextId);
+        next.distribAdd(cmd, nodes, params);
+        next.finish();
+        assertEquals(next.getErrors().toString(), 0, next.getErrors().size());
+      }
+
+      // the add that timed out in the queue was never sent
+      assertEquals(2, forwarder.getDocsSent() - docsSentBefore);
+      solrClient.commit();
+      assertEquals(1, solrClient.query(new SolrQuery("id:" + inFlightId)).getResults().size());
+      assertEquals(0, solrClient.query(new SolrQuery("id:" + queuedId)).getResults().size());
+      assertEquals(1, solrClient.query(new SolrQuery("id:" + nextId)).getResults().size());
+    } finally {
+      coalescingShardHandler.close();
+    }
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.common.SolrException;
+import org.junit.Test;
+
+public class TimedVersionBucketTest extends SolrTestCase {
+
+  @Test
+  public void testStatsRecordHoldAndContention() throws Exception {
+    VersionBucketStats stats = new VersionBucketStats();
+    TimedVersionBucket bucket = new TimedVersionBucket(random().nextBoolean(), stats);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder =
+        new Thread(
+            () -> {
+              try {
+                bucket.runWithLock(
+                    10000,
+                    () -> {
+                      try {
+                        locked.countDown();
+                        release.await();
+                        Thread.sleep(50);
+                      } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      } finally {
+                        bucket.unlock();
+                      }
+                      return null;
+                    });
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    holder.start();
+    locked.await();
+
+    // the bucket is held by another thread, this must time out
+    expectThrows(
+        SolrException.class,
+        () ->
+            bucket.runWithLock(
+                10,
+                () -> {
+                  bucket.unlock();
+                  return null;
+                }));
+    assertEquals(1, stats.getContendedCount());
+
+    release.countDown();
+    bucket.runWithLock(
+        10000,
+        () -> {
+          bucket.unlock();
+          return null;
+        });
+    holder.join();
+
+    assertEquals(2, stats.getContendedCount());
+    assertTrue(stats.getMaxWaitNanos() > 0);
+    assertTrue(stats.getMaxHoldNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void testMonitorStatsRecordHoldAndContention() throws Exception {
+    VersionBucketStats stats = new VersionBucketStats();
+    MonitoredVersionBucket bucket = new MonitoredVersionBucket(stats);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    Thread holder =
+        new Thread(
+            () -> {
+              try {
+                bucket.runWithLock(
+                    0,
+                    () -> {
+                      try {
+                        locked.countDown();
+                        Thread.sleep(50);
+                      } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      }
+                      return null;
+                    });
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    holder.start();
+    locked.await();
+
+    bucket.runWithLock(0, () -> null);
+    holder.join();
+
+    assertEquals(1, stats.getContendedCount());
+    assertTrue(stats.getMaxWaitNanos() > 0);
+    assertTrue(stats.getMaxHoldNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void testMonitorStatsReentrant() throws Exception {
+    VersionBucketStats stats = new VersionBucketStats();
+    MonitoredVersionBucket bucket = new MonitoredVersionBucket(stats);
+
+    CountDownLatch innerDone = new CountDownLatch(1);
+    CountDownLatch waiting = new CountDownLatch(1);
+    Thread holder =
+        new Thread(
+            () -> {
+              try {
+                bucket.runWithLock(
+                    0,
+                    () -> {
+                      bucket.runWithLock(0, () -> null);
+                      innerDone.countDown();
+                      try {
+                        waiting.await();
+                        Thread.sleep(50);
+                      } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      }
+                      return null;
+                    });
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    holder.start();
+    innerDone.await();
+
+    // the bucket is still held by the outer call once the reentrant one returned
+    waiting.countDown();
+    bucket.runWithLock(0, () -> null);
+    holder.join();
+
+    assertEquals(1, stats.getContendedCount());
+    assertTrue(stats.getMaxHoldNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+}
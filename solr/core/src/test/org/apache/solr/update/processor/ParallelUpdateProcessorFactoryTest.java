@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+public class ParallelUpdateProcessorFactoryTest extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-update-processor-chains.xml", "schema12.xml");
+  }
+
+  @Before
+  public void clearIndex() {
+    assertU(delQ("*:*"));
+    assertU(commit());
+  }
+
+  public void testProcessorsBeforeTheMarkerRunInParallel() throws Exception {
+    UpdateRequestProcessorChain chain =
+        h.getCore().getUpdateProcessingChain("parallel-regex-replace");
+    SolrQueryRequest req = req();
+    try {
+      UpdateRequestProcessor processor = chain.createProcessor(req, new SolrQueryResponse());
+      assertTrue(processor instanceof ParallelUpdateProcessorFactory.ParallelUpdateProcessor);
+      processor.close();
+    } finally {
+      req.close();
+    }
+  }
+
+  public void testUpdatesKeepTheirOrder() throws Exception {
+    int numDocs = atLeast(250);
+    StringBuilder json = new StringBuilder("{");
+    for (int i = 0; i < numDocs; i++) {
+      json.append("\"add\":{\"doc\":{\"id\":\"")
+          .append(i)
+          .append("\",\"title\":\"doc ")
+          .append(i)
+          .append("\"}},");
+    }
+    // a delete and a second version of a document, both after the first version
+    json.append("\"delete\":{\"id\":\"3\"},");
+    json.append("\"add\":{\"doc\":{\"id\":\"7\",\"title\":\"last seven\"}}}");
+
+    updateJ(json.toString(), params("update.chain", "parallel-regex-replace"));
+    assertU(commit());
+
+    assertQ(req("q", "*:*"), "//result[@numFound='" + (numDocs - 1) + "']");
+    assertQ(req("q", "id:3"), "//result[@numFound='0']");
+    assertQ(req("q", "id:7"), "//str[@name='title'][.='lastXseven']");
+    assertQ(
+        req("q", "id:" + (numDocs - 1)), "//str[@name='title'][.='docX" + (numDocs - 1) + "']");
+  }
+
+  public void testRejectsDocumentsAfterAFailure() throws Exception {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 50; i++) {
+      json.append("{\"id\":\"").append(i).append("\",\"title\":\"doc ").append(i).append("\"},");
+    }
+    // no id, fails in the update handler after the documents before it were added
+    json.append("{\"title\":\"no id\"},");
+    json.append("{\"id\":\"50\",\"title\":\"doc 50\"}]");
+
+    expectThrows(
+        Exception.class,
+        () -> updateJ(json.toString(), params("update.chain", "parallel-regex-replace")));
+    assertU(commit());
+
+    assertQ(req("q", "*:*"), "//result[@numFound='50']");
+    assertQ(req("q", "id:50"), "//result[@numFound='0']");
+  }
+
+  public void testPassThroughOutsideOfAChain() {
+    ParallelUpdateProcessorFactory factory = new ParallelUpdateProcessorFactory();
+    factory.init(null);
+    UpdateRequestProcessor next = new UpdateRequestProcessor(null) {};
+    SolrQueryRequest req = req();
+    try {
+      assertSame(next, factory.getInstance(req, new SolrQueryResponse(), next));
+    } finally {
+      req.close();
+    }
+  }
+
+  public void testPrefixRunsConcurrently() throws Exception {
+    // every worker blocks on its first document until all of them started one
+    CountDownLatch started = new CountDownLatch(4);
+    UpdateRequestProcessorFactory probe =
+        new UpdateRequestProcessorFactory() {
+          @Override
+          public UpdateRequestProcessor getInstance(
+              SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor next) {
+            return new UpdateRequestProcessor(next) {
+              @Override
+              public void processAdd(AddUpdateCommand cmd) throws IOException {
+                started.countDown();
+                try {
+                  if (!started.await(30, TimeUnit.SECONDS)) {
+                    throw new SolrException(
+                        SolrException.ErrorCode.SERVER_ERROR, "the workers did not overlap");
+                  }
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+                }
+                super.processAdd(cmd);
+              }
+            };
+          }
+        };
+
+    List<String> ids = processAdds(probe, 4, 8, 16);
+    assertEquals(0, started.getCount());
+    assertEquals(ids(0, 16), ids);
+  }
+
+  public void testFailureInAConcurrentShare() throws Exception {
+    UpdateRequestProcessorFactory failing =
+        new UpdateRequestProcessorFactory() {
+          @Override
+          public UpdateRequestProcessor getInstance(
+              SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor next) {
+            return new UpdateRequestProcessor(next) {
+              @Override
+              public void processAdd(AddUpdateCommand cmd) throws IOException {
+                if ("25".equals(cmd.getSolrInputDocument().getFieldValue("id"))) {
+                  throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "bad doc 25");
+                }
+                super.processAdd(cmd);
+              }
+            };
+          }
+        };
+
+    // 4 shares of 10 documents, the third share fails after forwarding docs 20 to 24
+    List<String> ids = Collections.synchronizedList(new ArrayList<>());
+    SolrException e =
+        expectThrows(SolrException.class, () -> processAdds(failing, 4, 40, 40, ids));
+    assertEquals("bad doc 25", e.getMessage());
+    assertEquals(ids(0, 25), ids);
+  }
+
+  public void testLogProcessorRunsOncePerRequest() throws Exception {
+    LogUpdateProcessorFactory logFactory = new LogUpdateProcessorFactory();
+    logFactory.init(new NamedList<>(Map.of("slowUpdateThresholdMillis", 0)));
+    ParallelUpdateProcessorFactory parallelFactory = newParallelFactory(4, 10);
+    UpdateRequestProcessorChain chain =
+        new UpdateRequestProcessorChain(
+            List.of(logFactory, new PassThroughFactory(), parallelFactory),
+            h.getCore());
+    SolrQueryRequest req = req();
+    try {
+      UpdateRequestProcessor processor =
+          chain.createProcessor(req, new SolrQueryResponse(), false, new RecordingProcessor(null));
+      assertTrue(processor instanceof ParallelUpdateProcessorFactory.ParallelUpdateProcessor);
+      assertTrue(processor.next instanceof LogUpdateProcessorFactory.LogUpdateProcessor);
+      processor.close();
+    } finally {
+      req.close();
+    }
+  }
+
+  private ParallelUpdateProcessorFactory newParallelFactory(int threads, int batchSize) {
+    ParallelUpdateProcessorFactory factory = new ParallelUpdateProcessorFactory();
+    factory.init(
+        new NamedList<>(
+            Map.of(
+                ParallelUpdateProcessorFactory.THREADS_PARAM,
+                threads,
+                ParallelUpdateProcessorFactory.BATCH_SIZE_PARAM,
+                batchSize)));
+    factory.inform(h.getCore());
+    return factory;
+  }
+
+  private List<String> processAdds(
+      UpdateRequestProcessorFactory prefix, int threads, int batchSize, int numDocs)
+      throws IOException {
+    List<String> ids = Collections.synchronizedList(new ArrayList<>());
+    processAdds(prefix, threads, batchSize, numDocs, ids);
+    return ids;
+  }
+
+  /** Runs adds through a chain of the prefix and a parallel marker, recording what comes out. */
+  private void processAdds(
+      UpdateRequestProcessorFactory prefix,
+      int threads,
+      int batchSize,
+      int numDocs,
+      List<String> ids)
+      throws IOException {
+    UpdateRequestProcessorChain chain =
+        new UpdateRequestProcessorChain(
+            List.of(prefix, newParallelFactory(threads, batchSize)), h.getCore());
+    SolrQueryRequest req = req();
+    try {
+      UpdateRequestProcessor processor =
+          chain.createProcessor(req, new SolrQueryResponse(), false, new RecordingProcessor(ids));
+      try {
+        for (int i = 0; i < numDocs; i++) {
+          AddUpdateCommand cmd = new AddUpdateCommand(req);
+          cmd.solrDoc = sdoc("id", String.valueOf(i));
+          processor.processAdd(cmd);
+        }
+        processor.finish();
+      } finally {
+        processor.close();
+      }
+    } finally {
+      req.close();
+    }
+  }
+
+  private static List<String> ids(int from, int to) {
+    List<String> ids = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      ids.add(String.valueOf(i));
+    }
+    return ids;
+  }
+
+  private static class PassThroughFactory extends UpdateRequestProcessorFactory {
+    @Override
+    public UpdateRequestProcessor getInstance(
+        SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor next) {
+      return new UpdateRequestProcessor(next) {};
+    }
+  }
+
+  /** The end of a chain, recording the ids of the added documents in the order they arrive. */
+  private static class RecordingProcessor extends UpdateRequestProcessor {
+    private final List<String> ids;
+
+    RecordingProcessor(List<String> ids) {
+      super(null);
+      this.ids = ids;
+    }
+
+    @Override
+    public void processAdd(AddUpdateCommand cmd) {
+      ids.add((String) cmd.getSolrInputDocument().getFieldValue("id"));
+    }
+  }
+}
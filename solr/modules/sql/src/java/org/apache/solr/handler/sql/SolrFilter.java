@@ -18,6 +18,7 @@ package org.apache.solr.handler.sql;
 
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -100,8 +101,21 @@ class SolrFilter extends Filter implements SolrRel {
     if (getInput() instanceof SolrAggregate) {
       HavingTranslator translator =
           new HavingTranslator(getRowType(), implementor.reverseAggMappings, builder);
-      String havingPredicate = translator.translateMatch(condition);
-      implementor.setHavingPredicate(havingPredicate);
+      // lower bounds of COUNT(*) are pushed down as the minimum count of the buckets, so that the
+      // buckets Solr returns up to the limit are not filtered out afterwards
+      List<RexNode> conditions = new ArrayList<>();
+      for (RexNode node : RelOptUtil.conjunctions(condition)) {
+        Integer minCount = translator.translateMinCount(node);
+        if (minCount == null) {
+          conditions.add(node);
+        } else {
+          implementor.setMinCount(Math.max(implementor.minCount, minCount));
+        }
+      }
+      if (!conditions.isEmpty()) {
+        RexNode havingCondition = RexUtil.composeConjunction(builder, conditions);
+        implementor.setHavingPredicate(translator.translateMatch(havingCondition));
+      }
     } else {
       Translator translator = new Translator(getRowType(), builder);
       String query = translator.translateMatch(condition);
@@ -706,6 +720,8 @@ class SolrFilter extends Filter implements SolrRel {
 
   private static class HavingTranslator extends Translator {
 
+    private static final String COUNT_STAR = SolrAggregate.solrAggMetricId("COUNT", "*");
+
     private final Map<String, String> reverseAggMappings;
 
     HavingTranslator(
@@ -727,6 +743,32 @@ class SolrFilter extends Filter implements SolrRel {
       }
     }
 
+    /**
+     * Returns the minimum count of the buckets if the condition is a lower bound of COUNT(*), such
+     * as {@code COUNT(*) > 10}, or null otherwise.
+     */
+    Integer translateMinCount(RexNode condition) {
+      if (!condition.isA(SqlKind.GREATER_THAN) && !condition.isA(SqlKind.GREATER_THAN_OR_EQUAL)) {
+        return null;
+      }
+      RexCall call = (RexCall) condition;
+      if (!(call.getOperands().get(0) instanceof RexInputRef)
+          || !(call.getOperands().get(1) instanceof RexLiteral)) {
+        return null;
+      }
+      Pair<String, RexLiteral> pair = translateBinary(call);
+      BigDecimal bound = pair.getValue().getValueAs(BigDecimal.class);
+      if (!COUNT_STAR.equals(pair.getKey()) || bound == null) {
+        return null;
+      }
+      bound =
+          condition.isA(SqlKind.GREATER_THAN)
+              ? bound.setScale(0, RoundingMode.FLOOR).add(BigDecimal.ONE)
+              : bound.setScale(0, RoundingMode.CEILING);
+      // a bucket always has one document at least
+      return bound.max(BigDecimal.ONE).min(BigDecimal.valueOf(Integer.MAX_VALUE)).intValue();
+    }
+
     @Override
     protected String translateOr(RexNode condition) {
       List<String> ors = new ArrayList<>();
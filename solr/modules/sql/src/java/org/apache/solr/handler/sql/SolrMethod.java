@@ -34,6 +34,7 @@ enum SolrMethod {
       String.class,
       String.class,
       String.class,
+      int.class,
       String.class);
 
   public final Method method;
@@ -43,6 +43,7 @@ interface SolrRel extends RelNode {
     final Map<String, String> reverseAggMappings = new HashMap<>();
     String query = null;
     String havingPredicate;
+    int minCount = 1;
     boolean negativeQuery;
     String limitValue = null;
     String offsetValue = null;
@@ -98,6 +99,10 @@ interface SolrRel extends RelNode {
       this.havingPredicate = havingPredicate;
     }
 
+    void setMinCount(int minCount) {
+      this.minCount = minCount;
+    }
+
     void setLimit(String limit) {
       limitValue = limit;
     }
@@ -147,6 +147,7 @@ class SolrTable extends AbstractQueryableTable implements TranslatableTable {
       final String limit,
       final String negativeQuery,
       final String havingPredicate,
+      final int minCount,
       final String offset) {
     // SolrParams should be a ModifiableParams instead of a map
     boolean mapReduce = "map_reduce".equals(properties.getProperty("aggregationMode"));
@@ -185,7 +186,7 @@ class SolrTable extends AbstractQueryableTable implements TranslatableTable {
                     buckets,
                     metricPairs,
                     limit,
-                    havingPredicate);
+                    withMinCount(havingPredicate, minCount));
           } else {
             tupleStream =
                 handleGroupByFacet(
@@ -197,7 +198,8 @@ class SolrTable extends AbstractQueryableTable implements TranslatableTable {
                     buckets,
                     metricPairs,
                     limit,
-                    havingPredicate);
+                    havingPredicate,
+                    minCount);
           }
         }
       }
@@ -220,6 +222,37 @@ class SolrTable extends AbstractQueryableTable implements TranslatableTable {
     };
   }
 
+  /**
+   * Adds the minimum count of the buckets to a HAVING predicate, for the aggregations that don't
+   * filter the buckets on their count in Solr.
+   */
+  static String withMinCount(String havingPredicate, int minCount) {
+    if (minCount <= 1) {
+      return havingPredicate;
+    }
+    String countPredicate = "gteq(count(*)," + minCount + ")";
+    return havingPredicate == null
+        ? countPredicate
+        : "and(" + havingPredicate + "," + countPredicate + ")";
+  }
+
+  /**
+   * Returns how a query pushed down to Solr is executed, as shown by EXPLAIN: an export or select
+   * query, a stats query, or a group by with JSON facets or map_reduce.
+   */
+  String getRequestType(
+      List<String> buckets, List<Pair<String, String>> metricPairs, String limit) {
+    if (metricPairs.isEmpty() && buckets.isEmpty()) {
+      return limit == null ? "export" : "select";
+    } else if (buckets.isEmpty()) {
+      return "stats";
+    } else {
+      return "map_reduce".equals(schema.properties.getProperty("aggregationMode"))
+          ? "map_reduce"
+          : "facet";
+    }
+  }
+
   private static StreamComparator bucketSortComp(List<Bucket> buckets, Map<String, String> dirs) {
     FieldComparator[] comps = new FieldComparator[buckets.size()];
     for (int i = 0; i < buckets.size(); i++) {
@@ -659,7 +692,8 @@ class SolrTable extends AbstractQueryableTable implements TranslatableTable {
       final List<String> bucketFields,
       final List<Pair<String, String>> metricPairs,
       final String lim,
-      final String havingPredicate)
+      final String havingPredicate,
+      final int minCount)
       throws IOException {
 
     Map<String, Class<?>> fmap = new HashMap<>();
@@ -699,8 +733,10 @@ class SolrTable extends AbstractQueryableTable implements TranslatableTable {
 
     int overfetch = (int) (limit * 1.25);
 
-    TupleStream tupleStream =
+    FacetStream facetStream =
         new FacetStream(zkHost, collection, solrParams, buckets, metrics, sorts, overfetch);
+    facetStream.setMincount(minCount);
+    TupleStream tupleStream = facetStream;
 
     StreamFactory factory =
         new StreamFactory()
@@ -963,6 +999,7 @@ class SolrTable extends AbstractQueryableTable implements TranslatableTable {
         String limit,
         String negativeQuery,
         String havingPredicate,
+        int minCount,
         String offset) {
       return getTable()
           .query(
@@ -975,6 +1012,7 @@ class SolrTable extends AbstractQueryableTable implements TranslatableTable {
               limit,
               negativeQuery,
               havingPredicate,
+              minCount,
               offset);
     }
   }
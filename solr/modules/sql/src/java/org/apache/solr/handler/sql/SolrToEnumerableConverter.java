@@ -36,6 +36,7 @@ import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
 import org.apache.calcite.rel.convert.ConverterImpl;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
@@ -59,6 +60,49 @@ class SolrToEnumerableConverter extends ConverterImpl implements EnumerableRel {
     return super.computeSelfCost(planner, mq).multiplyBy(.1);
   }
 
+  @Override
+  public RelWriter explainTerms(RelWriter pw) {
+    super.explainTerms(pw);
+    // While planning the input is a subset of equivalent nodes, only a chosen plan can be shown
+    if (!(getInput() instanceof SolrRel)) {
+      return pw;
+    }
+
+    // Show the request the Solr nodes below are pushed down to
+    final SolrRel.Implementor solrImplementor = new SolrRel.Implementor();
+    solrImplementor.visitChild(0, getInput());
+    String query = solrImplementor.query;
+    if (query != null && solrImplementor.negativeQuery) {
+      query = "*:* AND " + query;
+    }
+    final List<String> metrics = new ArrayList<>();
+    for (Pair<String, String> metricPair : solrImplementor.metricPairs) {
+      metrics.add(SolrAggregate.solrAggMetricId(metricPair.getKey(), metricPair.getValue()));
+    }
+    String request =
+        solrImplementor.solrTable.getRequestType(
+            solrImplementor.buckets, solrImplementor.metricPairs, solrImplementor.limitValue);
+    // only JSON facets filter the buckets on their count in Solr
+    boolean facet = "facet".equals(request);
+    String havingPredicate =
+        facet
+            ? solrImplementor.havingPredicate
+            : SolrTable.withMinCount(solrImplementor.havingPredicate, solrImplementor.minCount);
+    return pw.item("request", request)
+        .item("q", query == null ? "*:*" : query)
+        .item(
+            "fl",
+            generateFields(SolrRules.solrFieldNames(getRowType()), solrImplementor.fieldMappings))
+        .itemIf("sort", solrImplementor.orders, !solrImplementor.orders.isEmpty())
+        .itemIf("buckets", solrImplementor.buckets, !solrImplementor.buckets.isEmpty())
+        .itemIf("metrics", metrics, !metrics.isEmpty())
+        .itemIf("mincount", solrImplementor.minCount, facet && solrImplementor.minCount > 1)
+        // the rest of the HAVING clause isn't sent to Solr, a HavingStream filters the buckets
+        .itemIf("havingStream", havingPredicate, havingPredicate != null)
+        .itemIf("limit", solrImplementor.limitValue, solrImplementor.limitValue != null)
+        .itemIf("offset", solrImplementor.offsetValue, solrImplementor.offsetValue != null);
+  }
+
   @Override
   public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     // Generates a call to "query" with the appropriate fields
@@ -105,6 +149,8 @@ class SolrToEnumerableConverter extends ConverterImpl implements EnumerableRel {
     final Expression havingPredicate =
         list.append(
             "havingTest", Expressions.constant(solrImplementor.havingPredicate, String.class));
+    final Expression minCount =
+        list.append("minCount", Expressions.constant(solrImplementor.minCount));
     final Expression offset =
         list.append("offset", Expressions.constant(solrImplementor.offsetValue));
     Expression enumerable =
@@ -121,6 +167,7 @@ class SolrToEnumerableConverter extends ConverterImpl implements EnumerableRel {
                 limit,
                 negativeQuery,
                 havingPredicate,
+                minCount,
                 offset));
     Hook.QUERY_PLAN.run(query);
     list.add(Expressions.return_(null, enumerable));
@@ -3397,4 +3397,56 @@ public class TestSQLHandler extends SolrCloudTestCase {
     expectResults(
         "select id, stringxmv from $ALIAS WHERE array_contains_any(stringxmv, ('a', 'e'))", 3);
   }
+
+  @Test
+  public void testExplainPushDown() throws Exception {
+    new UpdateRequest()
+        .add("id", "1", "b_s", "foo", "a_i", "1")
+        .add("id", "2", "b_s", "bar", "a_i", "2")
+        .commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    String plan =
+        expectResults(
+                "EXPLAIN PLAN FOR SELECT b_s, COUNT(*), COUNT(DISTINCT a_i) FROM $ALIAS "
+                    + "GROUP BY b_s HAVING COUNT(*) > 1 AND COUNT(DISTINCT a_i) > 0",
+                1)
+            .get(0)
+            .getString("PLAN");
+    assertTrue(plan, plan.contains("SolrToEnumerableConverter(request=[facet]"));
+    assertTrue(plan, plan.contains("buckets=[[b_s]]"));
+    assertTrue(plan, plan.contains("metrics=[[count(*), countDist(a_i)]]"));
+    // the bound of COUNT(*) is sent to Solr, the rest of the HAVING clause isn't
+    assertTrue(plan, plan.contains("mincount=[2]"));
+    assertTrue(plan, plan.contains("havingStream=[gt(countDist(a_i)"));
+
+    plan =
+        expectResults("EXPLAIN PLAN FOR SELECT id FROM $ALIAS ORDER BY id ASC LIMIT 5", 1)
+            .get(0)
+            .getString("PLAN");
+    assertTrue(plan, plan.contains("SolrToEnumerableConverter(request=[select]"));
+    assertTrue(plan, plan.contains("fl=[[id]]"));
+    assertTrue(plan, plan.contains("limit=[5]"));
+  }
+
+  @Test
+  public void testHavingCountPushDown() throws Exception {
+    new UpdateRequest()
+        .add("id", "1", "b_s", "bar")
+        .add("id", "2", "b_s", "foo")
+        .add("id", "3", "b_s", "foo")
+        .commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    // Solr filters the buckets on their count before the limit, so the bucket of bar doesn't
+    // take the only slot and leave no bucket for the HAVING clause to keep
+    List<Tuple> tuples =
+        expectResults(
+            "SELECT b_s, COUNT(*) AS c FROM $ALIAS GROUP BY b_s HAVING COUNT(*) > 1 "
+                + "ORDER BY b_s ASC LIMIT 1",
+            1);
+    assertEquals("foo", tuples.get(0).getString("b_s"));
+    assertEquals(2L, (long) tuples.get(0).getLong("c"));
+
+    expectResults("SELECT b_s, COUNT(*) FROM $ALIAS GROUP BY b_s HAVING COUNT(*) >= 3", 0);
+    expectResults("SELECT b_s, COUNT(*) FROM $ALIAS GROUP BY b_s HAVING COUNT(*) >= 1", 2);
+  }
 }
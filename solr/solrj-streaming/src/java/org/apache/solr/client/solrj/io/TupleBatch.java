@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io;
+
+import org.apache.solr.client.solrj.io.stream.TupleStream;
+
+/**
+ * A batch of tuples read with {@link TupleStream#readBatch}. A batch holds up to its capacity of
+ * tuples, and once the stream is exhausted the EOF tuple that ended it. The batch is reused by the
+ * reader, so the tuples have to be taken out of it before it is read into again.
+ */
+public class TupleBatch {
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final Tuple[] tuples;
+  private int size;
+  private Tuple eof;
+
+  public TupleBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TupleBatch(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.tuples = new Tuple[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return tuples.length;
+  }
+
+  /** Whether the batch can take no more tuples, either because it is full or it ended. */
+  public boolean isFull() {
+    return size == tuples.length || eof != null;
+  }
+
+  public Tuple get(int index) {
+    return tuples[index];
+  }
+
+  /** Replaces the tuple at the index, for streams transforming the tuples of a batch in place. */
+  public void set(int index, Tuple tuple) {
+    tuples[index] = tuple;
+  }
+
+  /** Adds a tuple, or ends the batch if it is an EOF tuple. */
+  public void add(Tuple tuple) {
+    if (tuple.EOF) {
+      eof = tuple;
+    } else {
+      tuples[size++] = tuple;
+    }
+  }
+
+  /** Whether the stream ended with this batch, the batch may still hold tuples before the end. */
+  public boolean isEOF() {
+    return eof != null;
+  }
+
+  /** The EOF tuple that ended the stream, null if the stream has more tuples. */
+  public Tuple getEOF() {
+    return eof;
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      tuples[i] = null;
+    }
+    size = 0;
+    eof = null;
+  }
+}
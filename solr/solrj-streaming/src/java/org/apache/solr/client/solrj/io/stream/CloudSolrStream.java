@@ -38,6 +38,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.ComparatorOrder;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.MultipleFieldComparator;
@@ -453,6 +454,43 @@ public class CloudSolrStream extends TupleStream implements Expressible {
     return _read();
   }
 
+  /**
+   * Fills the batch from the shard streams. Once the next tuple is taken from a shard, the tuples
+   * following it in the same shard are taken too, as long as they sort before the heads of the
+   * other shards, so that the shards are only re-ordered when the merge switches between them.
+   */
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    batch.clear();
+    while (!batch.isFull()) {
+      TupleWrapper tw = tuples.pollFirst();
+      if (tw == null) {
+        Tuple tuple = Tuple.EOF();
+        if (trace) {
+          tuple.put("_COLLECTION_", this.collection);
+        }
+        batch.add(tuple);
+        return;
+      }
+
+      boolean more;
+      do {
+        Tuple t = tw.getTuple();
+        if (trace) {
+          t.put("_COLLECTION_", this.collection);
+        }
+        batch.add(t);
+        more = tw.next();
+      } while (more
+          && !batch.isFull()
+          && (tuples.isEmpty() || tw.compareTo(tuples.first()) < 0));
+
+      if (more) {
+        tuples.add(tw);
+      }
+    }
+  }
+
   protected Tuple _read() throws IOException {
     TupleWrapper tw = tuples.pollFirst();
     if (tw != null) {
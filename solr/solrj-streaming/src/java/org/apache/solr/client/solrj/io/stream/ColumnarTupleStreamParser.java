@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the columnar output of the <code>/export</code> handler, requested with <code>
+ * export.format=columnar</code> and <code>wt=javabin</code>.
+ *
+ * <p>Instead of one map per document, the handler writes record batches. A batch holds the number
+ * of rows and one entry per exported field, with the values of all rows of the batch in a single
+ * big-endian byte array: ints and floats take 4 bytes, longs, doubles and dates (epoch
+ * milliseconds) 8 bytes and booleans 1 byte. Strings are sent as a dictionary of the distinct
+ * values of the batch, and an array of ordinals into it, 1, 2 or 4 bytes wide. Multivalued fields
+ * are sent as a list of values per row. A column where some rows have no value also has a bitmap of
+ * the rows that have one.
+ *
+ * <p>The batches are turned back into one map per document, with the same types as {@link
+ * JavabinTupleStreamParser} returns when it only returns JSON types.
+ */
+public class ColumnarTupleStreamParser implements TupleStreamParser {
+  /** Request parameter selecting the output format of the export handler */
+  public static final String FORMAT_PARAM = "export.format";
+
+  /** Value of {@link #FORMAT_PARAM} requesting columnar output */
+  public static final String FORMAT = "columnar";
+
+  public static final String ROWS = "rows";
+  public static final String COLUMNS = "columns";
+  public static final String NAME = "name";
+  public static final String TYPE = "type";
+  public static final String VALUES = "values";
+  public static final String PRESENT = "present";
+  public static final String DICT = "dict";
+  public static final String WIDTH = "width";
+
+  public static final String TYPE_INT = "int";
+  public static final String TYPE_LONG = "long";
+  public static final String TYPE_FLOAT = "float";
+  public static final String TYPE_DOUBLE = "double";
+  public static final String TYPE_DATE = "date";
+  public static final String TYPE_BOOLEAN = "boolean";
+  public static final String TYPE_STRING = "string";
+  public static final String TYPE_LIST = "list";
+
+  private final JavabinTupleStreamParser batches;
+  private List<Map<String, Object>> rows = Collections.emptyList();
+  private int next;
+
+  public ColumnarTupleStreamParser(InputStream is) throws IOException {
+    this.batches = new JavabinTupleStreamParser(is, true);
+  }
+
+  @Override
+  public Map<String, Object> next() throws IOException {
+    while (next == rows.size()) {
+      Map<String, Object> batch = batches.next();
+      if (batch == null) {
+        return null;
+      }
+      if (!batch.containsKey(COLUMNS)) {
+        // not a batch, e.g. an exception
+        return batch;
+      }
+      rows = decode(batch);
+      next = 0;
+    }
+    return rows.get(next++);
+  }
+
+  @Override
+  public void close() throws IOException {
+    batches.close();
+  }
+
+  @SuppressWarnings("unchecked")
+  static List<Map<String, Object>> decode(Map<String, Object> batch) {
+    int numRows = ((Number) batch.get(ROWS)).intValue();
+    List<Map<String, Object>> docs = new ArrayList<>(numRows);
+    for (int row = 0; row < numRows; row++) {
+      docs.add(new LinkedHashMap<>());
+    }
+    for (Map<String, Object> column : (List<Map<String, Object>>) batch.get(COLUMNS)) {
+      String name = (String) column.get(NAME);
+      String type = (String) column.get(TYPE);
+      byte[] present = (byte[]) column.get(PRESENT);
+      Object values = column.get(VALUES);
+      ByteBuffer bytes = values instanceof byte[] ? ByteBuffer.wrap((byte[]) values) : null;
+      List<Object> dict = (List<Object>) column.get(DICT);
+      int width = column.containsKey(WIDTH) ? ((Number) column.get(WIDTH)).intValue() : 0;
+      for (int row = 0; row < numRows; row++) {
+        if (present != null && (present[row >>> 3] & (1 << (row & 7))) == 0) {
+          continue;
+        }
+        Object value;
+        switch (type) {
+          case TYPE_INT:
+            value = (long) bytes.getInt(row * Integer.BYTES);
+            break;
+          case TYPE_FLOAT:
+            value = (double) Float.intBitsToFloat(bytes.getInt(row * Integer.BYTES));
+            break;
+          case TYPE_LONG:
+            value = bytes.getLong(row * Long.BYTES);
+            break;
+          case TYPE_DOUBLE:
+            value = Double.longBitsToDouble(bytes.getLong(row * Long.BYTES));
+            break;
+          case TYPE_DATE:
+            value = Instant.ofEpochMilli(bytes.getLong(row * Long.BYTES)).toString();
+            break;
+          case TYPE_BOOLEAN:
+            value = bytes.get(row) != 0;
+            break;
+          case TYPE_STRING:
+            value = dict.get(ordinal(bytes, row, width));
+            break;
+          case TYPE_LIST:
+            value = ((List<Object>) values).get(row);
+            break;
+          default:
+            throw new IllegalStateException("Unknown column type: " + type);
+        }
+        docs.get(row).put(name, value);
+      }
+    }
+    return docs;
+  }
+
+  private static int ordinal(ByteBuffer bytes, int row, int width) {
+    switch (width) {
+      case 1:
+        return bytes.get(row) & 0xFF;
+      case 2:
+        return bytes.getShort(row * Short.BYTES) & 0xFFFF;
+      default:
+        return bytes.getInt(row * Integer.BYTES);
+    }
+  }
+}
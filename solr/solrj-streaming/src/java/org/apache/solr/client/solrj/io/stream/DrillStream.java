@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -265,6 +266,11 @@ public class DrillStream extends CloudSolrStream implements Expressible {
     return tuple;
   }
 
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    readTuples(batch);
+  }
+
   @Override
   public void setStreamContext(StreamContext streamContext) {
     this.streamContext = streamContext;
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.common.util.IOUtils;
+
+/**
+ * Sorts tuples within the memory budget of a {@link StreamContext}. The tuples are sorted in memory
+ * until they go over the budget, then the sorted run is spilled to a {@link SpillFile} and a new
+ * run is started. Once all the tuples are added, the runs on disk and the last run, which stays in
+ * memory, are merged. The sort is stable, equal tuples are returned in the order they were added.
+ */
+class ExternalTupleSorter implements Closeable {
+
+  private final Comparator<Tuple> comparator;
+  private final StreamContext context;
+
+  private List<Tuple> run = new ArrayList<>();
+  private long runBytes;
+  private long maxRunBytes;
+  private final List<SpillFile> spills = new ArrayList<>();
+
+  private PriorityQueue<Cursor> queue;
+
+  ExternalTupleSorter(Comparator<Tuple> comparator, StreamContext context) {
+    this.comparator = comparator;
+    this.context = context;
+  }
+
+  void add(Tuple tuple) throws IOException {
+    run.add(tuple);
+    runBytes += SpillFile.ramBytes(tuple);
+    maxRunBytes = Math.max(maxRunBytes, runBytes);
+    if (context.isOverMemoryBudget(runBytes)) {
+      run.sort(comparator);
+      SpillFile spill = new SpillFile(context);
+      spills.add(spill);
+      for (Tuple t : run) {
+        spill.write(t);
+      }
+      run = new ArrayList<>();
+      runBytes = 0;
+    }
+  }
+
+  /** The most bytes of tuples held in memory by a run. */
+  long getMaxRunBytes() {
+    return maxRunBytes;
+  }
+
+  /** Whether some of the tuples were spilled to disk. */
+  boolean spilled() {
+    return !spills.isEmpty();
+  }
+
+  /** Sorts the tuples added, to be read with {@link #next()}. */
+  void sort() throws IOException {
+    run.sort(comparator);
+    List<Cursor> cursors = new ArrayList<>(spills.size() + 1);
+    for (int i = 0; i < spills.size(); i++) {
+      cursors.add(new Cursor(i, spills.get(i).reader()::next));
+    }
+    Iterator<Tuple> it = run.iterator();
+    cursors.add(new Cursor(spills.size(), () -> it.hasNext() ? it.next() : null));
+
+    queue = new PriorityQueue<>(cursors.size());
+    for (Cursor cursor : cursors) {
+      if (cursor.tuple != null) {
+        queue.add(cursor);
+      }
+    }
+  }
+
+  /** Returns the next tuple in sorted order, or null after the last one. */
+  Tuple next() throws IOException {
+    Cursor cursor = queue.poll();
+    if (cursor == null) {
+      return null;
+    }
+    Tuple tuple = cursor.tuple;
+    if (cursor.advance()) {
+      queue.add(cursor);
+    }
+    return tuple;
+  }
+
+  @Override
+  public void close() throws IOException {
+    run = null;
+    queue = null;
+    for (SpillFile spill : spills) {
+      IOUtils.closeQuietly(spill);
+    }
+    spills.clear();
+  }
+
+  private class Cursor implements Comparable<Cursor> {
+    private final int index;
+    private final SpillFile.TupleSource source;
+    private Tuple tuple;
+
+    Cursor(int index, SpillFile.TupleSource source) throws IOException {
+      this.index = index;
+      this.source = source;
+      advance();
+    }
+
+    boolean advance() throws IOException {
+      tuple = source.next();
+      return tuple != null;
+    }
+
+    @Override
+    public int compareTo(Cursor o) {
+      int comp = comparator.compare(tuple, o.tuple);
+      return comp != 0 ? comp : Integer.compare(index, o.index);
+    }
+  }
+}
@@ -74,6 +74,7 @@ public class FacetStream extends TupleStream implements Expressible, ParallelMet
   private int offset;
   private int overfetch;
   private int bucketSizeLimit;
+  private int mincount = 1;
   private boolean refine;
   private String method;
   private FieldComparator[] bucketSorts;
@@ -142,6 +143,8 @@ public class FacetStream extends TupleStream implements Expressible, ParallelMet
     StreamExpressionNamedParameter overfetchExpression =
         factory.getNamedOperand(expression, "overfetch");
     StreamExpressionNamedParameter refineExpression = factory.getNamedOperand(expression, "refine");
+    StreamExpressionNamedParameter mincountExpression =
+        factory.getNamedOperand(expression, "mincount");
     StreamExpressionNamedParameter methodExpression = factory.getNamedOperand(expression, "method");
 
     // Validate there are no unknown parameters
@@ -179,6 +182,7 @@ public class FacetStream extends TupleStream implements Expressible, ParallelMet
           && !namedParam.getName().equals("offset")
           && !namedParam.getName().equals("rows")
           && !namedParam.getName().equals("refine")
+          && !namedParam.getName().equals("mincount")
           && !namedParam.getName().equals("overfetch")) {
         params.add(namedParam.getName(), namedParam.getParameter().toString().trim());
       }
@@ -392,6 +396,11 @@ public class FacetStream extends TupleStream implements Expressible, ParallelMet
         bucketLimitSet,
         overfetchInt,
         zkHost);
+
+    if (mincountExpression != null) {
+      String mincountStr = ((StreamExpressionValue) mincountExpression.getParameter()).getValue();
+      setMincount(Integer.parseInt(mincountStr));
+    }
   }
 
   // see usage in parallelize method
@@ -413,6 +422,18 @@ public class FacetStream extends TupleStream implements Expressible, ParallelMet
     return this.overfetch;
   }
 
+  public int getMincount() {
+    return this.mincount;
+  }
+
+  /**
+   * Sets the minimum count of the buckets returned, 1 by default. Solr filters the buckets on their
+   * count before it limits them.
+   */
+  public void setMincount(int mincount) {
+    this.mincount = mincount;
+  }
+
   public Bucket[] getBuckets() {
     return this.buckets;
   }
@@ -605,6 +626,11 @@ public class FacetStream extends TupleStream implements Expressible, ParallelMet
       expression.addParameter(new StreamExpressionNamedParameter("method", this.method));
     }
 
+    if (mincount != 1) {
+      expression.addParameter(
+          new StreamExpressionNamedParameter("mincount", Integer.toString(mincount)));
+    }
+
     // zkHost
     expression.addParameter(new StreamExpressionNamedParameter("zkHost", zkHost));
 
@@ -663,8 +689,8 @@ public class FacetStream extends TupleStream implements Expressible, ParallelMet
     var cloudSolrClient = clientCache.getCloudSolrClient(zkHost);
 
     // Parallelize the facet expression across multiple collections for an alias using plist if
-    // possible
-    if (params.getBool(TIERED_PARAM, defaultTieredEnabled)) {
+    // possible, unless the count of the buckets is filtered, as it's only known once rolled up
+    if (mincount <= 1 && params.getBool(TIERED_PARAM, defaultTieredEnabled)) {
       ClusterStateProvider clusterStateProvider = cloudSolrClient.getClusterStateProvider();
       final List<String> resolved =
           clusterStateProvider != null ? clusterStateProvider.resolveAlias(collection) : null;
@@ -843,6 +869,11 @@ public class FacetStream extends TupleStream implements Expressible, ParallelMet
     buf.append(",\"field\":\"").append(_buckets[level].toString()).append('"');
     buf.append(",\"limit\":").append(_limit);
 
+    if (mincount != 1) {
+      // the count of a bucket is never above the count of its parent bucket
+      buf.append(",\"mincount\":").append(mincount);
+    }
+
     if (refine) {
       buf.append(",\"refine\":true");
     }
@@ -21,13 +21,21 @@ import static org.apache.solr.common.params.CommonParams.SORT;
 import static org.apache.solr.common.params.CommonParams.VERSION_FIELD;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.ClusterStateProvider;
 import org.apache.solr.client.solrj.io.Tuple;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -38,14 +46,29 @@ import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionNamedParameter;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionValue;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
+import org.apache.solr.client.solrj.request.schema.SchemaRequest;
 import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.DocRouter;
+import org.apache.solr.common.cloud.HashBasedRouter;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
 
 /**
  * Iterates over a stream and fetches additional fields from a specified collection. Fetches are
  * done in batches.
  *
- * <p>Syntax: fetch(collection, stream, on="a=b", fl="c,d,e", batchSize="50")
+ * <p>With threads greater than one, up to {@link #MAX_THREADS}, that many batches are fetched
+ * concurrently while the tuples are returned in the order of the stream. With route="true" each
+ * batch is sent only to the shards that own its keys, rather than to all the shards, which requires
+ * the right side of the on parameter to be the field the fetched collection is routed on: its
+ * router.field, or its uniqueKey if it has none.
+ *
+ * <p>Syntax: fetch(collection, stream, on="a=b", fl="c,d,e", batchSize="50", threads="1",
+ * route="false")
  *
  * @since 6.3.0
  */
@@ -53,10 +76,20 @@ public class FetchStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
+  /** The most batches that are fetched concurrently. */
+  public static final int MAX_THREADS = 16;
+
   protected String zkHost;
   private TupleStream stream;
   private StreamContext streamContext;
   private Iterator<Tuple> tuples;
+  private Tuple eofTuple;
+  // the batches being fetched, in the order of the stream
+  private Deque<Future<List<Tuple>>> inFlight;
+  private ExecutorService executorService;
+  // the routed collection and the url of a replica of each of its shards, when routing
+  private DocCollection routedCollection;
+  private Map<String, String> shardUrls;
 
   private String leftKey;
   private String rightKey;
@@ -66,6 +99,8 @@ public class FetchStream extends TupleStream implements Expressible {
   private int batchSize;
   private boolean appendVersion = true;
   private boolean appendKey = true;
+  private int threads = 1;
+  private boolean route;
 
   public FetchStream(
       String zkHost,
@@ -75,7 +110,20 @@ public class FetchStream extends TupleStream implements Expressible {
       String fieldList,
       int batchSize)
       throws IOException {
-    init(zkHost, collection, tupleStream, on, fieldList, batchSize);
+    this(zkHost, collection, tupleStream, on, fieldList, batchSize, 1, false);
+  }
+
+  public FetchStream(
+      String zkHost,
+      String collection,
+      TupleStream tupleStream,
+      String on,
+      String fieldList,
+      int batchSize,
+      int threads,
+      boolean route)
+      throws IOException {
+    init(zkHost, collection, tupleStream, on, fieldList, batchSize, threads, route);
   }
 
   public FetchStream(StreamExpression expression, StreamFactory factory) throws IOException {
@@ -88,11 +136,15 @@ public class FetchStream extends TupleStream implements Expressible {
     StreamExpressionNamedParameter flParam = factory.getNamedOperand(expression, "fl");
     StreamExpressionNamedParameter batchSizeParam =
         factory.getNamedOperand(expression, "batchSize");
+    StreamExpressionNamedParameter threadsParam = factory.getNamedOperand(expression, "threads");
+    StreamExpressionNamedParameter routeParam = factory.getNamedOperand(expression, "route");
     StreamExpressionNamedParameter zkHostExpression = factory.getNamedOperand(expression, "zkHost");
 
     String on = null;
     String fl = null;
     int batchSize = 50;
+    int threads = 1;
+    boolean route = false;
 
     if (onParam == null) {
       throw new IOException("on parameter cannot be null for the fetch expression");
@@ -111,6 +163,14 @@ public class FetchStream extends TupleStream implements Expressible {
           Integer.parseInt(((StreamExpressionValue) batchSizeParam.getParameter()).getValue());
     }
 
+    if (threadsParam != null) {
+      threads = Integer.parseInt(((StreamExpressionValue) threadsParam.getParameter()).getValue());
+    }
+
+    if (routeParam != null) {
+      route = Boolean.parseBoolean(((StreamExpressionValue) routeParam.getParameter()).getValue());
+    }
+
     if (1 != streamExpressions.size()) {
       throw new IOException(
           String.format(
@@ -140,7 +200,7 @@ public class FetchStream extends TupleStream implements Expressible {
               collectionName));
     }
 
-    init(zkHost, collectionName, stream, on, fl, batchSize);
+    init(zkHost, collectionName, stream, on, fl, batchSize, threads, route);
   }
 
   private void init(
@@ -149,12 +209,24 @@ public class FetchStream extends TupleStream implements Expressible {
       TupleStream tupleStream,
       String on,
       String fieldList,
-      int batchSize)
+      int batchSize,
+      int threads,
+      boolean route)
       throws IOException {
+    if (threads < 1 || threads > MAX_THREADS) {
+      throw new IOException(
+          String.format(
+              Locale.ROOT,
+              "threads must be between 1 and %d for the fetch expression: %d",
+              MAX_THREADS,
+              threads));
+    }
     this.zkHost = zkHost;
     this.collection = collection;
     this.stream = tupleStream;
     this.batchSize = batchSize;
+    this.threads = threads;
+    this.route = route;
     this.fields = fieldList.split(",");
     this.fieldList = fieldList;
 
@@ -193,6 +265,13 @@ public class FetchStream extends TupleStream implements Expressible {
     expression.addParameter(new StreamExpressionNamedParameter("fl", fieldList));
     expression.addParameter(
         new StreamExpressionNamedParameter("batchSize", Integer.toString(batchSize)));
+    if (threads > 1) {
+      expression.addParameter(
+          new StreamExpressionNamedParameter("threads", Integer.toString(threads)));
+    }
+    if (route) {
+      expression.addParameter(new StreamExpressionNamedParameter("route", "true"));
+    }
 
     // stream
     if (includeStreams) {
@@ -234,87 +313,226 @@ public class FetchStream extends TupleStream implements Expressible {
   @Override
   public void open() throws IOException {
     tuples = Collections.emptyIterator();
+    eofTuple = null;
+    inFlight = new ArrayDeque<>();
     stream.open();
+    if (route) {
+      initRouting();
+    }
+    if (threads > 1) {
+      executorService =
+          ExecutorUtil.newMDCAwareFixedThreadPool(
+              threads, new SolrNamedThreadFactory("FetchStream"));
+    }
   }
 
-  private void fetchBatch() throws IOException {
-    Tuple EOFTuple = null;
+  private void initRouting() throws IOException {
+    ClusterStateProvider clusterStateProvider =
+        streamContext.getSolrClientCache().getCloudSolrClient(zkHost).getClusterStateProvider();
+    List<String> collections = clusterStateProvider.resolveAlias(collection);
+    if (collections.size() != 1) {
+      throw new IOException(
+          String.format(
+              Locale.ROOT,
+              "fetch can only route to a single collection, but %s is %s",
+              collection,
+              collections));
+    }
+    routedCollection = clusterStateProvider.getCollection(collections.get(0));
+    if (routedCollection == null) {
+      throw new IOException("Collection not found: " + collections.get(0));
+    }
+    DocRouter router = routedCollection.getRouter();
+    if (!(router instanceof HashBasedRouter)) {
+      throw new IOException(
+          String.format(
+              Locale.ROOT,
+              "fetch can only route to a hash routed collection, but %s uses %s",
+              routedCollection.getName(),
+              router.getClass().getSimpleName()));
+    }
+    String routeField = router.getRouteField(routedCollection);
+    if (routeField == null) {
+      // the documents are routed on their ids
+      routeField = getUniqueKey(routedCollection.getName());
+    }
+    if (!routeField.equals(rightKey)) {
+      throw new IOException(
+          String.format(
+              Locale.ROOT,
+              "fetch can only route on the field %s if collection %s is routed on it, but it is routed on %s",
+              rightKey,
+              routedCollection.getName(),
+              routeField));
+    }
+
+    shardUrls = new HashMap<>();
+    List<Replica> replicas =
+        getReplicas(zkHost, routedCollection.getName(), streamContext, new ModifiableSolrParams());
+    for (Replica replica : replicas) {
+      shardUrls.put(replica.getShard(), replica.getCoreUrl());
+    }
+  }
+
+  private String getUniqueKey(String collectionName) throws IOException {
+    try {
+      return new SchemaRequest.UniqueKey()
+          .process(streamContext.getSolrClientCache().getCloudSolrClient(zkHost), collectionName)
+          .getUniqueKey();
+    } catch (SolrServerException e) {
+      throw new IOException("Unable to read the uniqueKey of collection " + collectionName, e);
+    }
+  }
+
+  /** Reads the next batch of the stream, an empty batch once the stream has ended. */
+  private List<Tuple> readInputBatch() throws IOException {
     List<Tuple> batch = new ArrayList<>(batchSize);
     for (int i = 0; i < batchSize; i++) {
       Tuple tuple = stream.read();
       if (tuple.EOF) {
-        EOFTuple = tuple;
+        eofTuple = tuple;
         break;
       } else {
         batch.add(tuple);
       }
     }
+    return batch;
+  }
+
+  private Future<List<Tuple>> submit(List<Tuple> batch) {
+    if (executorService != null) {
+      return executorService.submit(() -> fetchBatch(batch));
+    }
+    FutureTask<List<Tuple>> task = new FutureTask<>(() -> fetchBatch(batch));
+    task.run();
+    return task;
+  }
 
-    if (batch.size() > 0) {
-      StringBuilder buf = new StringBuilder(batch.size() * 10 + 20);
-      buf.append("{! df=").append(rightKey).append(" q.op=OR cache=false }"); // disable queryCache
+  private List<Tuple> fetchBatch(List<Tuple> batch) throws IOException {
+    Map<String, Tuple> fetched = new HashMap<>();
+    if (routedCollection == null) {
+      fetch(collection, null, batch, fetched);
+    } else {
+      Map<String, List<Tuple>> shardBatches = new HashMap<>();
       for (Tuple tuple : batch) {
         String key = tuple.getString(leftKey);
-        buf.append(' ').append(ClientUtils.escapeQueryChars(key));
+        Slice slice =
+            routedCollection.getRouter().getTargetSlice(key, null, key, null, routedCollection);
+        shardBatches.computeIfAbsent(slice.getName(), k -> new ArrayList<>()).add(tuple);
       }
-
-      ModifiableSolrParams params = new ModifiableSolrParams();
-      params.add("q", buf.toString());
-      params.add("fl", fieldList + appendFields());
-      params.add("rows", Integer.toString(batchSize));
-      params.add(SORT, "_version_ desc");
-
-      CloudSolrStream cloudSolrStream = new CloudSolrStream(zkHost, collection, params);
-      StreamContext newContext = new StreamContext();
-      newContext.setSolrClientCache(streamContext.getSolrClientCache());
-      newContext.setObjectCache(streamContext.getObjectCache());
-      cloudSolrStream.setStreamContext(newContext);
-      Map<String, Tuple> fetched = new HashMap<>();
-      try {
-        cloudSolrStream.open();
-        while (true) {
-          Tuple t = cloudSolrStream.read();
-          if (t.EOF) {
-            break;
-          } else {
-            String rightValue = t.getString(rightKey);
-            fetched.put(rightValue, t);
-          }
+      for (Map.Entry<String, List<Tuple>> entry : shardBatches.entrySet()) {
+        String shardUrl = shardUrls.get(entry.getKey());
+        if (shardUrl == null) {
+          throw new IOException(
+              String.format(
+                  Locale.ROOT,
+                  "No active replica found for shard %s of collection %s",
+                  entry.getKey(),
+                  routedCollection.getName()));
         }
-      } finally {
-        cloudSolrStream.close();
+        fetch(routedCollection.getName(), shardUrl, entry.getValue(), fetched);
       }
+    }
 
-      // Iterate the batch and add the fetched fields to the Tuples
-      for (Tuple batchTuple : batch) {
-        Tuple fetchedTuple = fetched.get(batchTuple.getString(leftKey));
-        if (fetchedTuple != null) {
-          for (String field : fields) {
-            Object value = fetchedTuple.get(field);
-            if (value != null) {
-              batchTuple.put(field, value);
-            }
+    // Iterate the batch and add the fetched fields to the Tuples
+    for (Tuple batchTuple : batch) {
+      Tuple fetchedTuple = fetched.get(batchTuple.getString(leftKey));
+      if (fetchedTuple != null) {
+        for (String field : fields) {
+          Object value = fetchedTuple.get(field);
+          if (value != null) {
+            batchTuple.put(field, value);
           }
         }
       }
     }
+    return batch;
+  }
 
-    if (EOFTuple != null) {
-      batch.add(EOFTuple);
+  /** Fetches the keys of the tuples, from a single shard if its url is given. */
+  private void fetch(
+      String collection, String shardUrl, List<Tuple> batch, Map<String, Tuple> fetched)
+      throws IOException {
+    StringBuilder buf = new StringBuilder(batch.size() * 10 + 20);
+    buf.append("{! df=").append(rightKey).append(" q.op=OR cache=false }"); // disable queryCache
+    for (Tuple tuple : batch) {
+      String key = tuple.getString(leftKey);
+      buf.append(' ').append(ClientUtils.escapeQueryChars(key));
     }
 
-    this.tuples = batch.iterator();
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    params.add("q", buf.toString());
+    params.add("fl", fieldList + appendFields());
+    params.add("rows", Integer.toString(batchSize));
+    params.add(SORT, "_version_ desc");
+
+    CloudSolrStream cloudSolrStream = new CloudSolrStream(zkHost, collection, params);
+    StreamContext newContext = new StreamContext();
+    newContext.setSolrClientCache(streamContext.getSolrClientCache());
+    newContext.setObjectCache(streamContext.getObjectCache());
+    if (shardUrl != null) {
+      Map<String, List<String>> shards = new HashMap<>();
+      shards.put(collection, new ArrayList<>(List.of(shardUrl)));
+      newContext.put("shards", shards);
+    }
+    cloudSolrStream.setStreamContext(newContext);
+    try {
+      cloudSolrStream.open();
+      while (true) {
+        Tuple t = cloudSolrStream.read();
+        if (t.EOF) {
+          break;
+        } else {
+          String rightValue = t.getString(rightKey);
+          fetched.put(rightValue, t);
+        }
+      }
+    } finally {
+      cloudSolrStream.close();
+    }
   }
 
   @Override
   public void close() throws IOException {
+    if (executorService != null) {
+      for (Future<List<Tuple>> future : inFlight) {
+        future.cancel(true);
+      }
+      ExecutorUtil.shutdownNowAndAwaitTermination(executorService);
+      executorService = null;
+    }
+    inFlight = null;
+    routedCollection = null;
+    shardUrls = null;
     stream.close();
   }
 
   @Override
   public Tuple read() throws IOException {
-    if (!tuples.hasNext()) {
-      fetchBatch();
+    while (!tuples.hasNext()) {
+      // keep up to threads batches in flight, they are returned in the order they were read
+      while (eofTuple == null && inFlight.size() < threads) {
+        List<Tuple> batch = readInputBatch();
+        if (!batch.isEmpty()) {
+          inFlight.add(submit(batch));
+        }
+      }
+
+      Future<List<Tuple>> next = inFlight.poll();
+      if (next == null) {
+        return eofTuple;
+      }
+      try {
+        tuples = next.get().iterator();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
     }
 
     return tuples.next();
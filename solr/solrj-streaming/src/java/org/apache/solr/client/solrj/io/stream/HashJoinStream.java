@@ -16,12 +16,18 @@
  */
 package org.apache.solr.client.solrj.io.stream;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation.ExpressionType;
@@ -31,6 +37,7 @@ import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionNamedParameter;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionValue;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
+import org.apache.solr.common.util.IOUtils;
 
 /**
  * Takes two streams (fullStream and hashStream) and joins them similar to an InnerJoinStream. The
@@ -57,6 +64,20 @@ public class HashJoinStream extends TupleStream implements Expressible {
   protected String workingFullHash = null;
   protected int workngHashSetIdx = 0;
 
+  // the fields ordering the joined tuples by the full tuple and match they came from
+  private static final String SEQ_FIELD = "_hashJoinSeq_";
+  private static final String MATCH_FIELD = "_hashJoinMatch_";
+  private static final Comparator<Tuple> JOIN_ORDER =
+      Comparator.<Tuple>comparingLong(t -> t.getLong(SEQ_FIELD))
+          .thenComparingLong(t -> t.getLong(MATCH_FIELD));
+
+  private transient StreamContext streamContext;
+  // the partitions of the hashed stream, once it went over the memory budget
+  private transient SpillFile[] hashedSpills;
+  private transient ExternalTupleSorter joinedTuples;
+  private transient Tuple eofTuple;
+  private transient long memoryHighWater;
+
   public HashJoinStream(TupleStream fullStream, TupleStream hashStream, List<String> hashOn)
       throws IOException {
     init(fullStream, hashStream, hashOn);
@@ -209,6 +230,7 @@ public class HashJoinStream extends TupleStream implements Expressible {
 
   @Override
   public void setStreamContext(StreamContext context) {
+    this.streamContext = context;
     this.hashStream.setStreamContext(context);
     this.fullStream.setStreamContext(context);
   }
@@ -226,19 +248,223 @@ public class HashJoinStream extends TupleStream implements Expressible {
     hashStream.open();
     fullStream.open();
 
-    Tuple tuple = hashStream.read();
-    while (!tuple.EOF) {
-      String hash = computeHash(tuple, rightHashOn);
-      if (null != hash) {
-        if (hashedTuples.containsKey(hash)) {
-          hashedTuples.get(hash).add(tuple);
-        } else {
-          ArrayList<Tuple> set = new ArrayList<>();
-          set.add(tuple);
-          hashedTuples.put(hash, set);
+    // the hashed stream is read in full, so it is read in batches
+    StreamContext context = context();
+    long bytes = 0;
+    memoryHighWater = 0;
+    TupleBatch batch = new TupleBatch();
+    do {
+      hashStream.readBatch(batch);
+      for (int i = 0; i < batch.size(); i++) {
+        Tuple tuple = batch.get(i);
+        String hash = computeHash(tuple, rightHashOn);
+        if (null == hash) {
+          continue;
+        }
+        if (null != hashedSpills) {
+          spill(hashedSpills, hash, tuple);
+          continue;
+        }
+        hashedTuples.computeIfAbsent(hash, k -> new ArrayList<>()).add(tuple);
+        bytes += SpillFile.ramBytes(tuple);
+        memoryHighWater = Math.max(memoryHighWater, bytes);
+        if (context.isOverMemoryBudget(bytes)) {
+          // from here on the hashed stream and then the full stream are partitioned on disk
+          hashedSpills = new SpillFile[SpillFile.PARTITIONS];
+          for (Map.Entry<String, List<Tuple>> entry : hashedTuples.entrySet()) {
+            for (Tuple hashedTuple : entry.getValue()) {
+              spill(hashedSpills, entry.getKey(), hashedTuple);
+            }
+          }
+          hashedTuples.clear();
         }
       }
-      tuple = hashStream.read();
+    } while (!batch.isEOF());
+  }
+
+  private StreamContext context() {
+    return streamContext != null ? streamContext : new StreamContext();
+  }
+
+  private void spill(SpillFile[] spills, String hash, Tuple tuple) throws IOException {
+    spill(spills, hash, tuple, 0);
+  }
+
+  private void spill(SpillFile[] spills, String hash, Tuple tuple, int level) throws IOException {
+    int p = hash == null ? 0 : SpillFile.partition(hash.hashCode(), level);
+    if (spills[p] == null) {
+      spills[p] = new SpillFile(context());
+    }
+    spills[p].write(tuple);
+  }
+
+  /** Whether the hashed stream went over the memory budget and was partitioned on disk. */
+  protected boolean isSpilled() {
+    return hashedSpills != null;
+  }
+
+  /** Whether tuples of the full stream without matches are returned, as in an outer join. */
+  protected boolean returnsUnmatched() {
+    return false;
+  }
+
+  /**
+   * Reads the joined tuples once the hashed stream was partitioned on disk. The full stream is then
+   * partitioned the same way, each partition of the hashed stream is loaded in memory and joined
+   * with the same partition of the full stream, and the joined tuples are sorted back into the
+   * order of the full stream.
+   */
+  protected Tuple readSpilled() throws IOException {
+    if (null == joinedTuples) {
+      joinSpilled();
+    }
+    Tuple tuple = joinedTuples.next();
+    if (null == tuple) {
+      return eofTuple;
+    }
+    tuple.remove(SEQ_FIELD);
+    tuple.remove(MATCH_FIELD);
+    return tuple;
+  }
+
+  private void joinSpilled() throws IOException {
+    SpillFile[] fullSpills = new SpillFile[SpillFile.PARTITIONS];
+    Deque<Partition> partitions = new ArrayDeque<>();
+    try {
+      long seq = 0;
+      TupleBatch batch = new TupleBatch();
+      do {
+        fullStream.readBatch(batch);
+        for (int i = 0; i < batch.size(); i++) {
+          Tuple fullTuple = batch.get(i);
+          String fullHash = computeHash(fullTuple, leftHashOn);
+          if (null == fullHash && !returnsUnmatched()) {
+            continue;
+          }
+          Tuple seqTuple = fullTuple.clone();
+          seqTuple.put(SEQ_FIELD, seq++);
+          spill(fullSpills, fullHash, seqTuple);
+        }
+      } while (!batch.isEOF());
+      eofTuple = batch.getEOF();
+
+      for (int p = 0; p < SpillFile.PARTITIONS; p++) {
+        if (null != fullSpills[p]) {
+          partitions.add(new Partition(hashedSpills[p], fullSpills[p], 1));
+          hashedSpills[p] = null;
+          fullSpills[p] = null;
+        }
+      }
+
+      joinedTuples = new ExternalTupleSorter(JOIN_ORDER, context());
+      while (!partitions.isEmpty()) {
+        try (Partition partition = partitions.poll()) {
+          joinPartition(partition, partitions);
+        }
+      }
+      joinedTuples.sort();
+    } finally {
+      for (SpillFile spill : fullSpills) {
+        IOUtils.closeQuietly(spill);
+      }
+      for (Partition partition : partitions) {
+        IOUtils.closeQuietly(partition);
+      }
+    }
+  }
+
+  /**
+   * Joins a partition of the hashed stream with the same partition of the full stream. If the
+   * partition of the hashed stream does not fit in the memory budget either, both are partitioned
+   * again on other bits of the hash, and the new partitions are queued instead.
+   */
+  private void joinPartition(Partition partition, Deque<Partition> partitions)
+      throws IOException {
+    Map<String, List<Tuple>> partitionTuples = new HashMap<>();
+    if (null != partition.hashed) {
+      StreamContext context = context();
+      long bytes = 0;
+      SpillFile.Reader reader = partition.hashed.reader();
+      for (Tuple tuple = reader.next(); tuple != null; tuple = reader.next()) {
+        String hash = computeHash(tuple, rightHashOn);
+        partitionTuples.computeIfAbsent(hash, k -> new ArrayList<>()).add(tuple);
+        bytes += SpillFile.ramBytes(tuple);
+        memoryHighWater = Math.max(memoryHighWater, bytes);
+        // past the last level all the hash bits were used, so the tuples share a single hash
+        if (context.isOverMemoryBudget(bytes) && partition.level < SpillFile.LEVELS) {
+          partitionTuples = null;
+          repartition(partition, partitions);
+          return;
+        }
+      }
+    }
+
+    SpillFile.Reader reader = partition.full.reader();
+    for (Tuple fullTuple = reader.next(); fullTuple != null; fullTuple = reader.next()) {
+      String fullHash = computeHash(fullTuple, leftHashOn);
+      List<Tuple> matches = null == fullHash ? null : partitionTuples.get(fullHash);
+      if (null == matches) {
+        if (returnsUnmatched()) {
+          fullTuple.put(MATCH_FIELD, 0L);
+          joinedTuples.add(fullTuple);
+        }
+        continue;
+      }
+      for (int m = 0; m < matches.size(); m++) {
+        Tuple joinedTuple = fullTuple.clone();
+        joinedTuple.merge(matches.get(m));
+        joinedTuple.put(MATCH_FIELD, (long) m);
+        joinedTuples.add(joinedTuple);
+      }
+    }
+  }
+
+  private void repartition(Partition partition, Deque<Partition> partitions) throws IOException {
+    SpillFile[] hashed = new SpillFile[SpillFile.PARTITIONS];
+    SpillFile[] full = new SpillFile[SpillFile.PARTITIONS];
+    try {
+      SpillFile.Reader reader = partition.hashed.reader();
+      for (Tuple tuple = reader.next(); tuple != null; tuple = reader.next()) {
+        spill(hashed, computeHash(tuple, rightHashOn), tuple, partition.level);
+      }
+      reader = partition.full.reader();
+      for (Tuple tuple = reader.next(); tuple != null; tuple = reader.next()) {
+        spill(full, computeHash(tuple, leftHashOn), tuple, partition.level);
+      }
+      for (int p = 0; p < SpillFile.PARTITIONS; p++) {
+        if (null != full[p]) {
+          partitions.add(new Partition(hashed[p], full[p], partition.level + 1));
+          hashed[p] = null;
+          full[p] = null;
+        }
+      }
+    } finally {
+      for (int p = 0; p < SpillFile.PARTITIONS; p++) {
+        IOUtils.closeQuietly(hashed[p]);
+        IOUtils.closeQuietly(full[p]);
+      }
+    }
+  }
+
+  /**
+   * A partition of the hashed stream, which may be null if no hashed tuple fell in it, with the
+   * same partition of the full stream, and the level it is partitioned on if it is split again.
+   */
+  private static class Partition implements Closeable {
+    private final SpillFile hashed;
+    private final SpillFile full;
+    private final int level;
+
+    Partition(SpillFile hashed, SpillFile full, int level) {
+      this.hashed = hashed;
+      this.full = full;
+      this.level = level;
+    }
+
+    @Override
+    public void close() throws IOException {
+      IOUtils.closeQuietly(hashed);
+      full.close();
     }
   }
 
@@ -260,10 +486,23 @@ public class HashJoinStream extends TupleStream implements Expressible {
   public void close() throws IOException {
     hashStream.close();
     fullStream.close();
+    if (null != hashedSpills) {
+      for (SpillFile spill : hashedSpills) {
+        IOUtils.closeQuietly(spill);
+      }
+      hashedSpills = null;
+    }
+    if (null != joinedTuples) {
+      joinedTuples.close();
+      joinedTuples = null;
+    }
   }
 
   @Override
   public Tuple read() throws IOException {
+    if (isSpilled()) {
+      return readSpilled();
+    }
 
     findNextWorkingFullTuple:
     while (null == workingFullTuple) {
@@ -314,4 +553,9 @@ public class HashJoinStream extends TupleStream implements Expressible {
   public int getCost() {
     return 0;
   }
+
+  @Override
+  public long getMemoryHighWater() {
+    return memoryHighWater;
+  }
 }
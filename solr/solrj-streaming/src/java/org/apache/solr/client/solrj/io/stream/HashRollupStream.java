@@ -17,7 +17,9 @@
 package org.apache.solr.client.solrj.io.stream;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -39,6 +41,7 @@ import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionValue;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
 import org.apache.solr.client.solrj.io.stream.metrics.Bucket;
 import org.apache.solr.client.solrj.io.stream.metrics.Metric;
+import org.apache.solr.common.util.IOUtils;
 
 public class HashRollupStream extends TupleStream implements Expressible {
 
@@ -48,7 +51,12 @@ public class HashRollupStream extends TupleStream implements Expressible {
   private Bucket[] buckets;
   private Metric[] metrics;
 
-  private Iterator<Tuple> tupleIterator;
+  private transient StreamContext streamContext;
+  private transient Iterator<Tuple> tupleIterator;
+  // the partitions of tuples spilled to disk, whose buckets did not fit in the memory budget
+  private transient Deque<Partition> partitions;
+  private transient Tuple eofTuple;
+  private transient long memoryHighWater;
 
   public HashRollupStream(TupleStream tupleStream, Bucket[] buckets, Metric[] metrics) {
     init(tupleStream, buckets, metrics);
@@ -188,6 +196,7 @@ public class HashRollupStream extends TupleStream implements Expressible {
 
   @Override
   public void setStreamContext(StreamContext context) {
+    this.streamContext = context;
     this.tupleStream.setStreamContext(context);
   }
 
@@ -201,66 +210,123 @@ public class HashRollupStream extends TupleStream implements Expressible {
   @Override
   public void open() throws IOException {
     tupleStream.open();
+    memoryHighWater = 0;
   }
 
   @Override
   public void close() throws IOException {
     tupleStream.close();
     tupleIterator = null;
+    if (partitions != null) {
+      for (Partition partition : partitions) {
+        IOUtils.closeQuietly(partition.file);
+      }
+      partitions = null;
+    }
   }
 
   @Override
   public Tuple read() throws IOException {
-    // On the first call to read build the tupleIterator.
     if (tupleIterator == null) {
-      Map<HashKey, Metric[]> metricMap = new HashMap<>();
-      while (true) {
-        Tuple tuple = tupleStream.read();
-        if (tuple.EOF) {
-          List<Tuple> tuples = new ArrayList<>();
-          for (Map.Entry<HashKey, Metric[]> entry : metricMap.entrySet()) {
-            Tuple t = new Tuple();
-            Metric[] finishedMetrics = entry.getValue();
-            for (Metric metric : finishedMetrics) {
-              t.put(metric.getIdentifier(), metric.getValue());
-            }
-
-            HashKey hashKey = entry.getKey();
-            for (int i = 0; i < buckets.length; i++) {
-              t.put(buckets[i].toString(), hashKey.getParts()[i]);
-            }
-            tuples.add(t);
-          }
-          tuples.add(tuple);
-          this.tupleIterator = tuples.iterator();
-          break;
-        }
+      partitions = new ArrayDeque<>();
+      tupleIterator =
+          rollup(
+              () -> {
+                Tuple tuple = tupleStream.read();
+                if (tuple.EOF) {
+                  eofTuple = tuple;
+                  return null;
+                }
+                return tuple;
+              },
+              0);
+    }
 
-        Object[] bucketValues = new Object[buckets.length];
-        for (int i = 0; i < buckets.length; i++) {
-          bucketValues[i] = buckets[i].getBucketValue(tuple);
-        }
+    while (!tupleIterator.hasNext()) {
+      Partition partition = partitions.poll();
+      if (partition == null) {
+        return eofTuple;
+      }
+      try (SpillFile file = partition.file) {
+        tupleIterator = rollup(file.reader(), partition.level);
+      }
+    }
+    return tupleIterator.next();
+  }
 
-        HashKey hashKey = new HashKey(bucketValues);
-        Metric[] currentMetrics = metricMap.get(hashKey);
-
-        if (currentMetrics != null) {
-          for (Metric bucketMetric : currentMetrics) {
-            bucketMetric.update(tuple);
-          }
-        } else {
-          currentMetrics = new Metric[metrics.length];
-          for (int i = 0; i < metrics.length; i++) {
-            Metric bucketMetric = metrics[i].newInstance();
-            bucketMetric.update(tuple);
-            currentMetrics[i] = bucketMetric;
-          }
-          metricMap.put(hashKey, currentMetrics);
+  /**
+   * Rolls up the tuples of the source in memory, until the buckets go over the memory budget. From
+   * then on the tuples of buckets already in memory are still rolled up, and the tuples of new
+   * buckets are spilled to partitions by the hash of their bucket, to be rolled up once the buckets
+   * in memory are returned.
+   */
+  private Iterator<Tuple> rollup(SpillFile.TupleSource source, int level) throws IOException {
+    StreamContext context = streamContext != null ? streamContext : new StreamContext();
+    Map<HashKey, Metric[]> metricMap = new HashMap<>();
+    long bytes = 0;
+    SpillFile[] spills = null;
+
+    for (Tuple tuple = source.next(); tuple != null; tuple = source.next()) {
+      Object[] bucketValues = new Object[buckets.length];
+      for (int i = 0; i < buckets.length; i++) {
+        bucketValues[i] = buckets[i].getBucketValue(tuple);
+      }
+
+      HashKey hashKey = new HashKey(bucketValues);
+      Metric[] currentMetrics = metricMap.get(hashKey);
+
+      if (currentMetrics != null) {
+        for (Metric bucketMetric : currentMetrics) {
+          bucketMetric.update(tuple);
+        }
+      } else if (spills != null) {
+        int p = SpillFile.partition(hashKey.hashCode(), level);
+        if (spills[p] == null) {
+          spills[p] = new SpillFile(context);
+          partitions.add(new Partition(spills[p], level + 1));
+        }
+        spills[p].write(tuple);
+      } else {
+        currentMetrics = new Metric[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+          Metric bucketMetric = metrics[i].newInstance();
+          bucketMetric.update(tuple);
+          currentMetrics[i] = bucketMetric;
+        }
+        metricMap.put(hashKey, currentMetrics);
+        bytes += SpillFile.ramBytes(tuple) + 64L * metrics.length;
+        memoryHighWater = Math.max(memoryHighWater, bytes);
+        if (context.isOverMemoryBudget(bytes)) {
+          spills = new SpillFile[SpillFile.PARTITIONS];
         }
       }
     }
 
-    return tupleIterator.next();
+    List<Tuple> tuples = new ArrayList<>();
+    for (Map.Entry<HashKey, Metric[]> entry : metricMap.entrySet()) {
+      Tuple t = new Tuple();
+      Metric[] finishedMetrics = entry.getValue();
+      for (Metric metric : finishedMetrics) {
+        t.put(metric.getIdentifier(), metric.getValue());
+      }
+
+      HashKey hashKey = entry.getKey();
+      for (int i = 0; i < buckets.length; i++) {
+        t.put(buckets[i].toString(), hashKey.getParts()[i]);
+      }
+      tuples.add(t);
+    }
+    return tuples.iterator();
+  }
+
+  private static class Partition {
+    private final SpillFile file;
+    private final int level;
+
+    Partition(SpillFile file, int level) {
+      this.file = file;
+      this.level = level;
+    }
   }
 
   @Override
@@ -272,4 +338,9 @@ public class HashRollupStream extends TupleStream implements Expressible {
   public StreamComparator getStreamSort() {
     return tupleStream.getStreamSort();
   }
+
+  @Override
+  public long getMemoryHighWater() {
+    return memoryHighWater;
+  }
 }
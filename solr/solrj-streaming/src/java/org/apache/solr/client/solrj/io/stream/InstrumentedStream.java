@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
+import org.apache.solr.client.solrj.io.comp.StreamComparator;
+import org.apache.solr.client.solrj.io.stream.expr.Explanation;
+import org.apache.solr.client.solrj.io.stream.expr.Expressible;
+import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionParameter;
+import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
+
+/**
+ * Records the execution statistics of a stream: the tuples it returned, the time spent in its open
+ * and read methods, and what it received from Solr and held in memory. A {@link StreamFactory}
+ * returned by {@link StreamFactory#withStatistics()} wraps each stream it constructs, so that
+ * {@link #getStatistics()} on the root of an expression returns the statistics of the whole tree.
+ *
+ * <p>The wrapper is transparent, it has the expression, explanation and sort of the stream it
+ * wraps.
+ */
+public class InstrumentedStream extends TupleStream implements Expressible {
+
+  private static final long serialVersionUID = 1;
+
+  private final TupleStream stream;
+  private final String functionName;
+
+  private long tuples;
+  private long openNanos;
+  private long readNanos;
+
+  public InstrumentedStream(TupleStream stream, String functionName) {
+    this.stream = stream;
+    this.functionName = functionName;
+  }
+
+  public TupleStream getStream() {
+    return stream;
+  }
+
+  /** Returns the stream wrapped by an instrumented stream, or the stream itself. */
+  public static TupleStream unwrap(TupleStream stream) {
+    return stream instanceof InstrumentedStream ? ((InstrumentedStream) stream).stream : stream;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    stream.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    return stream.children();
+  }
+
+  @Override
+  public void open() throws IOException {
+    tuples = 0;
+    openNanos = 0;
+    readNanos = 0;
+    long begin = System.nanoTime();
+    try {
+      stream.open();
+    } finally {
+      openNanos += System.nanoTime() - begin;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    long begin = System.nanoTime();
+    try {
+      Tuple tuple = stream.read();
+      if (!tuple.EOF) {
+        tuples++;
+      }
+      return tuple;
+    } finally {
+      readNanos += System.nanoTime() - begin;
+    }
+  }
+
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    long begin = System.nanoTime();
+    try {
+      stream.readBatch(batch);
+      tuples += batch.size();
+    } finally {
+      readNanos += System.nanoTime() - begin;
+    }
+  }
+
+  @Override
+  public StreamComparator getStreamSort() {
+    return stream.getStreamSort();
+  }
+
+  @Override
+  public int getCost() {
+    return stream.getCost();
+  }
+
+  @Override
+  public StreamExpressionParameter toExpression(StreamFactory factory) throws IOException {
+    if (stream instanceof Expressible) {
+      return ((Expressible) stream).toExpression(factory);
+    }
+    throw new IOException(
+        "This InstrumentedStream contains a non-expressible TupleStream - it cannot be converted to an expression");
+  }
+
+  @Override
+  public Explanation toExplanation(StreamFactory factory) throws IOException {
+    return stream.toExplanation(factory);
+  }
+
+  /**
+   * Returns the statistics of the stream and of the instrumented streams below it, as a tree of
+   * maps. The times include the time spent in the streams below, the self time does not, and the
+   * bytes received count those of the streams below that are not instrumented themselves, such as
+   * the shard streams of a search.
+   */
+  public Map<String, Object> getStatistics() {
+    List<InstrumentedStream> instrumented = new ArrayList<>();
+    List<TupleStream> internal = new ArrayList<>();
+    collectChildren(stream, instrumented, internal);
+
+    long tuplesIn = 0;
+    long childNanos = 0;
+    List<Map<String, Object>> children = new ArrayList<>(instrumented.size());
+    for (InstrumentedStream child : instrumented) {
+      tuplesIn += child.tuples;
+      childNanos += child.openNanos + child.readNanos;
+      children.add(child.getStatistics());
+    }
+    long bytesReceived = stream.getBytesReceived();
+    long memoryHighWater = stream.getMemoryHighWater();
+    for (TupleStream child : internal) {
+      bytesReceived += child.getBytesReceived();
+      memoryHighWater = Math.max(memoryHighWater, child.getMemoryHighWater());
+    }
+
+    Map<String, Object> statistics = new LinkedHashMap<>();
+    statistics.put("function", functionName);
+    if (!children.isEmpty()) {
+      statistics.put("tuplesIn", tuplesIn);
+    }
+    statistics.put("tuplesOut", tuples);
+    statistics.put("openMillis", TimeUnit.NANOSECONDS.toMillis(openNanos));
+    statistics.put("readMillis", TimeUnit.NANOSECONDS.toMillis(readNanos));
+    // the time of children read by other threads overlaps this stream's time
+    statistics.put(
+        "selfMillis",
+        TimeUnit.NANOSECONDS.toMillis(Math.max(0, openNanos + readNanos - childNanos)));
+    if (bytesReceived > 0) {
+      statistics.put("bytesReceived", bytesReceived);
+    }
+    if (memoryHighWater > 0) {
+      statistics.put("memoryHighWater", memoryHighWater);
+    }
+    if (!children.isEmpty()) {
+      statistics.put("children", children);
+    }
+    return statistics;
+  }
+
+  /** Finds the closest instrumented streams below a stream, and the streams in between. */
+  private static void collectChildren(
+      TupleStream stream, List<InstrumentedStream> instrumented, List<TupleStream> internal) {
+    List<TupleStream> children = stream.children();
+    if (children == null) {
+      return;
+    }
+    for (TupleStream child : children) {
+      if (child instanceof InstrumentedStream) {
+        instrumented.add((InstrumentedStream) child);
+      } else if (child != null) {
+        internal.add(child);
+        collectChildren(child, instrumented, internal);
+      }
+    }
+  }
+}
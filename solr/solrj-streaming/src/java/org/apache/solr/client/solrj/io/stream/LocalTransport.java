@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.IOException;
+import org.apache.solr.common.params.SolrParams;
+
+/**
+ * Sends the requests of a {@link SolrStream} to the cores hosted by the JVM the stream runs in,
+ * without going through HTTP and a response format. A Solr node sets it on the {@link
+ * StreamContext} of the expressions it runs.
+ */
+public interface LocalTransport {
+
+  /**
+   * Sends a request to a core if it is hosted by this JVM.
+   *
+   * @param baseUrl the url of the node, or the url of the core when the core is null
+   * @param core the name of the core, or null
+   * @param path the path of the request handler
+   * @param params the params of the request
+   * @return the documents or tuples of the response, or null if the request has to be sent over
+   *     HTTP
+   */
+  TupleStreamParser request(String baseUrl, String core, String path, SolrParams params)
+      throws IOException;
+}
@@ -92,8 +92,16 @@ public class OuterHashJoinStream extends HashJoinStream implements Expressible {
     return expression;
   }
 
+  @Override
+  protected boolean returnsUnmatched() {
+    return true;
+  }
+
   @Override
   public Tuple read() throws IOException {
+    if (isSpilled()) {
+      return readSpilled();
+    }
 
     if (null == workingFullTuple) {
       Tuple fullTuple = fullStream.read();
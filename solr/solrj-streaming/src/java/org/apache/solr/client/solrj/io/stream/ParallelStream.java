@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -35,6 +36,7 @@ import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionNamedParamete
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionValue;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.StreamParams;
 
 /**
  * The ParallelStream decorates a TupleStream implementation and pushes it to N workers for parallel
@@ -275,6 +277,11 @@ public class ParallelStream extends CloudSolrStream implements Expressible {
     return tuple;
   }
 
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    readTuples(batch);
+  }
+
   @Override
   public void setStreamContext(StreamContext streamContext) {
     this.streamContext = streamContext;
@@ -299,6 +306,10 @@ public class ParallelStream extends CloudSolrStream implements Expressible {
 
         paramsLoc.set("expr", pushStream.toString());
         paramsLoc.set("qt", "/stream");
+        long memoryBudget = streamContext.getMemoryBudget();
+        if (memoryBudget >= 0) {
+          paramsLoc.set(StreamParams.MEMORY_BUDGET, Long.toString(memoryBudget));
+        }
 
         String url = shardUrls.get(w);
         SolrStream solrStream = new SolrStream(url, paramsLoc);
@@ -68,7 +68,8 @@ public class PriorityStream extends TupleStream implements Expressible {
     TupleStream stream1 = factory.constructStream(streamExpressions.get(0));
     TupleStream stream2 = factory.constructStream(streamExpressions.get(1));
 
-    if (!(stream1 instanceof TopicStream) || !(stream2 instanceof TopicStream)) {
+    if (!(InstrumentedStream.unwrap(stream1) instanceof TopicStream)
+        || !(InstrumentedStream.unwrap(stream2) instanceof TopicStream)) {
       throw new IOException("The scheduler expects both stream parameters to be topics.");
     }
 
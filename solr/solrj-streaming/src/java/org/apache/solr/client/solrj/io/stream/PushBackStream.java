@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
 import org.apache.solr.client.solrj.io.stream.expr.Expressible;
@@ -96,6 +97,18 @@ public class PushBackStream extends TupleStream implements Expressible {
     }
   }
 
+  /** A pushed back tuple is returned in a batch of its own, before the batches of the stream. */
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    if (tuple != null) {
+      batch.clear();
+      batch.add(tuple);
+      tuple = null;
+    } else {
+      stream.readBatch(batch);
+    }
+  }
+
   /**
    * Return the stream sort - ie, the order in which records are returned This returns the
    * streamSort of the substream
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.MultipleFieldComparator;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
@@ -63,6 +64,8 @@ public class ReducerStream extends TupleStream implements Expressible {
   private boolean needsReduce;
 
   private transient Tuple currentGroupHead;
+  private transient TupleBatch inputBatch;
+  private transient int inputIndex;
 
   public ReducerStream(TupleStream stream, StreamEqualitor eq, ReduceOperation op)
       throws IOException {
@@ -218,6 +221,7 @@ public class ReducerStream extends TupleStream implements Expressible {
   @Override
   public void close() throws IOException {
     stream.close();
+    inputBatch = null;
   }
 
   @Override
@@ -254,6 +258,47 @@ public class ReducerStream extends TupleStream implements Expressible {
     }
   }
 
+  /**
+   * Groups the tuples of the stream batch by batch. A tuple starting a new group is added to it
+   * right after the previous group is reduced, rather than pushed back onto the stream.
+   */
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    if (inputBatch == null) {
+      inputBatch = new TupleBatch(batch.capacity());
+      inputIndex = 0;
+    }
+
+    batch.clear();
+    while (!batch.isFull()) {
+      if (inputIndex == inputBatch.size()) {
+        if (inputBatch.isEOF()) {
+          if (needsReduce) {
+            needsReduce = false;
+            batch.add(op.reduce());
+          } else {
+            batch.add(inputBatch.getEOF());
+          }
+          continue;
+        }
+        stream.readBatch(inputBatch);
+        inputIndex = 0;
+        continue;
+      }
+
+      Tuple t = inputBatch.get(inputIndex++);
+      if (currentGroupHead != null && !eq.test(currentGroupHead, t)) {
+        batch.add(op.reduce());
+        currentGroupHead = null;
+      }
+      if (currentGroupHead == null) {
+        currentGroupHead = t;
+      }
+      op.operate(t);
+      needsReduce = true;
+    }
+  }
+
   /** Return the stream sort - ie, the order in which records are returned */
   @Override
   public StreamComparator getStreamSort() {
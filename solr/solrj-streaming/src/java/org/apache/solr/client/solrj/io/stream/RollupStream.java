@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.HashKey;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.eq.FieldEqualitor;
@@ -51,6 +52,8 @@ public class RollupStream extends TupleStream implements Expressible {
   private HashKey currentKey = new HashKey("-");
   private Metric[] currentMetrics;
   private boolean finished = false;
+  private transient TupleBatch inputBatch;
+  private transient int inputIndex;
 
   public RollupStream(TupleStream tupleStream, Bucket[] buckets, Metric[] metrics) {
     init(tupleStream, buckets, metrics);
@@ -211,6 +214,7 @@ public class RollupStream extends TupleStream implements Expressible {
     this.currentMetrics = null;
     this.currentKey = new HashKey("-");
     this.finished = false;
+    this.inputBatch = null;
   }
 
   @Override
@@ -225,14 +229,7 @@ public class RollupStream extends TupleStream implements Expressible {
             return tuple;
           }
 
-          Tuple t = new Tuple();
-          for (Metric metric : currentMetrics) {
-            t.put(metric.getIdentifier(), metric.getValue());
-          }
-
-          for (int i = 0; i < buckets.length; i++) {
-            t.put(buckets[i].toString(), currentKey.getParts()[i]);
-          }
+          Tuple t = bucketTuple();
           tupleStream.pushBack(tuple);
           finished = true;
           return t;
@@ -241,45 +238,87 @@ public class RollupStream extends TupleStream implements Expressible {
         }
       }
 
-      Object[] bucketValues = new Object[buckets.length];
-      for (int i = 0; i < buckets.length; i++) {
-        bucketValues[i] = buckets[i].getBucketValue(tuple);
+      Tuple t = rollup(tuple);
+      if (t != null) {
+        return t;
       }
+    }
+  }
 
-      HashKey hashKey = new HashKey(bucketValues);
-
-      if (hashKey.equals(currentKey)) {
-        for (Metric bucketMetric : currentMetrics) {
-          bucketMetric.update(tuple);
-        }
-      } else {
-        Tuple t = null;
-        if (currentMetrics != null) {
-          t = new Tuple();
-          for (Metric metric : currentMetrics) {
-            t.put(metric.getIdentifier(), metric.getValue());
-          }
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    if (inputBatch == null) {
+      inputBatch = new TupleBatch(batch.capacity());
+      inputIndex = 0;
+    }
 
-          for (int i = 0; i < buckets.length; i++) {
-            t.put(buckets[i].toString(), currentKey.getParts()[i]);
+    batch.clear();
+    while (!batch.isFull()) {
+      if (inputIndex == inputBatch.size()) {
+        if (inputBatch.isEOF()) {
+          if (currentMetrics != null) {
+            batch.add(bucketTuple());
+            currentMetrics = null;
+          } else {
+            batch.add(inputBatch.getEOF());
           }
+          continue;
         }
+        tupleStream.readBatch(inputBatch);
+        inputIndex = 0;
+        continue;
+      }
 
-        currentKey = hashKey;
-        if (metrics != null) {
-          currentMetrics = new Metric[metrics.length];
-          for (int i = 0; i < metrics.length; i++) {
-            Metric bucketMetric = metrics[i].newInstance();
-            bucketMetric.update(tuple);
-            currentMetrics[i] = bucketMetric;
-          }
-        }
+      Tuple t = rollup(inputBatch.get(inputIndex++));
+      if (t != null) {
+        batch.add(t);
+      }
+    }
+  }
 
-        if (t != null) {
-          return t;
-        }
+  /** Adds the tuple to the current bucket, returns the previous bucket if the tuple starts one. */
+  private Tuple rollup(Tuple tuple) throws IOException {
+    Object[] bucketValues = new Object[buckets.length];
+    for (int i = 0; i < buckets.length; i++) {
+      bucketValues[i] = buckets[i].getBucketValue(tuple);
+    }
+
+    HashKey hashKey = new HashKey(bucketValues);
+
+    if (hashKey.equals(currentKey)) {
+      for (Metric bucketMetric : currentMetrics) {
+        bucketMetric.update(tuple);
       }
+      return null;
+    }
+
+    Tuple t = null;
+    if (currentMetrics != null) {
+      t = bucketTuple();
+    }
+
+    currentKey = hashKey;
+    if (metrics != null) {
+      currentMetrics = new Metric[metrics.length];
+      for (int i = 0; i < metrics.length; i++) {
+        Metric bucketMetric = metrics[i].newInstance();
+        bucketMetric.update(tuple);
+        currentMetrics[i] = bucketMetric;
+      }
+    }
+    return t;
+  }
+
+  private Tuple bucketTuple() {
+    Tuple t = new Tuple();
+    for (Metric metric : currentMetrics) {
+      t.put(metric.getIdentifier(), metric.getValue());
+    }
+
+    for (int i = 0; i < buckets.length; i++) {
+      t.put(buckets[i].toString(), currentKey.getParts()[i]);
     }
+    return t;
   }
 
   @Override
@@ -109,8 +109,9 @@ public class ScoreNodesStream extends TupleStream implements Expressible {
   private void init(TupleStream tupleStream, String termFreq) throws IOException {
     this.stream = tupleStream;
     this.termFreq = termFreq;
-    if (stream instanceof FacetStream) {
-      FacetStream facetStream = (FacetStream) stream;
+    TupleStream unwrapped = InstrumentedStream.unwrap(stream);
+    if (unwrapped instanceof FacetStream) {
+      FacetStream facetStream = (FacetStream) unwrapped;
 
       if (facetStream.getBuckets().length != 1) {
         throw new IOException(
@@ -25,6 +25,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.eval.EvaluatorException;
 import org.apache.solr.client.solrj.io.eval.StreamEvaluator;
@@ -292,6 +293,18 @@ public class SelectStream extends TupleStream implements Expressible {
       return original;
     }
 
+    return select(original);
+  }
+
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    stream.readBatch(batch);
+    for (int i = 0; i < batch.size(); i++) {
+      batch.set(i, select(batch.get(i)));
+    }
+  }
+
+  private Tuple select(Tuple original) throws IOException {
     // create a copy with the limited set of fields
     Tuple workingToReturn = new Tuple();
     Tuple workingForEvaluators = new Tuple();
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import static org.apache.solr.common.params.CommonParams.VERSION_FIELD;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.common.params.SolrParams;
+
+/**
+ * Shares the scans of a shard among the topics of a JVM that run the same query. A topic reads the
+ * documents of a shard that have a version above its checkpoint, so the scan of the topic with the
+ * lowest checkpoint holds the documents of every topic with a higher one. The first topic to read a
+ * shard in a cycle fetches the documents, the topics reading the same shard at the same time wait
+ * for that fetch, and the topics reading it later in the cycle are served from the scan. Each topic
+ * keeps its own checkpoints.
+ *
+ * <p>A scan is reused for one polling cycle of a daemon. A scan that was cut off by the rows limit
+ * is not reused by a topic that has read all of it, and a scan from a higher checkpoint than the
+ * topic's is never reused, so a topic never skips a document.
+ */
+class SharedTopicScans {
+
+  static final SharedTopicScans INSTANCE = new SharedTopicScans();
+
+  /** How long a scan is reused, the time a daemon sleeps when its topic returned nothing. */
+  private static final long MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /** How long the scan of a shard no topic reads anymore is kept. */
+  private static final long EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+  private final LongAdder fetches = new LongAdder();
+  private final LongAdder reuses = new LongAdder();
+
+  /** Fetches the documents of a shard above the checkpoint of the topic reading them. */
+  interface Fetcher {
+    List<Tuple> fetch() throws IOException;
+  }
+
+  /**
+   * Returns copies of the documents of a shard with a version above the checkpoint, reusing the
+   * scan of another topic with the same key when it holds them.
+   *
+   * @param key identifies the shard and the query, see {@link #key}
+   * @param rows the most documents a fetch returns
+   */
+  List<Tuple> read(String key, long checkpoint, int rows, Fetcher fetcher) throws IOException {
+    Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+    List<Tuple> tuples = slot.read(checkpoint, rows, fetcher);
+    long now = System.nanoTime();
+    slots.values().removeIf(other -> now - other.lastRead > EXPIRY_NANOS);
+    return tuples;
+  }
+
+  /**
+   * The key of the scans of a shard. The params are those sent to the shard without the
+   * checkpoint, in a canonical order; the worker is part of the key because each worker of a
+   * parallel stream reads its own partition of the shard.
+   */
+  static String key(
+      String zkHost,
+      String collection,
+      String slice,
+      SolrParams params,
+      int numWorkers,
+      int workerID) {
+    List<String> names = new ArrayList<>();
+    for (Iterator<String> it = params.getParameterNamesIterator(); it.hasNext(); ) {
+      String name = it.next();
+      if (!"initialCheckpoint".equals(name)) {
+        names.add(name);
+      }
+    }
+    Collections.sort(names);
+
+    StringBuilder buf = new StringBuilder();
+    buf.append(zkHost).append('/').append(collection).append('/').append(slice);
+    buf.append('/').append(workerID).append(':').append(numWorkers);
+    for (String name : names) {
+      buf.append('&').append(name);
+      for (String value : params.getParams(name)) {
+        buf.append('=').append(value);
+      }
+    }
+    return buf.toString();
+  }
+
+  /** The number of scans fetched from the shards. */
+  long getFetches() {
+    return fetches.sum();
+  }
+
+  /** The number of reads served from the scan of another read. */
+  long getReuses() {
+    return reuses.sum();
+  }
+
+  private class Slot {
+    private Scan scan;
+    private volatile long lastRead = System.nanoTime();
+
+    synchronized List<Tuple> read(long checkpoint, int rows, Fetcher fetcher) throws IOException {
+      long now = System.nanoTime();
+      lastRead = now;
+      if (scan != null && scan.covers(checkpoint, now)) {
+        reuses.increment();
+      } else {
+        scan = null;
+        List<Tuple> fetched = fetcher.fetch();
+        scan = new Scan(checkpoint, fetched, fetched.size() >= rows, System.nanoTime());
+        fetches.increment();
+      }
+
+      List<Tuple> tuples = new ArrayList<>();
+      for (Tuple tuple : scan.tuples) {
+        if (tuple.getLong(VERSION_FIELD) > checkpoint) {
+          tuples.add(tuple.clone());
+        }
+      }
+      return tuples;
+    }
+  }
+
+  private static class Scan {
+    private final long from;
+    private final List<Tuple> tuples;
+    private final boolean truncated;
+    private final long fetchedAt;
+
+    Scan(long from, List<Tuple> tuples, boolean truncated, long fetchedAt) {
+      this.from = from;
+      this.tuples = tuples;
+      this.truncated = truncated;
+      this.fetchedAt = fetchedAt;
+    }
+
+    boolean covers(long checkpoint, long now) {
+      if (now - fetchedAt > MAX_AGE_NANOS || from > checkpoint) {
+        return false;
+      }
+      // the documents after the last one of a truncated scan were not fetched
+      return !truncated
+          || tuples.isEmpty()
+          || checkpoint < tuples.get(tuples.size() - 1).getLong(VERSION_FIELD);
+    }
+  }
+}
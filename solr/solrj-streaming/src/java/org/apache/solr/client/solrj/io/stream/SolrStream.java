@@ -17,6 +17,7 @@
 package org.apache.solr.client.solrj.io.stream;
 
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -62,6 +63,7 @@ public class SolrStream extends TupleStream {
   private String slice;
   private long checkpoint = -1;
   private Closeable closeableHttpResponse;
+  private transient CountingInputStream responseStream;
   private boolean distrib = true;
   private String user;
   private String password;
@@ -69,6 +71,7 @@ public class SolrStream extends TupleStream {
 
   private transient SolrClientCache clientCache;
   private transient boolean doCloseCache;
+  private transient LocalTransport localTransport;
 
   /**
    * @param baseUrl Base URL of the stream.
@@ -103,6 +106,7 @@ public class SolrStream extends TupleStream {
     this.numWorkers = context.numWorkers;
     this.workerID = context.workerID;
     this.clientCache = context.getSolrClientCache();
+    this.localTransport = context.getLocalTransport();
   }
 
   public void setCredentials(String user, String password) {
@@ -195,6 +199,11 @@ public class SolrStream extends TupleStream {
     }
   }
 
+  @Override
+  public long getBytesReceived() {
+    return responseStream == null ? 0 : responseStream.count;
+  }
+
   /** Reads a Tuple from the stream. The Stream is completed when Tuple.EOF == true. */
   @Override
   public Tuple read() throws IOException {
@@ -282,6 +291,17 @@ public class SolrStream extends TupleStream {
       modifiableSolrParams.set("indent", modifiableSolrParams.get("indent", "off"));
     }
 
+    // a core of this JVM is read without HTTP, unless the stream has its own credentials
+    if (localTransport != null && user == null) {
+      TupleStreamParser parser =
+          localTransport.request(baseUrl, core, p != null ? p : "/select", requestParams);
+      if (parser != null) {
+        // released on close, like the http response
+        this.closeableHttpResponse = parser;
+        return parser;
+      }
+    }
+
     String wt = requestParams.get(CommonParams.WT, "json");
     QueryRequest query = new QueryRequest(requestParams);
 
@@ -302,7 +322,8 @@ public class SolrStream extends TupleStream {
 
     var client = clientCache.getHttpSolrClient(baseUrl);
     NamedList<Object> genericResponse = client.request(query);
-    InputStream stream = (InputStream) genericResponse.get("stream");
+    responseStream = new CountingInputStream((InputStream) genericResponse.get("stream"));
+    InputStream stream = responseStream;
 
     CloseableHttpResponse httpResponse =
         (CloseableHttpResponse) genericResponse.get("closeableResponse");
@@ -334,6 +355,10 @@ public class SolrStream extends TupleStream {
 
     this.closeableHttpResponse = httpResponse;
     if (CommonParams.JAVABIN.equals(wt)) {
+      if (ColumnarTupleStreamParser.FORMAT.equals(
+          requestParams.get(ColumnarTupleStreamParser.FORMAT_PARAM))) {
+        return new ColumnarTupleStreamParser(stream);
+      }
       return new JavabinTupleStreamParser(stream, true);
     } else {
       InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
@@ -352,4 +377,38 @@ public class SolrStream extends TupleStream {
     }
     return errMsg.toString();
   }
+
+  /** Counts the bytes read from the response. */
+  private static class CountingInputStream extends FilterInputStream {
+    private long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
 }
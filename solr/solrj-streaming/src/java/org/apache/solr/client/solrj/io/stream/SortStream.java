@@ -18,10 +18,10 @@ package org.apache.solr.client.solrj.io.stream;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -44,7 +44,12 @@ public class SortStream extends TupleStream implements Expressible {
 
   private TupleStream stream;
   private StreamComparator comparator;
-  private Worker worker;
+
+  private transient StreamContext streamContext;
+  // sorts the tuples in memory, or in runs on disk once they go over the memory budget
+  private transient ExternalTupleSorter sorter;
+  private transient Tuple eofTuple;
+  private transient long memoryHighWater;
 
   public SortStream(TupleStream stream, StreamComparator comp) throws IOException {
     init(stream, comp);
@@ -90,39 +95,6 @@ public class SortStream extends TupleStream implements Expressible {
   private void init(TupleStream stream, StreamComparator comp) throws IOException {
     this.stream = stream;
     this.comparator = comp;
-
-    // standard java modified merge sort
-    worker =
-        new Worker() {
-
-          @SuppressWarnings("JdkObsolete")
-          private final LinkedList<Tuple> tuples = new LinkedList<>();
-
-          private Tuple eofTuple;
-
-          @Override
-          public void readStream(TupleStream stream) throws IOException {
-            Tuple tuple = stream.read();
-            while (!tuple.EOF) {
-              tuples.add(tuple);
-              tuple = stream.read();
-            }
-            eofTuple = tuple;
-          }
-
-          @Override
-          public void sort() {
-            tuples.sort(comparator);
-          }
-
-          @Override
-          public Tuple read() {
-            if (tuples.isEmpty()) {
-              return eofTuple;
-            }
-            return tuples.removeFirst();
-          }
-        };
   }
 
   @Override
@@ -173,6 +145,7 @@ public class SortStream extends TupleStream implements Expressible {
 
   @Override
   public void setStreamContext(StreamContext context) {
+    this.streamContext = context;
     this.stream.setStreamContext(context);
   }
 
@@ -187,19 +160,35 @@ public class SortStream extends TupleStream implements Expressible {
   public void open() throws IOException {
     stream.open();
 
-    worker.readStream(stream);
-    worker.sort();
+    sorter =
+        new ExternalTupleSorter(
+            comparator, streamContext != null ? streamContext : new StreamContext());
+    TupleBatch batch = new TupleBatch();
+    do {
+      stream.readBatch(batch);
+      for (int i = 0; i < batch.size(); i++) {
+        sorter.add(batch.get(i));
+      }
+    } while (!batch.isEOF());
+    eofTuple = batch.getEOF();
+    sorter.sort();
+    memoryHighWater = sorter.getMaxRunBytes();
   }
 
   @Override
   public void close() throws IOException {
     stream.close();
+    if (sorter != null) {
+      sorter.close();
+      sorter = null;
+    }
   }
 
   @Override
   public Tuple read() throws IOException {
     // return next from sorted order
-    return worker.read();
+    Tuple tuple = sorter.next();
+    return tuple != null ? tuple : eofTuple;
   }
 
   /** Return the stream sort - ie, the order in which records are returned */
@@ -213,11 +202,8 @@ public class SortStream extends TupleStream implements Expressible {
     return 0;
   }
 
-  private interface Worker {
-    public void readStream(TupleStream stream) throws IOException;
-
-    public void sort();
-
-    public Tuple read();
+  @Override
+  public long getMemoryHighWater() {
+    return memoryHighWater;
   }
 }
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.common.util.FastInputStream;
+import org.apache.solr.common.util.FastOutputStream;
+import org.apache.solr.common.util.JavaBinCodec;
+
+/**
+ * A temporary file of tuples spilled by a stream that went over the memory budget of its {@link
+ * StreamContext}. The fields of the tuples are written in javabin, with the field names written
+ * once per file. The tuples are written first, then read back once in the same order, and the file
+ * is deleted when it is closed.
+ */
+class SpillFile implements Closeable {
+
+  private static final int PARTITION_BITS = 4;
+
+  /** The number of partitions a hashing stream spills its input to. */
+  static final int PARTITIONS = 1 << PARTITION_BITS;
+
+  /** The number of levels of partitioning before the bits of the hash are used again. */
+  static final int LEVELS = Integer.SIZE / PARTITION_BITS;
+
+  private final Path path;
+  private final SpillStats stats;
+  private FastOutputStream out;
+  private JavaBinCodec codec;
+  private long count;
+  private Reader reader;
+
+  SpillFile(StreamContext context) throws IOException {
+    this.path = Files.createTempFile(context.getSpillDirectory(), "stream-spill-", ".bin");
+    this.stats = context.getSpillStats();
+    this.out = new FastOutputStream(Files.newOutputStream(path));
+    this.codec = new JavaBinCodec();
+    codec.init(out);
+    stats.addFile();
+  }
+
+  void write(Tuple tuple) throws IOException {
+    codec.writeMap(tuple.getFields());
+    count++;
+  }
+
+  /** The number of tuples written. */
+  long size() {
+    return count;
+  }
+
+  /**
+   * Finishes writing the file and returns a reader over the tuples written, which is closed with
+   * the file.
+   */
+  Reader reader() throws IOException {
+    if (out != null) {
+      out.close();
+      stats.addTuples(count, out.size());
+      out = null;
+      codec = null;
+    }
+    if (reader != null) {
+      reader.close();
+    }
+    reader = new Reader();
+    return reader;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (out != null) {
+        out.close();
+        out = null;
+      }
+      if (reader != null) {
+        reader.close();
+        reader = null;
+      }
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  /** A source of tuples, such as a spill file, returning null after the last tuple. */
+  interface TupleSource {
+    Tuple next() throws IOException;
+  }
+
+  /** Reads back the tuples of the file, in the order they were written. */
+  class Reader implements Closeable, TupleSource {
+    private final FastInputStream in;
+    private final JavaBinCodec codec = new JavaBinCodec();
+    private long remaining = count;
+
+    private Reader() throws IOException {
+      this.in = new FastInputStream(Files.newInputStream(path));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Tuple next() throws IOException {
+      if (remaining == 0) {
+        return null;
+      }
+      remaining--;
+      return new Tuple((Map<String, ?>) codec.readVal(in));
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * The partition of a hash at a level of partitioning. Each level uses other bits of the mixed
+   * hash, so that the tuples of one partition are split again when it is partitioned once more.
+   */
+  static int partition(int hash, int level) {
+    int h = hash * 0x9E3779B9;
+    h ^= h >>> 16;
+    return Integer.rotateRight(h, (level * PARTITION_BITS) & 31) & (PARTITIONS - 1);
+  }
+
+  /** A rough estimate of the heap used by a tuple, to be compared with the memory budget. */
+  static long ramBytes(Tuple tuple) {
+    long bytes = 64;
+    for (Map.Entry<String, Object> entry : tuple.getFields().entrySet()) {
+      bytes += 32 + ramBytes(entry.getKey()) + ramBytes(entry.getValue());
+    }
+    return bytes;
+  }
+
+  private static long ramBytes(Object value) {
+    if (value instanceof CharSequence) {
+      return 40 + 2L * ((CharSequence) value).length();
+    } else if (value instanceof Collection) {
+      long bytes = 40;
+      for (Object o : (Collection<?>) value) {
+        bytes += 8 + ramBytes(o);
+      }
+      return bytes;
+    } else if (value instanceof Tuple) {
+      return ramBytes((Tuple) value);
+    } else if (value instanceof Map) {
+      long bytes = 48;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        bytes += 32 + ramBytes(entry.getKey()) + ramBytes(entry.getValue());
+      }
+      return bytes;
+    }
+    return 16;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the tuples the streams of a {@link StreamContext} spilled to disk, because they went over
+ * the memory budget of the context.
+ */
+public class SpillStats {
+
+  private final LongAdder files = new LongAdder();
+  private final LongAdder tuples = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+
+  void addFile() {
+    files.increment();
+  }
+
+  void addTuples(long count, long size) {
+    tuples.add(count);
+    bytes.add(size);
+  }
+
+  /** The number of sorted runs and hash partitions written. */
+  public long getFiles() {
+    return files.sum();
+  }
+
+  public long getTuples() {
+    return tuples.sum();
+  }
+
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "files=" + getFiles() + ", tuples=" + getTuples() + ", bytes=" + getBytes();
+  }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.solr.client.solrj.io.stream;
 
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
@@ -46,6 +47,10 @@ public class StreamContext {
   private boolean local;
   private SolrParams requestParams;
   private RequestReplicaListTransformerGenerator requestReplicaListTransformerGenerator;
+  private long memoryBudget = -1;
+  private Path spillDirectory;
+  private final SpillStats spillStats = new SpillStats();
+  private LocalTransport localTransport;
 
   public ConcurrentMap<String, ConcurrentMap<String, Object>> getObjectCache() {
     return this.objectCache;
@@ -128,4 +133,48 @@ public class StreamContext {
   public RequestReplicaListTransformerGenerator getRequestReplicaListTransformerGenerator() {
     return requestReplicaListTransformerGenerator;
   }
+
+  /**
+   * Sets the number of bytes of tuples each sort, hash join and hash rollup may hold in memory,
+   * before it spills them to disk. -1, the default, means no limit. The budget applies to each of
+   * these streams on its own, so an expression nesting several of them, such as a sort of a hash
+   * join, may hold up to the budget for each of them.
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /** Whether the bytes of tuples held in memory go over the memory budget. */
+  public boolean isOverMemoryBudget(long bytes) {
+    return memoryBudget >= 0 && bytes > memoryBudget;
+  }
+
+  public void setSpillDirectory(Path spillDirectory) {
+    this.spillDirectory = spillDirectory;
+  }
+
+  /** The directory of the spill files, the temporary directory of the JVM unless set. */
+  public Path getSpillDirectory() {
+    if (spillDirectory == null) {
+      return Path.of(System.getProperty("java.io.tmpdir"));
+    }
+    return spillDirectory;
+  }
+
+  public SpillStats getSpillStats() {
+    return spillStats;
+  }
+
+  public void setLocalTransport(LocalTransport localTransport) {
+    this.localTransport = localTransport;
+  }
+
+  /** The transport of the requests to the cores of this JVM, null if there is none. */
+  public LocalTransport getLocalTransport() {
+    return localTransport;
+  }
 }
@@ -28,6 +28,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -41,6 +42,7 @@ import java.util.stream.Collectors;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.io.SolrClientCache;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.ComparatorOrder;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -77,6 +79,7 @@ public class TopicStream extends CloudSolrStream implements Expressible {
   private Map<String, Long> checkpoints = new HashMap<>();
   private String checkpointCollection;
   private long initialCheckpoint = -1;
+  private boolean shared;
 
   private transient SolrClientCache clientCache;
   private transient boolean doCloseCache;
@@ -184,7 +187,8 @@ public class TopicStream extends CloudSolrStream implements Expressible {
     for (StreamExpressionNamedParameter namedParam : namedParams) {
       if (!namedParam.getName().equals("zkHost")
           && !namedParam.getName().equals(ID)
-          && !namedParam.getName().equals("checkpointEvery")) {
+          && !namedParam.getName().equals("checkpointEvery")
+          && !namedParam.getName().equals("shared")) {
         params.set(namedParam.getName(), namedParam.getParameter().toString().trim());
       }
     }
@@ -217,6 +221,12 @@ public class TopicStream extends CloudSolrStream implements Expressible {
         initialCheckpoint,
         checkpointEvery,
         params);
+
+    StreamExpressionNamedParameter sharedParam = factory.getNamedOperand(expression, "shared");
+    if (sharedParam != null) {
+      shared =
+          Boolean.parseBoolean(((StreamExpressionValue) sharedParam.getParameter()).getValue());
+    }
   }
 
   @Override
@@ -250,6 +260,9 @@ public class TopicStream extends CloudSolrStream implements Expressible {
     }
     expression.addParameter(
         new StreamExpressionNamedParameter("checkpointEvery", Long.toString(checkpointEvery)));
+    if (shared) {
+      expression.addParameter(new StreamExpressionNamedParameter("shared", "true"));
+    }
 
     return expression;
   }
@@ -418,6 +431,11 @@ public class TopicStream extends CloudSolrStream implements Expressible {
     return tuple;
   }
 
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    readTuples(batch);
+  }
+
   @Override
   public int getCost() {
     return 0;
@@ -569,7 +587,17 @@ public class TopicStream extends CloudSolrStream implements Expressible {
       Replica rep = shuffler.get(random.nextInt(shuffler.size()));
       ZkCoreNodeProps zkProps = new ZkCoreNodeProps(rep);
       String url = zkProps.getCoreUrl();
-      SolrStream solrStream = new SolrStream(url, localParams);
+      SolrStream solrStream;
+      if (shared) {
+        int numWorkers = streamContext != null ? streamContext.numWorkers : 0;
+        int workerID = streamContext != null ? streamContext.workerID : 0;
+        String key =
+            SharedTopicScans.key(
+                zkHost, collection, slice.getName(), localParams, numWorkers, workerID);
+        solrStream = new SharedShardStream(url, localParams, key);
+      } else {
+        solrStream = new SolrStream(url, localParams);
+      }
       solrStream.setSlice(slice.getName());
       solrStream.setCheckpoint(checkpoint);
       solrStream.setTrace(true);
@@ -585,4 +613,58 @@ public class TopicStream extends CloudSolrStream implements Expressible {
     super.setStreamContext(context);
     this.clientCache = context.getSolrClientCache();
   }
+
+  /**
+   * Reads a shard through the {@link SharedTopicScans}, so that the topics running the same query
+   * share the requests to the shard.
+   */
+  private static class SharedShardStream extends SolrStream {
+
+    private static final long serialVersionUID = 1;
+
+    private final String key;
+    private final int rows;
+    private long checkpoint = -1;
+    private transient Iterator<Tuple> tuples;
+
+    SharedShardStream(String baseUrl, SolrParams params, String key) {
+      super(baseUrl, params);
+      this.key = key;
+      this.rows = params.getInt("rows", 500);
+    }
+
+    @Override
+    public void setCheckpoint(long checkpoint) {
+      super.setCheckpoint(checkpoint);
+      this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void open() throws IOException {
+      tuples = SharedTopicScans.INSTANCE.read(key, checkpoint, rows, this::fetch).iterator();
+    }
+
+    private List<Tuple> fetch() throws IOException {
+      List<Tuple> fetched = new ArrayList<>();
+      super.open();
+      try {
+        for (Tuple tuple = super.read(); !tuple.EOF; tuple = super.read()) {
+          fetched.add(tuple);
+        }
+      } finally {
+        super.close();
+      }
+      return fetched;
+    }
+
+    @Override
+    public Tuple read() {
+      return tuples != null && tuples.hasNext() ? tuples.next() : Tuple.EOF();
+    }
+
+    @Override
+    public void close() {
+      tuples = null;
+    }
+  }
 }
@@ -30,6 +30,7 @@ import java.util.stream.Collectors;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.io.SolrClientCache;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
@@ -65,6 +66,26 @@ public abstract class TupleStream implements Closeable, Serializable, MapWriter
 
   public abstract Tuple read() throws IOException;
 
+  /**
+   * Reads the next tuples into the batch, which is cleared first. The batch holds at least one
+   * tuple and at most its capacity, and once the stream has ended it holds the EOF tuple. A stream
+   * is read either with {@link #read()} or with this method, not both.
+   *
+   * <p>By default this fills the batch by reading the tuples one by one, streams that can produce
+   * several tuples at once more cheaply override it.
+   */
+  public void readBatch(TupleBatch batch) throws IOException {
+    readTuples(batch);
+  }
+
+  /** Fills the batch by calling {@link #read()} for each tuple. */
+  protected final void readTuples(TupleBatch batch) throws IOException {
+    batch.clear();
+    while (!batch.isFull()) {
+      batch.add(read());
+    }
+  }
+
   public abstract StreamComparator getStreamSort();
 
   public abstract Explanation toExplanation(StreamFactory factory) throws IOException;
@@ -73,6 +94,23 @@ public abstract class TupleStream implements Closeable, Serializable, MapWriter
     return 0;
   }
 
+  /**
+   * The number of bytes this stream received in responses from Solr, not counting its children,
+   * for the statistics of an analyzed expression.
+   */
+  public long getBytesReceived() {
+    return 0;
+  }
+
+  /**
+   * An estimate of the most bytes of tuples this stream held in memory at once, for the statistics
+   * of an analyzed expression. Only streams that buffer their input, such as sorts and hash joins,
+   * report it.
+   */
+  public long getMemoryHighWater() {
+    return 0;
+  }
+
   @Override
   public void writeMap(EntryWriter ew) throws IOException {
     open();
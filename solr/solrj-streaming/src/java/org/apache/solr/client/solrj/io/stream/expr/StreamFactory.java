@@ -36,6 +36,7 @@ import org.apache.solr.client.solrj.io.eq.MultipleFieldEqualitor;
 import org.apache.solr.client.solrj.io.eq.StreamEqualitor;
 import org.apache.solr.client.solrj.io.eval.StreamEvaluator;
 import org.apache.solr.client.solrj.io.ops.StreamOperation;
+import org.apache.solr.client.solrj.io.stream.InstrumentedStream;
 import org.apache.solr.client.solrj.io.stream.TupleStream;
 import org.apache.solr.client.solrj.io.stream.metrics.Metric;
 
@@ -47,6 +48,7 @@ public class StreamFactory implements Serializable {
   private transient String defaultZkHost;
   private transient String defaultCollection;
   private transient String defaultSort;
+  private transient boolean statistics;
 
   public StreamFactory() {
     collectionZkHosts = new HashMap<>();
@@ -82,6 +84,21 @@ public class StreamFactory implements Serializable {
         .withDefaultSort(defaultSort);
   }
 
+  /**
+   * Returns a copy of this factory that wraps each stream it constructs in an {@link
+   * InstrumentedStream}, to record the execution statistics of an expression. The copy shares the
+   * function names and collections of this factory.
+   */
+  public StreamFactory withStatistics() {
+    StreamFactory factory = new StreamFactory(functionNames);
+    factory.collectionZkHosts = collectionZkHosts;
+    factory.defaultZkHost = defaultZkHost;
+    factory.defaultCollection = defaultCollection;
+    factory.defaultSort = defaultSort;
+    factory.statistics = true;
+    return factory;
+  }
+
   public StreamFactory withDefaultSort(String sort) {
     this.defaultSort = sort;
     return this;
@@ -311,10 +328,12 @@ public class StreamFactory implements Serializable {
     if (classSupplier != null) {
       Class<? extends Expressible> clazz = classSupplier.get();
       if (TupleStream.class.isAssignableFrom(clazz)) {
-        return createInstance(
-            clazz.asSubclass(TupleStream.class),
-            new Class<?>[] {StreamExpression.class, StreamFactory.class},
-            new Object[] {expression, this});
+        TupleStream stream =
+            createInstance(
+                clazz.asSubclass(TupleStream.class),
+                new Class<?>[] {StreamExpression.class, StreamFactory.class},
+                new Object[] {expression, this});
+        return statistics ? new InstrumentedStream(stream, function) : stream;
       }
     }
 
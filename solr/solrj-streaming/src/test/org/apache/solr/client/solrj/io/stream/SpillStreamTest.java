@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.comp.ComparatorOrder;
+import org.apache.solr.client.solrj.io.comp.FieldComparator;
+import org.apache.solr.client.solrj.io.comp.MultipleFieldComparator;
+import org.apache.solr.client.solrj.io.comp.StreamComparator;
+import org.apache.solr.client.solrj.io.stream.expr.Explanation;
+import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
+import org.apache.solr.client.solrj.io.stream.metrics.Bucket;
+import org.apache.solr.client.solrj.io.stream.metrics.CountMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.Metric;
+import org.apache.solr.client.solrj.io.stream.metrics.SumMetric;
+import org.junit.Test;
+
+/** Tests the streams spilling to disk against the same streams without a memory budget. */
+public class SpillStreamTest extends SolrTestCase {
+
+  private static final long MEMORY_BUDGET = 4096;
+
+  @Test
+  public void testSortStream() throws Exception {
+    List<Tuple> tuples = randomTuples(2000, 100);
+    StreamComparator comp =
+        new MultipleFieldComparator(
+            new FieldComparator("k", ComparatorOrder.DESCENDING),
+            new FieldComparator("v", ComparatorOrder.ASCENDING));
+
+    assertSpilled(() -> new SortStream(new TupleListStream(tuples), comp), false);
+  }
+
+  @Test
+  public void testHashRollupStream() throws Exception {
+    List<Tuple> tuples = randomTuples(2000, 500);
+
+    assertSpilled(
+        () -> {
+          Metric[] metrics = {new SumMetric("v"), new CountMetric()};
+          return new HashRollupStream(
+              new TupleListStream(tuples), new Bucket[] {new Bucket("k")}, metrics);
+        },
+        true);
+  }
+
+  @Test
+  public void testHashJoinStream() throws Exception {
+    List<Tuple> full = randomTuples(1000, 200);
+    List<Tuple> hashed = hashedTuples(600, 150);
+
+    assertSpilled(
+        () ->
+            new HashJoinStream(
+                new TupleListStream(full), new TupleListStream(hashed), List.of("k")),
+        false);
+  }
+
+  @Test
+  public void testHashJoinStreamRepartitions() throws Exception {
+    List<Tuple> full = randomTuples(1000, 2000);
+    // the partitions of the hashed stream go over the budget, and are partitioned again
+    List<Tuple> hashed = hashedTuples(3000, 2000);
+    Callable<TupleStream> factory =
+        () ->
+            new HashJoinStream(
+                new TupleListStream(full), new TupleListStream(hashed), List.of("k"));
+    assertSpilled(factory, false);
+
+    StreamContext budgeted = new StreamContext();
+    budgeted.setMemoryBudget(MEMORY_BUDGET);
+    budgeted.setSpillDirectory(createTempDir());
+    TupleStream stream = factory.call();
+    stream.setStreamContext(budgeted);
+    readAll(stream);
+    // goes over the budget by one tuple at most
+    assertTrue(
+        String.valueOf(stream.getMemoryHighWater()),
+        stream.getMemoryHighWater() <= MEMORY_BUDGET + 1024);
+  }
+
+  @Test
+  public void testOuterHashJoinStream() throws Exception {
+    List<Tuple> full = randomTuples(1000, 200);
+    // some tuples can't be joined and are only returned by the outer join
+    full.get(0).remove("k");
+    List<Tuple> hashed = hashedTuples(600, 150);
+
+    assertSpilled(
+        () ->
+            new OuterHashJoinStream(
+                new TupleListStream(full), new TupleListStream(hashed), List.of("k")),
+        false);
+  }
+
+  /**
+   * Reads the stream with and without a memory budget, and checks that it spilled, returned the
+   * same tuples, and deleted its spill files when closed.
+   */
+  private void assertSpilled(Callable<TupleStream> factory, boolean anyOrder) throws Exception {
+    StreamContext unlimited = new StreamContext();
+    TupleStream stream = factory.call();
+    stream.setStreamContext(unlimited);
+    List<Map<String, Object>> expected = readAll(stream);
+    assertEquals(0, unlimited.getSpillStats().getFiles());
+
+    Path spillDir = createTempDir();
+    StreamContext budgeted = new StreamContext();
+    budgeted.setMemoryBudget(MEMORY_BUDGET);
+    budgeted.setSpillDirectory(spillDir);
+    stream = factory.call();
+    stream.setStreamContext(budgeted);
+    List<Map<String, Object>> actual = readAll(stream);
+
+    SpillStats stats = budgeted.getSpillStats();
+    assertTrue(stats.toString(), stats.getFiles() > 0);
+    assertTrue(stats.toString(), stats.getTuples() > 0);
+    assertTrue(stats.toString(), stats.getBytes() > 0);
+    try (Stream<Path> files = Files.list(spillDir)) {
+      assertEquals(0, files.count());
+    }
+
+    assertFalse(expected.isEmpty());
+    if (anyOrder) {
+      assertEquals(expected.size(), actual.size());
+      assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+    } else {
+      assertEquals(expected, actual);
+    }
+  }
+
+  private static List<Map<String, Object>> readAll(TupleStream stream) throws IOException {
+    List<Map<String, Object>> fields = new ArrayList<>();
+    stream.open();
+    try {
+      for (Tuple t = stream.read(); !t.EOF; t = stream.read()) {
+        fields.add(t.getFields());
+      }
+    } finally {
+      stream.close();
+    }
+    return fields;
+  }
+
+  private static List<Tuple> randomTuples(int size, int keys) {
+    List<Tuple> tuples = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      Tuple tuple = new Tuple();
+      tuple.put("id", "doc" + i);
+      tuple.put("k", "key" + random().nextInt(keys));
+      tuple.put("v", (long) random().nextInt(1000));
+      tuples.add(tuple);
+    }
+    return tuples;
+  }
+
+  private static List<Tuple> hashedTuples(int size, int keys) {
+    List<Tuple> tuples = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      Tuple tuple = new Tuple();
+      tuple.put("k", "key" + random().nextInt(keys));
+      tuple.put("h", i);
+      tuples.add(tuple);
+    }
+    return tuples;
+  }
+
+  /** Returns copies of a list of tuples. */
+  private static class TupleListStream extends TupleStream {
+
+    private final List<Tuple> tuples;
+    private int index;
+
+    TupleListStream(List<Tuple> tuples) {
+      this.tuples = tuples;
+    }
+
+    @Override
+    public void setStreamContext(StreamContext context) {}
+
+    @Override
+    public List<TupleStream> children() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void open() {
+      index = 0;
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public Tuple read() {
+      return index < tuples.size() ? tuples.get(index++).clone() : Tuple.EOF();
+    }
+
+    @Override
+    public StreamComparator getStreamSort() {
+      return null;
+    }
+
+    @Override
+    public Explanation toExplanation(StreamFactory factory) {
+      return null;
+    }
+  }
+}
@@ -21,11 +21,14 @@ import static org.apache.solr.client.solrj.io.stream.StreamAssert.assertMaps;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import org.apache.lucene.tests.util.LuceneTestCase;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.client.solrj.SolrClient;
@@ -63,6 +66,8 @@ import org.apache.solr.cloud.SolrCloudTestCase;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.cloud.ClusterState;
 import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.embedded.JettySolrRunner;
@@ -1070,6 +1075,160 @@ public class StreamDecoratorTest extends SolrCloudTestCase {
     solrClientCache.close();
   }
 
+  @Test
+  public void testPipelinedFetchStream() throws Exception {
+
+    UpdateRequest updateRequest = new UpdateRequest();
+    for (int i = 0; i < 50; i++) {
+      updateRequest.add(id, Integer.toString(i), "a_i", Integer.toString(i), "subject", "s" + i);
+    }
+    updateRequest.commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    StreamFactory factory =
+        new StreamFactory()
+            .withCollectionZkHost(COLLECTIONORALIAS, cluster.getZkServer().getZkAddress())
+            .withFunctionName("search", CloudSolrStream.class)
+            .withFunctionName("fetch", FetchStream.class);
+
+    SolrClientCache solrClientCache = new SolrClientCache();
+    try {
+      for (String params : new String[] {"threads=3", "route=true", "threads=4, route=true"}) {
+        TupleStream stream =
+            factory.constructStream(
+                "fetch("
+                    + COLLECTIONORALIAS
+                    + ", search("
+                    + COLLECTIONORALIAS
+                    + ", q=*:*, fl=\"id,a_i\", sort=\"a_i asc\", qt=\"/export\"), "
+                    + "on=\"a_i=id\", batchSize=\"3\", "
+                    + params
+                    + ", fl=\"subject\")");
+        StreamContext context = new StreamContext();
+        context.setSolrClientCache(solrClientCache);
+        stream.setStreamContext(context);
+        List<Tuple> tuples = getTuples(stream);
+
+        // the batches are fetched concurrently, but returned in the order of the stream
+        assertEquals(params, 50, tuples.size());
+        for (int i = 0; i < 50; i++) {
+          assertEquals(params, i, (long) tuples.get(i).getLong("a_i"));
+          assertEquals(params, "s" + i, tuples.get(i).getString("subject"));
+        }
+      }
+    } finally {
+      solrClientCache.close();
+    }
+  }
+
+  @Test
+  public void testRoutedFetchStream() throws Exception {
+
+    UpdateRequest updateRequest = new UpdateRequest();
+    for (int i = 0; i < 50; i++) {
+      updateRequest.add(id, Integer.toString(i), "a_i", Integer.toString(i), "subject", "s" + i);
+    }
+    updateRequest.commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    String collection =
+        cluster.getSolrClient().getClusterStateProvider().resolveAlias(COLLECTIONORALIAS).get(0);
+    DocCollection docCollection = getCollectionState(collection);
+    Slice owner = docCollection.getRouter().getTargetSlice("0", null, null, null, docCollection);
+    // keys that are all owned by the shard of the first one
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 50 && keys.size() < 5; i++) {
+      String key = Integer.toString(i);
+      Slice slice = docCollection.getRouter().getTargetSlice(key, null, null, null, docCollection);
+      if (slice.getName().equals(owner.getName())) {
+        keys.add(key);
+      }
+    }
+    // the nodes that only host other shards
+    Set<String> otherNodes = new TreeSet<>();
+    for (Slice slice : docCollection.getSlices()) {
+      for (Replica replica : slice.getReplicas()) {
+        otherNodes.add(replica.getBaseUrl());
+      }
+    }
+    for (Replica replica : owner.getReplicas()) {
+      otherNodes.remove(replica.getBaseUrl());
+    }
+
+    StreamFactory factory =
+        new StreamFactory()
+            .withCollectionZkHost(COLLECTIONORALIAS, cluster.getZkServer().getZkAddress())
+            .withFunctionName("list", ListStream.class)
+            .withFunctionName("tuple", TupStream.class)
+            .withFunctionName("fetch", FetchStream.class);
+    StringBuilder list = new StringBuilder("list(");
+    for (String key : keys) {
+      list.append(list.length() > 5 ? ", " : "").append("tuple(id=\"").append(key).append("\")");
+    }
+    list.append(')');
+
+    RecordingSolrClientCache solrClientCache = new RecordingSolrClientCache();
+    try {
+      TupleStream stream =
+          factory.constructStream(
+              "fetch("
+                  + COLLECTIONORALIAS
+                  + ", "
+                  + list
+                  + ", on=\"id\", batchSize=\"10\", route=\"true\", fl=\"subject\")");
+      StreamContext context = new StreamContext();
+      context.setSolrClientCache(solrClientCache);
+      stream.setStreamContext(context);
+      List<Tuple> tuples = getTuples(stream);
+
+      assertEquals(keys.size(), tuples.size());
+      for (int i = 0; i < keys.size(); i++) {
+        assertEquals("s" + keys.get(i), tuples.get(i).getString("subject"));
+      }
+      // the keys were only fetched from their shard
+      assertFalse(solrClientCache.baseUrls.isEmpty());
+      for (String baseUrl : solrClientCache.baseUrls) {
+        assertFalse(
+            baseUrl + " only hosts shards not owning " + keys, otherNodes.contains(baseUrl));
+      }
+
+      // a_i is not the field the collection is routed on
+      TupleStream notRouted =
+          factory.constructStream(
+              "fetch("
+                  + COLLECTIONORALIAS
+                  + ", "
+                  + list
+                  + ", on=\"id=a_i\", route=\"true\", fl=\"subject\")");
+      notRouted.setStreamContext(context);
+      IOException e = expectThrows(IOException.class, () -> getTuples(notRouted));
+      assertTrue(e.getMessage(), e.getMessage().contains("but it is routed on id"));
+
+      expectThrows(
+          IOException.class,
+          () ->
+              factory.constructStream(
+                  "fetch("
+                      + COLLECTIONORALIAS
+                      + ", "
+                      + list
+                      + ", on=\"id\", threads=\""
+                      + (FetchStream.MAX_THREADS + 1)
+                      + "\", fl=\"subject\")"));
+    } finally {
+      solrClientCache.close();
+    }
+  }
+
+  /** Records the nodes the streams send requests to. */
+  private static class RecordingSolrClientCache extends SolrClientCache {
+    final List<String> baseUrls = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public synchronized SolrClient getHttpSolrClient(String baseUrl) {
+      baseUrls.add(baseUrl);
+      return super.getHttpSolrClient(baseUrl);
+    }
+  }
+
   @Test
   public void testParallelFetchStream() throws Exception {
 
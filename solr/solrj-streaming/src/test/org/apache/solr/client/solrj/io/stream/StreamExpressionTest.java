@@ -17,6 +17,7 @@
 package org.apache.solr.client.solrj.io.stream;
 
 import com.carrotsearch.randomizedtesting.annotations.ThreadLeakLingering;
+import com.codahale.metrics.Counter;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -59,7 +60,9 @@ import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.cloud.SolrCloudTestCase;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.StreamParams;
 import org.apache.solr.core.CoreDescriptor;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.embedded.JettySolrRunner;
 import org.junit.Assume;
 import org.junit.Before;
@@ -345,6 +348,145 @@ public class StreamExpressionTest extends SolrCloudTestCase {
     }
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testAnalyzedStream() throws Exception {
+
+    new UpdateRequest()
+        .add(id, "0", "a_s", "hello0", "a_i", "0", "a_f", "0")
+        .add(id, "2", "a_s", "hello2", "a_i", "2", "a_f", "0")
+        .add(id, "3", "a_s", "hello3", "a_i", "3", "a_f", "3")
+        .add(id, "4", "a_s", "hello4", "a_i", "4", "a_f", "4")
+        .add(id, "1", "a_s", "hello1", "a_i", "1", "a_f", "1")
+        .commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    StreamContext streamContext = new StreamContext();
+    SolrClientCache solrClientCache = new SolrClientCache();
+    streamContext.setSolrClientCache(solrClientCache);
+    List<String> shardUrls =
+        TupleStream.getShards(
+            cluster.getZkServer().getZkAddress(), COLLECTIONORALIAS, streamContext);
+
+    ModifiableSolrParams solrParams = new ModifiableSolrParams();
+    solrParams.add("qt", "/stream");
+    solrParams.add(StreamParams.ANALYZE, "true");
+    solrParams.add(
+        "expr",
+        "rollup(sort(search("
+            + COLLECTIONORALIAS
+            + ", q=*:*, fl=\"a_s,a_i\", sort=\"a_i asc\", qt=\"/export\"), by=\"a_s asc\"), "
+            + "over=\"a_s\", count(*))");
+    SolrStream solrStream = new SolrStream(shardUrls.get(0), solrParams);
+    solrStream.setStreamContext(streamContext);
+    try {
+      solrStream.open();
+      int count = 0;
+      Tuple tuple;
+      while (!(tuple = solrStream.read()).EOF) {
+        count++;
+      }
+      assertEquals(5, count);
+
+      // the statistics of each stream of the expression come back in the EOF tuple
+      Map<String, Object> rollup = (Map<String, Object>) tuple.get(StreamParams.STATS);
+      assertEquals("rollup", rollup.get("function"));
+      assertEquals(5L, rollup.get("tuplesIn"));
+      assertEquals(5L, rollup.get("tuplesOut"));
+
+      Map<String, Object> sort = ((List<Map<String, Object>>) rollup.get("children")).get(0);
+      assertEquals("sort", sort.get("function"));
+      assertEquals(5L, sort.get("tuplesOut"));
+      assertTrue(sort.toString(), ((Number) sort.get("memoryHighWater")).longValue() > 0);
+
+      Map<String, Object> search = ((List<Map<String, Object>>) sort.get("children")).get(0);
+      assertEquals("search", search.get("function"));
+      assertEquals(5L, search.get("tuplesOut"));
+      assertTrue(search.toString(), ((Number) search.get("bytesReceived")).longValue() > 0);
+      assertNull(search.get("children"));
+    } finally {
+      solrStream.close();
+      solrClientCache.close();
+    }
+  }
+
+  @Test
+  public void testLocalTransport() throws Exception {
+    UpdateRequest update = new UpdateRequest();
+    for (int i = 0; i < 20; i++) {
+      String value = Integer.toString(i);
+      update.add(id, value, "a_s", "hello" + (i % 3), "a_i", value, "a_f", value);
+    }
+    update.commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    StreamContext streamContext = new StreamContext();
+    SolrClientCache solrClientCache = new SolrClientCache();
+    streamContext.setSolrClientCache(solrClientCache);
+    try {
+      List<String> shardUrls =
+          TupleStream.getShards(
+              cluster.getZkServer().getZkAddress(), COLLECTIONORALIAS, streamContext);
+      long localRequests = getStreamHandlerCount("localRequests");
+      long remoteRequests = getStreamHandlerCount("remoteRequests");
+
+      // the shard hosted by the node running the expression, and by a parallel worker, is read
+      // without HTTP, and merged with the other shard read over HTTP, comparing sort values of
+      // the same types whatever the wt
+      String search =
+          "search("
+              + COLLECTIONORALIAS
+              + ", q=*:*, fl=\"id,a_i,a_f\", sort=\"a_i asc\", ";
+      String[] expressions = {
+        search + "qt=\"/export\")",
+        search + "rows=20)",
+        search + "qt=\"/export\", wt=javabin)",
+        search + "rows=20, wt=javabin)",
+        "parallel("
+            + COLLECTIONORALIAS
+            + ", workers=2, sort=\"a_i asc\", "
+            + search
+            + "qt=\"/export\", partitionKeys=a_i))"
+      };
+      for (String expression : expressions) {
+        ModifiableSolrParams solrParams = new ModifiableSolrParams();
+        solrParams.add("qt", "/stream");
+        solrParams.add("expr", expression);
+        SolrStream solrStream = new SolrStream(shardUrls.get(0), solrParams);
+        solrStream.setStreamContext(streamContext);
+        List<Tuple> tuples = getTuples(solrStream);
+
+        assertEquals(expression, 20, tuples.size());
+        for (int i = 0; i < tuples.size(); i++) {
+          Tuple tuple = tuples.get(i);
+          assertEquals(Integer.toString(i), tuple.getString("id"));
+          assertEquals(expression, Long.valueOf(i), tuple.get("a_i"));
+          assertEquals(expression, Double.valueOf(i), tuple.get("a_f"));
+        }
+      }
+
+      // two shards per search, and two workers
+      long local = getStreamHandlerCount("localRequests") - localRequests;
+      long remote = getStreamHandlerCount("remoteRequests") - remoteRequests;
+      assertTrue("local=" + local, local > 0);
+      assertTrue("local=" + local + ", remote=" + remote, local + remote >= 12);
+    } finally {
+      solrClientCache.close();
+    }
+  }
+
+  private long getStreamHandlerCount(String name) {
+    long count = 0;
+    for (JettySolrRunner jetty : cluster.getJettySolrRunners()) {
+      for (SolrCore core : jetty.getCoreContainer().getCores()) {
+        Counter counter =
+            core.getCoreMetricManager().getRegistry().getCounters().get("QUERY./stream." + name);
+        if (counter != null) {
+          count += counter.getCount();
+        }
+      }
+    }
+    return count;
+  }
+
   @Test
   public void testSqlStream() throws Exception {
 
@@ -2716,6 +2858,68 @@ public class StreamExpressionTest extends SolrCloudTestCase {
     }
   }
 
+  @Test
+  public void testSharedTopicStream() throws Exception {
+    Assume.assumeTrue(!useAlias);
+
+    UpdateRequest update = new UpdateRequest();
+    for (int i = 0; i < 10; i++) {
+      update.add(id, Integer.toString(i), "a_s", "hello", "a_i", Integer.toString(i));
+    }
+    update.commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    StreamFactory factory =
+        new StreamFactory()
+            .withCollectionZkHost("collection1", cluster.getZkServer().getZkAddress())
+            .withFunctionName("topic", TopicStream.class);
+
+    SolrClientCache cache = new SolrClientCache();
+    try {
+      // rows=2 makes the topics read the shards over several runs, from truncated scans
+      TupleStream[] topics = new TupleStream[2];
+      for (int i = 0; i < topics.length; i++) {
+        topics[i] =
+            factory.constructStream(
+                "topic(collection1, collection1, q=\"a_s:hello\", fl=\"id\", rows=2, id=\"shared"
+                    + i
+                    + "\", initialCheckpoint=0, shared=true)");
+        StreamContext context = new StreamContext();
+        context.setSolrClientCache(cache);
+        topics[i].setStreamContext(context);
+      }
+      assertTrue(
+          ((TopicStream) topics[0]).toExpression(factory).toString().contains("shared=true"));
+
+      long reuses = SharedTopicScans.INSTANCE.getReuses();
+      List<List<String>> ids = List.of(new ArrayList<>(), new ArrayList<>());
+      for (int run = 0; run < 20 && (ids.get(0).size() < 10 || ids.get(1).size() < 10); run++) {
+        for (TupleStream topic : topics) {
+          topic.open();
+        }
+        try {
+          for (int i = 0; i < topics.length; i++) {
+            for (Tuple t = topics[i].read(); !t.EOF; t = topics[i].read()) {
+              ids.get(i).add(t.getString("id"));
+            }
+          }
+        } finally {
+          for (TupleStream topic : topics) {
+            topic.close();
+          }
+        }
+      }
+
+      // each topic keeps its own checkpoints and gets every document once
+      for (List<String> topicIds : ids) {
+        assertEquals(topicIds.toString(), 10, topicIds.size());
+        assertEquals(10, new HashSet<>(topicIds).size());
+      }
+      assertTrue(SharedTopicScans.INSTANCE.getReuses() > reuses);
+    } finally {
+      cache.close();
+    }
+  }
+
   @Test
   public void testParallelTopicStream() throws Exception {
 
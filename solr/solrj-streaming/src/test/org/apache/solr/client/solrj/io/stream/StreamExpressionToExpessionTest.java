@@ -410,7 +410,7 @@ public class StreamExpressionToExpessionTest extends SolrTestCase {
                     + "q=\"*:*\", "
                     + "buckets=\"a_s\", "
                     + "bucketSorts=\"sum(a_i) asc\", "
-                    + "rows=10, offset=100, overfetch=30, method=dvhash, "
+                    + "rows=10, offset=100, overfetch=30, method=dvhash, mincount=5, "
                     + "sum(a_i), sum(a_f), "
                     + "min(a_i), min(a_f), "
                     + "max(a_i), max(a_f), "
@@ -428,6 +428,8 @@ public class StreamExpressionToExpessionTest extends SolrTestCase {
       assertTrue(expressionString.contains("offset=100"));
       assertTrue(expressionString.contains("overfetch=30"));
       assertTrue(expressionString.contains("method=dvhash"));
+      assertTrue(expressionString.contains("mincount=5"));
+      assertEquals(5, stream.getMincount());
       assertTrue(expressionString.contains("sum(a_i)"));
       assertTrue(expressionString.contains("sum(a_f)"));
       assertTrue(expressionString.contains("min(a_i)"));
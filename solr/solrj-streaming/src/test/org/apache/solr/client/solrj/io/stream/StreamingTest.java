@@ -33,6 +33,7 @@ import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.io.SolrClientCache;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.ComparatorOrder;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.MultipleFieldComparator;
@@ -51,6 +52,7 @@ import org.apache.solr.client.solrj.request.CollectionAdminRequest;
 import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.client.solrj.routing.RequestReplicaListTransformerGenerator;
 import org.apache.solr.cloud.SolrCloudTestCase;
+import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.cloud.DocCollection;
 import org.apache.solr.common.cloud.Replica;
 import org.apache.solr.common.cloud.Slice;
@@ -85,7 +87,11 @@ public class StreamingTest extends SolrCloudTestCase {
           .withFunctionName("reduce", ReducerStream.class)
           .withFunctionName("group", GroupOperation.class)
           .withFunctionName("rollup", RollupStream.class)
-          .withFunctionName("parallel", ParallelStream.class);
+          .withFunctionName("parallel", ParallelStream.class)
+          .withFunctionName("select", SelectStream.class)
+          .withFunctionName("sort", SortStream.class)
+          .withFunctionName("sum", SumMetric.class)
+          .withFunctionName("count", CountMetric.class);
 
   private static String zkHost;
 
@@ -2817,6 +2823,141 @@ public class StreamingTest extends SolrCloudTestCase {
     }
   }
 
+  @Test
+  public void testColumnarExport() throws Exception {
+    UpdateRequest update = new UpdateRequest();
+    for (int i = 0; i < 50; i++) {
+      SolrInputDocument doc =
+          sdoc(
+              id,
+              Integer.toString(i),
+              "i_sing",
+              Integer.toString(i),
+              "d_sing",
+              Double.toString(i / 4.0),
+              "s_sing",
+              "s" + (i % 3),
+              "dt_sing",
+              Instant.ofEpochSecond(i * 86400L).toString(),
+              "b_sing",
+              Boolean.toString(i % 2 == 0),
+              "s_multi",
+              "m" + i,
+              "s_multi",
+              "m" + (i + 1));
+      if (i % 5 != 0) {
+        // leave some rows without a value, so that the column needs a presence bitmap
+        doc.addField("l_sing", Long.toString(i * 1000L));
+        doc.addField("f_sing", Float.toString(i / 2f));
+      }
+      update.add(doc);
+    }
+    update.commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    StreamContext streamContext = new StreamContext();
+    SolrClientCache solrClientCache = new SolrClientCache();
+    streamContext.setSolrClientCache(solrClientCache);
+    ModifiableSolrParams sParams =
+        params(
+            "q",
+            "*:*",
+            "qt",
+            "/export",
+            "wt",
+            "javabin",
+            "fl",
+            "id,i_sing,l_sing,f_sing,d_sing,s_sing,dt_sing,b_sing,s_multi",
+            "sort",
+            "i_sing asc");
+    try {
+      List<Tuple> rows;
+      try (CloudSolrStream stream = new CloudSolrStream(zkHost, COLLECTIONORALIAS, sParams)) {
+        stream.setStreamContext(streamContext);
+        rows = getTuples(stream);
+      }
+
+      sParams.set(ColumnarTupleStreamParser.FORMAT_PARAM, ColumnarTupleStreamParser.FORMAT);
+      List<Tuple> columns;
+      try (CloudSolrStream stream = new CloudSolrStream(zkHost, COLLECTIONORALIAS, sParams)) {
+        stream.setStreamContext(streamContext);
+        columns = getTuples(stream);
+      }
+
+      assertEquals(50, rows.size());
+      assertEquals(rows.size(), columns.size());
+      for (int i = 0; i < rows.size(); i++) {
+        assertEquals(rows.get(i).getFields(), columns.get(i).getFields());
+      }
+      assertFalse(columns.get(0).getFields().containsKey("l_sing"));
+      assertEquals(1000L, columns.get(1).getLong("l_sing").longValue());
+      assertEquals("s1", columns.get(1).getString("s_sing"));
+
+      // the columnar format is only written with javabin
+      sParams.set("wt", "json");
+      try (CloudSolrStream stream = new CloudSolrStream(zkHost, COLLECTIONORALIAS, sParams)) {
+        stream.setStreamContext(streamContext);
+        IOException e = expectThrows(IOException.class, () -> getTuples(stream));
+        assertTrue(e.getMessage(), e.getMessage().contains("requires wt=javabin"));
+      }
+    } finally {
+      solrClientCache.close();
+    }
+  }
+
+  @Test
+  public void testReadBatch() throws Exception {
+    UpdateRequest update = new UpdateRequest();
+    for (int i = 0; i < 200; i++) {
+      update.add(
+          id,
+          Integer.toString(i),
+          "a_s",
+          "hello" + (i % 7),
+          "a_i",
+          Integer.toString(i % 13),
+          "a_f",
+          Float.toString(i / 4f));
+    }
+    update.commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    String search =
+        "search("
+            + COLLECTIONORALIAS
+            + ", q=*:*, fl=\"id,a_s,a_i,a_f\", sort=\"a_s asc, id asc\"";
+    String[] exprs = {
+      search + ")",
+      search + ", qt=\"/export\")",
+      "select(" + search + "), id, a_s as s, a_i)",
+      "sort(" + search + "), by=\"a_i desc, id asc\")",
+      "rollup(" + search + "), over=a_s, sum(a_i), count(*))",
+      "reduce(" + search + "), by=a_s, group(sort=\"a_i asc, id asc\", n=5))"
+    };
+
+    StreamContext streamContext = new StreamContext();
+    SolrClientCache solrClientCache = new SolrClientCache();
+    streamContext.setSolrClientCache(solrClientCache);
+    try {
+      for (String expr : exprs) {
+        TupleStream stream = streamFactory.constructStream(expr);
+        stream.setStreamContext(streamContext);
+        List<Tuple> tuples = getTuples(stream);
+
+        // small batches, so that groups and shard runs span several of them
+        for (int capacity : new int[] {1, 7, TupleBatch.DEFAULT_CAPACITY}) {
+          stream = streamFactory.constructStream(expr);
+          stream.setStreamContext(streamContext);
+          List<Tuple> batched = getBatchTuples(stream, capacity);
+          assertEquals(expr, tuples.size(), batched.size());
+          for (int i = 0; i < tuples.size(); i++) {
+            assertEquals(expr, tuples.get(i).getFields(), batched.get(i).getFields());
+          }
+        }
+      }
+    } finally {
+      solrClientCache.close();
+    }
+  }
+
   @Test
   public void testTupleStreamGetShardsPreference() throws Exception {
     StreamContext streamContext = new StreamContext();
@@ -2891,6 +3032,21 @@ public class StreamingTest extends SolrCloudTestCase {
     return tuples;
   }
 
+  protected List<Tuple> getBatchTuples(TupleStream tupleStream, int capacity) throws IOException {
+    tupleStream.open();
+    List<Tuple> tuples = new ArrayList<>();
+    TupleBatch batch = new TupleBatch(capacity);
+    do {
+      tupleStream.readBatch(batch);
+      assertTrue(batch.size() > 0 || batch.isEOF());
+      for (int i = 0; i < batch.size(); i++) {
+        tuples.add(batch.get(i));
+      }
+    } while (!batch.isEOF());
+    tupleStream.close();
+    return tuples;
+  }
+
   protected Tuple getTuple(TupleStream tupleStream) throws IOException {
     tupleStream.open();
     Tuple t = tupleStream.read();
@@ -28,6 +28,7 @@ import java.net.ConnectException;
 import java.net.CookieStore;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -47,6 +48,7 @@ import java.util.concurrent.Phaser;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import org.apache.solr.client.solrj.ResponseParser;
 import org.apache.solr.client.solrj.SolrClient;
@@ -74,6 +76,8 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.ObjectReleaseTracker;
 import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.common.util.Utils;
+import org.eclipse.jetty.client.ContentDecoder;
+import org.eclipse.jetty.client.GZIPContentDecoder;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpClientTransport;
 import org.eclipse.jetty.client.HttpProxy;
@@ -156,6 +160,10 @@ public class Http2SolrClient extends SolrClient {
   final String basicAuthAuthorizationStr;
   private AuthenticationStoreHolder authenticationStore;
 
+  // sizes of the gzip encoded responses, before and after decoding
+  private final LongAdder compressedResponseBytes = new LongAdder();
+  private final LongAdder decompressedResponseBytes = new LongAdder();
+
   protected Http2SolrClient(String serverBaseUrl, Builder builder) {
     if (serverBaseUrl != null) {
       if (!serverBaseUrl.equals("/") && serverBaseUrl.endsWith("/")) {
@@ -215,6 +223,40 @@ public class Http2SolrClient extends SolrClient {
     return httpClient.getProtocolHandlers();
   }
 
+  /**
+   * The number of bytes of the compressed responses this client received, as sent. Only counted if
+   * response compression was enabled with {@link Builder#withResponseCompression(boolean)}.
+   */
+  public long getCompressedResponseBytes() {
+    return compressedResponseBytes.sum();
+  }
+
+  /** The number of bytes of the compressed responses this client received, once decompressed. */
+  public long getDecompressedResponseBytes() {
+    return decompressedResponseBytes.sum();
+  }
+
+  private class CountingGZIPContentDecoderFactory extends ContentDecoder.Factory {
+    CountingGZIPContentDecoderFactory() {
+      super("gzip");
+    }
+
+    @Override
+    public ContentDecoder newContentDecoder() {
+      return new GZIPContentDecoder(
+          httpClient.getByteBufferPool(), GZIPContentDecoder.DEFAULT_BUFFER_SIZE) {
+        @Override
+        public ByteBuffer decode(ByteBuffer compressed) {
+          int remaining = compressed.remaining();
+          ByteBuffer decoded = super.decode(compressed);
+          compressedResponseBytes.add(remaining - compressed.remaining());
+          decompressedResponseBytes.add(decoded.remaining());
+          return decoded;
+        }
+      };
+    }
+  }
+
   private HttpClient createHttpClient(Builder builder) {
     HttpClient httpClient;
 
@@ -281,6 +323,14 @@ public class Http2SolrClient extends SolrClient {
 
     httpClient.setConnectTimeout(builder.connectionTimeoutMillis);
 
+    if (builder.responseCompression != null) {
+      // replaces the default gzip decoder, to count the bytes
+      httpClient.getContentDecoderFactories().clear();
+      if (builder.responseCompression) {
+        httpClient.getContentDecoderFactories().add(new CountingGZIPContentDecoderFactory());
+      }
+    }
+
     setupProxy(builder, httpClient);
 
     try {
@@ -1044,6 +1094,7 @@ public class Http2SolrClient extends SolrClient {
     private Integer maxConnectionsPerHost;
     private String basicAuthAuthorizationStr;
     private boolean useHttp1_1 = Boolean.getBoolean("solr.http1");
+    private Boolean responseCompression;
     private Boolean followRedirects;
     protected String baseSolrUrl;
     private ExecutorService executor;
@@ -1241,6 +1292,17 @@ public class Http2SolrClient extends SolrClient {
       return this;
     }
 
+    /**
+     * Whether to ask the servers for gzip compressed responses, counting their bytes before and
+     * after decoding, see {@link #getCompressedResponseBytes()}. The servers only compress the
+     * responses if they are configured to. If not set, the default decoders of the HTTP client are
+     * used and the bytes are not counted.
+     */
+    public Builder withResponseCompression(boolean responseCompression) {
+      this.responseCompression = responseCompression;
+      return this;
+    }
+
     /**
      * @deprecated Please use {@link #withConnectionTimeout(long, TimeUnit)}
      */
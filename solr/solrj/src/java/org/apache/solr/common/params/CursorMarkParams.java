@@ -41,4 +41,10 @@ public interface CursorMarkParams {
    * "first page" of results is being requested
    */
   public static final String CURSOR_MARK_START = "*";
+
+  /**
+   * Param specifying how many pages a shard collects at once, when it is configured to keep the
+   * pages following the requested one for later cursor requests.
+   */
+  public static final String CURSOR_MARK_PREFETCH = "cursorMark.prefetch";
 }
@@ -68,4 +68,11 @@ public interface GroupParams {
   public static final String GROUP_DISTRIBUTED_SECOND = GROUP + ".distributed.second";
 
   public static final String GROUP_DISTRIBUTED_TOPGROUPS_PREFIX = GROUP + ".topgroups.";
+
+  /**
+   * Have the shards return the top documents of their own top groups together with the search
+   * groups, so that the top groups can be merged without a second round trip whenever the shard
+   * responses cover all merged groups. true/false
+   */
+  public static final String GROUP_DISTRIBUTED_COMBINE = GROUP + ".distributed.combine";
 }
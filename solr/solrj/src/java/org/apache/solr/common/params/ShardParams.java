@@ -62,6 +62,15 @@ public interface ShardParams {
   /** Should things fail if there is an error? (true/false/{@value #REQUIRE_ZK_CONNECTED}) */
   String SHARDS_TOLERANT = "shards.tolerant";
 
+  /**
+   * Send a second request to another replica when a shard responds slowly, if the shard handler
+   * has hedging enabled (true/false)
+   */
+  String SHARDS_HEDGE = "shards.hedge";
+
+  /** Report the index version of the shard in the response header (true/false) */
+  String SHARDS_INDEX_VERSION = "shards.indexVersion";
+
   /** query purpose for shard requests */
   String SHARDS_PURPOSE = "shards.purpose";
 
@@ -92,6 +101,9 @@ public interface ShardParams {
   /** Value denoting stable replica sort */
   String REPLICA_STABLE = "stable";
 
+  /** Value denoting replica sort by the response times and errors of their nodes */
+  String REPLICA_ADAPTIVE = "adaptive";
+
   /** configure dividend param for stable replica sort */
   String ROUTING_DIVIDEND = "dividend";
 
@@ -100,9 +112,27 @@ public interface ShardParams {
 
   String _ROUTE_ = "_route_";
 
-  /** Force a single-pass distributed query? (true/false) */
+  /**
+   * Force a single-pass distributed query? (true/false/auto), with <code>auto</code> a single pass is
+   * used if the documents fetched in vain are estimated to be small
+   */
   String DISTRIB_SINGLE_PASS = "distrib.singlePass";
 
+  /**
+   * The estimated size in bytes of the documents fetched in vain up to which {@value
+   * #DISTRIB_SINGLE_PASS}=auto uses a single pass
+   */
+  String DISTRIB_SINGLE_PASS_MAX_BYTES = "distrib.singlePass.maxBytes";
+
+  /**
+   * Sample the top documents of every shard first, to only fetch the documents from the shards
+   * that can make it into the merged top (start+rows)? (true/false)
+   */
+  String DISTRIB_PRUNE = "distrib.prune";
+
+  /** The lowest score of the documents a shard returns, set internally by distrib.prune */
+  String DISTRIB_PRUNE_MIN_SCORE = "distrib.prune.minScore";
+
   /**
    * Throw an error from search requests when the {@value #SHARDS_TOLERANT} param has this value and
    * ZooKeeper is not connected.
@@ -21,6 +21,8 @@ public interface StreamParams {
 
   // parameters
   String EXPR = "expr";
+  String MEMORY_BUDGET = "memoryBudget";
+  String ANALYZE = "analyze";
 
   // stream properties
   String TUPLE = "tuple";
@@ -33,6 +35,8 @@ public interface StreamParams {
   String EOF = "EOF";
   String EXCEPTION = "EXCEPTION";
   String METRICS = "_METRICS_";
+  String SPILLED = "SPILLED";
+  String STATS = "STATS";
 
   // other common tuple properties
   String P_VALUE = "p-value";
@@ -57,6 +57,14 @@ public class ShardParamsTest extends SolrTestCase {
     assertEquals(ShardParams.SHARDS_TOLERANT, "shards.tolerant");
   }
 
+  public void testShardsIndexVersion() {
+    assertEquals(ShardParams.SHARDS_INDEX_VERSION, "shards.indexVersion");
+  }
+
+  public void testShardsHedge() {
+    assertEquals(ShardParams.SHARDS_HEDGE, "shards.hedge");
+  }
+
   public void testRequireZkConnected() {
     assertEquals(ShardParams.REQUIRE_ZK_CONNECTED, "requireZkConnected");
   }
@@ -71,6 +79,12 @@ public class ShardParamsTest extends SolrTestCase {
 
   public void testDistribSinglePass() {
     assertEquals(ShardParams.DISTRIB_SINGLE_PASS, "distrib.singlePass");
+    assertEquals(ShardParams.DISTRIB_SINGLE_PASS_MAX_BYTES, "distrib.singlePass.maxBytes");
+  }
+
+  public void testDistribPrune() {
+    assertEquals(ShardParams.DISTRIB_PRUNE, "distrib.prune");
+    assertEquals(ShardParams.DISTRIB_PRUNE_MIN_SCORE, "distrib.prune.minScore");
   }
 
   @Test